@@ -0,0 +1,219 @@
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Set of vertex names that keeps the order they were added in, used by Graph for the edges of
+ * every vertex.
+ *
+ * Most packages have a handful of dependencies and dependents, and a LinkedHashSet spends a map, a
+ * table and a 40 byte entry on each of them. Up to SMALL names are kept in an array instead, with
+ * their hash codes in a second array so contains() and remove() compare ints and only call
+ * equals() on a matching hash. A set that grows past SMALL moves its names into a LinkedHashSet and
+ * stays there, so vertices with many edges keep constant time lookups.
+ *
+ * Like LinkedHashSet it does not allow changes while it is being iterated over, other than through
+ * the iterator, but unlike it does not detect them.
+ */
+class AdjacencySet extends AbstractSet<String> {
+
+  /**
+   * Most names kept in the arrays before moving to a LinkedHashSet
+   */
+  static final int SMALL = 16;
+
+  private static final String[] NO_NAMES = new String[0];
+  private static final int[] NO_HASHES = new int[0];
+
+  /**
+   * Names in the order they were added, and their hash codes, while the set is small
+   */
+  private String[] names;
+  private int[] hashes;
+  private int size;
+
+  /**
+   * Every name once the set grew past SMALL, null before
+   */
+  private Set<String> large;
+
+  /**
+   * Creates an empty set
+   */
+  AdjacencySet() {
+    this(0);
+  }
+
+  /**
+   * Creates an empty set with room for capacity names
+   *
+   * @param capacity amount of names the set will hold
+   */
+  AdjacencySet(int capacity) {
+    if (capacity > SMALL) {
+      this.large = new LinkedHashSet<String>((int) (capacity / 0.75f) + 1);
+    } else if (capacity > 0) {
+      this.names = new String[capacity];
+      this.hashes = new int[capacity];
+    } else {
+      this.names = NO_NAMES;
+      this.hashes = NO_HASHES;
+    }
+  }
+
+  @Override
+  public int size() {
+    return this.large == null ? this.size : this.large.size();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (this.large != null) {
+      return this.large.contains(o);
+    }
+    return o != null && this.indexOf(o) >= 0;
+  }
+
+  @Override
+  public boolean add(String name) {
+    if (this.large != null) {
+      return this.large.add(name);
+    }
+    if (name == null) {
+      throw new NullPointerException();
+    }
+    if (this.indexOf(name) >= 0) {
+      return false;
+    }
+
+    if (this.size == SMALL) {
+      return this.promote(name);
+    }
+    if (this.size == this.names.length) {
+      this.grow();
+    }
+    this.names[this.size] = name;
+    this.hashes[this.size] = name.hashCode();
+    this.size++;
+    return true;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (this.large != null) {
+      return this.large.remove(o);
+    }
+    int i = o == null ? -1 : this.indexOf(o);
+    if (i < 0) {
+      return false;
+    }
+    this.removeAt(i);
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    if (this.large != null) {
+      this.large.clear();
+      return;
+    }
+    for (int i = 0; i < this.size; i++) {
+      this.names[i] = null;
+    }
+    this.size = 0;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    if (this.large != null) {
+      return this.large.iterator();
+    }
+
+    return new Iterator<String>() {
+      private int next;
+      private boolean removable;
+
+      public boolean hasNext() {
+        return this.next < size;
+      }
+
+      public String next() {
+        if (this.next >= size) {
+          throw new NoSuchElementException();
+        }
+        this.removable = true;
+        return names[this.next++];
+      }
+
+      public void remove() {
+        if (!this.removable) {
+          throw new IllegalStateException();
+        }
+        this.removable = false;
+        removeAt(--this.next);
+      }
+    };
+  }
+
+  /**
+   * Moves the names into a LinkedHashSet once the set is full, kept out of add() so that stays
+   * small enough to compile early
+   *
+   * @param name name to add after the others
+   * @return boolean true
+   */
+  private boolean promote(String name) {
+    this.large = new LinkedHashSet<String>(2 * SMALL);
+    for (int i = 0; i < this.size; i++) {
+      this.large.add(this.names[i]);
+    }
+    this.names = null;
+    this.hashes = null;
+    this.size = 0;
+    return this.large.add(name);
+  }
+
+  /**
+   * Makes room for more names while the set is small
+   */
+  private void grow() {
+    int capacity = Math.min(Math.max(4, 2 * this.size), SMALL);
+    String[] names = new String[capacity];
+    int[] hashes = new int[capacity];
+    System.arraycopy(this.names, 0, names, 0, this.size);
+    System.arraycopy(this.hashes, 0, hashes, 0, this.size);
+    this.names = names;
+    this.hashes = hashes;
+  }
+
+  /**
+   * Finds a name while the set is small
+   *
+   * @param o name to look for, not null
+   * @return int index of the name, or -1 if it is not in the set
+   */
+  private int indexOf(Object o) {
+    int hash = o.hashCode();
+    for (int i = 0; i < this.size; i++) {
+      if (this.hashes[i] == hash && o.equals(this.names[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Removes a name while the set is small, moving the names after it forward to keep their order
+   *
+   * @param i index of the name
+   */
+  private void removeAt(int i) {
+    int after = this.size - i - 1;
+    System.arraycopy(this.names, i + 1, this.names, i, after);
+    System.arraycopy(this.hashes, i + 1, this.hashes, i, after);
+    this.names[--this.size] = null;
+  }
+
+}
@@ -0,0 +1,73 @@
+/**
+ * VertexTable kept on the heap as a String array and an open addressing hash table from name to
+ * id, laid out the same way as the index of a BufferVertexTable. The table is a single int[], so
+ * no Integer or map entry is allocated per vertex.
+ */
+class ArrayVertexTable implements VertexTable {
+
+  /**
+   * id -> vertex name
+   */
+  private final String[] names;
+
+  /**
+   * slot -> id + 1, or 0 for an empty slot, see BufferVertexTable
+   */
+  private final int[] index;
+
+  /**
+   * @param names id -> vertex name, must not contain duplicates
+   */
+  ArrayVertexTable(String[] names) {
+    this(names,
+        BufferVertexTable.buildIndex(names, BufferVertexTable.indexCapacityFor(names.length)));
+  }
+
+  /**
+   * Creates a table from an index that was already built, for example by a GraphBuilder
+   *
+   * @param names id -> vertex name, must not contain duplicates
+   * @param index slot -> id + 1 for every name, from BufferVertexTable.buildIndex(), not copied
+   */
+  ArrayVertexTable(String[] names, int[] index) {
+    this.names = names;
+    this.index = index;
+  }
+
+  public int idOf(String vertex) {
+    return find(this.names, this.index, vertex);
+  }
+
+  public String nameOf(int id) {
+    return this.names[id];
+  }
+
+  public int size() {
+    return this.names.length;
+  }
+
+  /**
+   * Looks a name up in an index built by BufferVertexTable.buildIndex()
+   *
+   * @param names id -> vertex name the index was built for
+   * @param index slot -> id + 1, or 0 for an empty slot
+   * @param vertex name to look up, not null
+   * @return int id of the vertex, or -1 if it is not in the index
+   */
+  static int find(String[] names, int[] index, String vertex) {
+    int mask = index.length - 1;
+    int slot = BufferVertexTable.slotOf(vertex.hashCode(), mask);
+    while (true) {
+      int entry = index[slot];
+      if (entry == 0) {
+        return -1;
+      }
+      String name = names[entry - 1];
+      if (name == vertex || name.equals(vertex)) {
+        return entry - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+}
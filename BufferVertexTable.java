@@ -0,0 +1,170 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * VertexTable that reads everything straight out of a ByteBuffer (for example a memory-mapped
+ * snapshot file) instead of keeping Strings on the heap.
+ *
+ * The buffer holds three int aligned sections:
+ *
+ * 1. name offsets, int[size + 1], byte offsets of each UTF-8 encoded name inside the name section
+ *
+ * 2. names, the UTF-8 bytes of every name back to back
+ *
+ * 3. index, an open addressing hash table of int[capacity] (capacity is a power of two) holding
+ * id + 1 for each vertex, or 0 for an empty slot. Slots are found from String.hashCode() of the
+ * name, which is the same on every JVM, so the table can be written once and reused.
+ *
+ * Names are only decoded when nameOf() is called, so creating the table costs nothing per vertex.
+ */
+class BufferVertexTable implements VertexTable {
+
+  /**
+   * Most vertices a table can index, the index of a larger one would need more than 2^30 slots
+   */
+  static final int MAX_SIZE = 1 << 29;
+
+  private final ByteBuffer buffer;
+  private final int size;
+  private final int nameOffsetsPosition;
+  private final int namesPosition;
+  private final int indexPosition;
+  private final int indexMask;
+
+  /**
+   * @param buffer holding the table, it is not modified
+   * @param size amount of vertices
+   * @param nameOffsetsPosition byte position of the name offsets section
+   * @param namesPosition byte position of the names section
+   * @param indexPosition byte position of the index section
+   * @param indexCapacity amount of slots in the index, a power of two
+   */
+  BufferVertexTable(ByteBuffer buffer, int size, int nameOffsetsPosition, int namesPosition,
+      int indexPosition, int indexCapacity) {
+    this.buffer = buffer;
+    this.size = size;
+    this.nameOffsetsPosition = nameOffsetsPosition;
+    this.namesPosition = namesPosition;
+    this.indexPosition = indexPosition;
+    this.indexMask = indexCapacity - 1;
+  }
+
+  public int idOf(String vertex) {
+    byte[] encoded = vertex.getBytes(StandardCharsets.UTF_8);
+    int slot = slotOf(vertex.hashCode(), this.indexMask);
+    while (true) {
+      int entry = this.buffer.getInt(this.indexPosition + 4 * slot);
+      if (entry == 0) {
+        return -1;
+      }
+      if (this.nameEquals(entry - 1, encoded)) {
+        return entry - 1;
+      }
+      slot = (slot + 1) & this.indexMask;
+    }
+  }
+
+  public String nameOf(int id) {
+    int start = this.nameStart(id);
+    byte[] bytes = new byte[this.nameStart(id + 1) - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = this.buffer.get(this.namesPosition + start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * @param id id of the vertex
+   * @return int offset of the vertex's name inside the names section
+   */
+  private int nameStart(int id) {
+    return this.buffer.getInt(this.nameOffsetsPosition + 4 * id);
+  }
+
+  /**
+   * Compares the stored name of a vertex to an encoded name without decoding it
+   *
+   * @param id id of the vertex
+   * @param encoded UTF-8 bytes of the name to compare to
+   * @return boolean true if the names are equal
+   */
+  private boolean nameEquals(int id, byte[] encoded) {
+    int start = this.nameStart(id);
+    if (this.nameStart(id + 1) - start != encoded.length) {
+      return false;
+    }
+    for (int i = 0; i < encoded.length; i++) {
+      if (this.buffer.get(this.namesPosition + start + i) != encoded[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the amount of index slots used for a table of the given size
+   *
+   * @param size amount of vertices, at most MAX_SIZE
+   * @return int a power of two at least twice size
+   * @throws IllegalArgumentException if size is more than MAX_SIZE
+   */
+  static int indexCapacityFor(int size) {
+    if (size > MAX_SIZE) {
+      throw new IllegalArgumentException(
+          "a vertex table holds at most " + MAX_SIZE + " vertices, not " + size);
+    }
+    int capacity = 2;
+    while (capacity < 2 * size) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  /**
+   * Builds the index section for the given names
+   *
+   * @param names id -> vertex name, must not contain duplicates
+   * @param capacity amount of slots, from indexCapacityFor()
+   * @return int[] slot -> id + 1, or 0 for an empty slot
+   */
+  static int[] buildIndex(String[] names, int capacity) {
+    return buildIndex(names, names.length, capacity);
+  }
+
+  /**
+   * Builds the index section for the first size names
+   *
+   * @param names id -> vertex name, the first size must not contain duplicates
+   * @param size amount of names to index
+   * @param capacity amount of slots, from indexCapacityFor()
+   * @return int[] slot -> id + 1, or 0 for an empty slot
+   */
+  static int[] buildIndex(String[] names, int size, int capacity) {
+    int[] index = new int[capacity];
+    int mask = capacity - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = slotOf(names[id].hashCode(), mask);
+      while (index[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      index[slot] = id + 1;
+    }
+    return index;
+  }
+
+  /**
+   * First slot to probe for a hash
+   *
+   * @param hash String.hashCode() of the name
+   * @param mask capacity - 1
+   * @return int slot
+   */
+  static int slotOf(int hash, int mask) {
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+}
@@ -0,0 +1,203 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Set;
+import org.json.simple.parser.ContentHandler;
+
+/**
+ * Streaming json-simple ContentHandler for the lines of a change feed, reused for every line. Every
+ * line is one change:
+ *
+ * { "op": "add", "name": "A", "dependencies": ["B", "C"] } adds a package, or replaces the
+ * dependencies of a package that already exists
+ *
+ * { "op": "update", "name": "A", "dependencies": ["B"] } replaces the dependencies of a package,
+ * adding it if it does not exist yet
+ *
+ * { "op": "remove", "name": "A" } removes a package and its edges, so packages that depend on it
+ * no longer do
+ *
+ * A missing dependencies list means no dependencies. Dependencies that are not packages yet are
+ * added as packages, like constructGraph() does. Unknown keys and nested values are skipped. A line
+ * that is not an object, an op or name that is not a string, and dependencies that are not a list
+ * of strings are rejected with an IllegalArgumentException.
+ *
+ * When the change has been read it is applied to the Graph with as few operations as possible:
+ * only the edges that differ between the old and the new dependencies are removed or added. The
+ * Graph tells its listeners about every one of those, so derived state such as the installation
+ * order cache only drops what the change affects.
+ */
+class ChangeJsonHandler implements ContentHandler {
+
+  /**
+   * Nesting depth of the change object and its dependencies array
+   */
+  private static final int CHANGE_DEPTH = 1;
+  private static final int DEPENDENCIES_DEPTH = 2;
+
+  private final Graph graph;
+
+  /**
+   * Keys of the object entries we are currently inside of, innermost first
+   */
+  private final Deque<String> keys = new ArrayDeque<String>();
+  private int depth;
+
+  private boolean inDependencies;
+
+  /**
+   * The change currently being parsed
+   */
+  private String op;
+  private String name;
+  private final Set<String> dependencies = new AdjacencySet();
+
+  /**
+   * Totals over every change applied so far
+   */
+  private int changes;
+  private long edgesChanged;
+
+  /**
+   * @param graph to apply changes to
+   */
+  ChangeJsonHandler(Graph graph) {
+    this.graph = graph;
+  }
+
+  /**
+   * @return int amount of changes applied so far
+   */
+  int getChangeCount() {
+    return this.changes;
+  }
+
+  /**
+   * @return long amount of edges added or removed so far
+   */
+  long getEdgesChanged() {
+    return this.edgesChanged;
+  }
+
+  public void startJSON() {}
+
+  public void endJSON() {}
+
+  public boolean startObject() {
+    this.depth++;
+    if (this.depth == DEPENDENCIES_DEPTH && this.isKey("dependencies")) {
+      throw new IllegalArgumentException("dependencies must be a list");
+    }
+    if (this.inDependencies) {
+      throw new IllegalArgumentException("dependencies must be strings");
+    }
+    if (this.depth == CHANGE_DEPTH) {
+      this.op = null;
+      this.name = null;
+      this.dependencies.clear();
+    }
+    return true;
+  }
+
+  public boolean endObject() {
+    if (this.depth == CHANGE_DEPTH) {
+      this.apply();
+    }
+    this.depth--;
+    return true;
+  }
+
+  public boolean startObjectEntry(String key) {
+    this.keys.push(key);
+    return true;
+  }
+
+  public boolean endObjectEntry() {
+    this.keys.pop();
+    return true;
+  }
+
+  public boolean startArray() {
+    if (this.depth == 0) {
+      throw new IllegalArgumentException("change must be an object");
+    }
+    if (this.inDependencies) {
+      throw new IllegalArgumentException("dependencies must be strings");
+    }
+    this.depth++;
+    if (this.depth == DEPENDENCIES_DEPTH && this.isKey("dependencies")) {
+      this.inDependencies = true;
+    }
+    return true;
+  }
+
+  public boolean endArray() {
+    if (this.inDependencies && this.depth == DEPENDENCIES_DEPTH) {
+      this.inDependencies = false;
+    }
+    this.depth--;
+    return true;
+  }
+
+  public boolean primitive(Object value) {
+    if (this.depth == 0) {
+      throw new IllegalArgumentException("change must be an object");
+    }
+    if (this.inDependencies) {
+      // a null dependency is skipped like Graph.addEdge() skips it
+      if (value != null) {
+        this.dependencies.add(this.string(value, "dependency"));
+      }
+    } else if (this.depth == CHANGE_DEPTH && this.isKey("op")) {
+      this.op = this.string(value, "op");
+    } else if (this.depth == CHANGE_DEPTH && this.isKey("name")) {
+      this.name = this.string(value, "name");
+    } else if (this.depth == CHANGE_DEPTH && this.isKey("dependencies") && value != null) {
+      throw new IllegalArgumentException("dependencies must be a list");
+    }
+    return true;
+  }
+
+  /**
+   * @return boolean true if the innermost object entry has the given key
+   */
+  private boolean isKey(String key) {
+    return key.equals(this.keys.peek());
+  }
+
+  /**
+   * @param value parsed value of a field
+   * @param field what the value is, for the error
+   * @return String the value
+   * @throws IllegalArgumentException if the value is not a string
+   */
+  private String string(Object value, String field) {
+    if (!(value instanceof String)) {
+      throw new IllegalArgumentException(field + " must be a string, not " + value);
+    }
+    return (String) value;
+  }
+
+  /**
+   * Applies the change that was just parsed to the graph
+   *
+   * @throws IllegalArgumentException if the change has no name or an unknown op
+   */
+  private void apply() {
+    if (this.name == null) {
+      throw new IllegalArgumentException("change without a name");
+    }
+
+    if ("remove".equals(this.op)) {
+      int edges = this.graph.size();
+      this.graph.removeVertex(this.name);
+      this.edgesChanged += edges - this.graph.size();
+    } else if ("add".equals(this.op) || "update".equals(this.op)) {
+      this.edgesChanged += this.graph.setPredecessors(this.name, this.dependencies);
+    } else {
+      throw new IllegalArgumentException("unknown change \"" + this.op + "\" for " + this.name);
+    }
+
+    this.changes++;
+  }
+
+}
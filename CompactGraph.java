@@ -0,0 +1,330 @@
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * CompactGraph is a read-only graph meant for the "build once, query many times" workload.
+ *
+ * Every vertex is interned to an int id from 0 to order() - 1. Edges are stored in compressed
+ * sparse row (CSR) form: the edges leaving vertex i are targets[offsets[i]] up to (but not
+ * including) targets[offsets[i + 1]]. The same layout is kept for incoming edges so predecessors
+ * can be walked just as cheaply.
+ *
+ * Instances are created with Graph.freeze(). Any method that would mutate the graph throws an
+ * UnsupportedOperationException.
+ */
+public class CompactGraph implements IndexedGraph {
+
+  /**
+   * vertex name <-> id
+   */
+  private final VertexTable vertices;
+
+  /**
+   * Outgoing edges in CSR form
+   */
+  private final int[] offsets;
+  private final int[] targets;
+
+  /**
+   * Incoming edges in CSR form
+   */
+  private final int[] predecessorOffsets;
+  private final int[] predecessorSources;
+
+  /**
+   * Builds a compact graph from outgoing edges only. The incoming edges are derived with a
+   * counting sort, so predecessors of each vertex are ordered by id.
+   *
+   * @param names id -> vertex name, must not contain duplicates
+   * @param offsets outgoing edge offsets, length names.length + 1
+   * @param targets outgoing edge targets
+   */
+  CompactGraph(String[] names, int[] offsets, int[] targets) {
+    this.vertices = new ArrayVertexTable(names);
+    this.offsets = offsets;
+    this.targets = targets;
+
+    // count incoming edges for every vertex
+    this.predecessorOffsets = new int[names.length + 1];
+    for (int target : targets) {
+      this.predecessorOffsets[target + 1]++;
+    }
+    for (int i = 0; i < names.length; i++) {
+      this.predecessorOffsets[i + 1] += this.predecessorOffsets[i];
+    }
+
+    // place every edge in its target's slot
+    this.predecessorSources = new int[targets.length];
+    int[] next = new int[names.length];
+    System.arraycopy(this.predecessorOffsets, 0, next, 0, names.length);
+    for (int source = 0; source < names.length; source++) {
+      for (int e = offsets[source]; e < offsets[source + 1]; e++) {
+        this.predecessorSources[next[targets[e]]++] = source;
+      }
+    }
+  }
+
+  /**
+   * Builds a compact graph from already computed outgoing and incoming edges
+   *
+   * @param names id -> vertex name, must not contain duplicates
+   * @param offsets outgoing edge offsets, length names.length + 1
+   * @param targets outgoing edge targets
+   * @param predecessorOffsets incoming edge offsets, length names.length + 1
+   * @param predecessorSources incoming edge sources
+   */
+  CompactGraph(String[] names, int[] offsets, int[] targets, int[] predecessorOffsets,
+      int[] predecessorSources) {
+    this(new ArrayVertexTable(names), offsets, targets, predecessorOffsets, predecessorSources);
+  }
+
+  /**
+   * Builds a compact graph from an existing vertex table and already computed outgoing and
+   * incoming edges
+   *
+   * @param vertices vertex name <-> id table
+   * @param offsets outgoing edge offsets, length vertices.size() + 1
+   * @param targets outgoing edge targets
+   * @param predecessorOffsets incoming edge offsets, length vertices.size() + 1
+   * @param predecessorSources incoming edge sources
+   */
+  CompactGraph(VertexTable vertices, int[] offsets, int[] targets, int[] predecessorOffsets,
+      int[] predecessorSources) {
+    this.vertices = vertices;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.predecessorOffsets = predecessorOffsets;
+    this.predecessorSources = predecessorSources;
+  }
+
+  /**
+   * Not supported, CompactGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addVertex(String vertex) {
+    throw new UnsupportedOperationException("CompactGraph is read-only");
+  }
+
+  /**
+   * Not supported, CompactGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeVertex(String vertex) {
+    throw new UnsupportedOperationException("CompactGraph is read-only");
+  }
+
+  /**
+   * Not supported, CompactGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("CompactGraph is read-only");
+  }
+
+  /**
+   * Not supported, CompactGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("CompactGraph is read-only");
+  }
+
+  /**
+   * Returns a read-only Set that contains all the vertices
+   *
+   * The returned set is a view over the vertex table, nothing is copied
+   *
+   * @return Set<String> set of vertices
+   */
+  public Set<String> getAllVertices() {
+    return new AbstractSet<String>() {
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof String && CompactGraph.this.idOf((String) o) >= 0;
+      }
+
+      @Override
+      public Iterator<String> iterator() {
+        return new Iterator<String>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return this.next < CompactGraph.this.order();
+          }
+
+          @Override
+          public String next() {
+            if (!this.hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return CompactGraph.this.nameOf(this.next++);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return CompactGraph.this.order();
+      }
+    };
+  }
+
+  /**
+   * Returns whether the edge from vertex1 to vertex2 is in the graph (edge is directed)
+   *
+   * Scans the outgoing edges of vertex1 or the incoming edges of vertex2, whichever is shorter
+   *
+   * @param String vertex1 vertex the edge goes from
+   * @param String vertex2 vertex the edge goes to
+   *
+   * @return boolean true if the edge is in the graph
+   */
+  public boolean hasEdge(String vertex1, String vertex2) {
+    int from = this.idOf(vertex1);
+    int to = this.idOf(vertex2);
+    if (from < 0 || to < 0) {
+      return false;
+    }
+
+    if (this.outEnd(from) - this.outStart(from) <= this.inEnd(to) - this.inStart(to)) {
+      for (int e = this.outStart(from); e < this.outEnd(from); e++) {
+        if (this.targets[e] == to) {
+          return true;
+        }
+      }
+    } else {
+      for (int e = this.inStart(to); e < this.inEnd(to); e++) {
+        if (this.predecessorSources[e] == from) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get all the neighbor (adjacent) vertices of a vertex
+   *
+   * The returned list is a read-only view over the edge array, nothing is copied
+   *
+   * @param String vertex the vertex you want to get neighbors of
+   *
+   * @return List<String> list of adjacent vertices, or null if vertex is not in the graph
+   */
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    int id = this.idOf(vertex);
+    if (id < 0) {
+      return null;
+    }
+    return new NameView(this.targets, this.offsets[id], this.offsets[id + 1]);
+  }
+
+  /**
+   * Get all the predecessor vertices of a vertex (every vertex that has an edge to it)
+   *
+   * The returned list is a read-only view over the edge array, nothing is copied
+   *
+   * @param String vertex the vertex you want to get predecessors of
+   *
+   * @return List<String> list of predecessor vertices, or null if vertex is not in the graph
+   */
+  public List<String> getPredecessorsOf(String vertex) {
+    int id = this.idOf(vertex);
+    if (id < 0) {
+      return null;
+    }
+    return new NameView(this.predecessorSources, this.predecessorOffsets[id],
+        this.predecessorOffsets[id + 1]);
+  }
+
+  /**
+   * Returns the number of edges in this graph.
+   *
+   * @return int the number of edges
+   */
+  public int size() {
+    return this.targets.length;
+  }
+
+  /**
+   * Returns the number of vertices in this graph.
+   *
+   * @return int the number of vertices
+   */
+  public int order() {
+    return this.vertices.size();
+  }
+
+  public int idOf(String vertex) {
+    if (vertex == null) {
+      return -1;
+    }
+    return this.vertices.idOf(vertex);
+  }
+
+  public String nameOf(int id) {
+    return this.vertices.nameOf(id);
+  }
+
+  public int outStart(int id) {
+    return this.offsets[id];
+  }
+
+  public int outEnd(int id) {
+    return this.offsets[id + 1];
+  }
+
+  public int outTarget(int edge) {
+    return this.targets[edge];
+  }
+
+  public int inStart(int id) {
+    return this.predecessorOffsets[id];
+  }
+
+  public int inEnd(int id) {
+    return this.predecessorOffsets[id + 1];
+  }
+
+  public int inSource(int edge) {
+    return this.predecessorSources[edge];
+  }
+
+  /**
+   * Read-only List<String> view over a slice of one of the edge arrays
+   */
+  private class NameView extends AbstractList<String> {
+    private final int[] edges;
+    private final int start;
+    private final int end;
+
+    NameView(int[] edges, int start, int end) {
+      this.edges = edges;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public String get(int index) {
+      if (index < 0 || index >= this.end - this.start) {
+        throw new IndexOutOfBoundsException("Index: " + index);
+      }
+      return CompactGraph.this.nameOf(this.edges[this.start + index]);
+    }
+
+    @Override
+    public int size() {
+      return this.end - this.start;
+    }
+  }
+
+}
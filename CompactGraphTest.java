@@ -0,0 +1,155 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for CompactGraph testing
+ */
+class CompactGraphTest {
+
+  Graph graph;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    graph = new Graph();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    graph = null;
+  }
+
+  /**
+   * Freezes a small graph and checks size/order and adjacency
+   */
+  @Test
+  void testCompactGraph_001_freeze_keeps_edges() {
+    graph.addEdge("A", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("B", "C");
+    graph.addVertex("D");
+
+    CompactGraph compact = graph.freeze();
+
+    if (compact.order() != 4) {
+      fail("Vertices should equal 4 but equals " + compact.order());
+    }
+    if (compact.size() != 3) {
+      fail("There should be 3 edge(s) but there is " + compact.size());
+    }
+    if (!compact.getAdjacentVerticesOf("A").equals(Arrays.asList("B", "C"))) {
+      fail("Adjacent vertices of A should be [B, C] but are "
+          + compact.getAdjacentVerticesOf("A"));
+    }
+    if (!compact.getPredecessorsOf("C").equals(Arrays.asList("A", "B"))) {
+      fail("Predecessors of C should be [A, B] but are " + compact.getPredecessorsOf("C"));
+    }
+    if (!compact.getAdjacentVerticesOf("D").isEmpty()) {
+      fail("D should have no adjacent vertices");
+    }
+    if (compact.getAdjacentVerticesOf("E") != null) {
+      fail("Adjacent vertices of a missing vertex should be null");
+    }
+  }
+
+  /**
+   * Checks that the int based edge walk matches the String based one
+   */
+  @Test
+  void testCompactGraph_002_int_edge_walk() {
+    graph.addEdge("A", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("C", "B");
+
+    CompactGraph compact = graph.freeze();
+    int a = compact.idOf("A");
+    int b = compact.idOf("B");
+
+    StringBuilder out = new StringBuilder();
+    for (int e = compact.outStart(a); e < compact.outEnd(a); e++) {
+      out.append(compact.nameOf(compact.outTarget(e)));
+    }
+    if (!out.toString().equals("BC")) {
+      fail("Walking A's edges should give BC but gave " + out);
+    }
+
+    StringBuilder in = new StringBuilder();
+    for (int e = compact.inStart(b); e < compact.inEnd(b); e++) {
+      in.append(compact.nameOf(compact.inSource(e)));
+    }
+    if (!in.toString().equals("AC")) {
+      fail("Walking B's incoming edges should give AC but gave " + in);
+    }
+
+    if (compact.idOf("missing") != -1) {
+      fail("idOf() should return -1 for a missing vertex");
+    }
+  }
+
+  /**
+   * Later changes to the graph are not reflected and the frozen copy rejects mutation
+   */
+  @Test
+  void testCompactGraph_003_frozen_copy_is_read_only() {
+    graph.addEdge("A", "B");
+    CompactGraph compact = graph.freeze();
+    graph.addEdge("B", "C");
+
+    if (compact.order() != 2) {
+      fail("Frozen copy should still have 2 vertices but has " + compact.order());
+    }
+
+    try {
+      compact.addEdge("B", "C");
+      fail("addEdge() should throw UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+    }
+  }
+
+  /**
+   * The derived incoming edges match the outgoing ones when only outgoing edges are given
+   */
+  @Test
+  void testCompactGraph_004_derived_predecessors() {
+    String[] names = {"A", "B", "C"};
+    int[] offsets = {0, 2, 3, 3};
+    int[] targets = {1, 2, 2};
+
+    CompactGraph compact = new CompactGraph(names, offsets, targets);
+
+    if (!compact.getPredecessorsOf("C").equals(Arrays.asList("A", "B"))) {
+      fail("Predecessors of C should be [A, B] but are " + compact.getPredecessorsOf("C"));
+    }
+    if (!compact.getPredecessorsOf("A").isEmpty()) {
+      fail("A should have no predecessors");
+    }
+  }
+
+  /**
+   * hasEdge finds edges whichever side has the shorter edge list
+   */
+  @Test
+  void testCompactGraph_005_has_edge() {
+    String[] names = {"A", "B", "C"};
+    int[] offsets = {0, 2, 3, 3};
+    int[] targets = {1, 2, 2};
+
+    CompactGraph compact = new CompactGraph(names, offsets, targets);
+
+    if (!compact.hasEdge("A", "B") || !compact.hasEdge("A", "C") || !compact.hasEdge("B", "C")) {
+      fail("Every edge should be found");
+    }
+    if (compact.hasEdge("C", "A") || compact.hasEdge("A", "Z") || compact.hasEdge(null, "A")) {
+      fail("Missing edges should not be found");
+    }
+  }
+
+}
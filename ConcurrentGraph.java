@@ -0,0 +1,381 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Graph that can be read and changed by many threads at the same time.
+ *
+ * Reads never lock. Every vertex keeps its outgoing and incoming edges in concurrent sets, so
+ * adding or removing an edge costs constant time however many edges the vertex already has, which
+ * matters for popular packages that keep gaining dependents. getAdjacentVerticesOf() and
+ * getPredecessorsOf() copy the set into a new list, so the caller gets a list that never changes
+ * underneath it and only readers pay for the copy. Edges are kept in no particular order.
+ *
+ * Edge changes lock only the two vertices involved, using a fixed set of lock stripes, so writers
+ * touching different vertices do not block each other. Removing a vertex touches an unbounded
+ * amount of other vertices, so it takes an exclusive lock instead; it is expected to be rare.
+ *
+ * snapshot() returns a consistent CompactGraph copy of the whole graph, which is reused until the
+ * graph changes again.
+ */
+public class ConcurrentGraph implements GraphADT {
+
+  private static final int STRIPES = 64;
+
+  /**
+   * Edges of one vertex, changed in place while holding the stripe lock of the vertex
+   */
+  private static class Adjacency {
+    final Set<String> successors = ConcurrentHashMap.<String>newKeySet();
+    final Set<String> predecessors = ConcurrentHashMap.<String>newKeySet();
+  }
+
+  private final ConcurrentHashMap<String, Adjacency> vertices =
+      new ConcurrentHashMap<String, Adjacency>();
+
+  /**
+   * Shared by vertex and edge changes, held exclusively by removeVertex() and snapshot()
+   */
+  private final ReentrantReadWriteLock structure = new ReentrantReadWriteLock();
+
+  /**
+   * Guards the edge sets of the vertices whose hash falls in the stripe
+   */
+  private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+  private final AtomicInteger edges = new AtomicInteger();
+
+  /**
+   * Bumped on every change, used to tell whether the cached snapshot is still current
+   */
+  private final AtomicLong version = new AtomicLong();
+
+  /**
+   * Last snapshot and the version it was taken at, kept together so they are always read together
+   */
+  private static class Snapshot {
+    final CompactGraph graph;
+    final long version;
+
+    Snapshot(CompactGraph graph, long version) {
+      this.graph = graph;
+      this.version = version;
+    }
+  }
+
+  private volatile Snapshot snapshot;
+
+  /*
+   * Default no-argument constructor
+   *
+   * All this does is create the lock stripes
+   */
+  public ConcurrentGraph() {
+    for (int i = 0; i < STRIPES; i++) {
+      this.stripes[i] = new ReentrantLock();
+    }
+  }
+
+  /**
+   * Add new vertex to the graph.
+   *
+   * If vertex is null or already exists, method ends without adding a vertex or throwing an
+   * exception.
+   *
+   * @param String vertex to add to graph
+   */
+  public void addVertex(String vertex) {
+    if (vertex == null) {
+      return;
+    }
+
+    this.structure.readLock().lock();
+    try {
+      if (this.vertices.putIfAbsent(vertex, new Adjacency()) == null) {
+        this.version.incrementAndGet();
+      }
+    } finally {
+      this.structure.readLock().unlock();
+    }
+  }
+
+  /**
+   * Remove a vertex and all associated edges from the graph.
+   *
+   * If vertex is null or does not exist, method ends without removing a vertex, edges, or throwing
+   * an exception.
+   *
+   * @param String vertex vertex to remove from graph
+   */
+  public void removeVertex(String vertex) {
+    if (vertex == null) {
+      return;
+    }
+
+    this.structure.writeLock().lock();
+    try {
+      Adjacency removed = this.vertices.remove(vertex);
+      if (removed == null) {
+        return;
+      }
+
+      // drop the edges from and to the vertex on the other side as well
+      int dropped = removed.successors.size() + removed.predecessors.size();
+      for (String successor : removed.successors) {
+        Adjacency other = this.vertices.get(successor);
+        if (other != null) {
+          other.predecessors.remove(vertex);
+        } else {
+          dropped--; // self loop, already counted
+        }
+      }
+      for (String predecessor : removed.predecessors) {
+        Adjacency other = this.vertices.get(predecessor);
+        if (other != null) {
+          other.successors.remove(vertex);
+        }
+      }
+
+      this.edges.addAndGet(-dropped);
+      this.version.incrementAndGet();
+    } finally {
+      this.structure.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Add the edge from vertex1 to vertex2 to this graph. (edge is directed and unweighted)
+   *
+   * If either vertex does not exist, add vertex, and add edge, no exception is thrown. If the edge
+   * exists in the graph, no edge is added and no exception is thrown.
+   *
+   * @param String vertex1 vertex to add edge from
+   * @param String vertex2 vertex to add edge to
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    if (vertex1 == null || vertex2 == null) {
+      return;
+    }
+
+    this.structure.readLock().lock();
+    try {
+      Adjacency from = this.vertexFor(vertex1);
+      Adjacency to = this.vertexFor(vertex2);
+
+      this.lockStripes(vertex1, vertex2);
+      try {
+        if (from.successors.add(vertex2)) {
+          to.predecessors.add(vertex1);
+          this.edges.incrementAndGet();
+          this.version.incrementAndGet();
+        }
+      } finally {
+        this.unlockStripes(vertex1, vertex2);
+      }
+    } finally {
+      this.structure.readLock().unlock();
+    }
+  }
+
+  /**
+   * Remove the edge from vertex1 to vertex2 from this graph. (edge is directed and unweighted)
+   *
+   * If either vertex does not exist, or if an edge from vertex1 to vertex2 does not exist, no edge
+   * is removed and no exception is thrown.
+   *
+   * @param String vertex1 vertex to remove edge from
+   * @param String vertex2 vertex to remove edge to
+   */
+  public void removeEdge(String vertex1, String vertex2) {
+    if (vertex1 == null || vertex2 == null) {
+      return;
+    }
+
+    this.structure.readLock().lock();
+    try {
+      Adjacency from = this.vertices.get(vertex1);
+      Adjacency to = this.vertices.get(vertex2);
+      if (from == null || to == null) {
+        return;
+      }
+
+      this.lockStripes(vertex1, vertex2);
+      try {
+        if (from.successors.remove(vertex2)) {
+          to.predecessors.remove(vertex1);
+          this.edges.decrementAndGet();
+          this.version.incrementAndGet();
+        }
+      } finally {
+        this.unlockStripes(vertex1, vertex2);
+      }
+    } finally {
+      this.structure.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns a read-only Set that contains all the vertices.
+   *
+   * The set reflects later changes but can safely be iterated while other threads change the
+   * graph. Use snapshot() for a view that does not change.
+   *
+   * @return Set<String> set of vertices
+   */
+  public Set<String> getAllVertices() {
+    return Collections.unmodifiableSet(this.vertices.keySet());
+  }
+
+  /**
+   * Get all the neighbor (adjacent) vertices of a vertex
+   *
+   * @param String vertex the vertex you want to get neighbors of
+   *
+   * @return List<String> new read-only list of adjacent vertices at the time of the call, or null
+   *         if vertex is not in the graph
+   */
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    Adjacency adjacency = vertex == null ? null : this.vertices.get(vertex);
+    return adjacency == null ? null : copyOf(adjacency.successors);
+  }
+
+  /**
+   * Get all the predecessor vertices of a vertex (every vertex that has an edge to it)
+   *
+   * @param String vertex the vertex you want to get predecessors of
+   *
+   * @return List<String> new read-only list of predecessor vertices at the time of the call, or
+   *         null if vertex is not in the graph
+   */
+  public List<String> getPredecessorsOf(String vertex) {
+    Adjacency adjacency = vertex == null ? null : this.vertices.get(vertex);
+    return adjacency == null ? null : copyOf(adjacency.predecessors);
+  }
+
+  /**
+   * Returns the number of edges in this graph.
+   *
+   * @return int the number of edges
+   */
+  public int size() {
+    return this.edges.get();
+  }
+
+  /**
+   * Returns the number of vertices in this graph.
+   *
+   * @return int the number of vertices
+   */
+  public int order() {
+    return this.vertices.size();
+  }
+
+  /**
+   * Returns a consistent, read-only copy of the whole graph.
+   *
+   * Writers are blocked while the copy is made. The copy is reused until the graph changes, so
+   * readers that call this often only pay for it once per change.
+   *
+   * @return CompactGraph copy of the graph
+   */
+  public CompactGraph snapshot() {
+    Snapshot current = this.snapshot;
+    if (current != null && current.version == this.version.get()) {
+      return current.graph;
+    }
+
+    this.structure.writeLock().lock();
+    try {
+      int order = this.vertices.size();
+      String[] names = new String[order];
+      Map<String, Integer> ids = new HashMap<String, Integer>((int) (order / 0.75f) + 1);
+      for (String v : this.vertices.keySet()) {
+        ids.put(v, ids.size());
+        names[ids.size() - 1] = v;
+      }
+
+      int[] offsets = new int[order + 1];
+      int[] targets = new int[this.edges.get()];
+      for (int i = 0; i < order; i++) {
+        offsets[i + 1] = offsets[i];
+        for (String successor : this.vertices.get(names[i]).successors) {
+          targets[offsets[i + 1]++] = ids.get(successor);
+        }
+      }
+
+      this.snapshot = new Snapshot(new CompactGraph(names, offsets, targets), this.version.get());
+      return this.snapshot.graph;
+    } finally {
+      this.structure.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the edges of a vertex, adding the vertex first if it does not exist
+   *
+   * @param vertex the vertex
+   * @return Adjacency its edges
+   */
+  private Adjacency vertexFor(String vertex) {
+    Adjacency adjacency = this.vertices.get(vertex);
+    if (adjacency == null) {
+      Adjacency created = new Adjacency();
+      adjacency = this.vertices.putIfAbsent(vertex, created);
+      if (adjacency == null) {
+        adjacency = created;
+        this.version.incrementAndGet();
+      }
+    }
+    return adjacency;
+  }
+
+  /**
+   * @param vertex a vertex
+   * @return int index of the lock stripe guarding the vertex
+   */
+  private int stripeOf(String vertex) {
+    int h = vertex.hashCode();
+    return (h ^ (h >>> 16)) & (STRIPES - 1);
+  }
+
+  /**
+   * Locks the stripes of two vertices, always in index order so two writers cannot deadlock
+   */
+  private void lockStripes(String vertex1, String vertex2) {
+    int a = this.stripeOf(vertex1);
+    int b = this.stripeOf(vertex2);
+    this.stripes[Math.min(a, b)].lock();
+    if (a != b) {
+      this.stripes[Math.max(a, b)].lock();
+    }
+  }
+
+  /**
+   * Unlocks the stripes locked by lockStripes()
+   */
+  private void unlockStripes(String vertex1, String vertex2) {
+    int a = this.stripeOf(vertex1);
+    int b = this.stripeOf(vertex2);
+    if (a != b) {
+      this.stripes[Math.max(a, b)].unlock();
+    }
+    this.stripes[Math.min(a, b)].unlock();
+  }
+
+  /**
+   * @return List<String> read-only copy of the edges of a vertex. Edges that change while it is
+   *         made may or may not be in it, every other edge is.
+   */
+  private static List<String> copyOf(Set<String> edges) {
+    return Collections.unmodifiableList(new ArrayList<String>(edges));
+  }
+
+}
@@ -0,0 +1,105 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how ConcurrentGraph read throughput scales with the amount of reader threads while one
+ * writer thread keeps adding and removing edges.
+ *
+ * Usage: java ConcurrentGraphBenchmark [packages] [seconds]
+ *
+ * Defaults to a 100000 package random registry and 2 seconds per thread count. Reader thread
+ * counts double from 1 up to the amount of available processors.
+ */
+public class ConcurrentGraphBenchmark {
+
+  /*
+   * Only static methods, no instances
+   */
+  private ConcurrentGraphBenchmark() {}
+
+  public static void main(String[] args) throws InterruptedException {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    long millis = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 2) * 1000);
+
+    int[][] registry = GraphGenerator.powerLaw(n, 4, 42);
+    ConcurrentGraph graph = new ConcurrentGraph();
+    for (int i = 0; i < n; i++) {
+      graph.addVertex(GraphGenerator.name(i));
+      for (int dependency : registry[i]) {
+        graph.addEdge(GraphGenerator.name(dependency), GraphGenerator.name(i));
+      }
+    }
+
+    System.out.println("readers\treads/sec\twrites/sec");
+    int cores = Runtime.getRuntime().availableProcessors();
+    for (int readers = 1; readers <= cores; readers *= 2) {
+      run(graph, n, readers, millis);
+    }
+  }
+
+  /**
+   * Runs readers and one writer for a while and prints their throughput
+   *
+   * @param graph to read and write
+   * @param n amount of packages in the graph
+   * @param readers amount of reader threads
+   * @param millis how long to run
+   */
+  private static void run(final ConcurrentGraph graph, final int n, int readers, long millis)
+      throws InterruptedException {
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicLong reads = new AtomicLong();
+    final AtomicLong writes = new AtomicLong();
+    List<Thread> threads = new ArrayList<Thread>();
+
+    for (int r = 0; r < readers; r++) {
+      final long seed = r;
+      threads.add(new Thread(new Runnable() {
+        public void run() {
+          Random random = new Random(seed);
+          long count = 0;
+          long sink = 0;
+          while (running.get()) {
+            List<String> adjacent =
+                graph.getAdjacentVerticesOf(GraphGenerator.name(random.nextInt(n)));
+            sink += adjacent == null ? 0 : adjacent.size();
+            count++;
+          }
+          reads.addAndGet(count);
+          PackageManagerBenchmark.sink += sink;
+        }
+      }));
+    }
+
+    threads.add(new Thread(new Runnable() {
+      public void run() {
+        Random random = new Random(-1);
+        long count = 0;
+        while (running.get()) {
+          String from = GraphGenerator.name(random.nextInt(n));
+          String to = "published-" + random.nextInt(1000);
+          graph.addEdge(from, to);
+          graph.removeEdge(from, to);
+          count += 2;
+        }
+        writes.addAndGet(count);
+      }
+    }));
+
+    for (Thread thread : threads) {
+      thread.start();
+    }
+    Thread.sleep(millis);
+    running.set(false);
+    for (Thread thread : threads) {
+      thread.join();
+    }
+
+    System.out.printf("%d\t%.0f\t%.0f%n", readers, reads.get() * 1000.0 / millis,
+        writes.get() * 1000.0 / millis);
+  }
+
+}
@@ -0,0 +1,147 @@
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for ConcurrentGraph testing
+ */
+class ConcurrentGraphTest {
+
+  ConcurrentGraph graph;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    graph = new ConcurrentGraph();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    graph = null;
+  }
+
+  /**
+   * Adds and removes edges and vertices and checks size/order
+   */
+  @Test
+  void testConcurrentGraph_001_single_thread() {
+    graph.addEdge("A", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("A", "B");
+    graph.addEdge("C", "C");
+
+    if (graph.order() != 3 || graph.size() != 3) {
+      fail("Expected 3 vertices and 3 edges but got " + graph.order() + " and " + graph.size());
+    }
+
+    graph.removeVertex("C");
+    if (graph.order() != 2 || graph.size() != 1) {
+      fail("Expected 2 vertices and 1 edge but got " + graph.order() + " and " + graph.size());
+    }
+    if (!graph.getAdjacentVerticesOf("A").contains("B")
+        || graph.getAdjacentVerticesOf("A").contains("C")) {
+      fail("Adjacent vertices of A should be [B] but are " + graph.getAdjacentVerticesOf("A"));
+    }
+
+    graph.removeEdge("A", "B");
+    if (graph.size() != 0 || !graph.getPredecessorsOf("B").isEmpty()) {
+      fail("There should be 0 edge(s) but there is " + graph.size());
+    }
+  }
+
+  /**
+   * Lists handed to readers do not change when the graph does
+   */
+  @Test
+  void testConcurrentGraph_002_readers_get_snapshots() {
+    graph.addEdge("A", "B");
+    List<String> before = graph.getAdjacentVerticesOf("A");
+    CompactGraph snapshot = graph.snapshot();
+
+    graph.addEdge("A", "C");
+
+    if (before.size() != 1) {
+      fail("List returned before the change should still have 1 vertex but has " + before);
+    }
+    if (snapshot.size() != 1 || graph.snapshot().size() != 2) {
+      fail("Old snapshot should have 1 edge and a new one 2");
+    }
+    try {
+      before.add("D");
+      fail("Returned lists should be read-only");
+    } catch (UnsupportedOperationException e) {
+    }
+  }
+
+  /**
+   * Many threads adding edges at once must not lose any
+   */
+  @Test
+  void testConcurrentGraph_003_concurrent_writers() throws InterruptedException {
+    final int threads = 8;
+    final int perThread = 2000;
+    List<Thread> workers = new ArrayList<Thread>();
+    for (int t = 0; t < threads; t++) {
+      final int offset = t;
+      Thread worker = new Thread(new Runnable() {
+        public void run() {
+          // every thread adds edges into the same hub and out of its own vertices
+          for (int i = 0; i < perThread; i++) {
+            graph.addEdge("t" + offset + "-" + i, "hub");
+          }
+        }
+      });
+      workers.add(worker);
+      worker.start();
+    }
+    for (Thread worker : workers) {
+      worker.join();
+    }
+
+    if (graph.size() != threads * perThread) {
+      fail("Expected " + threads * perThread + " edges but got " + graph.size());
+    }
+    if (graph.getPredecessorsOf("hub").size() != threads * perThread) {
+      fail("hub should have " + threads * perThread + " predecessors but has "
+          + graph.getPredecessorsOf("hub").size());
+    }
+    if (graph.snapshot().size() != threads * perThread) {
+      fail("Snapshot should have " + threads * perThread + " edges");
+    }
+  }
+
+  /**
+   * A hub with many dependents keeps them all through edge and vertex removals
+   */
+  @Test
+  void testConcurrentGraph_004_hub_edges() {
+    for (int i = 0; i < 100000; i++) {
+      graph.addEdge("hub", "d" + i);
+    }
+    for (int i = 0; i < 100000; i += 2) {
+      graph.removeEdge("hub", "d" + i);
+    }
+    graph.removeVertex("d1");
+
+    if (graph.size() != 49999 || graph.getAdjacentVerticesOf("hub").size() != 49999) {
+      fail("hub should have 49999 dependents but has "
+          + graph.getAdjacentVerticesOf("hub").size());
+    }
+    if (graph.getAdjacentVerticesOf("hub").contains("d1")
+        || !graph.getAdjacentVerticesOf("hub").contains("d3")) {
+      fail("hub should depend on d3 but not on d1");
+    }
+    if (!graph.getPredecessorsOf("d0").isEmpty() || graph.getPredecessorsOf("d5").size() != 1) {
+      fail("d0 should have no predecessors and d5 one");
+    }
+  }
+
+}
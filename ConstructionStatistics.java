@@ -0,0 +1,105 @@
+/**
+ * Numbers recorded while PackageManager.constructGraph() reads a package file: how many packages
+ * were read, how long it took and the highest heap use seen along the way.
+ *
+ * Heap use is sampled every SAMPLE_INTERVAL packages rather than measured continuously, so the
+ * peak is an approximation.
+ */
+public class ConstructionStatistics {
+
+  /**
+   * Amount of packages between two heap samples
+   */
+  static final int SAMPLE_INTERVAL = 4096;
+
+  private long packages;
+  private long edges;
+  private long startNanos;
+  private long elapsedNanos;
+  private long peakHeapBytes;
+
+  /**
+   * Starts the clock and takes the first heap sample
+   */
+  void start() {
+    this.startNanos = System.nanoTime();
+    this.sampleHeap();
+  }
+
+  /**
+   * Counts one package and samples the heap every SAMPLE_INTERVAL packages
+   */
+  void packageParsed() {
+    if (++this.packages % SAMPLE_INTERVAL == 0) {
+      this.sampleHeap();
+    }
+  }
+
+  /**
+   * Stops the clock and takes the last heap sample
+   *
+   * @param edges amount of edges in the finished graph
+   */
+  void finish(long edges) {
+    this.elapsedNanos = System.nanoTime() - this.startNanos;
+    this.edges = edges;
+    this.sampleHeap();
+  }
+
+  /**
+   * Records the current heap use if it is the highest seen so far
+   */
+  private void sampleHeap() {
+    Runtime runtime = Runtime.getRuntime();
+    long used = runtime.totalMemory() - runtime.freeMemory();
+    if (used > this.peakHeapBytes) {
+      this.peakHeapBytes = used;
+    }
+  }
+
+  /**
+   * @return long amount of package entries read
+   */
+  public long getPackageCount() {
+    return this.packages;
+  }
+
+  /**
+   * @return long amount of edges in the graph once construction finished
+   */
+  public long getEdgeCount() {
+    return this.edges;
+  }
+
+  /**
+   * @return long time it took to read the file and build the graph in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return this.elapsedNanos;
+  }
+
+  /**
+   * @return double packages read per second
+   */
+  public double getPackagesPerSecond() {
+    if (this.elapsedNanos == 0) {
+      return 0;
+    }
+    return this.packages * 1e9 / this.elapsedNanos;
+  }
+
+  /**
+   * @return long highest heap use sampled during construction in bytes
+   */
+  public long getPeakHeapBytes() {
+    return this.peakHeapBytes;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d packages, %d edges in %.1f ms (%.0f packages/sec, peak heap %d MB)",
+        this.packages, this.edges, this.elapsedNanos / 1e6, this.getPackagesPerSecond(),
+        this.peakHeapBytes / (1024 * 1024));
+  }
+
+}
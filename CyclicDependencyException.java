@@ -0,0 +1,35 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * CycleException that also says which packages form the cycle.
+ *
+ * The cycle is a list of packages where each one depends on the next and the last one is the same
+ * as the first, for example [A, B, C, A] means A depends on B, B depends on C and C depends on A.
+ */
+public class CyclicDependencyException extends CycleException {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<String> cycle;
+
+  /**
+   * @param cycle packages in the cycle, first and last being the same package
+   */
+  public CyclicDependencyException(List<String> cycle) {
+    this.cycle = Collections.unmodifiableList(cycle);
+  }
+
+  /**
+   * @return List<String> packages in the cycle, each depending on the next
+   */
+  public List<String> getCycle() {
+    return this.cycle;
+  }
+
+  @Override
+  public String getMessage() {
+    return "cyclic dependency: " + String.join(" -> ", this.cycle);
+  }
+
+}
@@ -0,0 +1,665 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks one version of every package that is needed so that every dependency range is met, using
+ * the PubGrub algorithm: conflict driven search with learning and backjumping.
+ *
+ * Every rule is an incompatibility, a set of terms that must not all hold at once. "A 1.0 depends
+ * on B ^2.0" is the incompatibility {A is 1.0, B is not in ^2.0}. The search keeps a partial
+ * solution of decisions (versions it tried) and derivations (terms forced by an incompatibility
+ * once all but one of its terms hold), always trying the highest allowed version of the package
+ * with the fewest candidates left. When every term of an incompatibility holds, the conflict is
+ * traced back through the derivations that caused it until it can be blamed on a single earlier
+ * decision. The result is learned as a new incompatibility, and the search jumps back to the
+ * level where it becomes useful instead of undoing one decision at a time, so the same dead end
+ * is never explored twice.
+ *
+ * The versions of a package are numbered from lowest to highest, and a term is a BitSet over
+ * those numbers plus one extra bit meaning "not selected at all". All term operations are then
+ * BitSet operations, no matter how complicated the ranges are.
+ *
+ * If there is no solution the learned incompatibilities lead back to the original dependencies
+ * that rule it out, and those are reported in a ResolutionException.
+ */
+public class DependencyResolver {
+
+  /**
+   * Name of the made up package whose only version depends on the requested packages
+   */
+  private static final String ROOT = "";
+
+  private final PackageRegistry registry;
+
+  /**
+   * @param registry to pick versions from, must not change while resolve() runs
+   */
+  public DependencyResolver(PackageRegistry registry) {
+    this.registry = registry;
+  }
+
+  /**
+   * Picks versions for the requested packages and everything they depend on
+   *
+   * @param requirements package name -> range of accepted versions, for example "^1.2.0"
+   * @return Resolution one version for every package that is needed
+   *
+   * @throws ResolutionException if no choice of versions meets every dependency
+   * @throws IllegalArgumentException if a range is not valid
+   */
+  public Resolution resolve(Map<String, String> requirements) throws ResolutionException {
+    Map<String, VersionRange> ranges = new LinkedHashMap<String, VersionRange>();
+    for (Map.Entry<String, String> requirement : requirements.entrySet()) {
+      ranges.put(requirement.getKey(), new VersionRange(requirement.getValue()));
+    }
+    return new Solver(ranges).solve();
+  }
+
+  /**
+   * Terms that must not all hold at the same time. External incompatibilities come from a
+   * dependency and have a reason, derived ones were learned from two others during conflict
+   * resolution.
+   */
+  private static class Incompatibility {
+    final int[] packages;
+    final BitSet[] sets;
+    final String reason;
+    final Incompatibility left;
+    final Incompatibility right;
+
+    Incompatibility(int[] packages, BitSet[] sets, String reason, Incompatibility left,
+        Incompatibility right) {
+      this.packages = packages;
+      this.sets = sets;
+      this.reason = reason;
+      this.left = left;
+      this.right = right;
+    }
+  }
+
+  /**
+   * One step of the partial solution: pkg is known to be in set
+   */
+  private static class Assignment {
+    final int pkg;
+    final BitSet set;
+    final int level;
+
+    /**
+     * Incompatibility that forced the assignment, null for a decision
+     */
+    final Incompatibility cause;
+
+    Assignment(int pkg, BitSet set, int level, Incompatibility cause) {
+      this.pkg = pkg;
+      this.set = set;
+      this.level = level;
+      this.cause = cause;
+    }
+  }
+
+  /**
+   * State of one call to resolve()
+   */
+  private class Solver {
+
+    private final Map<String, VersionRange> requirements;
+
+    /**
+     * Packages seen so far, by id. Package 0 is the root.
+     */
+    private final Map<String, Integer> ids = new HashMap<String, Integer>();
+    private final List<String> names = new ArrayList<String>();
+    private final List<Version[]> versions = new ArrayList<Version[]>();
+
+    /**
+     * id -> every version and "not selected", and what the partial solution still allows
+     */
+    private final List<BitSet> fulls = new ArrayList<BitSet>();
+    private final List<BitSet> domains = new ArrayList<BitSet>();
+
+    /**
+     * id -> incompatibilities with a term about the package
+     */
+    private final List<List<Incompatibility>> incompatibilities =
+        new ArrayList<List<Incompatibility>>();
+
+    /**
+     * id -> versions whose dependencies are already incompatibilities
+     */
+    private final List<BitSet> expanded = new ArrayList<BitSet>();
+
+    /**
+     * id -> range -> versions of the package in the range
+     */
+    private final List<Map<String, BitSet>> matches = new ArrayList<Map<String, BitSet>>();
+
+    /**
+     * id -> decided version, -1 if none, and amount of bits set in the domain
+     */
+    private int[] decided = new int[16];
+    private int[] allowed = new int[16];
+
+    private final List<Assignment> assignments = new ArrayList<Assignment>();
+    private int level;
+
+    private int decisions;
+    private int conflicts;
+
+    private final BitSet scratch = new BitSet();
+
+    Solver(Map<String, VersionRange> requirements) {
+      this.requirements = requirements;
+    }
+
+    /**
+     * Runs the search
+     *
+     * @return Resolution picked versions
+     * @throws ResolutionException if there is no solution
+     */
+    Resolution solve() throws ResolutionException {
+      int root = this.idOf(ROOT);
+
+      // the root has to be selected
+      BitSet notSelected = new BitSet();
+      notSelected.set(1);
+      this.add(new Incompatibility(new int[] {root}, new BitSet[] {notSelected}, null, null,
+          null));
+      this.propagate(root);
+
+      for (int next = this.choose(); next >= 0; next = this.choose()) {
+        this.decide(next);
+        this.propagate(next);
+      }
+
+      Map<String, Version> picked = new LinkedHashMap<String, Version>();
+      for (Assignment assignment : this.assignments) {
+        if (assignment.cause == null && assignment.pkg != root) {
+          picked.put(this.names.get(assignment.pkg),
+              this.versions.get(assignment.pkg)[this.decided[assignment.pkg]]);
+        }
+      }
+      return new Resolution(DependencyResolver.this.registry, picked, this.decisions,
+          this.conflicts);
+    }
+
+    /**
+     * Returns the id of a package, loading its versions the first time it is seen
+     *
+     * @param name of the package
+     * @return int id of the package
+     */
+    private int idOf(String name) {
+      Integer id = this.ids.get(name);
+      if (id != null) {
+        return id;
+      }
+
+      id = this.names.size();
+      this.ids.put(name, id);
+      this.names.add(name);
+      Version[] candidates = name.equals(ROOT) ? new Version[] {new Version("0")}
+          : DependencyResolver.this.registry.getVersions(name).toArray(new Version[0]);
+      this.versions.add(candidates);
+      BitSet full = new BitSet();
+      full.set(0, candidates.length + 1);
+      this.fulls.add(full);
+      this.domains.add((BitSet) full.clone());
+      this.incompatibilities.add(new ArrayList<Incompatibility>());
+      this.expanded.add(new BitSet());
+      this.matches.add(new HashMap<String, BitSet>());
+      if (id == this.decided.length) {
+        this.decided = Arrays.copyOf(this.decided, id * 2);
+        this.allowed = Arrays.copyOf(this.allowed, id * 2);
+      }
+      this.decided[id] = -1;
+      this.allowed[id] = candidates.length + 1;
+      return id;
+    }
+
+    /**
+     * @param pkg id of the package
+     * @param range accepted versions
+     * @return BitSet versions of pkg in range, never "not selected"
+     */
+    private BitSet matching(int pkg, VersionRange range) {
+      Map<String, BitSet> cache = this.matches.get(pkg);
+      BitSet match = cache.get(range.toString());
+      if (match == null) {
+        match = new BitSet();
+        Version[] candidates = this.versions.get(pkg);
+        for (int i = 0; i < candidates.length; i++) {
+          if (range.contains(candidates[i])) {
+            match.set(i);
+          }
+        }
+        cache.put(range.toString(), match);
+      }
+      return match;
+    }
+
+    /**
+     * Registers an incompatibility with every package it has a term about
+     *
+     * @param incompatibility to register
+     */
+    private void add(Incompatibility incompatibility) {
+      for (int pkg : incompatibility.packages) {
+        this.incompatibilities.get(pkg).add(incompatibility);
+      }
+    }
+
+    /**
+     * Turns the dependencies of a version into incompatibilities
+     *
+     * @param pkg id of the package
+     * @param version number of the version
+     * @return List<Incompatibility> the new incompatibilities, empty if the version was turned
+     *         into incompatibilities before
+     */
+    private List<Incompatibility> addDependencies(int pkg, int version) {
+      List<Incompatibility> added = new ArrayList<Incompatibility>();
+      if (this.expanded.get(pkg).get(version)) {
+        return added;
+      }
+      this.expanded.get(pkg).set(version);
+
+      String name = this.names.get(pkg);
+      Map<String, VersionRange> dependencies = pkg == 0 ? this.requirements
+          : DependencyResolver.this.registry.getDependencies(name,
+              this.versions.get(pkg)[version]);
+      for (Map.Entry<String, VersionRange> dependency : dependencies.entrySet()) {
+        int other = this.idOf(dependency.getKey());
+        BitSet match = this.matching(other, dependency.getValue());
+
+        String reason = (pkg == 0 ? "requested"
+            : name + " " + this.versions.get(pkg)[version] + " depends on") + " "
+            + dependency.getKey() + " " + dependency.getValue();
+        if (this.versions.get(other).length == 0) {
+          reason += ", which does not exist";
+        } else if (match.isEmpty()) {
+          reason += ", which has no matching version";
+        }
+
+        BitSet self = new BitSet();
+        self.set(version);
+        BitSet outside = (BitSet) this.fulls.get(other).clone();
+        outside.andNot(match);
+        Incompatibility incompatibility = this.create(new int[] {pkg, other},
+            new BitSet[] {self, outside}, reason, null, null);
+        if (incompatibility != null) {
+          this.add(incompatibility);
+          added.add(incompatibility);
+        }
+      }
+      return added;
+    }
+
+    /**
+     * Builds an incompatibility, merging terms about the same package and dropping terms that
+     * always hold
+     *
+     * @return Incompatibility the incompatibility, or null if it can never be satisfied
+     */
+    private Incompatibility create(int[] packages, BitSet[] sets, String reason,
+        Incompatibility left, Incompatibility right) {
+      int[] mergedPackages = new int[packages.length];
+      BitSet[] mergedSets = new BitSet[packages.length];
+      int count = 0;
+      next: for (int i = 0; i < packages.length; i++) {
+        for (int j = 0; j < count; j++) {
+          if (mergedPackages[j] == packages[i]) {
+            mergedSets[j].and(sets[i]);
+            continue next;
+          }
+        }
+        mergedPackages[count] = packages[i];
+        mergedSets[count++] = (BitSet) sets[i].clone();
+      }
+
+      int kept = 0;
+      for (int j = 0; j < count; j++) {
+        if (mergedSets[j].isEmpty()) {
+          return null;
+        }
+        if (!mergedSets[j].equals(this.fulls.get(mergedPackages[j]))) {
+          mergedPackages[kept] = mergedPackages[j];
+          mergedSets[kept++] = mergedSets[j];
+        }
+      }
+      return new Incompatibility(Arrays.copyOf(mergedPackages, kept),
+          Arrays.copyOf(mergedSets, kept), reason, left, right);
+    }
+
+    /**
+     * Picks the package to decide next: one that has to be selected but has no version yet,
+     * with the fewest versions left
+     *
+     * @return int id of the package, -1 if every selected package has a version
+     */
+    private int choose() {
+      int best = -1;
+      int bestCount = Integer.MAX_VALUE;
+      for (int pkg = 0; pkg < this.names.size(); pkg++) {
+        if (this.decided[pkg] < 0 && this.allowed[pkg] < bestCount
+            && !this.domains.get(pkg).get(this.versions.get(pkg).length)) {
+          best = pkg;
+          bestCount = this.allowed[pkg];
+        }
+      }
+      return best;
+    }
+
+    /**
+     * Tries the highest version of pkg that is still allowed. If a dependency of that version
+     * already conflicts with the partial solution, the version is ruled out instead of being
+     * tried, which saves a conflict and a jump back.
+     *
+     * @param pkg id of the package
+     */
+    private void decide(int pkg) {
+      int version = this.domains.get(pkg).previousSetBit(this.versions.get(pkg).length - 1);
+      for (Incompatibility incompatibility : this.addDependencies(pkg, version)) {
+        int unit = this.unitTerm(incompatibility);
+        if (unit >= 0 && incompatibility.packages[unit] == pkg) {
+          this.derive(incompatibility, unit);
+          return;
+        }
+      }
+
+      this.level++;
+      this.decisions++;
+      BitSet set = new BitSet();
+      set.set(version);
+      this.assign(pkg, set, null);
+    }
+
+    /**
+     * Adds an assignment to the partial solution
+     */
+    private void assign(int pkg, BitSet set, Incompatibility cause) {
+      this.assignments.add(new Assignment(pkg, set, this.level, cause));
+      BitSet domain = this.domains.get(pkg);
+      domain.and(set);
+      this.allowed[pkg] = domain.cardinality();
+      if (cause == null) {
+        this.decided[pkg] = set.nextSetBit(0);
+      }
+    }
+
+    /**
+     * Derives every term that follows from the incompatibilities of changed packages, resolving
+     * conflicts on the way
+     *
+     * @param changed id of the package that just changed
+     * @throws ResolutionException if a conflict cannot be resolved
+     */
+    private void propagate(int changed) throws ResolutionException {
+      Deque<Integer> queue = new ArrayDeque<Integer>();
+      queue.push(changed);
+      while (!queue.isEmpty()) {
+        List<Incompatibility> list = this.incompatibilities.get(queue.pop());
+
+        // newest first, learned incompatibilities tend to be the most useful
+        for (int i = list.size() - 1; i >= 0; i--) {
+          Incompatibility incompatibility = list.get(i);
+          int unit = this.unitTerm(incompatibility);
+          if (unit == NONE) {
+            continue;
+          }
+
+          if (unit == SATISFIED) {
+            // start over from the term the learned incompatibility derives
+            incompatibility = this.resolveConflict(incompatibility);
+            unit = this.unitTerm(incompatibility);
+            queue.clear();
+            if (unit >= 0) {
+              this.derive(incompatibility, unit);
+              queue.push(incompatibility.packages[unit]);
+            }
+            break;
+          }
+
+          this.derive(incompatibility, unit);
+          queue.push(incompatibility.packages[unit]);
+        }
+      }
+    }
+
+    /**
+     * Adds the opposite of a term to the partial solution
+     *
+     * @param incompatibility whose other terms all hold
+     * @param term index of the term that must not hold
+     */
+    private void derive(Incompatibility incompatibility, int term) {
+      int pkg = incompatibility.packages[term];
+      BitSet set = (BitSet) this.fulls.get(pkg).clone();
+      set.andNot(incompatibility.sets[term]);
+      this.assign(pkg, set, incompatibility);
+    }
+
+    /**
+     * @return int index of the only term that does not hold yet, NONE if a term can no longer
+     *         hold or more than one term is undecided, SATISFIED if every term holds
+     */
+    private int unitTerm(Incompatibility incompatibility) {
+      int unit = SATISFIED;
+      for (int i = 0; i < incompatibility.packages.length; i++) {
+        BitSet domain = this.domains.get(incompatibility.packages[i]);
+        BitSet set = incompatibility.sets[i];
+        if (!domain.intersects(set)) {
+          return NONE;
+        }
+        if (!this.isSubset(domain, set)) {
+          if (unit != SATISFIED) {
+            return NONE;
+          }
+          unit = i;
+        }
+      }
+      return unit;
+    }
+
+    /**
+     * @return boolean true if every bit of a is set in b
+     */
+    private boolean isSubset(BitSet a, BitSet b) {
+      this.scratch.clear();
+      this.scratch.or(a);
+      this.scratch.andNot(b);
+      return this.scratch.isEmpty();
+    }
+
+    /**
+     * Traces a satisfied incompatibility back until a single term of it is due to the most
+     * recent decision level, learning the result and jumping back to where it becomes a
+     * derivation
+     *
+     * @param incompatibility every term of which holds
+     * @return Incompatibility that has exactly one term left to derive after jumping back
+     * @throws ResolutionException if the conflict traces back to the requested packages alone
+     */
+    private Incompatibility resolveConflict(Incompatibility incompatibility)
+        throws ResolutionException {
+      this.conflicts++;
+      boolean learned = false;
+      while (true) {
+        int terms = incompatibility.packages.length;
+        if (terms == 0 || (terms == 1 && incompatibility.packages[0] == 0)) {
+          throw new ResolutionException(this.explain(incompatibility));
+        }
+
+        // index of the assignment at which each term started to hold
+        int[] satisfiedAt = new int[terms];
+        BitSet[] prefix = new BitSet[terms];
+        Arrays.fill(satisfiedAt, -1);
+        for (int t = 0; t < terms; t++) {
+          prefix[t] = (BitSet) this.fulls.get(incompatibility.packages[t]).clone();
+        }
+        int pending = terms;
+        for (int i = 0; i < this.assignments.size() && pending > 0; i++) {
+          Assignment assignment = this.assignments.get(i);
+          for (int t = 0; t < terms; t++) {
+            if (incompatibility.packages[t] == assignment.pkg && satisfiedAt[t] < 0) {
+              prefix[t].and(assignment.set);
+              if (this.isSubset(prefix[t], incompatibility.sets[t])) {
+                satisfiedAt[t] = i;
+                pending--;
+              }
+            }
+          }
+        }
+
+        int term = 0;
+        for (int t = 1; t < terms; t++) {
+          if (satisfiedAt[t] > satisfiedAt[term]) {
+            term = t;
+          }
+        }
+        Assignment satisfier = this.assignments.get(satisfiedAt[term]);
+        int previousLevel = 0;
+        for (int t = 0; t < terms; t++) {
+          if (t != term) {
+            previousLevel = Math.max(previousLevel,
+                this.assignments.get(satisfiedAt[t]).level);
+          }
+        }
+
+        // earliest assignment that, together with the satisfier, already made the term hold
+        BitSet before = (BitSet) this.fulls.get(satisfier.pkg).clone();
+        BitSet together = new BitSet();
+        for (int i = 0; i < satisfiedAt[term]; i++) {
+          Assignment assignment = this.assignments.get(i);
+          if (assignment.pkg != satisfier.pkg) {
+            continue;
+          }
+          before.and(assignment.set);
+          together.clear();
+          together.or(before);
+          together.and(satisfier.set);
+          if (this.isSubset(together, incompatibility.sets[term])) {
+            previousLevel = Math.max(previousLevel, assignment.level);
+            break;
+          }
+        }
+
+        if (satisfier.cause == null || previousLevel < satisfier.level) {
+          if (learned) {
+            this.add(incompatibility);
+          }
+          this.backtrack(previousLevel);
+          return incompatibility;
+        }
+
+        // resolve with the cause of the satisfier, terms about its package are joined
+        Incompatibility cause = satisfier.cause;
+        int[] packages = new int[terms + cause.packages.length - 1];
+        BitSet[] sets = new BitSet[packages.length];
+        BitSet joined = (BitSet) incompatibility.sets[term].clone();
+        int n = 0;
+        for (int t = 0; t < terms; t++) {
+          if (t != term) {
+            packages[n] = incompatibility.packages[t];
+            sets[n++] = incompatibility.sets[t];
+          }
+        }
+        for (int t = 0; t < cause.packages.length; t++) {
+          if (cause.packages[t] == satisfier.pkg) {
+            joined.or(cause.sets[t]);
+          } else {
+            packages[n] = cause.packages[t];
+            sets[n++] = cause.sets[t];
+          }
+        }
+        packages[n] = satisfier.pkg;
+        sets[n++] = joined;
+        incompatibility = this.create(Arrays.copyOf(packages, n), Arrays.copyOf(sets, n), null,
+            incompatibility, cause);
+        learned = true;
+      }
+    }
+
+    /**
+     * Takes back every assignment made after a decision level
+     *
+     * @param target decision level to go back to
+     */
+    private void backtrack(int target) {
+      int keep = this.assignments.size();
+      while (keep > 0 && this.assignments.get(keep - 1).level > target) {
+        keep--;
+      }
+
+      BitSet touched = new BitSet();
+      for (int i = keep; i < this.assignments.size(); i++) {
+        Assignment assignment = this.assignments.get(i);
+        touched.set(assignment.pkg);
+        if (assignment.cause == null) {
+          this.decided[assignment.pkg] = -1;
+        }
+      }
+      this.assignments.subList(keep, this.assignments.size()).clear();
+
+      for (int pkg = touched.nextSetBit(0); pkg >= 0; pkg = touched.nextSetBit(pkg + 1)) {
+        this.domains.set(pkg, (BitSet) this.fulls.get(pkg).clone());
+      }
+      for (Assignment assignment : this.assignments) {
+        if (touched.get(assignment.pkg)) {
+          this.domains.get(assignment.pkg).and(assignment.set);
+        }
+      }
+      for (int pkg = touched.nextSetBit(0); pkg >= 0; pkg = touched.nextSetBit(pkg + 1)) {
+        this.allowed[pkg] = this.domains.get(pkg).cardinality();
+      }
+      this.level = target;
+    }
+
+    /**
+     * Collects the dependencies an incompatibility was derived from
+     *
+     * @param incompatibility to explain
+     * @return List<String> reasons of the external incompatibilities it was derived from
+     */
+    private List<String> explain(Incompatibility incompatibility) {
+      List<String> reasons = new ArrayList<String>();
+      Map<Incompatibility, Boolean> seen = new IdentityHashMap<Incompatibility, Boolean>();
+      Deque<Incompatibility> stack = new ArrayDeque<Incompatibility>();
+      stack.push(incompatibility);
+      while (!stack.isEmpty()) {
+        Incompatibility next = stack.pop();
+        if (seen.put(next, Boolean.TRUE) != null) {
+          continue;
+        }
+        if (next.reason != null) {
+          reasons.add(next.reason);
+        }
+        if (next.right != null) {
+          stack.push(next.right);
+        }
+        if (next.left != null) {
+          stack.push(next.left);
+        }
+      }
+      Collections.reverse(reasons);
+      return reasons;
+    }
+  }
+
+  /**
+   * Results of Solver.unitTerm() that are not a term index
+   */
+  private static final int SATISFIED = -1;
+  private static final int NONE = -2;
+
+}
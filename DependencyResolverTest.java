@@ -0,0 +1,193 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for DependencyResolver testing
+ */
+class DependencyResolverTest {
+
+  PackageRegistry registry;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    registry = new PackageRegistry();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    registry = null;
+  }
+
+  /**
+   * Helper method to build a dependency map
+   *
+   * @param namesAndRanges name, range, name, range, ...
+   * @return Map<String, String> name -> range
+   */
+  private static Map<String, String> deps(String... namesAndRanges) {
+    Map<String, String> dependencies = new HashMap<String, String>();
+    for (int i = 0; i < namesAndRanges.length; i += 2) {
+      dependencies.put(namesAndRanges[i], namesAndRanges[i + 1]);
+    }
+    return dependencies;
+  }
+
+  /**
+   * Test version ordering and the range syntax
+   */
+  @Test
+  void testResolver_001_versions_and_ranges() {
+    if (new Version("1.10.0").compareTo(new Version("1.9.3")) <= 0
+        || !new Version("1.2").equals(new Version("1.2.0"))
+        || new Version("2.0.0-beta").compareTo(new Version("2.0.0")) >= 0) {
+      fail("Versions should compare number by number with pre-releases first");
+    }
+
+    String[][] cases = {{"^1.2.0", "1.9.9", "2.0.0"}, {"^0.2.1", "0.2.5", "0.3.0"},
+        {"~1.2.3", "1.2.9", "1.3.0"}, {">=1.0 <1.5 || ^3", "3.1.0", "2.0.0"},
+        {"1.4.0", "1.4.0", "1.4.1"}, {"*", "0.0.1", null}};
+    for (String[] c : cases) {
+      VersionRange range = new VersionRange(c[0]);
+      if (!range.contains(new Version(c[1]))) {
+        fail(c[0] + " should contain " + c[1]);
+      }
+      if (c[2] != null && range.contains(new Version(c[2]))) {
+        fail(c[0] + " should not contain " + c[2]);
+      }
+    }
+
+    try {
+      new Version("1.x");
+      fail("1.x is not a valid version");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * The newest versions are picked when nothing conflicts
+   */
+  @Test
+  void testResolver_002_picks_newest() {
+    registry.addVersion("A", "1.0.0", deps("B", "^1.0.0"));
+    registry.addVersion("A", "1.1.0", deps("B", "^1.1.0"));
+    registry.addVersion("B", "1.0.0", deps());
+    registry.addVersion("B", "1.2.0", deps());
+    registry.addVersion("B", "2.0.0", deps());
+
+    try {
+      Resolution resolution = new DependencyResolver(registry).resolve(deps("A", "*"));
+      if (!resolution.getVersion("A").equals(new Version("1.1.0"))
+          || !resolution.getVersion("B").equals(new Version("1.2.0"))) {
+        fail("Should pick A 1.1.0 and B 1.2.0 but picked " + resolution);
+      }
+      if (!resolution.getInstallationOrder().equals(Arrays.asList("B@1.2.0", "A@1.1.0"))) {
+        fail("B should be installed before A but order is " + resolution.getInstallationOrder());
+      }
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+  /**
+   * A conflict deep down makes the resolver go back to an older version of the top package
+   */
+  @Test
+  void testResolver_003_backjumps() {
+    registry.addVersion("A", "2.0.0", deps("B", "^2.0.0", "D", "*"));
+    registry.addVersion("A", "1.0.0", deps("B", "^1.0.0"));
+    registry.addVersion("B", "2.0.0", deps("C", "^2.0.0"));
+    registry.addVersion("B", "1.0.0", deps("C", "^1.0.0"));
+    registry.addVersion("C", "1.0.0", deps());
+    registry.addVersion("D", "1.0.0", deps());
+
+    try {
+      Resolution resolution = new DependencyResolver(registry).resolve(deps("A", "*"));
+      if (!resolution.getVersions().keySet().equals(
+          new HashSet<String>(Arrays.asList("A", "B", "C")))) {
+        fail("Only A, B and C should be picked but picked " + resolution);
+      }
+      if (!resolution.getVersion("A").equals(new Version("1.0.0"))
+          || !resolution.getVersion("B").equals(new Version("1.0.0"))) {
+        fail("Should fall back to A 1.0.0 and B 1.0.0 but picked " + resolution);
+      }
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+  /**
+   * Test that an unsolvable request names the dependencies that conflict
+   */
+  @Test
+  void testResolver_004_no_solution() {
+    registry.addVersion("A", "1.0.0", deps("C", "^1.0.0"));
+    registry.addVersion("B", "1.0.0", deps("C", "^2.0.0"));
+    registry.addVersion("C", "1.0.0", deps());
+    registry.addVersion("C", "2.0.0", deps());
+
+    try {
+      Resolution resolution = new DependencyResolver(registry).resolve(deps("A", "*", "B", "*"));
+      fail("A and B need different major versions of C but got " + resolution);
+    } catch (ResolutionException e) {
+      if (!e.getReasons().containsAll(
+          Arrays.asList("A 1.0.0 depends on C ^1.0.0", "B 1.0.0 depends on C ^2.0.0"))) {
+        fail("Both dependencies on C should be named but reasons are " + e.getReasons());
+      }
+    }
+
+    try {
+      new DependencyResolver(registry).resolve(deps("E", "*"));
+      fail("E does not exist");
+    } catch (ResolutionException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Resolves a generated registry with many versions and checks every range is met
+   */
+  @Test
+  void testResolver_005_generated_registry() {
+    int[][] packages = GraphGenerator.randomDag(300, 3, 9);
+    registry = GraphGenerator.versioned(packages, 4, 10, 9);
+
+    try {
+      Resolution resolution = new DependencyResolver(registry)
+          .resolve(Collections.singletonMap(GraphGenerator.name(299), "*"));
+      for (Map.Entry<String, Version> picked : resolution.getVersions().entrySet()) {
+        if (picked.getValue().getNumber(0) == 0) {
+          fail("Generated major versions start at 1 but " + picked.getKey() + " "
+              + picked.getValue() + " was picked");
+        }
+        for (Map.Entry<String, VersionRange> dependency : registry
+            .getDependencies(picked.getKey(), picked.getValue()).entrySet()) {
+          Version version = resolution.getVersion(dependency.getKey());
+          if (version == null || !dependency.getValue().contains(version)) {
+            fail(picked.getKey() + " " + picked.getValue() + " needs " + dependency.getKey()
+                + " " + dependency.getValue() + " but got " + version);
+          }
+        }
+      }
+      if (resolution.getInstallationOrder().size() != resolution.getVersions().size()) {
+        fail("Every picked version should be in the installation order");
+      }
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+}
@@ -0,0 +1,476 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Iterative depth first traversal of the dependencies of a package in an IndexedGraph.
+ *
+ * Dependencies are the predecessors of a vertex (edges go from a dependency to the package that
+ * depends on it). The traversal keeps its own stack of (vertex, next edge) frames in int arrays
+ * instead of recursing, so the depth of the graph is only limited by the heap.
+ *
+ * Visited and on-stack markers are int stamps in a per-thread array that is reused between calls.
+ * Every call uses a new stamp, so nothing has to be cleared and a call only costs time for the
+ * part of the graph it actually reaches.
+ *
+ * iterator() runs the same traversal lazily, one package per next() call, for callers that start
+ * installing before the whole order is known. The installationOrder() versions that take a Graph
+ * run it on a graph that changed since it was last frozen, using its HashMaps directly.
+ */
+public class DependencyTraversal {
+
+  /**
+   * Per-thread scratch space, only reallocated when a larger graph comes along
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  /*
+   * Only static methods, no instances
+   */
+  private DependencyTraversal() {}
+
+  /**
+   * Returns the installation order of a package: every package it transitively depends on,
+   * dependencies first, followed by the package itself.
+   *
+   * @param graph to traverse
+   * @param root id of the package
+   * @return int[] ids in installation order
+   *
+   * @throws CyclicDependencyException if a cycle is reachable from root
+   */
+  public static int[] installationOrder(IndexedGraph graph, int root)
+      throws CyclicDependencyException {
+    return installationOrder(graph, new int[] {root}, new int[0]);
+  }
+
+  /**
+   * Returns the packages that have to be newly installed to install several packages into an
+   * environment that already has other packages installed, dependencies first.
+   *
+   * Everything the installed packages transitively depend on counts as installed as well. It is
+   * marked first and never entered again, and every requested package shares one traversal, so a
+   * call only costs time for the installed and requested parts of the graph. Cycles among installed
+   * packages are ignored since those packages are already there.
+   *
+   * @param graph to traverse
+   * @param roots ids of the packages to install, in the order they should be considered
+   * @param installed ids of the packages that are already installed
+   * @return int[] ids of the packages to newly install, in installation order
+   *
+   * @throws CyclicDependencyException if a cycle is reachable from a root without passing through
+   *         an installed package
+   */
+  public static int[] installationOrder(IndexedGraph graph, int[] roots, int[] installed)
+      throws CyclicDependencyException {
+    Scratch scratch = SCRATCH.get().begin(graph.order());
+    int[] marks = scratch.marks;
+    int onStack = scratch.epoch;
+    int done = scratch.epoch + 1;
+
+    // explicit call stack of (vertex, next incoming edge) frames
+    int[] stackVertex = scratch.stackVertex;
+    int[] stackEdge = scratch.stackEdge;
+    int top = -1;
+
+    // installed packages and their dependencies are done before the traversal starts, every
+    // vertex is pushed at most once so the stack cannot overflow
+    for (int v : installed) {
+      if (marks[v] != done) {
+        marks[v] = done;
+        stackVertex[++top] = v;
+      }
+    }
+    while (top >= 0) {
+      int v = stackVertex[top--];
+      for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+        int w = graph.inSource(e);
+        if (marks[w] != done) {
+          marks[w] = done;
+          stackVertex[++top] = w;
+        }
+      }
+    }
+
+    int[] order = new int[16];
+    int size = 0;
+
+    for (int root : roots) {
+      if (marks[root] == done) {
+        continue;
+      }
+
+      top = 0;
+      stackVertex[0] = root;
+      stackEdge[0] = graph.inStart(root);
+      marks[root] = onStack;
+
+      while (top >= 0) {
+        int v = stackVertex[top];
+
+        if (stackEdge[top] < graph.inEnd(v)) {
+          int w = graph.inSource(stackEdge[top]++);
+          if (marks[w] == done) {
+            continue;
+          }
+          if (marks[w] == onStack) {
+            throw new CyclicDependencyException(cycle(graph, stackVertex, top, w));
+          }
+
+          // descend into w
+          marks[w] = onStack;
+          top++;
+          stackVertex[top] = w;
+          stackEdge[top] = graph.inStart(w);
+          continue;
+        }
+
+        // every dependency of v is in the order, so v can go next
+        marks[v] = done;
+        if (size == order.length) {
+          order = Arrays.copyOf(order, size * 2);
+        }
+        order[size++] = v;
+        top--;
+      }
+    }
+
+    return Arrays.copyOf(order, size);
+  }
+
+  /**
+   * Same as installationOrder(IndexedGraph, int) but walks a Graph, for graphs that changed since
+   * they were last frozen. Only the packages the traversal reaches are looked at, so a small change
+   * to a large graph does not have to be paid for with a whole new CompactGraph first. Returns the
+   * same order as the IndexedGraph version would after freezing the graph.
+   *
+   * @param graph to traverse
+   * @param root name of the package, must be in the graph
+   * @return List<String> packages in installation order
+   *
+   * @throws CyclicDependencyException if a cycle is reachable from root
+   */
+  public static List<String> installationOrder(Graph graph, String root)
+      throws CyclicDependencyException {
+    return installationOrder(graph, Collections.singletonList(root),
+        Collections.<String>emptyList());
+  }
+
+  /**
+   * Same as installationOrder(IndexedGraph, int[], int[]) but walks a Graph, see
+   * installationOrder(Graph, String)
+   *
+   * @param graph to traverse
+   * @param roots names of the packages to install, must be in the graph
+   * @param installed names of the packages that are already installed, must be in the graph
+   * @return List<String> packages to newly install, in installation order
+   *
+   * @throws CyclicDependencyException if a cycle is reachable from a root without passing through
+   *         an installed package
+   */
+  public static List<String> installationOrder(Graph graph, Collection<String> roots,
+      Collection<String> installed) throws CyclicDependencyException {
+    // false while a package is on the stack, true once it is done
+    Map<String, Boolean> marks = new HashMap<String, Boolean>();
+
+    // installed packages and their dependencies are done before the traversal starts
+    ArrayDeque<String> pending = new ArrayDeque<String>();
+    for (String v : installed) {
+      if (marks.put(v, Boolean.TRUE) == null) {
+        pending.push(v);
+      }
+    }
+    while (!pending.isEmpty()) {
+      for (String w : graph.getPredecessorsOf(pending.pop())) {
+        if (marks.put(w, Boolean.TRUE) == null) {
+          pending.push(w);
+        }
+      }
+    }
+
+    List<String> order = new ArrayList<String>();
+
+    // explicit call stack of (vertex, remaining incoming edges) frames
+    List<String> stackVertex = new ArrayList<String>();
+    List<Iterator<String>> stackEdge = new ArrayList<Iterator<String>>();
+
+    for (String root : roots) {
+      if (marks.containsKey(root)) {
+        continue;
+      }
+
+      marks.put(root, Boolean.FALSE);
+      stackVertex.add(root);
+      stackEdge.add(graph.getPredecessorsOf(root).iterator());
+
+      while (!stackVertex.isEmpty()) {
+        int top = stackVertex.size() - 1;
+        Iterator<String> edges = stackEdge.get(top);
+
+        if (edges.hasNext()) {
+          String w = edges.next();
+          Boolean done = marks.get(w);
+          if (done != null) {
+            if (done) {
+              continue;
+            }
+            List<String> cycle =
+                new ArrayList<String>(stackVertex.subList(stackVertex.lastIndexOf(w), top + 1));
+            cycle.add(w);
+            throw new CyclicDependencyException(cycle);
+          }
+
+          // descend into w
+          marks.put(w, Boolean.FALSE);
+          stackVertex.add(w);
+          stackEdge.add(graph.getPredecessorsOf(w).iterator());
+          continue;
+        }
+
+        // every dependency of v is in the order, so v can go next
+        String v = stackVertex.remove(top);
+        stackEdge.remove(top);
+        marks.put(v, Boolean.TRUE);
+        order.add(v);
+      }
+    }
+
+    return order;
+  }
+
+  /**
+   * Returns the installation order of a package as a lazy iterator. Every call to next() runs the
+   * traversal only until the next package is finished, so the first package is returned after
+   * walking down a single dependency chain. Only the stack of the traversal and one bit per
+   * visited package are held in memory.
+   *
+   * @param graph to traverse
+   * @param root id of the package
+   * @return Iterator<String> the same packages in the same order as installationOrder(graph, root)
+   *
+   * @throws UncheckedCycleException from hasNext() and next() once the traversal reaches a cycle
+   */
+  public static Iterator<String> iterator(IndexedGraph graph, int root) {
+    return new OrderIterator(graph, new int[] {root});
+  }
+
+  /**
+   * Returns an installation order of every package in the graph as a lazy iterator. Packages are
+   * taken as roots in id order, each one adding whatever part of its installation order was not
+   * returned yet.
+   *
+   * @param graph to traverse
+   * @return Iterator<String> every package, each one after all of its dependencies
+   *
+   * @throws UncheckedCycleException from hasNext() and next() once the traversal reaches a cycle
+   */
+  public static Iterator<String> iterator(IndexedGraph graph) {
+    return new OrderIterator(graph, null);
+  }
+
+  /**
+   * Builds the cycle found when the vertex on top of the stack depends on w, which is already on
+   * the stack
+   *
+   * @param graph being traversed
+   * @param stackVertex vertices on the stack, each one depending on the next
+   * @param top index of the top of the stack
+   * @param w vertex that closes the cycle
+   * @return List<String> the cycle, each package depending on the next
+   */
+  private static List<String> cycle(IndexedGraph graph, int[] stackVertex, int top, int w) {
+    int start = top;
+    while (stackVertex[start] != w) {
+      start--;
+    }
+
+    List<String> cycle = new ArrayList<String>();
+    for (int i = start; i <= top; i++) {
+      cycle.add(graph.nameOf(stackVertex[i]));
+    }
+    cycle.add(graph.nameOf(w));
+    return cycle;
+  }
+
+  /**
+   * Depth first traversal that stops every time a package is finished
+   */
+  private static class OrderIterator implements Iterator<String> {
+
+    private final IndexedGraph graph;
+
+    /**
+     * Packages to start from, null for every package in id order
+     */
+    private final int[] roots;
+    private int nextRoot;
+
+    private final BitSet done = new BitSet();
+    private final BitSet onStack = new BitSet();
+
+    /**
+     * Explicit call stack of (vertex, next incoming edge) frames, grown as needed
+     */
+    private int[] stackVertex = new int[16];
+    private int[] stackEdge = new int[16];
+    private int top = -1;
+
+    /**
+     * Finished package that next() returns, -1 if the traversal has to go on first
+     */
+    private int pending = -1;
+    private UncheckedCycleException cycle;
+
+    OrderIterator(IndexedGraph graph, int[] roots) {
+      this.graph = graph;
+      this.roots = roots;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (this.pending < 0) {
+        this.advance();
+      }
+      return this.pending >= 0;
+    }
+
+    @Override
+    public String next() {
+      if (!this.hasNext()) {
+        throw new NoSuchElementException();
+      }
+      int v = this.pending;
+      this.pending = -1;
+      return this.graph.nameOf(v);
+    }
+
+    /**
+     * Runs the traversal until the next package is finished or there are no packages left
+     *
+     * @throws UncheckedCycleException if the traversal reaches a cycle
+     */
+    private void advance() {
+      if (this.cycle != null) {
+        throw this.cycle;
+      }
+
+      while (true) {
+        if (this.top < 0) {
+          int root = this.nextRoot();
+          if (root < 0) {
+            return;
+          }
+          this.push(root);
+          continue;
+        }
+
+        int v = this.stackVertex[this.top];
+        if (this.stackEdge[this.top] < this.graph.inEnd(v)) {
+          int w = this.graph.inSource(this.stackEdge[this.top]++);
+          if (this.done.get(w)) {
+            continue;
+          }
+          if (this.onStack.get(w)) {
+            this.cycle = new UncheckedCycleException(
+                new CyclicDependencyException(cycle(this.graph, this.stackVertex, this.top, w)));
+            throw this.cycle;
+          }
+          this.push(w);
+          continue;
+        }
+
+        // every dependency of v has been returned, so v can go next
+        this.onStack.clear(v);
+        this.done.set(v);
+        this.top--;
+        this.pending = v;
+        return;
+      }
+    }
+
+    /**
+     * @return int next root that is not done yet, -1 if there are none left
+     */
+    private int nextRoot() {
+      if (this.roots == null) {
+        int root = this.done.nextClearBit(this.nextRoot);
+        this.nextRoot = root + 1;
+        return root < this.graph.order() ? root : -1;
+      }
+      while (this.nextRoot < this.roots.length) {
+        int root = this.roots[this.nextRoot++];
+        if (!this.done.get(root)) {
+          return root;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Descends into a package
+     *
+     * @param v id of the package
+     */
+    private void push(int v) {
+      this.top++;
+      if (this.top == this.stackVertex.length) {
+        this.stackVertex = Arrays.copyOf(this.stackVertex, this.top * 2);
+        this.stackEdge = Arrays.copyOf(this.stackEdge, this.top * 2);
+      }
+      this.stackVertex[this.top] = v;
+      this.stackEdge[this.top] = this.graph.inStart(v);
+      this.onStack.set(v);
+    }
+  }
+
+  /**
+   * Marker and stack arrays for one thread
+   */
+  private static class Scratch {
+    int[] marks = new int[0];
+    int[] stackVertex = new int[0];
+    int[] stackEdge = new int[0];
+
+    /**
+     * Stamp of the current call, marks[v] == epoch means on the stack and epoch + 1 means done
+     */
+    int epoch;
+
+    /**
+     * Prepares the arrays for a new call on a graph of n vertices
+     *
+     * @param n amount of vertices in the graph
+     * @return Scratch this
+     */
+    Scratch begin(int n) {
+      if (this.marks.length < n) {
+        this.marks = new int[n];
+        this.stackVertex = new int[n];
+        this.stackEdge = new int[n];
+        this.epoch = 0;
+      }
+
+      // start over once the stamps run out
+      if (this.epoch > Integer.MAX_VALUE - 4) {
+        Arrays.fill(this.marks, 0);
+        this.epoch = 0;
+      }
+      this.epoch += 2;
+      return this;
+    }
+  }
+
+}
@@ -0,0 +1,258 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for DependencyTraversal testing
+ */
+class DependencyTraversalTest {
+
+  Graph graph;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    graph = new Graph();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    graph = null;
+  }
+
+  /**
+   * Helper to turn an order of ids into names
+   */
+  private String[] names(CompactGraph compact, int[] ids) {
+    String[] names = new String[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      names[i] = compact.nameOf(ids[i]);
+    }
+    return names;
+  }
+
+  /**
+   * Shared dependencies are only listed once, after their own dependencies
+   */
+  @Test
+  void testTraversal_001_shared_dependencies() throws CycleException {
+    // A depends on B and C, B and C depend on D
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "A");
+    graph.addEdge("D", "B");
+    graph.addEdge("D", "C");
+
+    CompactGraph compact = graph.freeze();
+    String[] order = names(compact, DependencyTraversal.installationOrder(compact,
+        compact.idOf("A")));
+
+    if (!Arrays.equals(order, new String[] {"D", "B", "C", "A"})) {
+      fail("Order should be [D, B, C, A] but is " + Arrays.toString(order));
+    }
+  }
+
+  /**
+   * A cycle that is reachable throws with the packages in it, a cycle that is not does not
+   */
+  @Test
+  void testTraversal_002_cycle() {
+    // A depends on B, B depends on C, C depends on B, E depends on F
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "B");
+    graph.addEdge("B", "C");
+    graph.addEdge("F", "E");
+
+    CompactGraph compact = graph.freeze();
+    try {
+      DependencyTraversal.installationOrder(compact, compact.idOf("A"));
+      fail("A cycle is reachable from A so a CyclicDependencyException should be thrown");
+    } catch (CyclicDependencyException e) {
+      if (!e.getCycle().equals(Arrays.asList("B", "C", "B"))) {
+        fail("Cycle should be [B, C, B] but is " + e.getCycle());
+      }
+    }
+
+    try {
+      DependencyTraversal.installationOrder(compact, compact.idOf("E"));
+    } catch (CyclicDependencyException e) {
+      fail("No cycle is reachable from E but got " + e.getMessage());
+    }
+  }
+
+  /**
+   * A chain one million packages deep must not overflow the stack
+   */
+  @Test
+  void testTraversal_003_one_million_deep_chain() throws CycleException {
+    int n = 1000000;
+    String[] names = new String[n];
+    int[] offsets = new int[n + 1];
+    int[] targets = new int[n - 1];
+
+    // p0 -> p1 -> ... -> p(n-1), so p(n-1) depends on every other package
+    for (int i = 0; i < n; i++) {
+      names[i] = GraphGenerator.name(i);
+      offsets[i + 1] = Math.min(i + 1, n - 1);
+      if (i < n - 1) {
+        targets[i] = i + 1;
+      }
+    }
+    CompactGraph compact = new CompactGraph(names, offsets, targets);
+
+    int[] order = DependencyTraversal.installationOrder(compact, n - 1);
+
+    if (order.length != n) {
+      fail("Order should have " + n + " packages but has " + order.length);
+    }
+    for (int i = 0; i < n; i++) {
+      if (order[i] != i) {
+        fail("Package " + i + " should be at position " + i + " but " + order[i] + " is");
+      }
+    }
+  }
+
+  /**
+   * Several packages are resolved together, skipping everything installed packages depend on
+   */
+  @Test
+  void testTraversal_004_batch_with_installed() throws CycleException {
+    // A depends on B and C, B and C depend on D, E depends on C and F, F and G depend on each other
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "A");
+    graph.addEdge("D", "B");
+    graph.addEdge("D", "C");
+    graph.addEdge("C", "E");
+    graph.addEdge("F", "E");
+    graph.addEdge("F", "G");
+    graph.addEdge("G", "F");
+
+    CompactGraph compact = graph.freeze();
+    int[] roots = {compact.idOf("A"), compact.idOf("E"), compact.idOf("C")};
+    int[] installed = {compact.idOf("C"), compact.idOf("G")};
+    String[] order = names(compact, DependencyTraversal.installationOrder(compact, roots,
+        installed));
+
+    if (!Arrays.equals(order, new String[] {"B", "A", "E"})) {
+      fail("Order should be [B, A, E] but is " + Arrays.toString(order));
+    }
+  }
+
+  /**
+   * The lazy iterator returns the same order as the traversal, one package at a time
+   */
+  @Test
+  void testTraversal_005_lazy_order() throws CycleException {
+    CompactGraph compact = GraphGenerator.toGraph(GraphGenerator.randomDag(5000, 4, 5)).freeze();
+
+    for (int id = 0; id < compact.order(); id += 97) {
+      String[] expected = names(compact, DependencyTraversal.installationOrder(compact, id));
+      Iterator<String> lazy = DependencyTraversal.iterator(compact, id);
+      for (String pkg : expected) {
+        if (!lazy.hasNext() || !lazy.next().equals(pkg)) {
+          fail("Lazy order of " + compact.nameOf(id) + " should be " + Arrays.toString(expected));
+        }
+      }
+      if (lazy.hasNext()) {
+        fail("Lazy order of " + compact.nameOf(id) + " has more packages than expected");
+      }
+    }
+
+    // every package once, each one after all of its dependencies
+    int[] position = new int[compact.order()];
+    Arrays.fill(position, -1);
+    int size = 0;
+    for (Iterator<String> all = DependencyTraversal.iterator(compact); all.hasNext();) {
+      int v = compact.idOf(all.next());
+      if (position[v] >= 0) {
+        fail(compact.nameOf(v) + " is returned twice");
+      }
+      for (int e = compact.inStart(v); e < compact.inEnd(v); e++) {
+        if (position[compact.inSource(e)] < 0) {
+          fail(compact.nameOf(compact.inSource(e)) + " must come before " + compact.nameOf(v));
+        }
+      }
+      position[v] = size++;
+    }
+    if (size != compact.order()) {
+      fail("Every one of " + compact.order() + " packages should be returned but got " + size);
+    }
+  }
+
+  /**
+   * Packages before a cycle are still returned, the cycle is thrown once it is reached
+   */
+  @Test
+  void testTraversal_006_lazy_cycle() {
+    // A depends on D and B, B depends on C, C depends on B
+    graph.addEdge("D", "A");
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "B");
+    graph.addEdge("B", "C");
+
+    CompactGraph compact = graph.freeze();
+    Iterator<String> lazy = DependencyTraversal.iterator(compact, compact.idOf("A"));
+    if (!lazy.next().equals("D")) {
+      fail("D has no dependencies and should be returned before the cycle is found");
+    }
+    try {
+      lazy.next();
+      fail("A cycle is reachable from A so an UncheckedCycleException should be thrown");
+    } catch (UncheckedCycleException e) {
+      if (!e.getCause().getCycle().equals(Arrays.asList("B", "C", "B"))) {
+        fail("Cycle should be [B, C, B] but is " + e.getCause().getCycle());
+      }
+    }
+  }
+
+  /**
+   * Walking the Graph itself gives the same orders and cycles as walking its CompactGraph
+   */
+  @Test
+  void testTraversal_007_graph_matches_compact() throws CycleException {
+    graph = GraphGenerator.toGraph(GraphGenerator.randomDag(2000, 4, 9));
+    graph.addEdge("p1999", "p1998");
+    CompactGraph compact = graph.freeze();
+
+    for (int id = 0; id < compact.order(); id += 37) {
+      String[] expected = names(compact, DependencyTraversal.installationOrder(compact, id));
+      String[] order = DependencyTraversal.installationOrder(graph, compact.nameOf(id))
+          .toArray(new String[0]);
+      if (!Arrays.equals(order, expected)) {
+        fail("Order of " + compact.nameOf(id) + " should be " + Arrays.toString(expected)
+            + " but is " + Arrays.toString(order));
+      }
+    }
+
+    List<String> batch = DependencyTraversal.installationOrder(graph,
+        Arrays.asList("p1998", "p500"), Arrays.asList("p1999", "p3"));
+    String[] expected = names(compact, DependencyTraversal.installationOrder(compact,
+        new int[] {compact.idOf("p1998"), compact.idOf("p500")},
+        new int[] {compact.idOf("p1999"), compact.idOf("p3")}));
+    if (!Arrays.equals(batch.toArray(new String[0]), expected)) {
+      fail("Batch order should be " + Arrays.toString(expected) + " but is " + batch);
+    }
+
+    // A depends on B, B depends on C, C depends on B
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "B");
+    graph.addEdge("B", "C");
+    try {
+      DependencyTraversal.installationOrder(graph, "A");
+      fail("A cycle is reachable from A so a CyclicDependencyException should be thrown");
+    } catch (CyclicDependencyException e) {
+      if (!e.getCycle().equals(Arrays.asList("B", "C", "B"))) {
+        fail("Cycle should be [B, C, B] but is " + e.getCycle());
+      }
+    }
+  }
+
+}
@@ -0,0 +1,240 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Breadth first traversal of the dependents of a package in an IndexedGraph, the packages that
+ * would be affected by changing it.
+ *
+ * Dependents are the successors of a vertex (edges go from a dependency to the package that
+ * depends on it). Packages are visited level by level: first the packages that depend on the root
+ * directly, then the packages that depend on those, and so on, up to a maximum depth. Every package
+ * is visited once, even if it is reachable through several paths or cycles. The root itself is
+ * never part of the result.
+ *
+ * levels() expands large levels in parallel and claims visited vertices with compare-and-set on a
+ * bitset. iterator() walks the levels lazily on the calling thread, so callers can stop early or
+ * stream a huge impact set without holding it as a list of names.
+ */
+public class DependentTraversal {
+
+  /*
+   * Only static methods, no instances
+   */
+  private DependentTraversal() {}
+
+  /**
+   * Returns the dependents of a package grouped by distance
+   *
+   * @param graph to traverse
+   * @param root id of the package
+   * @param maxDepth amount of levels to visit, Integer.MAX_VALUE for all of them
+   * @param pool to expand large levels on
+   * @return List<int[]> ids of the dependents at distance 1, 2, ... up to maxDepth, without empty
+   *         levels
+   *
+   * @throws IllegalArgumentException if maxDepth is negative
+   */
+  public static List<int[]> levels(IndexedGraph graph, int root, int maxDepth, ForkJoinPool pool) {
+    checkDepth(maxDepth);
+
+    AtomicLongArray visited = new AtomicLongArray((graph.order() + 63) / 64);
+    claim(visited, root);
+    List<int[]> levels = new ArrayList<int[]>();
+    int[] frontier = {root};
+
+    while (levels.size() < maxDepth) {
+      int capacity = 0;
+      for (int v : frontier) {
+        capacity += graph.outEnd(v) - graph.outStart(v);
+      }
+      int[] next = new int[capacity];
+      AtomicInteger nextSize = new AtomicInteger();
+
+      ExpandTask task = new ExpandTask(graph, visited, frontier, 0, frontier.length, next,
+          nextSize);
+      if (frontier.length <= ParallelTopologicalSort.SEQUENTIAL_THRESHOLD) {
+        task.compute();
+      } else {
+        pool.invoke(task);
+      }
+
+      if (nextSize.get() == 0) {
+        break;
+      }
+      frontier = Arrays.copyOf(next, nextSize.get());
+      Arrays.sort(frontier);
+      levels.add(frontier);
+    }
+    return levels;
+  }
+
+  /**
+   * Returns a lazy iterator over the dependents of a package, nearest first. Only the ids of the
+   * levels being walked are held in memory, names are looked up as packages are returned.
+   *
+   * @param graph to traverse
+   * @param root id of the package
+   * @param maxDepth amount of levels to visit, Integer.MAX_VALUE for all of them
+   * @return Iterator<String> names of the dependents
+   *
+   * @throws IllegalArgumentException if maxDepth is negative
+   */
+  public static Iterator<String> iterator(final IndexedGraph graph, final int root,
+      final int maxDepth) {
+    checkDepth(maxDepth);
+
+    return new Iterator<String>() {
+      private final BitSet visited = new BitSet();
+
+      /**
+       * Level being returned and the level being collected from it
+       */
+      private int[] level = {root};
+      private int position = 1;
+      private int[] next = new int[16];
+      private int nextSize;
+      private int depth;
+      private boolean finished;
+
+      {
+        this.visited.set(root);
+      }
+
+      @Override
+      public boolean hasNext() {
+        // once a level is used up, move on to the level after it
+        while (this.position == this.level.length) {
+          if (this.finished || this.depth == maxDepth || !this.expand()) {
+            this.finished = true;
+            return false;
+          }
+          this.level = Arrays.copyOf(this.next, this.nextSize);
+          this.position = 0;
+          this.nextSize = 0;
+          this.depth++;
+        }
+        return true;
+      }
+
+      @Override
+      public String next() {
+        if (!this.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return graph.nameOf(this.level[this.position++]);
+      }
+
+      /**
+       * Collects the unvisited dependents of the current level
+       *
+       * @return boolean true if any were found
+       */
+      private boolean expand() {
+        for (int v : this.level) {
+          for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+            int w = graph.outTarget(e);
+            if (!this.visited.get(w)) {
+              this.visited.set(w);
+              if (this.nextSize == this.next.length) {
+                this.next = Arrays.copyOf(this.next, this.nextSize * 2);
+              }
+              this.next[this.nextSize++] = w;
+            }
+          }
+        }
+        return this.nextSize > 0;
+      }
+    };
+  }
+
+  /**
+   * @param maxDepth to check
+   * @throws IllegalArgumentException if maxDepth is negative
+   */
+  private static void checkDepth(int maxDepth) {
+    if (maxDepth < 0) {
+      throw new IllegalArgumentException("maxDepth must not be negative: " + maxDepth);
+    }
+  }
+
+  /**
+   * Marks a vertex as visited
+   *
+   * @param visited bitset of visited vertices
+   * @param v id of the vertex
+   * @return boolean true if this call marked it, false if it was already visited
+   */
+  private static boolean claim(AtomicLongArray visited, int v) {
+    int word = v >>> 6;
+    long bit = 1L << v;
+    while (true) {
+      long old = visited.get(word);
+      if ((old & bit) != 0) {
+        return false;
+      }
+      if (visited.compareAndSet(word, old, old | bit)) {
+        return true;
+      }
+    }
+  }
+
+  /**
+   * Collects the unvisited dependents of a range of the frontier, splitting the range in half until
+   * it is small enough to do on one thread
+   */
+  private static class ExpandTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IndexedGraph graph;
+    private final AtomicLongArray visited;
+    private final int[] frontier;
+    private final int from;
+    private final int to;
+    private final int[] next;
+    private final AtomicInteger nextSize;
+
+    ExpandTask(IndexedGraph graph, AtomicLongArray visited, int[] frontier, int from, int to,
+        int[] next, AtomicInteger nextSize) {
+      this.graph = graph;
+      this.visited = visited;
+      this.frontier = frontier;
+      this.from = from;
+      this.to = to;
+      this.next = next;
+      this.nextSize = nextSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from > ParallelTopologicalSort.SEQUENTIAL_THRESHOLD) {
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(
+            new ExpandTask(this.graph, this.visited, this.frontier, this.from, middle, this.next,
+                this.nextSize),
+            new ExpandTask(this.graph, this.visited, this.frontier, middle, this.to, this.next,
+                this.nextSize));
+        return;
+      }
+
+      for (int i = this.from; i < this.to; i++) {
+        int v = this.frontier[i];
+        for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+          int w = this.graph.outTarget(e);
+          if (claim(this.visited, w)) {
+            this.next[this.nextSize.getAndIncrement()] = w;
+          }
+        }
+      }
+    }
+  }
+
+}
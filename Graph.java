@@ -1,5 +1,10 @@
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -21,20 +26,116 @@ import java.util.Set;
 public class Graph implements GraphADT {
 
   /**
-   * Define vertices Map<String, List<String>>
+   * Define vertices Map<String, Set<String>>
    * 
-   * The key will be the vertex and the value will be an ArrayList of Strings which will be the
-   * key's (vertex's) dependencies
+   * The key will be the vertex and the value will be an AdjacencySet of Strings which will be the
+   * key's (vertex's) dependencies. An AdjacencySet keeps the order edges were added in while making
+   * edge lookups, additions and removals constant time no matter how many edges a vertex has, and
+   * takes a fraction of the memory of a LinkedHashSet for the few edges most vertices have.
    */
-  private Map<String, List<String>> vertices;
+  private Map<String, Set<String>> vertices;
+
+  /**
+   * Define predecessors Map<String, Set<String>>
+   * 
+   * Reverse adjacency index. The key will be the vertex and the value will be an AdjacencySet of
+   * Strings which will be every vertex that has an edge to the key (vertex)
+   */
+  private Map<String, Set<String>> predecessors;
+
+  /**
+   * Number of edges, kept up to date by every change so size() does not have to count them
+   */
+  private int edges;
+
+  /**
+   * Listeners that are notified every time the graph changes
+   */
+  private List<GraphListener> listeners;
+
+  /**
+   * Frozen copy returned by freeze(), or the IndexedGraph this graph was created from, dropped
+   * every time the graph changes
+   */
+  private IndexedGraph frozen;
 
   /*
    * Default no-argument constructor
    * 
-   * All this does is initialize the HashMap
+   * All this does is initialize the HashMaps
    */
   public Graph() {
-    this.vertices = new HashMap<String, List<String>>();
+    this.vertices = new HashMap<String, Set<String>>();
+    this.predecessors = new HashMap<String, Set<String>>();
+    this.listeners = new ArrayList<GraphListener>();
+  }
+
+  /**
+   * Creates a graph with the same vertices and edges as an IndexedGraph, for example one loaded
+   * from a GraphSnapshot onto or off the heap.
+   * 
+   * Reads are served straight from the IndexedGraph. The HashMaps are only built the first time
+   * the graph is changed, so a graph that is never changed costs nothing extra to create.
+   * 
+   * @param frozen IndexedGraph to start from
+   */
+  public Graph(IndexedGraph frozen) {
+    this.listeners = new ArrayList<GraphListener>();
+    this.frozen = frozen;
+  }
+
+  /**
+   * Builds the HashMaps from the frozen copy if this graph was created from an IndexedGraph and has
+   * not been changed yet. Must be called before any change to the graph.
+   */
+  private void thaw() {
+    if (this.vertices != null) {
+      return;
+    }
+
+    int order = this.frozen.order();
+    this.vertices = new HashMap<String, Set<String>>((int) (order / 0.75f) + 1);
+    this.predecessors = new HashMap<String, Set<String>>((int) (order / 0.75f) + 1);
+    for (int id = 0; id < order; id++) {
+      int start = this.frozen.outStart(id);
+      int end = this.frozen.outEnd(id);
+      Set<String> successors = new AdjacencySet(end - start);
+      for (int e = start; e < end; e++) {
+        successors.add(this.frozen.nameOf(this.frozen.outTarget(e)));
+      }
+
+      start = this.frozen.inStart(id);
+      end = this.frozen.inEnd(id);
+      Set<String> predecessors = new AdjacencySet(end - start);
+      for (int e = start; e < end; e++) {
+        predecessors.add(this.frozen.nameOf(this.frozen.inSource(e)));
+      }
+
+      String v = this.frozen.nameOf(id);
+      this.vertices.put(v, successors);
+      this.predecessors.put(v, predecessors);
+    }
+    this.edges = this.frozen.size();
+  }
+
+  /**
+   * Registers a listener that is notified after every change to the graph
+   * 
+   * @param listener to register, ignored if null
+   */
+  public void addListener(GraphListener listener) {
+    if (listener != null) {
+      this.listeners.add(listener);
+    }
+  }
+
+  /**
+   * Unregisters a listener previously passed to addListener()
+   * 
+   * @param listener to unregister
+   */
+  public void removeListener(GraphListener listener) {
+    this.listeners.remove(listener);
   }
 
   /**
@@ -48,13 +149,21 @@ public class Graph implements GraphADT {
    * @param String vertex to add to graph
    */
   public void addVertex(String vertex) {
+    this.thaw();
+
     // check if vertex is null or if vertex already exists
     if (vertex == null || this.vertices.containsKey(vertex)) {
       return;
     }
     
-    // add new vertex to HashMap
-    this.vertices.put(vertex, new ArrayList<String>());
+    // add new vertex to both HashMaps
+    this.vertices.put(vertex, new AdjacencySet());
+    this.predecessors.put(vertex, new AdjacencySet());
+
+    this.frozen = null;
+    for (GraphListener listener : this.listeners) {
+      listener.vertexAdded(vertex);
+    }
   }
 
   /**
@@ -63,27 +172,100 @@ public class Graph implements GraphADT {
    * If vertex is null or does not exist, method ends without removing a vertex, edges, or throwing
    * an exception.
    * 
-   * Valid argument conditions: 1. vertex is non-null 2. vertex is not already in the graph
+   * Only the vertices that share an edge with vertex are touched, so this takes time proportional
+   * to the edges of vertex instead of the size of the graph.
+   * 
+   * Valid argument conditions: 1. vertex is non-null 2. vertex is already in the graph
    * 
    * @param String vertex vertex to remove from graph
    */
   public void removeVertex(String vertex) {
+    this.thaw();
+
     // check if vertex is null or if vertex does not exist
-    /**
-     * TODO: Possibly wont work might need to do vertices.get(vertex) == null
-     */
     if (vertex == null || !this.vertices.containsKey(vertex)) {
       return;
     }
 
-    // iterate through vertices and remove edges to vertex
-    for (String v : this.vertices.keySet()) { // uses keySet() to get all keys in a Set so we can
-                                              // use enhanced for loop
-      this.vertices.get(v).remove(v);
+    this.detach(vertex, Collections.singleton(vertex));
+    this.vertices.remove(vertex);
+    this.predecessors.remove(vertex);
+
+    this.frozen = null;
+    for (GraphListener listener : this.listeners) {
+      listener.vertexRemoved(vertex);
     }
+  }
 
-    // remove vertex from graph
-    this.vertices.remove(vertex);
+  /**
+   * Remove several vertices and all associated edges from the graph.
+   * 
+   * Same as calling removeVertex() for each of them, but edges between two of the removed vertices
+   * are dropped along with them instead of being unlinked one by one. Null vertices and vertices
+   * that do not exist are skipped.
+   * 
+   * @param Collection<String> vertices vertices to remove from graph
+   */
+  public void removeVertices(Collection<String> vertices) {
+    this.thaw();
+
+    if (vertices == null) {
+      return;
+    }
+
+    // collect the vertices that are actually in the graph
+    Set<String> removed = new LinkedHashSet<String>();
+    for (String vertex : vertices) {
+      if (vertex != null && this.vertices.containsKey(vertex)) {
+        removed.add(vertex);
+      }
+    }
+    if (removed.isEmpty()) {
+      return;
+    }
+
+    for (String vertex : removed) {
+      this.detach(vertex, removed);
+    }
+    for (String vertex : removed) {
+      this.vertices.remove(vertex);
+      this.predecessors.remove(vertex);
+    }
+
+    this.frozen = null;
+    for (String vertex : removed) {
+      for (GraphListener listener : this.listeners) {
+        listener.vertexRemoved(vertex);
+      }
+    }
+  }
+
+  /**
+   * Unlinks a vertex that is about to be removed from its neighbors and subtracts its edges from
+   * the edge count.
+   * 
+   * Neighbors in removed are left alone since they are removed as well. Every edge is subtracted
+   * once: edges from vertex through its outgoing edges, edges into vertex only if they come from a
+   * vertex that is not removed.
+   * 
+   * @param vertex the vertex being removed
+   * @param removed every vertex being removed, including vertex
+   */
+  private void detach(String vertex, Set<String> removed) {
+    Set<String> successors = this.vertices.get(vertex);
+    for (String successor : successors) {
+      if (!removed.contains(successor)) {
+        this.predecessors.get(successor).remove(vertex);
+      }
+    }
+    this.edges -= successors.size();
+
+    for (String predecessor : this.predecessors.get(vertex)) {
+      if (!removed.contains(predecessor)) {
+        this.vertices.get(predecessor).remove(vertex);
+        this.edges--;
+      }
+    }
   }
 
   /**
@@ -99,6 +281,8 @@ public class Graph implements GraphADT {
    * @param String vertex2 vertex to add edge to
    */
   public void addEdge(String vertex1, String vertex2) {
+    this.thaw();
+
     // make sure both vertexes are not null
     if (vertex1 == null || vertex2 == null) {
       return;
@@ -115,9 +299,15 @@ public class Graph implements GraphADT {
     }
 
     // need to add edge vertex1 -> vertex2
-    // make sure edge is not already in graph and add if it is not
-    if (!this.vertices.get(vertex1).contains(vertex2)) {
-      this.vertices.get(vertex1).add(vertex2);
+    // add() only adds the edge if it is not already in the graph
+    if (this.vertices.get(vertex1).add(vertex2)) {
+      this.predecessors.get(vertex2).add(vertex1);
+      this.edges++;
+
+      this.frozen = null;
+      for (GraphListener listener : this.listeners) {
+        listener.edgeAdded(vertex1, vertex2);
+      }
     }
   }
 
@@ -134,6 +324,8 @@ public class Graph implements GraphADT {
    * @param String vertex2 vertex to remove edge to
    */
   public void removeEdge(String vertex1, String vertex2) {
+    this.thaw();
+
     // make sure both vertexes are not null
     if (vertex1 == null || vertex2 == null) {
       return;
@@ -144,30 +336,172 @@ public class Graph implements GraphADT {
       return;
     }
     
-    // make sure edge is in graph and then remove it
-    if (this.vertices.get(vertex1).contains(vertex2)) {
-      this.vertices.get(vertex1).remove(vertex2);
+    // remove() only removes the edge if it is in the graph
+    if (this.vertices.get(vertex1).remove(vertex2)) {
+      this.predecessors.get(vertex2).remove(vertex1);
+      this.edges--;
+
+      this.frozen = null;
+      for (GraphListener listener : this.listeners) {
+        listener.edgeRemoved(vertex1, vertex2);
+      }
     }
   }
 
+  /**
+   * Makes predecessors the only vertices with an edge to vertex. (edges are directed)
+   *
+   * Missing vertices are added like addEdge() does. Only the edges that differ are removed or
+   * added, and listeners are notified of each one like removeEdge() and addEdge() do. This looks up
+   * every vertex once, where doing the same with hasEdge(), removeEdge() and addEdge() looks up
+   * both ends of every edge several times.
+   *
+   * @param String vertex vertex to set the predecessors of
+   * @param Set<String> predecessors every vertex that should have an edge to vertex, null vertices
+   *        are skipped
+   * @return int amount of edges removed and added
+   */
+  public int setPredecessors(String vertex, Set<String> predecessors) {
+    this.thaw();
+
+    if (vertex == null || predecessors == null) {
+      return 0;
+    }
+
+    Set<String> current = this.predecessors.get(vertex);
+    if (current == null) {
+      this.addVertex(vertex);
+      current = this.predecessors.get(vertex);
+    }
+
+    // predecessors that were dropped, collected first so listeners never see a half removed edge
+    List<String> dropped = null;
+    for (String predecessor : current) {
+      if (!predecessors.contains(predecessor)) {
+        if (dropped == null) {
+          dropped = new ArrayList<String>();
+        }
+        dropped.add(predecessor);
+      }
+    }
+    int changed = 0;
+    if (dropped != null) {
+      for (String predecessor : dropped) {
+        current.remove(predecessor);
+        this.vertices.get(predecessor).remove(vertex);
+        this.edges--;
+        changed++;
+
+        this.frozen = null;
+        for (GraphListener listener : this.listeners) {
+          listener.edgeRemoved(predecessor, vertex);
+        }
+      }
+    }
+
+    // predecessors that are new, edges that are already there are left alone
+    for (String predecessor : predecessors) {
+      if (predecessor == null || current.contains(predecessor)) {
+        continue;
+      }
+      Set<String> successors = this.vertices.get(predecessor);
+      if (successors == null) {
+        this.addVertex(predecessor);
+        successors = this.vertices.get(predecessor);
+      }
+      successors.add(vertex);
+      current.add(predecessor);
+      this.edges++;
+      changed++;
+
+      this.frozen = null;
+      for (GraphListener listener : this.listeners) {
+        listener.edgeAdded(predecessor, vertex);
+      }
+    }
+    return changed;
+  }
+
   /**
    * Returns a Set that contains all the vertices
    * 
    * @return Set<String> set of vertices
    */
   public Set<String> getAllVertices() {
+    if (this.vertices == null) {
+      return this.frozen.getAllVertices();
+    }
     return this.vertices.keySet();
   }
 
+  /**
+   * Returns whether the edge from vertex1 to vertex2 is in the graph (edge is directed)
+   * 
+   * Constant time, no matter how many edges either vertex has
+   * 
+   * @param String vertex1 vertex the edge goes from
+   * @param String vertex2 vertex the edge goes to
+   * 
+   * @return boolean true if the edge is in the graph, false otherwise or if either vertex is null
+   */
+  public boolean hasEdge(String vertex1, String vertex2) {
+    if (vertex1 == null || vertex2 == null) {
+      return false;
+    }
+    if (this.vertices == null) {
+      return this.frozen.hasEdge(vertex1, vertex2);
+    }
+
+    Set<String> adjacent = this.vertices.get(vertex1);
+    return adjacent != null && adjacent.contains(vertex2);
+  }
+
   /**
    * Get all the neighbor (adjacent) vertices of a vertex
    * 
    * @param String vertex the vertex you want to get neighbors of
    * 
-   * @return List<String> list of adjacent vertices
+   * The list is a read-only view, nothing is copied. It reflects later changes to the graph, so
+   * copy it first if the graph is changed while iterating over it.
+   * 
+   * @return List<String> view of the adjacent vertices in the order the edges were added, or null
+   *         if vertex is not in the graph
    */
   public List<String> getAdjacentVerticesOf(String vertex) {
-    return this.vertices.get(vertex);
+    if (this.vertices == null) {
+      return this.frozen.getAdjacentVerticesOf(vertex);
+    }
+    return viewOf(this.vertices.get(vertex));
+  }
+
+  /**
+   * Get all the predecessor vertices of a vertex (every vertex that has an edge to it)
+   * 
+   * Lookup is a single HashMap get against the reverse adjacency index, so it does not depend on
+   * the size of the graph
+   * 
+   * @param String vertex the vertex you want to get predecessors of
+   * 
+   * Like getAdjacentVerticesOf() the list is a read-only view that reflects later changes.
+   * 
+   * @return List<String> view of the predecessor vertices in the order the edges were added, or
+   *         null if vertex is not in the graph
+   */
+  public List<String> getPredecessorsOf(String vertex) {
+    if (this.vertices == null) {
+      return this.frozen.getPredecessorsOf(vertex);
+    }
+    return viewOf(this.predecessors.get(vertex));
+  }
+
+  /**
+   * Wraps an adjacency set in a read-only list so callers cannot change the graph through it
+   * 
+   * @param adjacent set to wrap, may be null
+   * @return List<String> view of the set, or null if adjacent is null
+   */
+  private static List<String> viewOf(Set<String> adjacent) {
+    return adjacent == null ? null : new SetView(adjacent);
   }
 
   /**
@@ -176,14 +510,10 @@ public class Graph implements GraphADT {
    * @return int the number of edges
    */
   public int size() {
-    int edges = 0;
-    
-    // iterate through all vertices and sum the amount of edges for each
-    for (String v: this.vertices.keySet()) {
-      edges += this.vertices.get(v).size();
+    if (this.vertices == null) {
+      return this.frozen.size();
     }
-    
-    return edges;
+    return this.edges;
   }
 
   /**
@@ -192,7 +522,135 @@ public class Graph implements GraphADT {
    * @return int the number of vertices
    */
   public int order() {
+    if (this.vertices == null) {
+      return this.frozen.order();
+    }
     return this.vertices.size();
   }
 
+  /**
+   * Returns the copy freeze() returned last, or the IndexedGraph this graph was created from, if
+   * the graph has not changed since, without building a new one
+   * 
+   * @return IndexedGraph up to date frozen copy, or null if the graph changed since the last
+   *         freeze()
+   */
+  public IndexedGraph getFrozen() {
+    return this.frozen;
+  }
+
+  /**
+   * Returns a read-only CompactGraph copy of this graph.
+   * 
+   * Vertices are interned to int ids and edges are packed into int arrays, which takes far less
+   * memory than the HashMaps of sets and is much faster to traverse. Later changes to this
+   * graph are not reflected in the copy. The copy is kept, so calling freeze() again before the
+   * graph changes returns the same object without rebuilding it.
+   * 
+   * A graph created from an OffHeapGraph is copied onto the heap here. Use getFrozen() to traverse
+   * it where it is instead.
+   * 
+   * @return CompactGraph frozen copy of this graph
+   */
+  public CompactGraph freeze() {
+    if (this.frozen instanceof CompactGraph) {
+      return (CompactGraph) this.frozen;
+    }
+    this.thaw();
+
+    int order = this.vertices.size();
+
+    // intern every vertex to an int id
+    String[] names = new String[order];
+    Map<String, Integer> ids = new HashMap<String, Integer>((int) (order / 0.75f) + 1);
+    for (String v : this.vertices.keySet()) {
+      ids.put(v, ids.size());
+      names[ids.size() - 1] = v;
+    }
+
+    // pack outgoing and incoming edges keeping the order of the adjacency lists
+    int size = this.size();
+    int[] offsets = new int[order + 1];
+    int[] targets = new int[size];
+    int[] predecessorOffsets = new int[order + 1];
+    int[] predecessorSources = new int[size];
+    for (int i = 0; i < order; i++) {
+      offsets[i + 1] = offsets[i];
+      for (String successor : this.vertices.get(names[i])) {
+        targets[offsets[i + 1]++] = ids.get(successor);
+      }
+
+      predecessorOffsets[i + 1] = predecessorOffsets[i];
+      for (String predecessor : this.predecessors.get(names[i])) {
+        predecessorSources[predecessorOffsets[i + 1]++] = ids.get(predecessor);
+      }
+    }
+
+    CompactGraph compact =
+        new CompactGraph(names, offsets, targets, predecessorOffsets, predecessorSources);
+    this.frozen = compact;
+    return compact;
+  }
+
+  /**
+   * Read-only List<String> view over an adjacency set
+   * 
+   * Iteration, size() and contains() go straight to the set. The set has no indexes, so get() walks
+   * it from the start and the view is meant to be iterated rather than indexed.
+   */
+  private static class SetView extends AbstractList<String> {
+    private final Set<String> adjacent;
+
+    SetView(Set<String> adjacent) {
+      this.adjacent = adjacent;
+    }
+
+    @Override
+    public String get(int index) {
+      if (index < 0 || index >= this.adjacent.size()) {
+        throw new IndexOutOfBoundsException("Index: " + index);
+      }
+      Iterator<String> it = this.adjacent.iterator();
+      for (int i = 0; i < index; i++) {
+        it.next();
+      }
+      return it.next();
+    }
+
+    @Override
+    public int size() {
+      return this.adjacent.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return this.adjacent.contains(o);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return Collections.unmodifiableSet(this.adjacent).iterator();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o == this) {
+        return true;
+      }
+      if (!(o instanceof List)) {
+        return false;
+      }
+
+      // walk both lists once instead of indexing into the set
+      Iterator<String> it = this.adjacent.iterator();
+      Iterator<?> other = ((List<?>) o).iterator();
+      while (it.hasNext() && other.hasNext()) {
+        if (!it.next().equals(other.next())) {
+          return false;
+        }
+      }
+      return !it.hasNext() && !other.hasNext();
+    }
+  }
+
 }
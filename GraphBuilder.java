@@ -0,0 +1,348 @@
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Builds a Graph from a large amount of edges at once.
+ *
+ * Calling Graph.addEdge() once per edge pays for a HashMap lookup per vertex plus a LinkedHashSet
+ * entry per edge. GraphBuilder only interns vertex names to int ids, in an open addressing table
+ * that is later handed to the CompactGraph as is, and appends edges to int arrays, duplicates
+ * included. build() then sorts the edges by vertex with a counting sort, drops duplicates and packs
+ * them straight into a CompactGraph, all in time linear in the amount of edges.
+ *
+ * The resulting Graph has exactly the vertices, edges and edge order that the same
+ * addVertex()/addEdge() calls on an empty Graph would have produced. Null vertices are ignored.
+ */
+public class GraphBuilder {
+
+  /**
+   * id -> vertex name, ids are handed out in the order vertices are first seen
+   */
+  private String[] names;
+  private int order;
+
+  /**
+   * vertex name -> id, an open addressing table with the same slots as the index of a
+   * BufferVertexTable. Every slot holds the hash of the name in the upper half and id + 1 in the
+   * lower half, or 0 if it is empty, so probing past other names does not have to load them.
+   */
+  private long[] index;
+
+  /**
+   * Every edge added so far in the order it was added, duplicates included
+   */
+  private int[] sources;
+  private int[] targets;
+  private int edges;
+
+  /*
+   * Default no-argument constructor
+   */
+  public GraphBuilder() {
+    this(16, 16);
+  }
+
+  /**
+   * Creates a builder sized for the given amount of vertices and edges, so nothing has to be
+   * resized while they are added. Both are only hints, more can be added.
+   *
+   * @param expectedVertices amount of vertices expected
+   * @param expectedEdges amount of edges expected, duplicates included
+   */
+  public GraphBuilder(int expectedVertices, int expectedEdges) {
+    expectedVertices = Math.min(Math.max(expectedVertices, 1), BufferVertexTable.MAX_SIZE);
+    expectedEdges = Math.max(expectedEdges, 1);
+    this.names = new String[expectedVertices];
+    this.index = new long[BufferVertexTable.indexCapacityFor(expectedVertices)];
+    this.sources = new int[expectedEdges];
+    this.targets = new int[expectedEdges];
+  }
+
+  /**
+   * Add new vertex to the graph being built, does nothing if vertex is null or was already added
+   *
+   * @param vertex to add
+   */
+  public void addVertex(String vertex) {
+    if (vertex != null) {
+      this.intern(vertex);
+    }
+  }
+
+  /**
+   * Add the edge from vertex1 to vertex2 to the graph being built, adding either vertex if
+   * necessary. Duplicate edges are dropped by build(). Does nothing if either vertex is null.
+   *
+   * @param vertex1 vertex to add edge from
+   * @param vertex2 vertex to add edge to
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    if (vertex1 == null || vertex2 == null) {
+      return;
+    }
+
+    int source = this.intern(vertex1);
+    int target = this.intern(vertex2);
+    this.ensureEdgeCapacity(this.edges + 1);
+    this.sources[this.edges] = source;
+    this.targets[this.edges] = target;
+    this.edges++;
+  }
+
+  /**
+   * Adds every edge of an iterator, each one given as a {vertex1, vertex2} pair
+   *
+   * @param edges {vertex to add edge from, vertex to add edge to} pairs
+   */
+  public void addEdges(Iterator<String[]> edges) {
+    while (edges.hasNext()) {
+      String[] edge = edges.next();
+      this.addEdge(edge[0], edge[1]);
+    }
+  }
+
+  /**
+   * Adds every vertex and edge of an existing graph, keeping its edge order. A graph that has not
+   * changed since it was frozen or built is copied from its IndexedGraph.
+   *
+   * @param graph to copy vertices and edges from
+   */
+  public void addGraph(Graph graph) {
+    if (graph.getFrozen() != null) {
+      this.addGraph(graph.getFrozen());
+      return;
+    }
+    for (String vertex : graph.getAllVertices()) {
+      this.addVertex(vertex);
+      for (String successor : graph.getAdjacentVerticesOf(vertex)) {
+        this.addEdge(vertex, successor);
+      }
+    }
+  }
+
+  /**
+   * Adds every vertex and edge of an IndexedGraph, keeping its edge order. Only the vertex names
+   * are looked up, edges are copied as ids.
+   *
+   * @param graph to copy vertices and edges from
+   */
+  public void addGraph(IndexedGraph graph) {
+    int[] ids = new int[graph.order()];
+    for (int id = 0; id < ids.length; id++) {
+      ids[id] = this.intern(graph.nameOf(id));
+    }
+
+    this.ensureEdgeCapacity(this.edges + graph.size());
+    for (int source = 0; source < ids.length; source++) {
+      for (int e = graph.outStart(source); e < graph.outEnd(source); e++) {
+        this.sources[this.edges] = ids[source];
+        this.targets[this.edges] = ids[graph.outTarget(e)];
+        this.edges++;
+      }
+    }
+  }
+
+  /**
+   * Adds every vertex and edge added so far to an existing graph, the same as calling addVertex()
+   * and addEdge() on it directly would. Used to add to a graph that is already being changed, where
+   * rebuilding the whole graph would cost more than the new edges.
+   *
+   * @param graph to add vertices and edges to
+   */
+  public void addTo(Graph graph) {
+    for (int id = 0; id < this.order; id++) {
+      graph.addVertex(this.names[id]);
+    }
+    for (int e = 0; e < this.edges; e++) {
+      graph.addEdge(this.names[this.sources[e]], this.names[this.targets[e]]);
+    }
+  }
+
+  /**
+   * Returns the id of a vertex, adding it if it has not been seen yet
+   *
+   * @param vertex name of the vertex, non-null
+   * @return int id of the vertex
+   */
+  private int intern(String vertex) {
+    int hash = vertex.hashCode();
+    int mask = this.index.length - 1;
+    int slot = BufferVertexTable.slotOf(hash, mask);
+    for (long entry = this.index[slot]; entry != 0; entry = this.index[slot]) {
+      if ((int) (entry >>> 32) == hash) {
+        String name = this.names[(int) entry - 1];
+        if (name == vertex || name.equals(vertex)) {
+          return (int) entry - 1;
+        }
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    int id = this.order++;
+    if (id == this.names.length) {
+      this.names = Arrays.copyOf(this.names, id * 2);
+    }
+    this.names[id] = vertex;
+    this.index[slot] = ((long) hash << 32) | (id + 1);
+
+    // keep the table at most half full so probes stay short
+    if (2 * this.order > this.index.length) {
+      this.rehash(BufferVertexTable.indexCapacityFor(this.order));
+    }
+    return id;
+  }
+
+  /**
+   * Moves every vertex to a new table
+   *
+   * @param capacity amount of slots of the new table, a power of two
+   */
+  private void rehash(int capacity) {
+    long[] index = new long[capacity];
+    int mask = capacity - 1;
+    for (long entry : this.index) {
+      if (entry != 0) {
+        int slot = BufferVertexTable.slotOf((int) (entry >>> 32), mask);
+        while (index[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        index[slot] = entry;
+      }
+    }
+    this.index = index;
+  }
+
+  /**
+   * Builds the index handed to the ArrayVertexTable, with as many slots as ArrayVertexTable would
+   * use for order vertices. The builder's own table can be much larger when it was sized for more
+   * vertices than were added, and the CompactGraph keeps its index for as long as it lives.
+   *
+   * @return int[] slot -> id + 1, or 0 for an empty slot
+   */
+  private int[] compactIndex() {
+    int capacity = BufferVertexTable.indexCapacityFor(this.order);
+    int[] index = new int[capacity];
+    if (capacity == this.index.length) {
+      // same slots without the hashes
+      for (int slot = 0; slot < capacity; slot++) {
+        index[slot] = (int) this.index[slot];
+      }
+      return index;
+    }
+
+    int mask = capacity - 1;
+    for (long entry : this.index) {
+      if (entry != 0) {
+        int slot = BufferVertexTable.slotOf((int) (entry >>> 32), mask);
+        while (index[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        index[slot] = (int) entry;
+      }
+    }
+    return index;
+  }
+
+  /**
+   * Grows the edge arrays so they hold at least capacity edges
+   *
+   * @param capacity amount of edges needed
+   */
+  private void ensureEdgeCapacity(int capacity) {
+    if (capacity > this.sources.length) {
+      int length = Math.max(capacity, 2 * this.sources.length);
+      this.sources = Arrays.copyOf(this.sources, length);
+      this.targets = Arrays.copyOf(this.targets, length);
+    }
+  }
+
+  /**
+   * Returns a Graph with every vertex and edge added so far. The builder can keep being used
+   * afterwards, later additions do not affect graphs that were already built.
+   *
+   * The Graph is backed by a CompactGraph until it is changed for the first time, so reads and
+   * freeze() on it cost nothing extra. The first change builds its HashMaps and LinkedHashSets from
+   * the CompactGraph, which costs about as much as adding every edge with Graph.addEdge() would
+   * have (seconds for millions of edges). Graphs that will be changed a lot right away are better
+   * off built with addEdge(), graphs that are mostly queried should be built here.
+   *
+   * @return Graph the graph
+   */
+  public Graph build() {
+    int order = this.order;
+    String[] names = Arrays.copyOf(this.names, order);
+
+    // stable counting sort of the edges by source, so every source keeps its edges in the order
+    // they were added
+    int[] addedOffsets = countingOffsets(this.sources, this.edges, order);
+    int[] bySource = new int[this.edges];
+    int[] next = Arrays.copyOf(addedOffsets, order);
+    for (int e = 0; e < this.edges; e++) {
+      bySource[next[this.sources[e]]++] = e;
+    }
+
+    // pack outgoing edges, only keeping the first time an edge was added
+    boolean[] kept = new boolean[this.edges];
+    int[] seenFrom = new int[order];
+    Arrays.fill(seenFrom, -1);
+    int[] offsets = new int[order + 1];
+    int[] targets = new int[this.edges];
+    int size = 0;
+    for (int source = 0; source < order; source++) {
+      for (int i = addedOffsets[source]; i < addedOffsets[source + 1]; i++) {
+        int e = bySource[i];
+        int target = this.targets[e];
+        if (seenFrom[target] != source) {
+          seenFrom[target] = source;
+          kept[e] = true;
+          targets[size++] = target;
+        }
+      }
+      offsets[source + 1] = size;
+    }
+    targets = Arrays.copyOf(targets, size);
+
+    // pack incoming edges in the order they were added, like Graph does
+    int[] predecessorOffsets = new int[order + 1];
+    for (int e = 0; e < this.edges; e++) {
+      if (kept[e]) {
+        predecessorOffsets[this.targets[e] + 1]++;
+      }
+    }
+    for (int i = 0; i < order; i++) {
+      predecessorOffsets[i + 1] += predecessorOffsets[i];
+    }
+    int[] predecessorSources = new int[size];
+    next = Arrays.copyOf(predecessorOffsets, order);
+    for (int e = 0; e < this.edges; e++) {
+      if (kept[e]) {
+        predecessorSources[next[this.targets[e]]++] = this.sources[e];
+      }
+    }
+
+    VertexTable vertices = new ArrayVertexTable(names, this.compactIndex());
+    return new Graph(
+        new CompactGraph(vertices, offsets, targets, predecessorOffsets, predecessorSources));
+  }
+
+  /**
+   * Counts how many entries of keys[0 .. count - 1] there are of every value and turns the counts
+   * into offsets
+   *
+   * @param keys values from 0 to range - 1
+   * @param count amount of keys to count
+   * @param range amount of distinct values
+   * @return int[] offsets, length range + 1
+   */
+  private static int[] countingOffsets(int[] keys, int count, int range) {
+    int[] offsets = new int[range + 1];
+    for (int i = 0; i < count; i++) {
+      offsets[keys[i] + 1]++;
+    }
+    for (int i = 0; i < range; i++) {
+      offsets[i + 1] += offsets[i];
+    }
+    return offsets;
+  }
+
+}
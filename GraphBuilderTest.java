@@ -0,0 +1,190 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for GraphBuilder testing
+ */
+class GraphBuilderTest {
+
+  GraphBuilder builder;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    builder = new GraphBuilder();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    builder = null;
+  }
+
+  /**
+   * Builds a small graph with duplicate edges, a self loop, a lone vertex and null vertices
+   */
+  @Test
+  void testGraphBuilder_001_build_drops_duplicates() {
+    builder.addEdge("A", "C");
+    builder.addEdge("A", "B");
+    builder.addEdge("A", "C");
+    builder.addEdge("B", "B");
+    builder.addEdge("D", "B");
+    builder.addVertex("E");
+    builder.addVertex(null);
+    builder.addEdge("A", null);
+
+    Graph graph = builder.build();
+
+    if (graph.order() != 5) {
+      fail("Vertices should equal 5 but equals " + graph.order());
+    }
+    if (graph.size() != 4) {
+      fail("Edges should equal 4 but equals " + graph.size());
+    }
+    if (!graph.getAdjacentVerticesOf("A").equals(Arrays.asList("C", "B"))) {
+      fail("Adjacent vertices of A should be [C, B] but are " + graph.getAdjacentVerticesOf("A"));
+    }
+    if (!graph.getPredecessorsOf("B").equals(Arrays.asList("A", "B", "D"))) {
+      fail("Predecessors of B should be [A, B, D] but are " + graph.getPredecessorsOf("B"));
+    }
+    if (!graph.getAdjacentVerticesOf("E").isEmpty()) {
+      fail("E should have no adjacent vertices");
+    }
+  }
+
+  /**
+   * Builds the same random edges with addEdge() and with the builder and compares the graphs
+   */
+  @Test
+  void testGraphBuilder_002_matches_add_edge() {
+    Graph expected = new Graph();
+    Random random = new Random(3);
+    for (int i = 0; i < 5000; i++) {
+      String from = GraphGenerator.name(random.nextInt(200));
+      String to = GraphGenerator.name(random.nextInt(200));
+      expected.addEdge(from, to);
+      builder.addEdge(from, to);
+    }
+
+    Graph built = builder.build();
+
+    if (built.order() != expected.order() || built.size() != expected.size()) {
+      fail("Built graph has " + built.order() + " vertices and " + built.size()
+          + " edges but should have " + expected.order() + " and " + expected.size());
+    }
+    for (String v : expected.getAllVertices()) {
+      if (!built.getAdjacentVerticesOf(v).equals(expected.getAdjacentVerticesOf(v))) {
+        fail("Adjacent vertices of " + v + " do not match");
+      }
+      if (!built.getPredecessorsOf(v).equals(expected.getPredecessorsOf(v))) {
+        fail("Predecessors of " + v + " do not match");
+      }
+    }
+  }
+
+  /**
+   * A built graph can still be changed and keeps its edge count up to date
+   */
+  @Test
+  void testGraphBuilder_003_built_graph_can_change() {
+    builder.addEdges(Arrays.asList(new String[] {"A", "B"}, new String[] {"B", "C"}).iterator());
+    Graph graph = builder.build();
+
+    graph.addEdge("C", "D");
+    graph.removeVertex("B");
+
+    if (graph.order() != 3 || graph.size() != 1 || !graph.hasEdge("C", "D")) {
+      fail("Only edge C -> D should be left but there are " + graph.size() + " edges");
+    }
+    if (!graph.getAdjacentVerticesOf("A").isEmpty()) {
+      fail("A should have no edges but has " + graph.getAdjacentVerticesOf("A"));
+    }
+  }
+
+  /**
+   * Copying a frozen graph and adding the builder to a changed graph give the same graph as
+   * adding everything with addEdge()
+   */
+  @Test
+  void testGraphBuilder_004_add_graph_and_add_to() {
+    Graph expected = GraphGenerator.toGraph(GraphGenerator.randomDag(3000, 4, 7));
+    expected.freeze();
+    builder.addGraph(expected);
+    builder.addEdge("p0", "new");
+    builder.addEdge("p0", "p1");
+    Graph copied = builder.build();
+    expected.addEdge("p0", "new");
+    expected.addEdge("p0", "p1");
+
+    Graph changed = GraphGenerator.toGraph(GraphGenerator.randomDag(3000, 4, 7));
+    GraphBuilder additions = new GraphBuilder();
+    additions.addEdge("p0", "new");
+    additions.addEdge("p0", "p1");
+    additions.addTo(changed);
+
+    for (Graph graph : Arrays.asList(copied, changed)) {
+      if (graph.order() != expected.order() || graph.size() != expected.size()) {
+        fail("Graph has " + graph.order() + " vertices and " + graph.size()
+            + " edges but should have " + expected.order() + " and " + expected.size());
+      }
+      for (String v : expected.getAllVertices()) {
+        if (!graph.getAdjacentVerticesOf(v).equals(expected.getAdjacentVerticesOf(v))) {
+          fail("Adjacent vertices of " + v + " do not match");
+        }
+      }
+    }
+  }
+
+  /**
+   * A builder sized for far more vertices than are added still finds every vertex once built
+   */
+  @Test
+  void testGraphBuilder_005_oversized_builder() {
+    builder = new GraphBuilder(1 << 16, 1 << 16);
+    for (int i = 1; i < 300; i++) {
+      builder.addEdge(GraphGenerator.name(i / 2), GraphGenerator.name(i));
+    }
+
+    Graph graph = builder.build();
+
+    if (graph.order() != 300 || graph.size() != 299) {
+      fail("Graph should have 300 vertices and 299 edges but has " + graph.order() + " and "
+          + graph.size());
+    }
+    for (int i = 1; i < 300; i++) {
+      if (!graph.hasEdge(GraphGenerator.name(i / 2), GraphGenerator.name(i))) {
+        fail("Edge to " + GraphGenerator.name(i) + " is missing");
+      }
+    }
+    if (graph.getAdjacentVerticesOf("missing") != null) {
+      fail("missing should not be found");
+    }
+  }
+
+  /**
+   * Index capacities stop at 2^30 slots instead of overflowing
+   */
+  @Test
+  void testGraphBuilder_006_index_capacity_limit() {
+    if (BufferVertexTable.indexCapacityFor(BufferVertexTable.MAX_SIZE) != 1 << 30) {
+      fail("Capacity for MAX_SIZE should be 2^30 but is "
+          + BufferVertexTable.indexCapacityFor(BufferVertexTable.MAX_SIZE));
+    }
+    try {
+      BufferVertexTable.indexCapacityFor(BufferVertexTable.MAX_SIZE + 1);
+      fail("Capacity for more than MAX_SIZE should throw");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
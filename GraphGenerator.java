@@ -0,0 +1,302 @@
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates synthetic package registries for benchmarks and tests.
+ *
+ * A registry is an int[][] where registry[i] holds the dependencies of package i. Packages are
+ * named "p" + i and only ever depend on packages with a lower number, so every generated registry
+ * is acyclic. Generators taking a seed always return the same registry for the same seed.
+ */
+public class GraphGenerator {
+
+  /*
+   * Only static methods, no instances
+   */
+  private GraphGenerator() {}
+
+  /**
+   * Returns the name of a generated package
+   *
+   * @param i number of the package
+   * @return String name of the package
+   */
+  public static String name(int i) {
+    return "p" + i;
+  }
+
+  /**
+   * Every package depends on the one before it: p(n-1) -> ... -> p1 -> p0
+   *
+   * @param n amount of packages
+   * @return int[][] package -> dependencies
+   */
+  public static int[][] chain(int n) {
+    int[][] registry = new int[n][];
+    registry[0] = new int[0];
+    for (int i = 1; i < n; i++) {
+      registry[i] = new int[] {i - 1};
+    }
+    return registry;
+  }
+
+  /**
+   * The last package depends directly on every other package, which have no dependencies
+   *
+   * @param n amount of packages
+   * @return int[][] package -> dependencies
+   */
+  public static int[][] fanOut(int n) {
+    int[][] registry = new int[n][];
+    for (int i = 0; i < n - 1; i++) {
+      registry[i] = new int[0];
+    }
+    registry[n - 1] = new int[n - 1];
+    for (int i = 0; i < n - 1; i++) {
+      registry[n - 1][i] = i;
+    }
+    return registry;
+  }
+
+  /**
+   * Every package depends on up to 2 * averageDegree packages picked uniformly from the packages
+   * before it
+   *
+   * @param n amount of packages
+   * @param averageDegree average amount of direct dependencies
+   * @param seed for the random number generator
+   * @return int[][] package -> dependencies
+   */
+  public static int[][] randomDag(int n, int averageDegree, long seed) {
+    Random random = new Random(seed);
+    int[][] registry = new int[n][];
+    for (int i = 0; i < n; i++) {
+      int degree = Math.min(i, random.nextInt(2 * averageDegree + 1));
+      registry[i] = pickDistinct(random, degree, i, null, 0);
+    }
+    return registry;
+  }
+
+  /**
+   * Like randomDag() but packages are picked with probability proportional to how many packages
+   * already depend on them (preferential attachment), so a few hub packages end up with a huge
+   * amount of dependents, as in real registries
+   *
+   * @param n amount of packages
+   * @param averageDegree average amount of direct dependencies
+   * @param seed for the random number generator
+   * @return int[][] package -> dependencies
+   */
+  public static int[][] powerLaw(int n, int averageDegree, long seed) {
+    Random random = new Random(seed);
+    int[][] registry = new int[n][];
+
+    // every package appears once, plus once more per dependent, so picking a uniform entry
+    // picks packages proportional to their amount of dependents + 1
+    int[] weighted = new int[n + n * 2 * averageDegree];
+    int weightedSize = 0;
+
+    for (int i = 0; i < n; i++) {
+      int degree = Math.min(i, random.nextInt(2 * averageDegree + 1));
+      registry[i] = pickDistinct(random, degree, i, weighted, weightedSize);
+      for (int dependency : registry[i]) {
+        weighted[weightedSize++] = dependency;
+      }
+      weighted[weightedSize++] = i;
+    }
+    return registry;
+  }
+
+  /**
+   * Picks distinct packages below bound
+   *
+   * @param random number generator
+   * @param count amount of packages to pick, at most bound
+   * @param bound packages are picked from 0 to bound - 1
+   * @param weighted if not null, pick uniformly from weighted[0 .. weightedSize - 1] instead
+   * @param weightedSize amount of entries in weighted
+   * @return int[] the picked packages, sorted
+   */
+  private static int[] pickDistinct(Random random, int count, int bound, int[] weighted,
+      int weightedSize) {
+    int[] picked = new int[count];
+    int found = 0;
+    int attempts = 0;
+    while (found < count) {
+      int candidate;
+      // fall back to uniform picks if the weighted ones keep colliding
+      if (weighted != null && weightedSize > 0 && attempts++ < 8 * count) {
+        candidate = weighted[random.nextInt(weightedSize)];
+      } else {
+        candidate = random.nextInt(bound);
+      }
+
+      boolean duplicate = false;
+      for (int i = 0; i < found; i++) {
+        if (picked[i] == candidate) {
+          duplicate = true;
+          break;
+        }
+      }
+      if (!duplicate) {
+        picked[found++] = candidate;
+      }
+    }
+    Arrays.sort(picked);
+    return picked;
+  }
+
+  /**
+   * Gives every package of a registry majors * minors versions named "major.minor.0", for
+   * DependencyResolver benchmarks and tests. Major versions are numbered from 1, since a caret range
+   * on major version 0 such as "^0.0.0" only accepts that one exact version.
+   *
+   * Every version depends on the same major version of each dependency ("^major.0.0"), except
+   * that the newest minor version of every major version depends on a random major version. A
+   * resolver that always tries the newest version first keeps running into those and has to
+   * back off to older minor versions, while a solution always exists.
+   *
+   * @param registry package -> dependencies
+   * @param majors amount of major versions per package
+   * @param minors amount of minor versions per major version
+   * @param seed for the random number generator
+   * @return PackageRegistry with the versions
+   */
+  public static PackageRegistry versioned(int[][] registry, int majors, int minors, long seed) {
+    Random random = new Random(seed);
+    VersionRange[] carets = new VersionRange[majors + 1];
+    for (int major = 1; major <= majors; major++) {
+      carets[major] = new VersionRange("^" + major + ".0.0");
+    }
+
+    PackageRegistry versioned = new PackageRegistry();
+    for (int i = 0; i < registry.length; i++) {
+      for (int major = 1; major <= majors; major++) {
+        for (int minor = 0; minor < minors; minor++) {
+          int dependencyMajor = minor == minors - 1 ? 1 + random.nextInt(majors) : major;
+          Map<String, VersionRange> dependencies = new LinkedHashMap<String, VersionRange>();
+          for (int dependency : registry[i]) {
+            dependencies.put(name(dependency), carets[dependencyMajor]);
+          }
+          versioned.addVersion(name(i), new Version(major + "." + minor + ".0"), dependencies);
+        }
+      }
+    }
+    return versioned;
+  }
+
+  /**
+   * Returns the amount of dependency edges in a registry
+   *
+   * @param registry package -> dependencies
+   * @return long amount of edges
+   */
+  public static long edgeCount(int[][] registry) {
+    long edges = 0;
+    for (int[] dependencies : registry) {
+      edges += dependencies.length;
+    }
+    return edges;
+  }
+
+  /**
+   * Builds a Graph from a registry the same way PackageManager does, with an edge from every
+   * dependency to the package that depends on it
+   *
+   * @param registry package -> dependencies
+   * @return Graph the dependency graph
+   */
+  public static Graph toGraph(int[][] registry) {
+    Graph graph = new Graph();
+    for (int i = 0; i < registry.length; i++) {
+      graph.addVertex(name(i));
+      for (int dependency : registry[i]) {
+        graph.addEdge(name(dependency), name(i));
+      }
+    }
+    return graph;
+  }
+
+  /**
+   * Writes a registry as a package file that PackageManager.constructGraph() can read
+   *
+   * @param registry package -> dependencies
+   * @param path of the file to write
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeJson(int[][] registry, String path) throws IOException {
+    try (Writer out = new BufferedWriter(new FileWriter(path), 1 << 16)) {
+      out.write("{\"packages\": [\n");
+      for (int i = 0; i < registry.length; i++) {
+        out.write("{\"name\": \"" + name(i) + "\", \"dependencies\": [");
+        for (int d = 0; d < registry[i].length; d++) {
+          out.write((d > 0 ? ", \"" : "\"") + name(registry[i][d]) + "\"");
+        }
+        out.write(i < registry.length - 1 ? "]},\n" : "]}\n");
+      }
+      out.write("]}\n");
+    }
+  }
+
+  /**
+   * Writes a change feed for a registry that PackageManager.applyChanges() can read. Most changes
+   * replace the dependencies of an existing package, keeping some of the old ones and picking a new
+   * one with a lower number so the graph stays acyclic. The rest add packages numbered from
+   * registry.length up, or remove a package.
+   *
+   * @param registry package -> dependencies the changes apply to
+   * @param changes amount of changes to write
+   * @param seed for the random number generator
+   * @param path of the file to write
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public static void writeChanges(int[][] registry, int changes, long seed, String path)
+      throws IOException {
+    Random random = new Random(seed);
+    int n = registry.length;
+    int added = 0;
+    try (Writer out = new BufferedWriter(new FileWriter(path), 1 << 16)) {
+      for (int c = 0; c < changes; c++) {
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+          out.write("{\"op\": \"remove\", \"name\": \"" + name(random.nextInt(n)) + "\"}\n");
+          continue;
+        }
+
+        StringBuilder dependencies = new StringBuilder();
+        String pkg;
+        if (kind < 3) {
+          pkg = name(n + added++);
+          for (int d = random.nextInt(4); d > 0; d--) {
+            dependencies.append(dependencies.length() > 0 ? ", \"" : "\"")
+                .append(name(random.nextInt(n))).append('"');
+          }
+        } else {
+          int i = random.nextInt(n);
+          pkg = name(i);
+          for (int dependency : registry[i]) {
+            if (random.nextBoolean()) {
+              dependencies.append(dependencies.length() > 0 ? ", \"" : "\"")
+                  .append(name(dependency)).append('"');
+            }
+          }
+          if (i > 0) {
+            dependencies.append(dependencies.length() > 0 ? ", \"" : "\"")
+                .append(name(random.nextInt(i))).append('"');
+          }
+        }
+        out.write("{\"op\": \"" + (kind < 3 ? "add" : "update") + "\", \"name\": \"" + pkg
+            + "\", \"dependencies\": [" + dependencies + "]}\n");
+      }
+    }
+  }
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Receives a callback every time a Graph is actually changed. Calls that end up not changing the
+ * graph (null arguments, duplicate vertices or edges, missing edges) do not notify listeners.
+ *
+ * Register with Graph.addListener(GraphListener).
+ */
+public interface GraphListener {
+
+  /**
+   * Called after a vertex is added to the graph
+   *
+   * @param vertex the vertex that was added
+   */
+  public void vertexAdded(String vertex);
+
+  /**
+   * Called after a vertex and all of its edges are removed from the graph
+   *
+   * @param vertex the vertex that was removed
+   */
+  public void vertexRemoved(String vertex);
+
+  /**
+   * Called after the edge from vertex1 to vertex2 is added to the graph
+   *
+   * @param vertex1 vertex the edge goes from
+   * @param vertex2 vertex the edge goes to
+   */
+  public void edgeAdded(String vertex1, String vertex2);
+
+  /**
+   * Called after the edge from vertex1 to vertex2 is removed from the graph
+   *
+   * @param vertex1 vertex the edge went from
+   * @param vertex2 vertex the edge went to
+   */
+  public void edgeRemoved(String vertex1, String vertex2);
+
+}
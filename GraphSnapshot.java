@@ -0,0 +1,237 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes CompactGraphs in a versioned binary format, so a graph can be built from JSON
+ * once and then loaded on every start without parsing anything.
+ *
+ * All numbers are 4 byte big-endian ints and every section starts on a 4 byte boundary:
+ *
+ * header: magic, version, vertex count V, edge count E, index capacity C, name byte count N
+ *
+ * string table: name offsets int[V + 1], name bytes byte[N] (UTF-8, padded to a multiple of 4),
+ * hash index int[C] (see BufferVertexTable)
+ *
+ * edges: offsets int[V + 1], targets int[E], predecessor offsets int[V + 1], predecessor sources
+ * int[E]
+ *
+ * load() memory-maps the file. The edge arrays are copied out of the mapping in bulk and the
+ * string table is used in place, so names are only decoded when they are asked for.
+ * loadOffHeap() uses the edge arrays in place as well. A single mapping is limited to 2 GB, which
+ * is far more than the largest registries need.
+ */
+public class GraphSnapshot {
+
+  /**
+   * "PKGS"
+   */
+  static final int MAGIC = 0x504B4753;
+
+  /**
+   * Current format version, bump it whenever the layout changes
+   */
+  static final int VERSION = 1;
+
+  private static final int HEADER_BYTES = 6 * 4;
+
+  /*
+   * Only static methods, no instances
+   */
+  private GraphSnapshot() {}
+
+  /**
+   * Writes a graph to a snapshot file, replacing the file if it exists
+   *
+   * @param graph to write
+   * @param path of the snapshot file
+   *
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(IndexedGraph graph, String path) throws IOException {
+    int order = graph.order();
+    String[] names = new String[order];
+    byte[][] encoded = new byte[order][];
+    int nameBytes = 0;
+    for (int id = 0; id < order; id++) {
+      names[id] = graph.nameOf(id);
+      encoded[id] = names[id].getBytes(StandardCharsets.UTF_8);
+      nameBytes += encoded[id].length;
+    }
+    int capacity = BufferVertexTable.indexCapacityFor(order);
+
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), 1 << 16))) {
+      // header
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(order);
+      out.writeInt(graph.size());
+      out.writeInt(capacity);
+      out.writeInt(nameBytes);
+
+      // string table
+      int offset = 0;
+      out.writeInt(0);
+      for (byte[] name : encoded) {
+        offset += name.length;
+        out.writeInt(offset);
+      }
+      for (byte[] name : encoded) {
+        out.write(name);
+      }
+      for (int i = nameBytes; i % 4 != 0; i++) {
+        out.writeByte(0);
+      }
+      for (int slot : BufferVertexTable.buildIndex(names, capacity)) {
+        out.writeInt(slot);
+      }
+
+      // outgoing edges
+      for (int id = 0; id < order; id++) {
+        out.writeInt(graph.outStart(id));
+      }
+      out.writeInt(graph.size());
+      for (int e = 0; e < graph.size(); e++) {
+        out.writeInt(graph.outTarget(e));
+      }
+
+      // incoming edges
+      for (int id = 0; id < order; id++) {
+        out.writeInt(graph.inStart(id));
+      }
+      out.writeInt(graph.size());
+      for (int e = 0; e < graph.size(); e++) {
+        out.writeInt(graph.inSource(e));
+      }
+    }
+  }
+
+  /**
+   * Loads a graph from a snapshot file written by write()
+   *
+   * @param path of the snapshot file
+   * @return CompactGraph the graph stored in the file
+   *
+   * @throws IOException if the file cannot be read, is not a snapshot, or was written by an
+   *         unsupported version
+   */
+  public static CompactGraph load(String path) throws IOException {
+    Mapping mapping = map(path);
+    int order = mapping.order;
+    int size = mapping.size;
+
+    // copy the edge arrays out of the mapping in bulk
+    IntBuffer ints =
+        ((ByteBuffer) mapping.buffer.duplicate().position(mapping.edgesPosition)).asIntBuffer();
+    int[] offsets = new int[order + 1];
+    int[] targets = new int[size];
+    int[] predecessorOffsets = new int[order + 1];
+    int[] predecessorSources = new int[size];
+    ints.get(offsets).get(targets).get(predecessorOffsets).get(predecessorSources);
+
+    return new CompactGraph(mapping.vertices, offsets, targets, predecessorOffsets,
+        predecessorSources);
+  }
+
+  /**
+   * Loads a graph from a snapshot file written by write() without copying anything onto the heap.
+   * The string table and the edge arrays are all read straight out of the memory-mapped file, so
+   * the graph costs the garbage collector a handful of objects no matter how big it is.
+   *
+   * @param path of the snapshot file
+   * @return OffHeapGraph the graph stored in the file
+   *
+   * @throws IOException if the file cannot be read, is not a snapshot, or was written by an
+   *         unsupported version
+   */
+  public static OffHeapGraph loadOffHeap(String path) throws IOException {
+    Mapping mapping = map(path);
+    int order = mapping.order;
+    int size = mapping.size;
+
+    int position = mapping.edgesPosition;
+    IntBuffer offsets = OffHeapGraph.ints(mapping.buffer, position, order + 1);
+    position += 4 * (order + 1);
+    IntBuffer targets = OffHeapGraph.ints(mapping.buffer, position, size);
+    position += 4 * size;
+    IntBuffer predecessorOffsets = OffHeapGraph.ints(mapping.buffer, position, order + 1);
+    position += 4 * (order + 1);
+    IntBuffer predecessorSources = OffHeapGraph.ints(mapping.buffer, position, size);
+
+    return new OffHeapGraph(mapping.vertices, offsets, targets, predecessorOffsets,
+        predecessorSources, mapping.buffer.capacity());
+  }
+
+  /**
+   * Memory-maps a snapshot file and checks its header
+   *
+   * @param path of the snapshot file
+   * @return Mapping the mapped file and where its sections start
+   *
+   * @throws IOException if the file cannot be read, is not a snapshot, or was written by an
+   *         unsupported version
+   */
+  private static Mapping map(String path) throws IOException {
+    MappedByteBuffer buffer;
+    try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+      // the mapping stays valid after the channel is closed
+      buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+
+    if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+      throw new IOException(path + " is not a graph snapshot");
+    }
+    if (buffer.getInt(4) != VERSION) {
+      throw new IOException(
+          path + " has unsupported snapshot version " + buffer.getInt(4) + ", expected " + VERSION);
+    }
+    int order = buffer.getInt(8);
+    int size = buffer.getInt(12);
+    int capacity = buffer.getInt(16);
+    int nameBytes = buffer.getInt(20);
+
+    // work out where every section starts
+    int nameOffsetsPosition = HEADER_BYTES;
+    int namesPosition = nameOffsetsPosition + 4 * (order + 1);
+    int indexPosition = namesPosition + (nameBytes + 3) / 4 * 4;
+    int edgesPosition = indexPosition + 4 * capacity;
+    long expected = edgesPosition + 8L * (order + 1) + 8L * size;
+    if (buffer.capacity() != expected) {
+      throw new IOException(path + " is truncated or corrupt, expected " + expected
+          + " bytes but found " + buffer.capacity());
+    }
+
+    VertexTable vertices = new BufferVertexTable(buffer, order, nameOffsetsPosition,
+        namesPosition, indexPosition, capacity);
+    return new Mapping(buffer, order, size, vertices, edgesPosition);
+  }
+
+  /**
+   * A mapped snapshot file with its header read
+   */
+  private static class Mapping {
+    final ByteBuffer buffer;
+    final int order;
+    final int size;
+    final VertexTable vertices;
+    final int edgesPosition;
+
+    Mapping(ByteBuffer buffer, int order, int size, VertexTable vertices, int edgesPosition) {
+      this.buffer = buffer;
+      this.order = order;
+      this.size = size;
+      this.vertices = vertices;
+      this.edgesPosition = edgesPosition;
+    }
+  }
+
+}
@@ -0,0 +1,107 @@
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for GraphSnapshot testing
+ */
+class GraphSnapshotTest {
+
+  File file;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    file = File.createTempFile("graph", ".snapshot");
+    file.deleteOnExit();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    file.delete();
+    file = null;
+  }
+
+  /**
+   * Writes a graph and loads it back, every vertex and edge should survive
+   */
+  @Test
+  void testSnapshot_001_round_trip() throws IOException {
+    Graph graph = new Graph();
+    graph.addEdge("A", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("C", "B");
+    graph.addVertex("D");
+    graph.addVertex("\u00fcnicode");
+
+    GraphSnapshot.write(graph.freeze(), file.getPath());
+    CompactGraph loaded = GraphSnapshot.load(file.getPath());
+
+    if (loaded.order() != 5 || loaded.size() != 3) {
+      fail("Expected 5 vertices and 3 edges but got " + loaded.order() + " and " + loaded.size());
+    }
+    if (!loaded.getAllVertices().equals(graph.getAllVertices())) {
+      fail("Vertices should be " + graph.getAllVertices() + " but are " + loaded.getAllVertices());
+    }
+    for (String v : graph.getAllVertices()) {
+      if (!loaded.getAdjacentVerticesOf(v).equals(graph.getAdjacentVerticesOf(v))) {
+        fail("Adjacent vertices of " + v + " should be " + graph.getAdjacentVerticesOf(v)
+            + " but are " + loaded.getAdjacentVerticesOf(v));
+      }
+      if (!loaded.getPredecessorsOf(v).equals(graph.getPredecessorsOf(v))) {
+        fail("Predecessors of " + v + " should be " + graph.getPredecessorsOf(v) + " but are "
+            + loaded.getPredecessorsOf(v));
+      }
+    }
+    if (loaded.idOf("missing") != -1) {
+      fail("idOf() should return -1 for a missing vertex");
+    }
+  }
+
+  /**
+   * A graph created from a snapshot can still be changed
+   */
+  @Test
+  void testSnapshot_002_loaded_graph_is_mutable() throws IOException {
+    Graph graph = new Graph();
+    graph.addEdge("A", "B");
+    GraphSnapshot.write(graph.freeze(), file.getPath());
+
+    Graph loaded = new Graph(GraphSnapshot.load(file.getPath()));
+    loaded.addEdge("B", "C");
+
+    if (loaded.order() != 3 || loaded.size() != 2) {
+      fail("Expected 3 vertices and 2 edges but got " + loaded.order() + " and " + loaded.size());
+    }
+    if (!loaded.getPredecessorsOf("B").equals(Arrays.asList("A"))) {
+      fail("Predecessors of B should be [A] but are " + loaded.getPredecessorsOf("B"));
+    }
+  }
+
+  /**
+   * Files that are not snapshots are rejected
+   */
+  @Test
+  void testSnapshot_003_reject_invalid_file() throws IOException {
+    try (FileOutputStream out = new FileOutputStream(file)) {
+      out.write("{\"packages\": []}".getBytes("UTF-8"));
+    }
+
+    try {
+      GraphSnapshot.load(file.getPath());
+      fail("Loading a JSON file as a snapshot should throw an IOException");
+    } catch (IOException e) {
+    }
+  }
+
+}
@@ -1,4 +1,6 @@
 import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
 import java.util.Random;
 import org.junit.Assert;
 import org.junit.jupiter.api.AfterEach;
@@ -202,6 +204,187 @@ class GraphTest {
       fail("Vertices should equal 1 but equals " + graph.order());
     }
   }
- 
+  
+  /**
+   * Adds edges into a vertex and checks that the reverse index reports them as predecessors,
+   * including after one of the edges is removed
+   */
+  @Test
+  void testGraph_009_get_predecessors() {
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "A");
+    graph.addEdge("C", "B");
+    
+    if (!graph.getPredecessorsOf("A").equals(Arrays.asList("B", "C"))) {
+      fail("Predecessors of A should be [B, C] but are " + graph.getPredecessorsOf("A"));
+    }
+    
+    graph.removeEdge("B", "A");
+    if (!graph.getPredecessorsOf("A").equals(Arrays.asList("C"))) {
+      fail("Predecessors of A should be [C] but are " + graph.getPredecessorsOf("A"));
+    }
+    
+    if (!graph.getPredecessorsOf("C").isEmpty()) {
+      fail("C should have no predecessors but has " + graph.getPredecessorsOf("C"));
+    }
+  }
+  
+  /**
+   * Removes a vertex and then a vertex that had an edge to it
+   */
+  @Test
+  void testGraph_010_remove_vertex_after_removing_its_successor() {
+    graph.addEdge("A", "B");
+    graph.removeVertex("B");
+    if (!graph.getAdjacentVerticesOf("A").isEmpty()) {
+      fail("A should have no edges left but has " + graph.getAdjacentVerticesOf("A"));
+    }
+    graph.removeVertex("A");
+    
+    if (graph.order() != 0) {
+      fail("Vertices should equal 0 but equals " + graph.order());
+    }
+  }
+
+  /**
+   * Checks hasEdge in both directions and after the edge is removed
+   */
+  @Test
+  void testGraph_011_has_edge() {
+    graph.addEdge("A", "B");
+    
+    if (!graph.hasEdge("A", "B")) {
+      fail("Graph should have edge A -> B");
+    }
+    if (graph.hasEdge("B", "A")) {
+      fail("Graph should not have edge B -> A");
+    }
+    if (graph.hasEdge("A", null) || graph.hasEdge("A", "Z")) {
+      fail("hasEdge should be false for a null or missing vertex");
+    }
+    
+    graph.removeEdge("A", "B");
+    if (graph.hasEdge("A", "B")) {
+      fail("Edge A -> B should have been removed");
+    }
+  }
+  
+  /**
+   * Checks that the edge count stays correct through duplicate edges, self loops and edge removals
+   */
+  @Test
+  void testGraph_012_size_after_removals() {
+    graph.addEdge("A", "B");
+    graph.addEdge("A", "B");
+    graph.addEdge("B", "C");
+    graph.addEdge("C", "A");
+    graph.addEdge("C", "C");
+    
+    if (graph.size() != 4) {
+      fail("Edges should equal 4 but equals " + graph.size());
+    }
+    
+    graph.removeEdge("B", "A"); // not in graph
+    graph.removeEdge("C", "C");
+    graph.removeEdge("C", "A");
+    if (graph.size() != 2) {
+      fail("Edges should equal 2 but equals " + graph.size());
+    }
+    
+    try {
+      graph.getAdjacentVerticesOf("A").clear(); // must not change the graph
+      fail("Returned lists should be read-only");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    if (graph.size() != 2 || !graph.hasEdge("A", "B")) {
+      fail("Changing a returned list should not change the graph");
+    }
+  }
+
+  /**
+   * Removes a vertex with incoming and outgoing edges and checks that no edge to it is left
+   */
+  @Test
+  void testGraph_013_remove_vertex_drops_incoming_edges() {
+    graph.addEdge("A", "B");
+    graph.addEdge("C", "B");
+    graph.addEdge("B", "D");
+    graph.addEdge("B", "B");
+    graph.addEdge("A", "D");
+    
+    graph.removeVertex("B");
+    
+    if (graph.size() != 1) {
+      fail("Edges should equal 1 but equals " + graph.size());
+    }
+    if (!graph.getAdjacentVerticesOf("A").equals(Arrays.asList("D"))) {
+      fail("A should only have an edge to D but has " + graph.getAdjacentVerticesOf("A"));
+    }
+    if (!graph.getAdjacentVerticesOf("C").isEmpty()) {
+      fail("C should have no edges but has " + graph.getAdjacentVerticesOf("C"));
+    }
+    if (!graph.getPredecessorsOf("D").equals(Arrays.asList("A"))) {
+      fail("Predecessors of D should be [A] but are " + graph.getPredecessorsOf("D"));
+    }
+  }
+  
+  /**
+   * Removes several vertices at once, including edges between them, missing vertices and null
+   */
+  @Test
+  void testGraph_014_remove_vertices() {
+    graph.addEdge("A", "B");
+    graph.addEdge("B", "C");
+    graph.addEdge("C", "D");
+    graph.addEdge("D", "A");
+    graph.addEdge("A", "C");
+    
+    graph.removeVertices(Arrays.asList("B", "C", "Z", null, "B"));
+    
+    if (graph.order() != 2) {
+      fail("Vertices should equal 2 but equals " + graph.order());
+    }
+    if (graph.size() != 1 || !graph.hasEdge("D", "A")) {
+      fail("Only edge D -> A should be left but there are " + graph.size() + " edges");
+    }
+    if (!graph.getAdjacentVerticesOf("A").isEmpty()) {
+      fail("A should have no edges but has " + graph.getAdjacentVerticesOf("A"));
+    }
+    if (!graph.getPredecessorsOf("D").isEmpty()) {
+      fail("D should have no predecessors but has " + graph.getPredecessorsOf("D"));
+    }
+  }
+
+  /**
+   * Replaces the predecessors of a vertex, keeping edges that stay and adding missing vertices
+   */
+  @Test
+  void testGraph_015_set_predecessors() {
+    graph.addEdge("A", "C");
+    graph.addEdge("B", "C");
+    graph.addEdge("C", "D");
+    
+    int changed = graph.setPredecessors("C", new LinkedHashSet<String>(Arrays.asList("B", "E")));
+    
+    if (changed != 2) {
+      fail("Two edges should have changed but " + changed + " did");
+    }
+    if (!graph.getPredecessorsOf("C").equals(Arrays.asList("B", "E"))) {
+      fail("Predecessors of C should be [B, E] but are " + graph.getPredecessorsOf("C"));
+    }
+    if (!graph.getAdjacentVerticesOf("A").isEmpty()) {
+      fail("A should have no edges but has " + graph.getAdjacentVerticesOf("A"));
+    }
+    if (graph.size() != 3 || graph.order() != 5) {
+      fail("Graph should have 5 vertices and 3 edges but has " + graph.order() + " and "
+          + graph.size());
+    }
+    
+    graph.setPredecessors("F", new LinkedHashSet<String>());
+    if (graph.order() != 6 || graph.setPredecessors("C", null) != 0) {
+      fail("F should have been added and a null set should change nothing");
+    }
+  }
 
 }
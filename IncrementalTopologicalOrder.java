@@ -0,0 +1,302 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Keeps a topological order of a Graph (a global installation order) up to date while the graph
+ * changes, instead of sorting the whole graph again after every change.
+ *
+ * Every vertex has a position in the order. Adding an edge from x to y only changes anything if x
+ * comes after y. In that case the Pearce-Kelly algorithm searches forward from y and backward from
+ * x, but only through vertices positioned between y and x, and reuses their positions so that
+ * everything reachable backward from x ends up before everything reachable forward from y. If the
+ * forward search reaches x the edge closes a cycle.
+ *
+ * New vertices are appended at the end and removed vertices leave a gap that is squeezed out once
+ * gaps make up half of the positions. Removing edges never invalidates the order.
+ *
+ * The order listens to the Graph it was created for, so changes made directly on the graph are
+ * picked up as well. Use addEdge() on this class to have an edge that would close a cycle rejected
+ * before it is added. If a cycle is added directly on the graph, getOrder() throws until an edge or
+ * vertex is removed and sorting the graph from scratch succeeds again.
+ */
+public class IncrementalTopologicalOrder implements GraphListener {
+
+  private final Graph graph;
+
+  /**
+   * vertex -> position, and position -> vertex (null for a gap)
+   */
+  private final Map<String, Integer> positions;
+  private final List<String> slots;
+  private int gaps;
+
+  /**
+   * A cycle in the graph if it has one, null otherwise
+   */
+  private List<String> cycle;
+
+  /**
+   * Creates a topological order of graph and keeps it up to date from then on
+   *
+   * @param graph to order, edges go from a vertex to the vertices that must come after it
+   */
+  public IncrementalTopologicalOrder(Graph graph) {
+    this.graph = graph;
+    this.positions = new HashMap<String, Integer>();
+    this.slots = new ArrayList<String>();
+    this.rebuild();
+    graph.addListener(this);
+  }
+
+  /**
+   * Stops listening to the graph. The order is not updated anymore afterwards.
+   */
+  public void close() {
+    this.graph.removeListener(this);
+  }
+
+  /**
+   * Returns the current topological order
+   *
+   * @return List<String> new list with every vertex, each one after every vertex with an edge to it
+   *
+   * @throws CyclicDependencyException if the graph has a cycle
+   */
+  public List<String> getOrder() throws CyclicDependencyException {
+    if (this.cycle != null) {
+      throw new CyclicDependencyException(this.cycle);
+    }
+
+    List<String> order = new ArrayList<String>(this.positions.size());
+    for (String vertex : this.slots) {
+      if (vertex != null) {
+        order.add(vertex);
+      }
+    }
+    return order;
+  }
+
+  /**
+   * Adds the edge from vertex1 to vertex2 to the graph, unless it would close a cycle. Missing
+   * vertices are added like Graph.addEdge() does, even if the edge is rejected.
+   *
+   * @param vertex1 vertex to add edge from
+   * @param vertex2 vertex to add edge to
+   *
+   * @throws CyclicDependencyException if the edge would close a cycle, the edge is not added then
+   */
+  public void addEdge(String vertex1, String vertex2) throws CyclicDependencyException {
+    if (vertex1 == null || vertex2 == null) {
+      return;
+    }
+
+    this.graph.addVertex(vertex1);
+    this.graph.addVertex(vertex2);
+    if (this.cycle == null && !this.graph.hasEdge(vertex1, vertex2)) {
+      // reorder first, the edge is then already in order when the listener sees it
+      List<String> closed = this.reorder(vertex1, vertex2);
+      if (closed != null) {
+        throw new CyclicDependencyException(closed);
+      }
+    }
+    this.graph.addEdge(vertex1, vertex2);
+  }
+
+  public void vertexAdded(String vertex) {
+    this.positions.put(vertex, this.slots.size());
+    this.slots.add(vertex);
+  }
+
+  public void vertexRemoved(String vertex) {
+    // Graph.removeVertices() reports a batch one vertex at a time after removing all of it, so a
+    // rebuild for an earlier vertex of the batch already dropped this one
+    Integer position = this.positions.remove(vertex);
+    if (position == null) {
+      return;
+    }
+    this.slots.set(position, null);
+    this.gaps++;
+
+    if (this.cycle != null) {
+      this.rebuild();
+    } else if (this.gaps > this.slots.size() / 2) {
+      this.squeeze();
+    }
+  }
+
+  public void edgeAdded(String vertex1, String vertex2) {
+    if (this.cycle == null) {
+      this.cycle = this.reorder(vertex1, vertex2);
+    }
+  }
+
+  public void edgeRemoved(String vertex1, String vertex2) {
+    if (this.cycle != null) {
+      this.rebuild();
+    }
+  }
+
+  /**
+   * Moves vertices so that vertex1 comes before vertex2, as needed for the edge from vertex1 to
+   * vertex2. Nothing is moved if that would be impossible because vertex2 reaches vertex1.
+   *
+   * @param vertex1 vertex the edge goes from
+   * @param vertex2 vertex the edge goes to
+   * @return List<String> the cycle the edge closes, each vertex having an edge to the previous one,
+   *         or null if it does not close one
+   */
+  private List<String> reorder(String vertex1, String vertex2) {
+    int lower = this.positions.get(vertex2);
+    int upper = this.positions.get(vertex1);
+    if (lower > upper) {
+      return null;
+    }
+    if (lower == upper) {
+      return Arrays.asList(vertex1, vertex1);
+    }
+
+    // forward from vertex2 through vertices up to vertex1, remembering how each one was reached
+    Map<String, String> reachedFrom = new HashMap<String, String>();
+    List<String> forward = new ArrayList<String>();
+    Deque<String> stack = new ArrayDeque<String>();
+    reachedFrom.put(vertex2, vertex2);
+    stack.push(vertex2);
+    while (!stack.isEmpty()) {
+      String v = stack.pop();
+      forward.add(v);
+      for (String w : this.graph.getAdjacentVerticesOf(v)) {
+        if (w.equals(vertex1)) {
+          return this.cycleThrough(vertex1, v, reachedFrom);
+        }
+        if (this.positions.get(w) < upper && !reachedFrom.containsKey(w)) {
+          reachedFrom.put(w, v);
+          stack.push(w);
+        }
+      }
+    }
+
+    // backward from vertex1 through vertices down to vertex2
+    Set<String> visited = new HashSet<String>();
+    List<String> backward = new ArrayList<String>();
+    visited.add(vertex1);
+    stack.push(vertex1);
+    while (!stack.isEmpty()) {
+      String v = stack.pop();
+      backward.add(v);
+      for (String w : this.graph.getPredecessorsOf(v)) {
+        if (this.positions.get(w) > lower && visited.add(w)) {
+          stack.push(w);
+        }
+      }
+    }
+
+    // hand the positions of both sets out again, backward set first, keeping relative order
+    Comparator<String> byPosition = new Comparator<String>() {
+      public int compare(String a, String b) {
+        return Integer.compare(positions.get(a), positions.get(b));
+      }
+    };
+    Collections.sort(backward, byPosition);
+    Collections.sort(forward, byPosition);
+
+    int[] free = new int[backward.size() + forward.size()];
+    int i = 0;
+    for (String v : backward) {
+      free[i++] = this.positions.get(v);
+    }
+    for (String v : forward) {
+      free[i++] = this.positions.get(v);
+    }
+    Arrays.sort(free);
+
+    i = 0;
+    for (String v : backward) {
+      this.place(v, free[i++]);
+    }
+    for (String v : forward) {
+      this.place(v, free[i++]);
+    }
+    return null;
+  }
+
+  /**
+   * Builds the cycle closed by an edge from vertex1 when the forward search reached vertex1 from
+   * last
+   *
+   * @param vertex1 vertex the new edge goes from
+   * @param last vertex with an edge to vertex1
+   * @param reachedFrom vertex -> vertex the forward search reached it from
+   * @return List<String> the cycle, each vertex having an edge to the previous one
+   */
+  private List<String> cycleThrough(String vertex1, String last, Map<String, String> reachedFrom) {
+    List<String> cycle = new ArrayList<String>();
+    cycle.add(vertex1);
+    String v = last;
+    while (!reachedFrom.get(v).equals(v)) {
+      cycle.add(v);
+      v = reachedFrom.get(v);
+    }
+    cycle.add(v);
+    cycle.add(vertex1);
+    return cycle;
+  }
+
+  /**
+   * Puts a vertex at a position
+   *
+   * @param vertex to move
+   * @param position to move it to
+   */
+  private void place(String vertex, int position) {
+    this.positions.put(vertex, position);
+    this.slots.set(position, vertex);
+  }
+
+  /**
+   * Removes the gaps left by removed vertices
+   */
+  private void squeeze() {
+    int next = 0;
+    for (int i = 0; i < this.slots.size(); i++) {
+      String vertex = this.slots.get(i);
+      if (vertex != null) {
+        this.place(vertex, next++);
+      }
+    }
+    this.slots.subList(next, this.slots.size()).clear();
+    this.gaps = 0;
+  }
+
+  /**
+   * Sorts the whole graph from scratch, recording the cycle if there is one
+   */
+  private void rebuild() {
+    this.positions.clear();
+    this.slots.clear();
+    this.gaps = 0;
+    this.cycle = null;
+
+    try {
+      for (String vertex : ParallelTopologicalSort.sort(this.graph.freeze(),
+          ForkJoinPool.commonPool()).getOrder()) {
+        this.vertexAdded(vertex);
+      }
+    } catch (CyclicDependencyException e) {
+      this.cycle = e.getCycle();
+      for (String vertex : this.graph.getAllVertices()) {
+        this.vertexAdded(vertex);
+      }
+    }
+  }
+
+}
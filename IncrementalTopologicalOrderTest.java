@@ -0,0 +1,181 @@
+import static org.junit.Assert.fail;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for IncrementalTopologicalOrder testing
+ */
+class IncrementalTopologicalOrderTest {
+
+  Graph graph;
+  IncrementalTopologicalOrder order;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    graph = new Graph();
+    order = new IncrementalTopologicalOrder(graph);
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    order.close();
+    graph = null;
+    order = null;
+  }
+
+  /**
+   * Fails unless every edge of the graph goes forward in the order
+   */
+  private void assertValid() throws CycleException {
+    List<String> sorted = order.getOrder();
+    if (sorted.size() != graph.order()) {
+      fail("Order should have " + graph.order() + " vertices but has " + sorted.size());
+    }
+
+    Map<String, Integer> positions = new HashMap<String, Integer>();
+    for (int i = 0; i < sorted.size(); i++) {
+      positions.put(sorted.get(i), i);
+    }
+    for (String v : graph.getAllVertices()) {
+      for (String w : graph.getAdjacentVerticesOf(v)) {
+        if (positions.get(v) > positions.get(w)) {
+          fail(v + " should come before " + w + " in " + sorted);
+        }
+      }
+    }
+  }
+
+  /**
+   * Adds edges against the current order and checks the order is repaired
+   */
+  @Test
+  void testIncrementalTopologicalOrder_001_add_edge_reorders() throws Exception {
+    graph.addVertex("A");
+    graph.addVertex("B");
+    graph.addVertex("C");
+    order.addEdge("C", "B");
+    order.addEdge("B", "A");
+
+    if (!order.getOrder().equals(Arrays.asList("C", "B", "A"))) {
+      fail("Order should be [C, B, A] but is " + order.getOrder());
+    }
+  }
+
+  /**
+   * An edge closing a cycle is rejected, named and not added
+   */
+  @Test
+  void testIncrementalTopologicalOrder_002_add_edge_rejects_cycle() throws Exception {
+    order.addEdge("A", "B");
+    order.addEdge("B", "C");
+
+    try {
+      order.addEdge("C", "A");
+      fail("Adding C -> A should throw a CyclicDependencyException");
+    } catch (CyclicDependencyException e) {
+      if (!e.getCycle().equals(Arrays.asList("C", "B", "A", "C"))) {
+        fail("Cycle should be [C, B, A, C] but is " + e.getCycle());
+      }
+    }
+    if (graph.hasEdge("C", "A")) {
+      fail("Edge C -> A should not have been added");
+    }
+    assertValid();
+  }
+
+  /**
+   * A cycle added directly on the graph is reported until it is broken again
+   */
+  @Test
+  void testIncrementalTopologicalOrder_003_cycle_on_graph() throws Exception {
+    graph.addEdge("A", "B");
+    graph.addEdge("B", "A");
+
+    try {
+      order.getOrder();
+      fail("getOrder() should throw a CyclicDependencyException");
+    } catch (CyclicDependencyException e) {
+      // expected
+    }
+
+    graph.removeEdge("B", "A");
+    assertValid();
+  }
+
+  /**
+   * Random edge and vertex additions and removals keep the order valid
+   */
+  @Test
+  void testIncrementalTopologicalOrder_004_random_changes() throws Exception {
+    Random random = new Random(1);
+    for (int i = 0; i < 5000; i++) {
+      String x = GraphGenerator.name(random.nextInt(100));
+      String y = GraphGenerator.name(random.nextInt(100));
+      int change = random.nextInt(10);
+      if (change < 8) {
+        try {
+          order.addEdge(x, y);
+        } catch (CyclicDependencyException e) {
+          // rejected, graph is unchanged
+        }
+      } else if (change == 8) {
+        graph.removeEdge(x, y);
+      } else {
+        graph.removeVertex(x);
+      }
+      assertValid();
+    }
+  }
+
+  /**
+   * Removing several vertices at once while a cycle is recorded drops all of them, and listeners
+   * registered after the order still see every removal
+   */
+  @Test
+  void testIncrementalTopologicalOrder_005_remove_vertices_with_cycle() throws Exception {
+    graph.addEdge("A", "B");
+    graph.addEdge("B", "A");
+    graph.addVertex("C");
+    graph.addVertex("D");
+    graph.addVertex("E");
+
+    final List<String> removed = new ArrayList<String>();
+    graph.addListener(new GraphListener() {
+      public void vertexAdded(String vertex) {}
+
+      public void vertexRemoved(String vertex) {
+        removed.add(vertex);
+      }
+
+      public void edgeAdded(String vertex1, String vertex2) {}
+
+      public void edgeRemoved(String vertex1, String vertex2) {}
+    });
+
+    graph.removeVertices(Arrays.asList("C", "D"));
+    if (!removed.equals(Arrays.asList("C", "D"))) {
+      fail("Listeners should see C and D removed but saw " + removed);
+    }
+
+    graph.removeVertices(Arrays.asList("B", "E"));
+    List<String> expected = Arrays.asList("A");
+    if (!order.getOrder().equals(expected)) {
+      fail("Order should be " + expected + " but is " + order.getOrder());
+    }
+    assertValid();
+  }
+
+}
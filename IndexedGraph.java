@@ -0,0 +1,102 @@
+import java.util.List;
+
+/**
+ * Read-only graph whose vertices are interned to int ids from 0 to order() - 1 and whose edges are
+ * stored in compressed sparse row (CSR) form, outgoing and incoming.
+ *
+ * The traversals (DependencyTraversal, DependentTraversal, ParallelTopologicalSort,
+ * StronglyConnectedComponents, ReachabilityIndex, InstallationOrders) are written against this
+ * interface, so they run the same on a CompactGraph on the heap and on an OffHeapGraph in direct or
+ * memory-mapped buffers. Walking the edges of a vertex through the id based methods does not
+ * allocate anything:
+ *
+ * for (int e = g.outStart(v); e < g.outEnd(v); e++) { int w = g.outTarget(e); }
+ */
+public interface IndexedGraph extends GraphADT {
+
+  /**
+   * Returns whether the edge from vertex1 to vertex2 is in the graph (edge is directed)
+   *
+   * @param String vertex1 vertex the edge goes from
+   * @param String vertex2 vertex the edge goes to
+   *
+   * @return boolean true if the edge is in the graph
+   */
+  public boolean hasEdge(String vertex1, String vertex2);
+
+  /**
+   * Get all the predecessor vertices of a vertex (every vertex that has an edge to it)
+   *
+   * @param String vertex the vertex you want to get predecessors of
+   *
+   * @return List<String> read-only list of predecessor vertices, or null if vertex is not in the
+   *         graph
+   */
+  public List<String> getPredecessorsOf(String vertex);
+
+  /**
+   * Returns the id of a vertex
+   *
+   * @param vertex name of the vertex
+   * @return int id of the vertex, or -1 if vertex is null or not in the graph
+   */
+  public int idOf(String vertex);
+
+  /**
+   * Returns the name of a vertex
+   *
+   * @param id id of the vertex
+   * @return String name of the vertex
+   */
+  public String nameOf(int id);
+
+  /**
+   * Index of the first outgoing edge of a vertex
+   *
+   * @param id id of the vertex
+   * @return int index of the first outgoing edge
+   */
+  public int outStart(int id);
+
+  /**
+   * Index one past the last outgoing edge of a vertex
+   *
+   * @param id id of the vertex
+   * @return int index one past the last outgoing edge
+   */
+  public int outEnd(int id);
+
+  /**
+   * Target id of an outgoing edge
+   *
+   * @param edge index between outStart() and outEnd()
+   * @return int id of the vertex the edge points to
+   */
+  public int outTarget(int edge);
+
+  /**
+   * Index of the first incoming edge of a vertex. Used together with inEnd() and inSource() the
+   * same way as the outgoing edge methods.
+   *
+   * @param id id of the vertex
+   * @return int index of the first incoming edge
+   */
+  public int inStart(int id);
+
+  /**
+   * Index one past the last incoming edge of a vertex
+   *
+   * @param id id of the vertex
+   * @return int index one past the last incoming edge
+   */
+  public int inEnd(int id);
+
+  /**
+   * Source id of an incoming edge
+   *
+   * @param edge index between inStart() and inEnd()
+   * @return int id of the vertex the edge comes from
+   */
+  public int inSource(int edge);
+
+}
@@ -0,0 +1,231 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bounded, least recently used cache of installation orders keyed by package.
+ *
+ * Each entry is kept as a LinkedHashSet so it iterates in installation order and can also answer
+ * "is this package part of the order" in constant time, which is what invalidation needs.
+ *
+ * The cache listens to the Graph it was built for. The installation order of a package only
+ * depends on the dependencies of the packages in that order, so when the dependencies of package P
+ * change (an edge into P is added or removed) or P is removed, exactly the entries that contain P
+ * are dropped. Everything else stays cached. A reverse index from every package to the cached
+ * orders it is part of finds those entries without looking at the others, so a change costs time
+ * in the size of the entries it drops, not in the size of the cache.
+ *
+ * All public methods are synchronized so the cache can be shared between threads.
+ */
+public class InstallationOrderCache implements GraphListener {
+
+  private final int capacity;
+
+  /**
+   * package -> installation order, kept in access order so the eldest entry is the least recently
+   * used one
+   */
+  private final LinkedHashMap<String, LinkedHashSet<String>> entries;
+
+  /**
+   * package -> every cached package whose installation order contains it
+   */
+  private final Map<String, Set<String>> containedIn = new HashMap<String, Set<String>>();
+
+  private long hits;
+  private long misses;
+  private long invalidations;
+
+  /**
+   * Creates an empty cache
+   *
+   * @param capacity maximum amount of packages to keep installation orders for
+   *
+   * @throws IllegalArgumentException if capacity is not positive
+   */
+  @SuppressWarnings("serial")
+  public InstallationOrderCache(final int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity must be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<String, LinkedHashSet<String>>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, LinkedHashSet<String>> eldest) {
+        if (size() > capacity) {
+          unindex(eldest.getKey(), eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  /**
+   * Returns the cached installation order for a package and counts a hit or a miss
+   *
+   * @param pkg package to look up
+   * @return List<String> a new list with the installation order, or null if it is not cached
+   */
+  public synchronized List<String> get(String pkg) {
+    LinkedHashSet<String> order = this.entries.get(pkg);
+    if (order == null) {
+      this.misses++;
+      return null;
+    }
+    this.hits++;
+    return new ArrayList<String>(order);
+  }
+
+  /**
+   * Returns the cached installation order for a package as a read-only set, without copying it.
+   * Counts a hit or a miss like get().
+   *
+   * @param pkg package to look up
+   * @return Set<String> installation order of pkg, or null if it is not cached
+   */
+  public synchronized Set<String> getAsSet(String pkg) {
+    LinkedHashSet<String> order = this.entries.get(pkg);
+    if (order == null) {
+      this.misses++;
+      return null;
+    }
+    this.hits++;
+    return Collections.unmodifiableSet(order);
+  }
+
+  /**
+   * Caches the installation order for a package, evicting the least recently used entry if the
+   * cache is full
+   *
+   * @param pkg package the order belongs to
+   * @param order installation order of pkg
+   */
+  public synchronized void put(String pkg, List<String> order) {
+    LinkedHashSet<String> entry = new LinkedHashSet<String>(order);
+    LinkedHashSet<String> replaced = this.entries.remove(pkg);
+    if (replaced != null) {
+      this.unindex(pkg, replaced);
+    }
+    for (String dependency : entry) {
+      Set<String> roots = this.containedIn.get(dependency);
+      if (roots == null) {
+        roots = new HashSet<String>();
+        this.containedIn.put(dependency, roots);
+      }
+      roots.add(pkg);
+    }
+    this.entries.put(pkg, entry);
+  }
+
+  /**
+   * Drops every cached entry
+   */
+  public synchronized void clear() {
+    this.entries.clear();
+    this.containedIn.clear();
+  }
+
+  /**
+   * Drops every cached installation order that contains pkg
+   *
+   * @param pkg package whose dependencies changed
+   */
+  public synchronized void invalidate(String pkg) {
+    Set<String> roots = this.containedIn.remove(pkg);
+    if (roots == null) {
+      return;
+    }
+    for (String root : roots) {
+      this.unindex(root, this.entries.remove(root));
+      this.invalidations++;
+    }
+  }
+
+  /**
+   * Removes a cached order from the reverse index
+   *
+   * @param pkg package the order belongs to
+   * @param order installation order of pkg
+   */
+  private void unindex(String pkg, Set<String> order) {
+    for (String dependency : order) {
+      Set<String> roots = this.containedIn.get(dependency);
+      // the package being invalidated was already taken out of the index
+      if (roots != null) {
+        roots.remove(pkg);
+        if (roots.isEmpty()) {
+          this.containedIn.remove(dependency);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return int amount of cached installation orders
+   */
+  public synchronized int size() {
+    return this.entries.size();
+  }
+
+  /**
+   * @return int maximum amount of cached installation orders
+   */
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  /**
+   * @return long amount of lookups that found a cached order
+   */
+  public synchronized long getHitCount() {
+    return this.hits;
+  }
+
+  /**
+   * @return long amount of lookups that did not find a cached order
+   */
+  public synchronized long getMissCount() {
+    return this.misses;
+  }
+
+  /**
+   * @return long amount of entries dropped because the graph changed
+   */
+  public synchronized long getInvalidationCount() {
+    return this.invalidations;
+  }
+
+  /**
+   * A new vertex is not part of any cached order, so nothing is dropped
+   */
+  public void vertexAdded(String vertex) {}
+
+  /**
+   * Drops every cached order that contains the removed package
+   */
+  public void vertexRemoved(String vertex) {
+    this.invalidate(vertex);
+  }
+
+  /**
+   * vertex2 gained a dependency, drops every cached order that contains vertex2
+   */
+  public void edgeAdded(String vertex1, String vertex2) {
+    this.invalidate(vertex2);
+  }
+
+  /**
+   * vertex2 lost a dependency, drops every cached order that contains vertex2
+   */
+  public void edgeRemoved(String vertex1, String vertex2) {
+    this.invalidate(vertex2);
+  }
+
+}
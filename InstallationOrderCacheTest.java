@@ -0,0 +1,139 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for InstallationOrderCache testing
+ */
+class InstallationOrderCacheTest {
+
+  Graph graph;
+  InstallationOrderCache cache;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    graph = new Graph();
+    cache = new InstallationOrderCache(2);
+    graph.addListener(cache);
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    graph = null;
+    cache = null;
+  }
+
+  /**
+   * Checks that hits and misses are counted
+   */
+  @Test
+  void testCache_001_hit_and_miss_counts() {
+    cache.put("A", Arrays.asList("B", "A"));
+
+    if (cache.get("C") != null) {
+      fail("C was never cached but get() returned a value");
+    }
+    if (!cache.get("A").equals(Arrays.asList("B", "A"))) {
+      fail("Cached order of A should be [B, A]");
+    }
+    if (cache.getHitCount() != 1 || cache.getMissCount() != 1) {
+      fail("Expected 1 hit and 1 miss but got " + cache.getHitCount() + " hit(s) and "
+          + cache.getMissCount() + " miss(es)");
+    }
+  }
+
+  /**
+   * Checks that the least recently used entry is evicted first
+   */
+  @Test
+  void testCache_002_lru_eviction() {
+    cache.put("A", Arrays.asList("A"));
+    cache.put("B", Arrays.asList("B"));
+    cache.get("A");
+    cache.put("C", Arrays.asList("C"));
+
+    if (cache.size() != 2) {
+      fail("Cache should hold 2 entries but holds " + cache.size());
+    }
+    if (cache.get("B") != null) {
+      fail("B was least recently used and should have been evicted");
+    }
+    if (cache.get("A") == null || cache.get("C") == null) {
+      fail("A and C should still be cached");
+    }
+  }
+
+  /**
+   * Changing the dependencies of a package only drops the orders that contain it
+   */
+  @Test
+  void testCache_003_precise_invalidation() {
+    // D -> B -> A, C is unrelated
+    graph.addEdge("D", "B");
+    graph.addEdge("B", "A");
+    graph.addVertex("C");
+    cache.put("A", Arrays.asList("D", "B", "A"));
+    cache.put("C", Arrays.asList("C"));
+
+    // B gains a dependency, so the order of A is stale but C is not
+    graph.addEdge("C", "B");
+
+    if (cache.get("A") != null) {
+      fail("Order of A should have been invalidated");
+    }
+    if (cache.get("C") == null) {
+      fail("Order of C should not have been invalidated");
+    }
+    if (cache.getInvalidationCount() != 1) {
+      fail("Expected 1 invalidation but got " + cache.getInvalidationCount());
+    }
+  }
+
+  /**
+   * Removing a package drops the orders that contain it
+   */
+  @Test
+  void testCache_004_remove_vertex_invalidates() {
+    graph.addEdge("B", "A");
+    cache.put("A", Arrays.asList("B", "A"));
+
+    graph.removeVertex("B");
+
+    if (cache.size() != 0) {
+      fail("Order of A should have been invalidated when B was removed");
+    }
+  }
+
+  /**
+   * Evicted and replaced orders no longer count as containing their packages
+   */
+  @Test
+  void testCache_005_evicted_and_replaced_orders() {
+    cache.put("A", Arrays.asList("X", "A"));
+    cache.put("B", Arrays.asList("X", "B"));
+    cache.put("C", Arrays.asList("Y", "C"));
+
+    // A was evicted, so only B is dropped
+    graph.addEdge("Z", "X");
+    if (cache.getInvalidationCount() != 1 || cache.size() != 1) {
+      fail("Expected 1 invalidation and 1 entry but got " + cache.getInvalidationCount() + " and "
+          + cache.size());
+    }
+
+    // the new order of C does not contain Y
+    cache.put("C", Arrays.asList("C"));
+    graph.addEdge("Z", "Y");
+    if (cache.getInvalidationCount() != 1 || cache.get("C") == null) {
+      fail("Order of C should not have been invalidated");
+    }
+  }
+
+}
@@ -0,0 +1,339 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The installation order of every package in an IndexedGraph, computed all at once.
+ *
+ * The order of a package starts with the complete order of one of its dependencies, the one with
+ * the longest order. So instead of a list per package, every package only keeps a pointer to that
+ * dependency and the few ids that come after its order: the dependencies of its other
+ * dependencies that are not in there yet, in the order of those dependencies. The package itself
+ * is always last and is not stored. A package with at most one dependency stores nothing at all,
+ * so a chain of n packages takes O(n) memory instead of O(n^2).
+ *
+ * Packages are computed wave by wave from ParallelTopologicalSort, dependencies first. The
+ * packages of one wave only need the orders of earlier waves, so large waves are split over a
+ * ForkJoinPool. The stored part of a package is built from the already computed orders of its
+ * dependencies instead of traversing the graph again.
+ *
+ * getOrder(id) holds the same packages as DependencyTraversal.installationOrder(graph, id),
+ * every package after its dependencies, but not necessarily in the same order.
+ */
+public class InstallationOrders {
+
+  /**
+   * Waves with at most this many packages are computed on the calling thread
+   */
+  static final int SEQUENTIAL_THRESHOLD = 256;
+
+  private static final int[] NONE = new int[0];
+
+  /**
+   * Per-thread scratch space, only reallocated when a larger graph comes along
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  private final IndexedGraph graph;
+
+  /**
+   * id -> dependency whose order is the start of the order of id, -1 if there is none
+   */
+  private final int[] prefix;
+
+  /**
+   * id -> ids that come after the order of the prefix dependency, without id itself
+   */
+  private final int[][] suffix;
+
+  /**
+   * id -> length of the order of id
+   */
+  private final int[] length;
+
+  private long storedLength;
+
+  /**
+   * @param graph the orders are computed for
+   */
+  private InstallationOrders(IndexedGraph graph) {
+    this.graph = graph;
+    this.prefix = new int[graph.order()];
+    this.suffix = new int[graph.order()][];
+    this.length = new int[graph.order()];
+  }
+
+  /**
+   * Computes the installation order of every package
+   *
+   * @param graph to compute the orders of, edges go from a dependency to the package that depends
+   *        on it
+   * @param pool to compute large waves on
+   * @return InstallationOrders the orders of all packages
+   *
+   * @throws CyclicDependencyException if the graph has a cycle
+   */
+  public static InstallationOrders build(IndexedGraph graph, ForkJoinPool pool)
+      throws CyclicDependencyException {
+    InstallationOrders orders = new InstallationOrders(graph);
+
+    for (List<String> wave : ParallelTopologicalSort.sort(graph, pool).getWaves()) {
+      int[] ids = new int[wave.size()];
+      for (int i = 0; i < ids.length; i++) {
+        ids[i] = graph.idOf(wave.get(i));
+      }
+
+      WaveTask task = new WaveTask(orders, ids, 0, ids.length);
+      if (ids.length <= SEQUENTIAL_THRESHOLD) {
+        task.compute();
+      } else {
+        pool.invoke(task);
+      }
+    }
+
+    for (int[] ids : orders.suffix) {
+      orders.storedLength += ids.length;
+    }
+    return orders;
+  }
+
+  /**
+   * Computes the order of one package from the orders of its dependencies
+   *
+   * @param v id of the package, every dependency of it must be computed already
+   */
+  private void compute(int v) {
+    int start = this.graph.inStart(v);
+    int end = this.graph.inEnd(v);
+    if (start == end) {
+      this.prefix[v] = -1;
+      this.suffix[v] = NONE;
+      this.length[v] = 1;
+      return;
+    }
+
+    // the longest order of a dependency is shared, the others are merged in after it
+    int first = this.graph.inSource(start);
+    for (int e = start + 1; e < end; e++) {
+      if (this.length[this.graph.inSource(e)] > this.length[first]) {
+        first = this.graph.inSource(e);
+      }
+    }
+    this.prefix[v] = first;
+    if (end - start == 1) {
+      this.suffix[v] = NONE;
+      this.length[v] = this.length[first] + 1;
+      return;
+    }
+
+    Scratch scratch = SCRATCH.get().begin(this.graph.order());
+    int[] marks = scratch.marks;
+    int stamp = scratch.epoch;
+
+    // everything in the shared order is already installed
+    for (int u = first; u != -1; u = this.prefix[u]) {
+      marks[u] = stamp;
+      for (int w : this.suffix[u]) {
+        marks[w] = stamp;
+      }
+    }
+
+    // append what is missing from the order of every dependency, the installed packages always
+    // come with all of their own dependencies so what is left of an order is still valid
+    int[] added = scratch.added;
+    int size = 0;
+    for (int e = start; e < end; e++) {
+      int dependency = this.graph.inSource(e);
+      if (marks[dependency] == stamp) {
+        // its whole order is already installed
+        continue;
+      }
+      int count = this.fill(dependency, scratch.order);
+      for (int i = 0; i < count; i++) {
+        int w = scratch.order[i];
+        if (marks[w] != stamp) {
+          marks[w] = stamp;
+          added[size++] = w;
+        }
+      }
+    }
+
+    int[] ids = new int[size];
+    System.arraycopy(added, 0, ids, 0, size);
+    this.suffix[v] = ids;
+    this.length[v] = this.length[first] + size + 1;
+  }
+
+  /**
+   * Writes the order of a package into an array, walking from the package back to the start of
+   * the order
+   *
+   * @param id of the package
+   * @param order array of at least getLength(id) ids to write to
+   * @return int length of the order
+   */
+  private int fill(int id, int[] order) {
+    for (int u = id; u != -1; u = this.prefix[u]) {
+      int end = this.length[u] - 1;
+      order[end] = u;
+      int[] ids = this.suffix[u];
+      System.arraycopy(ids, 0, order, end - ids.length, ids.length);
+    }
+    return this.length[id];
+  }
+
+  /**
+   * @return IndexedGraph the orders were computed for, to map between ids and packages
+   */
+  public IndexedGraph getGraph() {
+    return this.graph;
+  }
+
+  /**
+   * @return int amount of packages
+   */
+  public int size() {
+    return this.length.length;
+  }
+
+  /**
+   * @param id of the package
+   * @return int amount of packages in its installation order, including itself
+   */
+  public int getLength(int id) {
+    return this.length[id];
+  }
+
+  /**
+   * @param id of the package
+   * @return int[] a new array with the ids of its installation order, dependencies first
+   */
+  public int[] getOrder(int id) {
+    int[] order = new int[this.length[id]];
+    this.fill(id, order);
+    return order;
+  }
+
+  /**
+   * @param pkg name of the package
+   * @return List<String> read-only installation order of the package, dependencies first, or null
+   *         if the package is not in the graph
+   */
+  public List<String> getOrder(String pkg) {
+    int id = this.graph.idOf(pkg);
+    if (id < 0) {
+      return null;
+    }
+
+    final int[] order = this.getOrder(id);
+    return new AbstractList<String>() {
+      @Override
+      public String get(int index) {
+        return InstallationOrders.this.graph.nameOf(order[index]);
+      }
+
+      @Override
+      public int size() {
+        return order.length;
+      }
+    };
+  }
+
+  /**
+   * @return long sum of the lengths of all orders, what a list per package would hold
+   */
+  public long getTotalLength() {
+    long total = 0;
+    for (int l : this.length) {
+      total += l;
+    }
+    return total;
+  }
+
+  /**
+   * @return long amount of ids actually stored for all orders together
+   */
+  public long getStoredLength() {
+    return this.storedLength;
+  }
+
+  /**
+   * Computes the packages of a range of a wave, splitting the range in half until it is small
+   * enough to do on one thread
+   */
+  private static class WaveTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final InstallationOrders orders;
+    private final int[] wave;
+    private final int from;
+    private final int to;
+
+    WaveTask(InstallationOrders orders, int[] wave, int from, int to) {
+      this.orders = orders;
+      this.wave = wave;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from > SEQUENTIAL_THRESHOLD) {
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(new WaveTask(this.orders, this.wave, this.from, middle),
+            new WaveTask(this.orders, this.wave, middle, this.to));
+        return;
+      }
+
+      for (int i = this.from; i < this.to; i++) {
+        this.orders.compute(this.wave[i]);
+      }
+    }
+  }
+
+  /**
+   * Marker and buffer arrays for one thread
+   */
+  private static class Scratch {
+    int[] marks = new int[0];
+    int[] order = new int[0];
+    int[] added = new int[0];
+
+    /**
+     * Stamp of the current package, marks[v] == epoch means v is in its order already
+     */
+    int epoch;
+
+    /**
+     * Prepares the arrays for a new package in a graph of n vertices
+     *
+     * @param n amount of vertices in the graph
+     * @return Scratch this
+     */
+    Scratch begin(int n) {
+      if (this.marks.length < n) {
+        this.marks = new int[n];
+        this.order = new int[n];
+        this.added = new int[n];
+        this.epoch = 0;
+      }
+
+      // start over once the stamps run out
+      if (this.epoch == Integer.MAX_VALUE) {
+        Arrays.fill(this.marks, 0);
+        this.epoch = 0;
+      }
+      this.epoch++;
+      return this;
+    }
+  }
+
+}
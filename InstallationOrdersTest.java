@@ -0,0 +1,145 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for InstallationOrders testing
+ */
+class InstallationOrdersTest {
+
+  ForkJoinPool pool;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    pool = new ForkJoinPool(4);
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    pool.shutdown();
+    pool = null;
+  }
+
+  /**
+   * Orders of a small graph with shared dependencies
+   */
+  @Test
+  void testOrders_001_shared_dependencies() throws CycleException {
+    // A depends on B and C, B and C both depend on D, edges go from dependency to dependent
+    Graph graph = new Graph();
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "A");
+    graph.addEdge("D", "B");
+    graph.addEdge("D", "C");
+    graph.addVertex("E");
+
+    InstallationOrders orders = InstallationOrders.build(graph.freeze(), pool);
+
+    if (!orders.getOrder("A").equals(Arrays.asList("D", "B", "C", "A"))) {
+      fail("Order of A should be [D, B, C, A] but is " + orders.getOrder("A"));
+    }
+    if (!orders.getOrder("C").equals(Arrays.asList("D", "C"))
+        || !orders.getOrder("E").equals(Arrays.asList("E"))) {
+      fail("Orders of C and E should be [D, C] and [E]");
+    }
+    if (orders.getOrder("F") != null) {
+      fail("Unknown packages should not have an order");
+    }
+    if (orders.size() != 5 || orders.getTotalLength() != 10) {
+      fail("Expected 5 orders with 10 packages in total but got " + orders.size() + " and "
+          + orders.getTotalLength());
+    }
+  }
+
+  /**
+   * Every order must hold the same packages as a traversal from that package, each one after all
+   * of its dependencies, for every shape
+   */
+  @Test
+  void testOrders_002_same_packages_as_traversal() throws CycleException {
+    int[][][] registries = {GraphGenerator.randomDag(20000, 4, 3),
+        GraphGenerator.powerLaw(20000, 4, 3), GraphGenerator.fanOut(2000),
+        GraphGenerator.chain(2000)};
+
+    for (int[][] registry : registries) {
+      CompactGraph graph = GraphGenerator.toGraph(registry).freeze();
+      InstallationOrders orders = InstallationOrders.build(graph, pool);
+      int[] position = new int[graph.order()];
+
+      for (int id = 0; id < graph.order(); id++) {
+        int[] order = orders.getOrder(id);
+        int[] expected = DependencyTraversal.installationOrder(graph, id);
+        if (order.length != expected.length || orders.getLength(id) != expected.length
+            || order[order.length - 1] != id) {
+          fail("Order of " + graph.nameOf(id) + " should have " + expected.length
+              + " packages ending with itself");
+        }
+
+        Arrays.fill(position, -1);
+        for (int i = 0; i < order.length; i++) {
+          position[order[i]] = i;
+        }
+        for (int v : expected) {
+          if (position[v] < 0) {
+            fail("Order of " + graph.nameOf(id) + " is missing " + graph.nameOf(v));
+          }
+          for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+            if (position[graph.inSource(e)] > position[v]) {
+              fail(graph.nameOf(graph.inSource(e)) + " must come before " + graph.nameOf(v));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A chain shares every order, so only the packages themselves are kept
+   */
+  @Test
+  void testOrders_003_chain_is_shared() throws CycleException {
+    InstallationOrders orders =
+        InstallationOrders.build(GraphGenerator.toGraph(GraphGenerator.chain(100000)).freeze(),
+            pool);
+
+    if (orders.getTotalLength() != 100000L * 100001 / 2) {
+      fail("Orders should hold n (n + 1) / 2 packages but hold " + orders.getTotalLength());
+    }
+    if (orders.getStoredLength() != 0) {
+      fail("A chain should not store anything past the shared prefixes but stores "
+          + orders.getStoredLength());
+    }
+  }
+
+  /**
+   * A cycle anywhere should be reported
+   */
+  @Test
+  void testOrders_004_cycle_is_reported() {
+    Graph graph = new Graph();
+    graph.addEdge("B", "A");
+    graph.addEdge("A", "B");
+    graph.addVertex("C");
+
+    try {
+      InstallationOrders.build(graph.freeze(), pool);
+      fail("A cyclic graph should throw a CyclicDependencyException");
+    } catch (CyclicDependencyException e) {
+      List<String> cycle = e.getCycle();
+      if (!cycle.containsAll(Arrays.asList("A", "B"))) {
+        fail("Cycle should be A and B but is " + cycle);
+      }
+    }
+  }
+
+}
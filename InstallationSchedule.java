@@ -0,0 +1,63 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Installation order split into waves.
+ *
+ * Every package in a wave only depends on packages in earlier waves, so all packages of one wave
+ * can be installed at the same time once the previous waves are done. The first wave holds the
+ * packages without any dependencies.
+ */
+public class InstallationSchedule {
+
+  private final List<List<String>> waves;
+  private final int size;
+
+  /**
+   * @param waves packages of every wave, first wave first
+   */
+  InstallationSchedule(List<List<String>> waves) {
+    this.waves = Collections.unmodifiableList(waves);
+    int size = 0;
+    for (List<String> wave : waves) {
+      size += wave.size();
+    }
+    this.size = size;
+  }
+
+  /**
+   * @return List<List<String>> read-only list of the waves, first wave first
+   */
+  public List<List<String>> getWaves() {
+    return this.waves;
+  }
+
+  /**
+   * @return int amount of waves, the length of the longest dependency chain
+   */
+  public int getWaveCount() {
+    return this.waves.size();
+  }
+
+  /**
+   * @return int amount of packages in the schedule
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns every package in a valid installation order, wave by wave
+   *
+   * @return List<String> a new list with all the packages
+   */
+  public List<String> getOrder() {
+    List<String> order = new ArrayList<String>(this.size);
+    for (List<String> wave : this.waves) {
+      order.addAll(wave);
+    }
+    return order;
+  }
+
+}
@@ -0,0 +1,576 @@
+import java.io.IOException;
+import java.io.Reader;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Reads a file with one json value per line and reports every value to a json-simple
+ * ContentHandler, calling it the same way JSONParser.parse(Reader, ContentHandler) does for a
+ * single value. Blank lines are skipped.
+ *
+ * JSONParser creates a token object for every token and a new status stack for every value, which
+ * for a change feed of millions of short lines is most of the garbage created. This reader goes
+ * through one char buffer with a parser that keeps its own stack of open objects and arrays, so the
+ * only objects it creates are the values it hands to the handler. Object keys seen before are
+ * handed out again instead of being copied, since the lines of a file mostly repeat the same few
+ * keys.
+ *
+ * Input is checked as strictly as the json grammar: numbers like 01, 1. or +1, control characters
+ * in strings and anything after a value on its line are rejected, and a value may not span more
+ * than one line. Objects and arrays may be nested at most MAX_DEPTH deep, so a hostile line fails
+ * with a ParseException instead of running out of stack.
+ *
+ * Strings are reported as String, integers as Long, other numbers as Double, true and false as
+ * Boolean and null as null, like JSONParser does. Parsing stops after a handler method returns
+ * false.
+ */
+class JsonLinesReader {
+
+  /**
+   * Deepest nesting of objects and arrays allowed in a value
+   */
+  static final int MAX_DEPTH = 64;
+
+  /**
+   * Most distinct object keys remembered
+   */
+  private static final int KEYS = 16;
+
+  private final Reader in;
+
+  /**
+   * buffer[pos] to buffer[limit - 1] are read but not parsed yet, offset characters came before
+   * buffer[0]
+   */
+  private final char[] buffer;
+  private int pos;
+  private int limit;
+  private long offset;
+
+  /**
+   * Line of the character at pos, starting at 1
+   */
+  private int line = 1;
+
+  /**
+   * Object keys seen so far, reused for keys with the same characters
+   */
+  private final String[] keys = new String[KEYS];
+  private int keyCount;
+
+  /**
+   * Collects strings that have escapes or do not fit in the rest of the buffer, and numbers
+   */
+  private final StringBuilder text = new StringBuilder();
+
+  /**
+   * Objects and arrays the parser is inside of, true for an object, outermost first
+   */
+  private final boolean[] inObject = new boolean[MAX_DEPTH];
+
+  /**
+   * @param in reader to parse, read in chunks of bufferSize characters
+   * @param bufferSize size of the buffer
+   */
+  JsonLinesReader(Reader in, int bufferSize) {
+    this.in = in;
+    this.buffer = new char[bufferSize];
+  }
+
+  /**
+   * @return int line the parser is on, starting at 1. After an exception thrown by the handler this
+   *         is the line of the value it was handling.
+   */
+  int getLineNumber() {
+    return this.line;
+  }
+
+  /**
+   * Reads every value up to the end of the reader and reports it to handler
+   *
+   * @param handler to report the values to
+   *
+   * @throws IOException if the reader cannot be read
+   * @throws ParseException if a line is not a single json value
+   */
+  void parse(ContentHandler handler) throws IOException, ParseException {
+    while (true) {
+      int c = this.skipWhitespace();
+      if (c == -1) {
+        return;
+      }
+
+      handler.startJSON();
+      if (!this.value(handler, c)) {
+        return;
+      }
+      handler.endJSON();
+
+      // nothing else may follow a value on its line
+      c = this.skipSpaces();
+      if (c != -1 && c != '\n') {
+        throw this.unexpected(c);
+      }
+    }
+  }
+
+  /**
+   * Parses one value and everything nested in it
+   *
+   * @param handler to report the value to
+   * @param c first character of the value, already read
+   * @return boolean false if a handler method returned false
+   */
+  private boolean value(ContentHandler handler, int c) throws IOException, ParseException {
+    int depth = 0;
+    while (true) {
+      // c starts a value, objects and arrays are opened and their first value is read next
+      boolean ended = true;
+      switch (c) {
+        case '{':
+          this.open(depth++, true, c);
+          if (!handler.startObject()) {
+            return false;
+          }
+          c = this.skipSpaces();
+          if (c == '}') {
+            depth--;
+            if (!handler.endObject()) {
+              return false;
+            }
+          } else {
+            if (!this.entry(handler, c)) {
+              return false;
+            }
+            c = this.skipSpaces();
+            ended = false;
+          }
+          break;
+        case '[':
+          this.open(depth++, false, c);
+          if (!handler.startArray()) {
+            return false;
+          }
+          c = this.skipSpaces();
+          if (c == ']') {
+            depth--;
+            if (!handler.endArray()) {
+              return false;
+            }
+          } else {
+            ended = false;
+          }
+          break;
+        case '"':
+          if (!handler.primitive(this.string())) {
+            return false;
+          }
+          break;
+        case 't':
+          this.literal("rue");
+          if (!handler.primitive(Boolean.TRUE)) {
+            return false;
+          }
+          break;
+        case 'f':
+          this.literal("alse");
+          if (!handler.primitive(Boolean.FALSE)) {
+            return false;
+          }
+          break;
+        case 'n':
+          this.literal("ull");
+          if (!handler.primitive(null)) {
+            return false;
+          }
+          break;
+        default:
+          if (!handler.primitive(this.number(c))) {
+            return false;
+          }
+      }
+      if (!ended) {
+        continue;
+      }
+
+      // a value ended, close every object and array it was the last value of
+      while (true) {
+        if (depth == 0) {
+          return true;
+        }
+        boolean object = this.inObject[depth - 1];
+        if (object && !handler.endObjectEntry()) {
+          return false;
+        }
+
+        c = this.skipSpaces();
+        if (c == ',') {
+          c = this.skipSpaces();
+          if (object) {
+            if (!this.entry(handler, c)) {
+              return false;
+            }
+            c = this.skipSpaces();
+          }
+          break;
+        }
+        if (c != (object ? '}' : ']')) {
+          throw this.unexpected(c);
+        }
+        depth--;
+        if (!(object ? handler.endObject() : handler.endArray())) {
+          return false;
+        }
+      }
+    }
+  }
+
+  /**
+   * Records an object or array being opened
+   *
+   * @param depth amount of objects and arrays already open
+   * @param object true for an object, false for an array
+   * @param c the opening brace or bracket, for the error
+   */
+  private void open(int depth, boolean object, int c) throws ParseException {
+    if (depth == MAX_DEPTH) {
+      throw new ParseException(this.position() - 1, ParseException.ERROR_UNEXPECTED_CHAR,
+          Character.valueOf((char) c));
+    }
+    this.inObject[depth] = object;
+  }
+
+  /**
+   * Parses the key of an object entry and the colon after it, and starts the entry
+   *
+   * @param handler to report the entry to
+   * @param c first character of the entry, already read
+   * @return boolean false if the handler returned false
+   */
+  private boolean entry(ContentHandler handler, int c) throws IOException, ParseException {
+    if (c != '"') {
+      throw this.unexpected(c);
+    }
+    if (!handler.startObjectEntry(this.key())) {
+      return false;
+    }
+    if ((c = this.skipSpaces()) != ':') {
+      throw this.unexpected(c);
+    }
+    return true;
+  }
+
+  /**
+   * Parses a string after its opening quote
+   *
+   * @return String the string without quotes and with escapes replaced
+   */
+  private String string() throws IOException, ParseException {
+    // most strings have no escapes and end in the buffer, they are copied out in one go
+    for (int i = this.pos; i < this.limit; i++) {
+      char c = this.buffer[i];
+      if (c == '"') {
+        String s = new String(this.buffer, this.pos, i - this.pos);
+        this.pos = i + 1;
+        return s;
+      }
+      if (c == '\\' || c < ' ') {
+        break;
+      }
+    }
+    return this.slowString();
+  }
+
+  /**
+   * Parses an object key after its opening quote, reusing the String of an equal earlier key
+   *
+   * @return String the key
+   */
+  private String key() throws IOException, ParseException {
+    int end = -1;
+    for (int i = this.pos; i < this.limit; i++) {
+      char c = this.buffer[i];
+      if (c == '"') {
+        end = i;
+        break;
+      }
+      if (c == '\\' || c < ' ') {
+        break;
+      }
+    }
+
+    String key;
+    if (end >= 0) {
+      int length = end - this.pos;
+      for (int k = 0; k < this.keyCount; k++) {
+        if (this.keys[k].length() == length && this.matches(this.keys[k], this.pos)) {
+          this.pos = end + 1;
+          return this.keys[k];
+        }
+      }
+      key = new String(this.buffer, this.pos, length);
+      this.pos = end + 1;
+    } else {
+      key = this.slowString();
+      for (int k = 0; k < this.keyCount; k++) {
+        if (this.keys[k].equals(key)) {
+          return this.keys[k];
+        }
+      }
+    }
+
+    if (this.keyCount < KEYS) {
+      this.keys[this.keyCount++] = key;
+    }
+    return key;
+  }
+
+  /**
+   * @return boolean true if the buffer holds the characters of key starting at start
+   */
+  private boolean matches(String key, int start) {
+    for (int i = 0; i < key.length(); i++) {
+      if (this.buffer[start + i] != key.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Parses the rest of a string one character at a time, refilling the buffer and replacing
+   * escapes as needed
+   *
+   * @return String the string without quotes and with escapes replaced
+   */
+  private String slowString() throws IOException, ParseException {
+    this.text.setLength(0);
+    while (true) {
+      int c = this.read();
+      if (c == '"') {
+        return this.text.toString();
+      }
+      // control characters, line breaks included, must be escaped
+      if (c == -1 || c < ' ') {
+        throw this.unexpected(c);
+      }
+      if (c != '\\') {
+        this.text.append((char) c);
+        continue;
+      }
+
+      c = this.read();
+      switch (c) {
+        case '"':
+        case '\\':
+        case '/':
+          this.text.append((char) c);
+          break;
+        case 'b':
+          this.text.append('\b');
+          break;
+        case 'f':
+          this.text.append('\f');
+          break;
+        case 'n':
+          this.text.append('\n');
+          break;
+        case 'r':
+          this.text.append('\r');
+          break;
+        case 't':
+          this.text.append('\t');
+          break;
+        case 'u':
+          int unicode = 0;
+          for (int i = 0; i < 4; i++) {
+            c = this.read();
+            int digit = Character.digit(c, 16);
+            if (c == -1 || digit < 0) {
+              throw this.unexpected(c);
+            }
+            unicode = unicode * 16 + digit;
+          }
+          this.text.append((char) unicode);
+          break;
+        default:
+          throw this.unexpected(c);
+      }
+    }
+  }
+
+  /**
+   * Parses a number: an optional minus, an integer part without leading zeros, and an optional
+   * fraction and exponent
+   *
+   * @param c first character of the number, already read
+   * @return Number Long if the number is an integer, Double otherwise
+   */
+  private Number number(int c) throws IOException, ParseException {
+    this.text.setLength(0);
+    if (c == '-') {
+      this.text.append('-');
+      c = this.read();
+    }
+    if (c == '0') {
+      this.text.append('0');
+    } else {
+      this.digits(c);
+    }
+
+    boolean integer = true;
+    if (this.peek() == '.') {
+      integer = false;
+      this.text.append((char) this.read());
+      this.digits(this.read());
+    }
+    c = this.peek();
+    if (c == 'e' || c == 'E') {
+      integer = false;
+      this.text.append((char) this.read());
+      c = this.read();
+      if (c == '+' || c == '-') {
+        this.text.append((char) c);
+        c = this.read();
+      }
+      this.digits(c);
+    }
+
+    String number = this.text.toString();
+    try {
+      return integer ? (Number) Long.valueOf(number) : (Number) Double.valueOf(number);
+    } catch (NumberFormatException e) {
+      // an integer too large for a long
+      throw new ParseException(this.position() - number.length(),
+          ParseException.ERROR_UNEXPECTED_TOKEN, number);
+    }
+  }
+
+  /**
+   * Appends one or more digits to text, stopping in front of the first character that is not one
+   *
+   * @param c first digit, already read
+   */
+  private void digits(int c) throws IOException, ParseException {
+    if (c < '0' || c > '9') {
+      throw this.unexpected(c);
+    }
+    this.text.append((char) c);
+    for (c = this.peek(); c >= '0' && c <= '9'; c = this.peek()) {
+      this.text.append((char) c);
+      this.pos++;
+    }
+  }
+
+  /**
+   * Reads the rest of true, false or null
+   *
+   * @param rest characters that must follow
+   */
+  private void literal(String rest) throws IOException, ParseException {
+    for (int i = 0; i < rest.length(); i++) {
+      int c = this.read();
+      if (c != rest.charAt(i)) {
+        throw this.unexpected(c);
+      }
+    }
+  }
+
+  /**
+   * Skips whitespace, including line breaks, and reads the character after it
+   *
+   * @return int next character that is not whitespace, or -1 at the end of the reader
+   */
+  private int skipWhitespace() throws IOException {
+    while (this.pos < this.limit || this.fill()) {
+      char c = this.buffer[this.pos++];
+      if (c == '\n') {
+        this.line++;
+      } else if (c != ' ' && c != '\t' && c != '\r') {
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Skips whitespace up to the end of the line and reads the character after it
+   *
+   * @return int next character that is not a space, tab or carriage return, or -1 at the end of the
+   *         reader
+   */
+  private int skipSpaces() throws IOException {
+    while (this.pos < this.limit || this.fill()) {
+      char c = this.buffer[this.pos++];
+      if (c != ' ' && c != '\t' && c != '\r') {
+        if (c == '\n') {
+          this.line++;
+        }
+        return c;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return int next character without reading it, or -1 at the end of the reader
+   */
+  private int peek() throws IOException {
+    if (this.pos == this.limit && !this.fill()) {
+      return -1;
+    }
+    return this.buffer[this.pos];
+  }
+
+  /**
+   * @return int next character, or -1 at the end of the reader
+   */
+  private int read() throws IOException {
+    if (this.pos == this.limit && !this.fill()) {
+      return -1;
+    }
+    char c = this.buffer[this.pos++];
+    if (c == '\n') {
+      this.line++;
+    }
+    return c;
+  }
+
+  /**
+   * Reads the next chunk of the reader into the buffer once every character in it was read
+   *
+   * @return boolean false at the end of the reader
+   */
+  private boolean fill() throws IOException {
+    this.offset += this.limit;
+    this.pos = 0;
+    this.limit = 0;
+    int n = this.in.read(this.buffer);
+    if (n <= 0) {
+      return false;
+    }
+    this.limit = n;
+    return true;
+  }
+
+  /**
+   * @return int position of the next character in the reader
+   */
+  private int position() {
+    return (int) (this.offset + this.pos);
+  }
+
+  /**
+   * @param c character that was read where it is not allowed, -1 for the end of the reader
+   * @return ParseException for the character
+   */
+  private ParseException unexpected(int c) {
+    if (c == -1) {
+      return new ParseException(this.position(), ParseException.ERROR_UNEXPECTED_TOKEN,
+          "END OF FILE");
+    }
+    return new ParseException(this.position() - 1, ParseException.ERROR_UNEXPECTED_CHAR,
+        Character.valueOf((char) c));
+  }
+
+}
@@ -0,0 +1,202 @@
+import static org.junit.Assert.fail;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for JsonLinesReader testing
+ */
+class JsonLinesReaderTest {
+
+  /**
+   * Records every handler call as a string, so two parsers can be compared
+   */
+  static class Recorder implements ContentHandler {
+    final List<String> events = new ArrayList<String>();
+
+    /**
+     * Handler calls left before one returns false, -1 for never
+     */
+    int stopAfter = -1;
+
+    private boolean record(String event) {
+      this.events.add(event);
+      return this.stopAfter < 0 || --this.stopAfter > 0;
+    }
+
+    public void startJSON() {
+      this.events.add("startJSON");
+    }
+
+    public void endJSON() {
+      this.events.add("endJSON");
+    }
+
+    public boolean startObject() {
+      return this.record("{");
+    }
+
+    public boolean endObject() {
+      return this.record("}");
+    }
+
+    public boolean startObjectEntry(String key) {
+      return this.record("key " + key);
+    }
+
+    public boolean endObjectEntry() {
+      return this.record("end key");
+    }
+
+    public boolean startArray() {
+      return this.record("[");
+    }
+
+    public boolean endArray() {
+      return this.record("]");
+    }
+
+    public boolean primitive(Object value) {
+      return this.record(value == null ? "null"
+          : value.getClass().getSimpleName() + " " + value);
+    }
+  }
+
+  /**
+   * @param text lines to parse
+   * @param bufferSize buffer size of the reader
+   * @return List<String> handler calls made by JsonLinesReader
+   */
+  private static List<String> parse(String text, int bufferSize)
+      throws IOException, ParseException {
+    Recorder recorder = new Recorder();
+    new JsonLinesReader(new StringReader(text), bufferSize).parse(recorder);
+    return recorder.events;
+  }
+
+  /**
+   * @param text lines to parse
+   * @return ParseException thrown for text, fails if none is
+   */
+  private static ParseException parseError(String text) throws IOException {
+    try {
+      parse(text, 4096);
+    } catch (ParseException e) {
+      return e;
+    }
+    fail(text + " should not parse");
+    return null;
+  }
+
+  /**
+   * Reports the same handler calls as JSONParser does line by line, whatever the buffer size, so
+   * strings, keys and numbers that cross a refill are read whole
+   */
+  @Test
+  void testJsonLinesReader_001_matches_json_simple() throws Exception {
+    String[] lines = {"{\"op\": \"add\", \"name\": \"A\", \"dependencies\": [\"B\", \"C\"]}",
+        "  {\"name\":\"esc \\\"q\\\" \\\\ \\/ \\b\\f\\n\\r\\t \\u00e9\\u20AC\"}  ",
+        "[1, -2, 0, 3.5, -0.25e2, 1E+3, 2e-2, 9223372036854775807]",
+        "{\"a\": {\"b\": [true, false, null, {}, []]}, \"c\": \"\"}", "\"just a string\"", "-0",
+        "{\"op\": \"remove\", \"name\": \"A\"}"};
+    Recorder expected = new Recorder();
+    StringBuilder text = new StringBuilder();
+    for (String line : lines) {
+      new JSONParser().parse(line, expected);
+      text.append(line).append("\r\n\n");
+    }
+
+    for (int bufferSize : new int[] {1, 2, 3, 5, 7, 64, 4096}) {
+      List<String> actual = parse(text.toString(), bufferSize);
+      if (!actual.equals(expected.events)) {
+        fail("Buffer size " + bufferSize + " gave " + actual + " but should give "
+            + expected.events);
+      }
+    }
+  }
+
+  /**
+   * Input that is not json, or a value that does not stay on its line, is rejected
+   */
+  @Test
+  void testJsonLinesReader_002_strict() throws Exception {
+    String[] bad = {"01", "1.", ".5", "+1", "-", "1e", "1e+", "tru", "nul", "{\"a\" 1}",
+        "{\"a\": 1,}", "[1,]", "[1 2]", "{a: 1}", "\"tab\there\"", "\"open", "\"bad \\x\"",
+        "\"\\u12G4\"", "{\"a\": 1} x", "{\"a\":\n1}", "[1,\n2]", "\"a\nb\"", "{\"a\": 1]",
+        "99999999999999999999"};
+    for (String text : bad) {
+      parseError(text);
+    }
+  }
+
+  /**
+   * Errors point at the offending character, counted from the start of the reader
+   */
+  @Test
+  void testJsonLinesReader_003_error_positions() throws Exception {
+    ParseException e = parseError("{\"a\": 1}\n{\"b\": x}");
+    if (e.getPosition() != 15 || e.getErrorType() != ParseException.ERROR_UNEXPECTED_CHAR
+        || !Character.valueOf('x').equals(e.getUnexpectedObject())) {
+      fail("Error should be x at 15 but is " + e);
+    }
+
+    e = parseError("[1, 2");
+    if (e.getPosition() != 5 || e.getErrorType() != ParseException.ERROR_UNEXPECTED_TOKEN) {
+      fail("Error should be the end of the file at 5 but is " + e);
+    }
+  }
+
+  /**
+   * Nesting deeper than MAX_DEPTH fails with a ParseException instead of a StackOverflowError
+   */
+  @Test
+  void testJsonLinesReader_004_depth_limit() throws Exception {
+    StringBuilder deepest = new StringBuilder();
+    for (int i = 0; i < JsonLinesReader.MAX_DEPTH; i++) {
+      deepest.append(i % 2 == 0 ? "[" : "{\"k\":");
+    }
+    deepest.append("1");
+    for (int i = JsonLinesReader.MAX_DEPTH - 1; i >= 0; i--) {
+      deepest.append(i % 2 == 0 ? "]" : "}");
+    }
+    parse(deepest.toString(), 4096);
+
+    StringBuilder deeper = new StringBuilder();
+    for (int i = 0; i < 100000; i++) {
+      deeper.append('[');
+    }
+    ParseException e = parseError(deeper.toString());
+    if (e.getPosition() != JsonLinesReader.MAX_DEPTH) {
+      fail("Error should be at the bracket past MAX_DEPTH but is " + e);
+    }
+  }
+
+  /**
+   * Blank lines are skipped, line numbers count every line, and parsing stops when the handler
+   * returns false
+   */
+  @Test
+  void testJsonLinesReader_005_lines_and_stopping() throws Exception {
+    JsonLinesReader reader = new JsonLinesReader(new StringReader("\n  \n1\n\n[2, 3]\n"), 16);
+    Recorder recorder = new Recorder();
+    reader.parse(recorder);
+    if (recorder.events.size() != 9 || reader.getLineNumber() != 6) {
+      fail("Should see 2 values and end on line 6 but saw " + recorder.events + " and ended on "
+          + reader.getLineNumber());
+    }
+
+    reader = new JsonLinesReader(new StringReader("[1, 2, 3]\n[4]\n"), 16);
+    recorder = new Recorder();
+    recorder.stopAfter = 2;
+    reader.parse(recorder);
+    if (!recorder.events.toString().equals("[startJSON, [, Long 1]")) {
+      fail("Parsing should stop after the handler returns false but saw " + recorder.events);
+    }
+  }
+
+}
@@ -0,0 +1,30 @@
+/**
+ * Receives a callback after every PackageManager operation so it can be timed and counted.
+ *
+ * Register with PackageManager.setMetricsListener(MetricsListener). Nothing is measured while no
+ * listener is set, so metrics cost nothing unless they are turned on. Callbacks are made on the
+ * thread that ran the operation and should return quickly. PackageMetrics is a ready to use
+ * implementation.
+ */
+public interface MetricsListener {
+
+  /**
+   * Called after an operation completed without throwing. Operations that call other operations
+   * report those separately as well, for example toInstall() and the getInstallationOrder() calls
+   * it makes.
+   *
+   * @param operation name of the operation, usually the name of the method
+   * @param elapsedNanos time the operation took in nanoseconds
+   * @param vertices amount of packages the operation traversed or returned
+   * @param edges amount of dependency edges the operation followed
+   */
+  public void operationCompleted(String operation, long elapsedNanos, long vertices, long edges);
+
+  /**
+   * Called every time the installation order cache is asked for a package
+   *
+   * @param hit true if the cache had the installation order
+   */
+  public void cacheLookup(boolean hit);
+
+}
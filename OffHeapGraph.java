@@ -0,0 +1,392 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Read-only graph with the same layout as CompactGraph, but with the string table and the CSR
+ * edge arrays stored outside the Java heap.
+ *
+ * A CompactGraph of tens of millions of edges is a few huge int[]s and a String per vertex that
+ * the garbage collector has to keep marking and copying. Here every part of the graph lives in a
+ * direct or memory-mapped ByteBuffer, so the heap only holds a handful of buffer objects no matter
+ * how big the graph is. The string table is a BufferVertexTable, names are only decoded when they
+ * are asked for.
+ *
+ * copyOf() copies a CompactGraph into direct buffers. GraphSnapshot.loadOffHeap() maps a snapshot
+ * file instead, which never has the graph on the heap at all and is the way to load registries
+ * larger than the heap.
+ *
+ * getAdjacentVerticesOf() and getAllVertices() return views like CompactGraph does. The id based
+ * methods (outStart(), outEnd(), outTarget(), inStart(), inEnd(), inSource()) read the buffers
+ * directly, so traversals written against them do not allocate anything. Any method that would
+ * mutate the graph throws an UnsupportedOperationException.
+ */
+public class OffHeapGraph implements IndexedGraph {
+
+  /**
+   * vertex name <-> id
+   */
+  private final VertexTable vertices;
+
+  /**
+   * Outgoing edges in CSR form
+   */
+  private final IntBuffer offsets;
+  private final IntBuffer targets;
+
+  /**
+   * Incoming edges in CSR form
+   */
+  private final IntBuffer predecessorOffsets;
+  private final IntBuffer predecessorSources;
+
+  private final int order;
+  private final int size;
+  private final long bytes;
+
+  /**
+   * @param vertices vertex name <-> id table
+   * @param offsets outgoing edge offsets, vertices.size() + 1 ints
+   * @param targets outgoing edge targets
+   * @param predecessorOffsets incoming edge offsets, vertices.size() + 1 ints
+   * @param predecessorSources incoming edge sources
+   * @param bytes amount of memory outside the heap used by all of the above
+   */
+  OffHeapGraph(VertexTable vertices, IntBuffer offsets, IntBuffer targets,
+      IntBuffer predecessorOffsets, IntBuffer predecessorSources, long bytes) {
+    this.vertices = vertices;
+    this.offsets = offsets;
+    this.targets = targets;
+    this.predecessorOffsets = predecessorOffsets;
+    this.predecessorSources = predecessorSources;
+    this.order = vertices.size();
+    this.size = targets.limit();
+    this.bytes = bytes;
+  }
+
+  /**
+   * Copies a graph into direct buffers. Every array gets its own buffer, so each one can hold up
+   * to 2 GB.
+   *
+   * @param graph to copy
+   * @return OffHeapGraph with the same vertices, ids and edges as graph
+   */
+  public static OffHeapGraph copyOf(IndexedGraph graph) {
+    int order = graph.order();
+    int size = graph.size();
+
+    // string table, laid out like the one in a snapshot file
+    String[] names = new String[order];
+    byte[][] encoded = new byte[order][];
+    int nameBytes = 0;
+    for (int id = 0; id < order; id++) {
+      names[id] = graph.nameOf(id);
+      encoded[id] = names[id].getBytes(StandardCharsets.UTF_8);
+      nameBytes += encoded[id].length;
+    }
+    int capacity = BufferVertexTable.indexCapacityFor(order);
+    int namesPosition = 4 * (order + 1);
+    int indexPosition = namesPosition + (nameBytes + 3) / 4 * 4;
+
+    ByteBuffer table = allocate(indexPosition + 4 * capacity);
+    int offset = 0;
+    table.putInt(0, 0);
+    for (int id = 0; id < order; id++) {
+      offset += encoded[id].length;
+      table.putInt(4 * (id + 1), offset);
+    }
+    table.position(namesPosition);
+    for (byte[] name : encoded) {
+      table.put(name);
+    }
+    table.position(indexPosition);
+    table.asIntBuffer().put(BufferVertexTable.buildIndex(names, capacity));
+    table.position(0);
+    VertexTable vertices =
+        new BufferVertexTable(table, order, 0, namesPosition, indexPosition, capacity);
+
+    // edges
+    IntBuffer offsets = allocate(4 * (order + 1)).asIntBuffer();
+    IntBuffer predecessorOffsets = allocate(4 * (order + 1)).asIntBuffer();
+    for (int id = 0; id < order; id++) {
+      offsets.put(id, graph.outStart(id));
+      predecessorOffsets.put(id, graph.inStart(id));
+    }
+    offsets.put(order, size);
+    predecessorOffsets.put(order, size);
+
+    IntBuffer targets = allocate(4 * size).asIntBuffer();
+    IntBuffer predecessorSources = allocate(4 * size).asIntBuffer();
+    for (int e = 0; e < size; e++) {
+      targets.put(e, graph.outTarget(e));
+      predecessorSources.put(e, graph.inSource(e));
+    }
+
+    return new OffHeapGraph(vertices, offsets, targets, predecessorOffsets, predecessorSources,
+        table.capacity() + 8L * (order + 1) + 8L * size);
+  }
+
+  /**
+   * Helper method to allocate a direct buffer in the native byte order
+   *
+   * @param bytes size of the buffer
+   * @return ByteBuffer a new direct buffer
+   */
+  private static ByteBuffer allocate(int bytes) {
+    return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Helper method to view a section of a buffer as ints, in the byte order of the buffer
+   *
+   * @param buffer holding the section
+   * @param position byte position of the section
+   * @param count amount of ints in the section
+   * @return IntBuffer over the section, indexed from 0
+   */
+  static IntBuffer ints(ByteBuffer buffer, int position, int count) {
+    ByteBuffer section = buffer.duplicate();
+    section.limit(position + 4 * count).position(position);
+    return section.slice().order(buffer.order()).asIntBuffer();
+  }
+
+  /**
+   * Not supported, OffHeapGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addVertex(String vertex) {
+    throw new UnsupportedOperationException("OffHeapGraph is read-only");
+  }
+
+  /**
+   * Not supported, OffHeapGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeVertex(String vertex) {
+    throw new UnsupportedOperationException("OffHeapGraph is read-only");
+  }
+
+  /**
+   * Not supported, OffHeapGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("OffHeapGraph is read-only");
+  }
+
+  /**
+   * Not supported, OffHeapGraph is read-only
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("OffHeapGraph is read-only");
+  }
+
+  /**
+   * Returns a read-only Set that contains all the vertices
+   *
+   * The returned set is a view over the vertex table, names are decoded while iterating
+   *
+   * @return Set<String> set of vertices
+   */
+  public Set<String> getAllVertices() {
+    return new AbstractSet<String>() {
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof String && OffHeapGraph.this.idOf((String) o) >= 0;
+      }
+
+      @Override
+      public Iterator<String> iterator() {
+        return new Iterator<String>() {
+          private int next = 0;
+
+          @Override
+          public boolean hasNext() {
+            return this.next < OffHeapGraph.this.order;
+          }
+
+          @Override
+          public String next() {
+            if (!this.hasNext()) {
+              throw new NoSuchElementException();
+            }
+            return OffHeapGraph.this.nameOf(this.next++);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return OffHeapGraph.this.order;
+      }
+    };
+  }
+
+  /**
+   * Returns whether the edge from vertex1 to vertex2 is in the graph (edge is directed)
+   *
+   * Scans the outgoing edges of vertex1 or the incoming edges of vertex2, whichever is shorter
+   *
+   * @param String vertex1 vertex the edge goes from
+   * @param String vertex2 vertex the edge goes to
+   *
+   * @return boolean true if the edge is in the graph
+   */
+  public boolean hasEdge(String vertex1, String vertex2) {
+    int from = this.idOf(vertex1);
+    int to = this.idOf(vertex2);
+    if (from < 0 || to < 0) {
+      return false;
+    }
+
+    if (this.outEnd(from) - this.outStart(from) <= this.inEnd(to) - this.inStart(to)) {
+      for (int e = this.outStart(from); e < this.outEnd(from); e++) {
+        if (this.targets.get(e) == to) {
+          return true;
+        }
+      }
+    } else {
+      for (int e = this.inStart(to); e < this.inEnd(to); e++) {
+        if (this.predecessorSources.get(e) == from) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get all the neighbor (adjacent) vertices of a vertex
+   *
+   * The returned list is a read-only view over the edge buffer, nothing is copied
+   *
+   * @param String vertex the vertex you want to get neighbors of
+   *
+   * @return List<String> list of adjacent vertices, or null if vertex is not in the graph
+   */
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    int id = this.idOf(vertex);
+    if (id < 0) {
+      return null;
+    }
+    return new NameView(this.targets, this.outStart(id), this.outEnd(id));
+  }
+
+  /**
+   * Get all the predecessor vertices of a vertex (every vertex that has an edge to it)
+   *
+   * The returned list is a read-only view over the edge buffer, nothing is copied
+   *
+   * @param String vertex the vertex you want to get predecessors of
+   *
+   * @return List<String> list of predecessor vertices, or null if vertex is not in the graph
+   */
+  public List<String> getPredecessorsOf(String vertex) {
+    int id = this.idOf(vertex);
+    if (id < 0) {
+      return null;
+    }
+    return new NameView(this.predecessorSources, this.inStart(id), this.inEnd(id));
+  }
+
+  /**
+   * Returns the number of edges in this graph.
+   *
+   * @return int the number of edges
+   */
+  public int size() {
+    return this.size;
+  }
+
+  /**
+   * Returns the number of vertices in this graph.
+   *
+   * @return int the number of vertices
+   */
+  public int order() {
+    return this.order;
+  }
+
+  /**
+   * @return long amount of memory outside the heap used by the graph
+   */
+  public long getOffHeapBytes() {
+    return this.bytes;
+  }
+
+  public int idOf(String vertex) {
+    if (vertex == null) {
+      return -1;
+    }
+    return this.vertices.idOf(vertex);
+  }
+
+  public String nameOf(int id) {
+    return this.vertices.nameOf(id);
+  }
+
+  public int outStart(int id) {
+    return this.offsets.get(id);
+  }
+
+  public int outEnd(int id) {
+    return this.offsets.get(id + 1);
+  }
+
+  public int outTarget(int edge) {
+    return this.targets.get(edge);
+  }
+
+  public int inStart(int id) {
+    return this.predecessorOffsets.get(id);
+  }
+
+  public int inEnd(int id) {
+    return this.predecessorOffsets.get(id + 1);
+  }
+
+  public int inSource(int edge) {
+    return this.predecessorSources.get(edge);
+  }
+
+  /**
+   * Read-only List<String> view over a slice of one of the edge buffers
+   */
+  private class NameView extends AbstractList<String> {
+    private final IntBuffer edges;
+    private final int start;
+    private final int end;
+
+    NameView(IntBuffer edges, int start, int end) {
+      this.edges = edges;
+      this.start = start;
+      this.end = end;
+    }
+
+    @Override
+    public String get(int index) {
+      if (index < 0 || index >= this.end - this.start) {
+        throw new IndexOutOfBoundsException("Index: " + index);
+      }
+      return OffHeapGraph.this.nameOf(this.edges.get(this.start + index));
+    }
+
+    @Override
+    public int size() {
+      return this.end - this.start;
+    }
+  }
+
+}
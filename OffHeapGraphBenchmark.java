@@ -0,0 +1,135 @@
+import java.io.File;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compares garbage collection pauses while a large registry is held as a HashMap based Graph, as
+ * a CompactGraph and as an OffHeapGraph loaded from a snapshot.
+ *
+ * Usage: java OffHeapGraphBenchmark [packages] [seconds]
+ *
+ * Defaults to a 1000000 package random registry and 5 seconds per graph. For every graph the heap
+ * in use after a full collection is printed, then the time of a few full collections, then a
+ * workload runs that keeps looking up packages while allocating short lived garbage and a slowly
+ * replaced set of longer lived objects, like a server answering requests would. The amount of
+ * collections during the workload, the time spent in them and the lookups per second are printed
+ * last. Run with the same -Xmx for every graph, for example
+ *
+ * java -Xmx8g OffHeapGraphBenchmark 1000000 5
+ */
+public class OffHeapGraphBenchmark {
+
+  private static final int FULL_COLLECTIONS = 3;
+
+  /**
+   * Objects kept alive by the workload, replaced one at a time so some survive into the old
+   * generation
+   */
+  private static final int RETAINED = 1 << 16;
+
+  /*
+   * Only static methods, no instances
+   */
+  private OffHeapGraphBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    int n = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    long millis = (long) ((args.length > 1 ? Double.parseDouble(args[1]) : 5) * 1000);
+
+    int[][] registry = GraphGenerator.randomDag(n, 4, 42);
+    File snapshot = File.createTempFile("benchmark", ".snapshot");
+    snapshot.deleteOnExit();
+    GraphSnapshot.write(GraphGenerator.toGraph(registry).freeze(), snapshot.getPath());
+
+    System.out.println("graph\theap MB\toff-heap MB\tfull gc ms\tgc count\tgc ms\tlookups/sec");
+
+    // build one graph at a time so the others are not on the heap while it is measured
+    Graph graph = GraphGenerator.toGraph(registry);
+    registry = null;
+    run("Graph", graph, 0, n, millis);
+    graph = null;
+
+    CompactGraph compact = GraphSnapshot.load(snapshot.getPath());
+    run("CompactGraph", compact, 0, n, millis);
+    compact = null;
+
+    OffHeapGraph offHeap = GraphSnapshot.loadOffHeap(snapshot.getPath());
+    run("OffHeapGraph", offHeap, offHeap.getOffHeapBytes(), n, millis);
+
+    snapshot.delete();
+  }
+
+  /**
+   * Measures one graph and prints a line of results
+   *
+   * @param label printed first
+   * @param graph to keep alive and look up packages in
+   * @param offHeapBytes memory the graph uses outside the heap
+   * @param n amount of packages in the graph
+   * @param millis how long to run the workload
+   */
+  private static void run(String label, GraphADT graph, long offHeapBytes, int n, long millis) {
+    double fullMillis = 0;
+    for (int i = 0; i < FULL_COLLECTIONS; i++) {
+      long start = System.nanoTime();
+      System.gc();
+      fullMillis += (System.nanoTime() - start) / 1e6;
+    }
+    Runtime runtime = Runtime.getRuntime();
+    long heap = runtime.totalMemory() - runtime.freeMemory();
+
+    long collections = collectionCount();
+    long collectionMillis = collectionMillis();
+
+    Random random = new Random(3);
+    Object[] retained = new Object[RETAINED];
+    long lookups = 0;
+    long sink = 0;
+    long end = System.currentTimeMillis() + millis;
+    while (System.currentTimeMillis() < end) {
+      for (int i = 0; i < 1000; i++) {
+        List<String> adjacent =
+            graph.getAdjacentVerticesOf(GraphGenerator.name(random.nextInt(n)));
+        sink += adjacent.size();
+        lookups++;
+
+        // short lived garbage, and now and then something that lives a while
+        byte[] garbage = new byte[64 + random.nextInt(512)];
+        sink += garbage.length;
+        if ((i & 7) == 0) {
+          retained[random.nextInt(RETAINED)] = new long[16];
+        }
+      }
+    }
+
+    System.out.printf("%s\t%.1f\t%.1f\t%.1f\t%d\t%d\t%.0f%n", label, heap / 1e6,
+        offHeapBytes / 1e6, fullMillis / FULL_COLLECTIONS, collectionCount() - collections,
+        collectionMillis() - collectionMillis, lookups * 1000.0 / millis);
+    PackageManagerBenchmark.sink += sink + retained.length;
+  }
+
+  /**
+   * @return long collections so far, summed over all collectors
+   */
+  private static long collectionCount() {
+    long count = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      count += Math.max(0, collector.getCollectionCount());
+    }
+    return count;
+  }
+
+  /**
+   * @return long milliseconds spent collecting so far, summed over all collectors
+   */
+  private static long collectionMillis() {
+    long millis = 0;
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      millis += Math.max(0, collector.getCollectionTime());
+    }
+    return millis;
+  }
+
+}
@@ -0,0 +1,173 @@
+import static org.junit.Assert.fail;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for OffHeapGraph testing
+ */
+class OffHeapGraphTest {
+
+  File file;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    file = File.createTempFile("offheap", ".snapshot");
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    file.delete();
+    file = null;
+  }
+
+  /**
+   * Helper method to check that an OffHeapGraph holds the same graph as a CompactGraph
+   *
+   * @param expected graph to compare to
+   * @param actual graph to check
+   */
+  private static void assertSameGraph(CompactGraph expected, OffHeapGraph actual) {
+    if (actual.order() != expected.order() || actual.size() != expected.size()) {
+      fail("Expected " + expected.order() + " vertices and " + expected.size() + " edges but got "
+          + actual.order() + " and " + actual.size());
+    }
+    if (!actual.getAllVertices().equals(expected.getAllVertices())) {
+      fail("Vertices should be " + expected.getAllVertices() + " but are "
+          + actual.getAllVertices());
+    }
+    for (String v : expected.getAllVertices()) {
+      if (actual.idOf(v) != expected.idOf(v)) {
+        fail("Id of " + v + " should be " + expected.idOf(v) + " but is " + actual.idOf(v));
+      }
+      if (!actual.getAdjacentVerticesOf(v).equals(expected.getAdjacentVerticesOf(v))) {
+        fail("Adjacent vertices of " + v + " should be " + expected.getAdjacentVerticesOf(v)
+            + " but are " + actual.getAdjacentVerticesOf(v));
+      }
+      if (!actual.getPredecessorsOf(v).equals(expected.getPredecessorsOf(v))) {
+        fail("Predecessors of " + v + " should be " + expected.getPredecessorsOf(v) + " but are "
+            + actual.getPredecessorsOf(v));
+      }
+    }
+  }
+
+  /**
+   * A copied graph has the same vertices, ids and edges
+   */
+  @Test
+  void testOffHeap_001_copy() {
+    Graph graph = new Graph();
+    graph.addEdge("A", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("C", "B");
+    graph.addVertex("D");
+    graph.addVertex("\u00fcnicode");
+
+    CompactGraph compact = graph.freeze();
+    OffHeapGraph offHeap = OffHeapGraph.copyOf(compact);
+    assertSameGraph(compact, offHeap);
+
+    if (!offHeap.hasEdge("C", "B") || offHeap.hasEdge("B", "C") || offHeap.hasEdge("A", "E")) {
+      fail("hasEdge() should only find edges that are in the graph");
+    }
+    if (offHeap.getAdjacentVerticesOf("E") != null || offHeap.idOf(null) != -1) {
+      fail("Missing vertices should not be found");
+    }
+    if (offHeap.getOffHeapBytes() <= 0) {
+      fail("The graph should use memory outside the heap");
+    }
+
+    try {
+      offHeap.addEdge("D", "A");
+      fail("OffHeapGraph should be read-only");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+  }
+
+  /**
+   * A snapshot mapped off heap is the same graph as the one loaded onto the heap
+   */
+  @Test
+  void testOffHeap_002_snapshot() throws IOException {
+    CompactGraph compact =
+        GraphGenerator.toGraph(GraphGenerator.powerLaw(20000, 4, 7)).freeze();
+    GraphSnapshot.write(compact, file.getPath());
+
+    OffHeapGraph offHeap = GraphSnapshot.loadOffHeap(file.getPath());
+    assertSameGraph(GraphSnapshot.load(file.getPath()), offHeap);
+
+    // the id based methods walk the same edges
+    for (int id = 0; id < compact.order(); id++) {
+      if (offHeap.outEnd(id) - offHeap.outStart(id) != compact.outEnd(id) - compact.outStart(id)
+          || offHeap.inEnd(id) - offHeap.inStart(id) != compact.inEnd(id) - compact.inStart(id)) {
+        fail("Degrees of " + compact.nameOf(id) + " should be the same in both graphs");
+      }
+      for (int e = offHeap.inStart(id); e < offHeap.inEnd(id); e++) {
+        if (offHeap.inSource(e) != compact.inSource(e)) {
+          fail("Incoming edge " + e + " should come from " + compact.nameOf(compact.inSource(e)));
+        }
+      }
+    }
+  }
+
+  /**
+   * The traversals give the same answers on a snapshot mapped off heap as on a CompactGraph
+   */
+  @Test
+  void testOffHeap_003_traversals() throws Exception {
+    Graph graph = GraphGenerator.toGraph(GraphGenerator.randomDag(5000, 4, 11));
+    graph.addEdge("p4999", "p4998");
+    CompactGraph compact = graph.freeze();
+    GraphSnapshot.write(compact, file.getPath());
+    OffHeapGraph offHeap = GraphSnapshot.loadOffHeap(file.getPath());
+
+    for (int id = 0; id < compact.order(); id += 53) {
+      if (!Arrays.equals(DependencyTraversal.installationOrder(offHeap, id),
+          DependencyTraversal.installationOrder(compact, id))) {
+        fail("Installation order of " + compact.nameOf(id) + " differs off heap");
+      }
+    }
+
+    ForkJoinPool pool = ForkJoinPool.commonPool();
+    if (!ParallelTopologicalSort.sort(offHeap, pool).getOrder()
+        .equals(ParallelTopologicalSort.sort(compact, pool).getOrder())) {
+      fail("Topological order differs off heap");
+    }
+    InstallationOrders expected = InstallationOrders.build(compact, pool);
+    InstallationOrders actual = InstallationOrders.build(offHeap, pool);
+    for (int id = 0; id < compact.order(); id += 53) {
+      if (!Arrays.equals(actual.getOrder(id), expected.getOrder(id))) {
+        fail("Installation order of " + compact.nameOf(id) + " differs off heap");
+      }
+    }
+    ReachabilityIndex reachability = new ReachabilityIndex(offHeap);
+    ReachabilityIndex expectedReachability = new ReachabilityIndex(compact);
+    for (int id = 0; id < compact.order(); id += 53) {
+      String pkg = compact.nameOf(id);
+      if (reachability.dependsOn(pkg, "p7") != expectedReachability.dependsOn(pkg, "p7")) {
+        fail("Whether " + pkg + " depends on p7 differs off heap");
+      }
+    }
+
+    // a cycle is found the same way
+    graph.addEdge("p4998", "p4999");
+    GraphSnapshot.write(graph.freeze(), file.getPath());
+    offHeap = GraphSnapshot.loadOffHeap(file.getPath());
+    if (!new StronglyConnectedComponents(offHeap).cycles()
+        .equals(new StronglyConnectedComponents(graph.freeze()).cycles())) {
+      fail("Cycles differ off heap");
+    }
+  }
+
+}
@@ -0,0 +1,128 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import org.json.simple.parser.ContentHandler;
+
+/**
+ * Streaming json-simple ContentHandler that adds packages to a GraphBuilder while the file is
+ * being parsed, instead of building a JSONObject tree of the whole document first.
+ *
+ * Expects the usual package file layout:
+ *
+ * { "packages": [ { "name": "A", "dependencies": ["B", "C"] }, ... ] }
+ *
+ * Only the name and dependencies of the package currently being parsed are held in memory. When
+ * its closing brace is reached the package is added as a vertex and an edge is added from every
+ * dependency to it. Unknown keys and nested values are skipped.
+ */
+class PackageJsonHandler implements ContentHandler {
+
+  /**
+   * Nesting depth of the packages array, a package object and its dependencies array
+   */
+  private static final int PACKAGES_DEPTH = 2;
+  private static final int PACKAGE_DEPTH = 3;
+  private static final int DEPENDENCIES_DEPTH = 4;
+
+  private final GraphBuilder graph;
+  private final ConstructionStatistics statistics;
+
+  /**
+   * Keys of the object entries we are currently inside of, innermost first
+   */
+  private final Deque<String> keys = new ArrayDeque<String>();
+  private int depth;
+
+  private boolean inPackages;
+  private boolean inDependencies;
+
+  /**
+   * The package currently being parsed
+   */
+  private String name;
+  private final List<String> dependencies = new ArrayList<String>();
+
+  /**
+   * @param graph builder to add packages to
+   * @param statistics to record the amount of packages and memory use in
+   */
+  PackageJsonHandler(GraphBuilder graph, ConstructionStatistics statistics) {
+    this.graph = graph;
+    this.statistics = statistics;
+  }
+
+  public void startJSON() {}
+
+  public void endJSON() {}
+
+  public boolean startObject() {
+    this.depth++;
+    if (this.inPackages && this.depth == PACKAGE_DEPTH) {
+      this.name = null;
+      this.dependencies.clear();
+    }
+    return true;
+  }
+
+  public boolean endObject() {
+    if (this.inPackages && this.depth == PACKAGE_DEPTH) {
+      this.addPackage();
+    }
+    this.depth--;
+    return true;
+  }
+
+  public boolean startObjectEntry(String key) {
+    this.keys.push(key);
+    return true;
+  }
+
+  public boolean endObjectEntry() {
+    this.keys.pop();
+    return true;
+  }
+
+  public boolean startArray() {
+    this.depth++;
+    if (this.depth == PACKAGES_DEPTH && "packages".equals(this.keys.peek())) {
+      this.inPackages = true;
+    } else if (this.inPackages && this.depth == DEPENDENCIES_DEPTH
+        && "dependencies".equals(this.keys.peek())) {
+      this.inDependencies = true;
+    }
+    return true;
+  }
+
+  public boolean endArray() {
+    if (this.depth == DEPENDENCIES_DEPTH) {
+      this.inDependencies = false;
+    } else if (this.depth == PACKAGES_DEPTH) {
+      this.inPackages = false;
+    }
+    this.depth--;
+    return true;
+  }
+
+  public boolean primitive(Object value) {
+    if (this.inDependencies && this.depth == DEPENDENCIES_DEPTH) {
+      this.dependencies.add((String) value);
+    } else if (this.inPackages && this.depth == PACKAGE_DEPTH && "name".equals(this.keys.peek())) {
+      this.name = (String) value;
+    }
+    return true;
+  }
+
+  /**
+   * Adds the package that was just parsed to the graph builder
+   */
+  private void addPackage() {
+    this.graph.addVertex(this.name);
+    for (String dependency : this.dependencies) {
+      this.graph.addVertex(dependency);
+      this.graph.addEdge(dependency, this.name);
+    }
+    this.statistics.packageParsed();
+  }
+
+}
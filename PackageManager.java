@@ -1,12 +1,22 @@
+import java.io.BufferedReader;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.Stack;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.json.simple.parser.JSONParser;
 import org.json.simple.parser.ParseException;
 
@@ -48,6 +58,59 @@ public class PackageManager {
 
   private Graph graph;
 
+  /**
+   * Size of the buffer used to read package files
+   */
+  private static final int READ_BUFFER_SIZE = 1 << 16;
+
+  /**
+   * Fewest bytes a package entry and a dependency take up in a package file, used to size the
+   * GraphBuilder from the file size. An entry like {"name":"p1","dependencies":[]} is 32 bytes and
+   * a dependency like "p12345", is 9, both plus whatever whitespace the file has.
+   */
+  private static final int BYTES_PER_PACKAGE = 32;
+  private static final int BYTES_PER_DEPENDENCY = 12;
+
+  /**
+   * Most packages and dependencies the GraphBuilder is sized for up front. The file size only gives
+   * an upper bound, which for pretty printed or very large files is far more than needed, so
+   * anything past this is left to the builder to grow into.
+   */
+  private static final int MAX_PRESIZED_PACKAGES = 1 << 20;
+  private static final int MAX_PRESIZED_DEPENDENCIES = 1 << 22;
+
+  /**
+   * Numbers recorded by the last constructGraph() call
+   */
+  private ConstructionStatistics statistics;
+
+  /**
+   * Optional cache of installation orders, null unless enableInstallationOrderCache() is called
+   */
+  private InstallationOrderCache cache;
+
+  /**
+   * Reachability index for dependsOn(), rebuilt when the graph it was built for is out of date
+   */
+  private ReachabilityIndex reachability;
+  private long reachabilityBudget = ReachabilityIndex.DEFAULT_MEMORY_BUDGET;
+
+  /**
+   * Package versions read by constructRegistry(), used by resolve()
+   */
+  private PackageRegistry registry = new PackageRegistry();
+
+  /**
+   * Optional listener that operations report their timings to, null unless setMetricsListener()
+   * is called
+   */
+  private MetricsListener metrics;
+
+  /**
+   * Last graph returned by freeze(), to tell rebuilds apart from cached graphs
+   */
+  private IndexedGraph frozen;
+
   /*
    * Package Manager default no-argument constructor.
    * 
@@ -57,11 +120,78 @@ public class PackageManager {
     this.graph = new Graph();
   }
 
-  private JSONObject json;
+  /**
+   * Turns on caching of installation orders for getInstallationOrder() and toInstall().
+   * 
+   * At most maxEntries orders are kept, the least recently used one is evicted first. Cached
+   * orders are dropped as soon as the dependencies of any package in them change. Calling this
+   * again replaces the existing cache.
+   * 
+   * @param maxEntries maximum amount of packages to cache installation orders for
+   * 
+   * @throws IllegalArgumentException if maxEntries is not positive
+   */
+  public void enableInstallationOrderCache(int maxEntries) {
+    this.disableInstallationOrderCache();
+    this.cache = new InstallationOrderCache(maxEntries);
+    this.graph.addListener(this.cache);
+  }
+
+  /**
+   * Turns off caching of installation orders and drops the cache
+   */
+  public void disableInstallationOrderCache() {
+    if (this.cache != null) {
+      this.graph.removeListener(this.cache);
+      this.cache = null;
+    }
+  }
+
+  /**
+   * Returns the installation order cache so hit/miss counts can be read
+   * 
+   * @return InstallationOrderCache the cache, or null if caching is not enabled
+   */
+  public InstallationOrderCache getInstallationOrderCache() {
+    return this.cache;
+  }
+
+  /**
+   * Turns on metrics. After every operation the listener is told how long it took and how many
+   * packages and dependency edges it went through, and every installation order cache lookup is
+   * reported as a hit or a miss. Use PackageMetrics for latency histograms that can be read
+   * directly or over JMX.
+   * 
+   * While no listener is set nothing is timed or counted.
+   * 
+   * @param listener to report to, null turns metrics off
+   */
+  public void setMetricsListener(MetricsListener listener) {
+    this.metrics = listener;
+    this.frozen = null;
+  }
+
+  /**
+   * @return MetricsListener the listener operations report to, or null if metrics are off
+   */
+  public MetricsListener getMetricsListener() {
+    return this.metrics;
+  }
 
   /**
    * Takes in a file path for a json file and builds the package dependency graph from it.
    * 
+   * The file is streamed through the parser in a single pass and each package is handed to a
+   * GraphBuilder as soon as its entry has been read, so only one package entry is held in memory
+   * at a time instead of the whole document. The builder is sized from the file size and packs
+   * all edges at once when the file has been read instead of adding them to the graph one by one.
+   * Timing and memory numbers for the last call are available from getConstructionStatistics().
+   * 
+   * Packages from earlier calls are kept. If the graph has been changed since it was built, the
+   * new packages are added to it directly instead of copying the whole graph into the builder.
+   * Otherwise the graph stays backed by a CompactGraph, so the first change after this call builds
+   * the HashMaps of the graph once (see GraphBuilder.build()).
+   * 
    * @param jsonFilepath the name of json data file with package dependency information
    * 
    * @throws FileNotFoundException if file path is incorrect
@@ -70,43 +200,202 @@ public class PackageManager {
    */
   public void constructGraph(String jsonFilepath)
       throws FileNotFoundException, IOException, ParseException {
-    Object obj = new JSONParser().parse(new FileReader(jsonFilepath));
-    JSONObject jo = (JSONObject) obj;
-    this.json = jo;
-
-    // get packages array
-    JSONArray packagesArray = (JSONArray) jo.get("packages");
-
-    // get every package and add it as a vertex
-    // WE ARE NOT ADDING EDGES YET
-    for (Object o : packagesArray) {
-      JSONObject pkg = (JSONObject) o;
-
-      // extract name from object and add vertex
-      String name = (String) pkg.get("name");
-      this.graph.addVertex(name);
-
-      // get dependency array object and add them as vertices
-      JSONArray dependencies = (JSONArray) pkg.get("dependencies");
-      for (Object dependency : dependencies) {
-        this.graph.addVertex((String) dependency);
-      }
+    ConstructionStatistics statistics = new ConstructionStatistics();
+    statistics.start();
+
+    long length = new File(jsonFilepath).length();
+    GraphBuilder builder =
+        new GraphBuilder((int) Math.min(length / BYTES_PER_PACKAGE, MAX_PRESIZED_PACKAGES),
+            (int) Math.min(length / BYTES_PER_DEPENDENCY, MAX_PRESIZED_DEPENDENCIES));
+
+    // packages from earlier calls are kept, a graph that was not changed since it was built is
+    // copied as ids, a changed one gets the new packages added to it
+    boolean rebuild = this.graph.order() == 0 || this.graph.getFrozen() != null;
+    if (rebuild) {
+      builder.addGraph(this.graph);
+    }
+
+    try (Reader reader = new BufferedReader(new FileReader(jsonFilepath), READ_BUFFER_SIZE)) {
+      new JSONParser().parse(reader, new PackageJsonHandler(builder, statistics));
     }
+    if (rebuild) {
+      this.replaceGraph(builder.build());
+    } else {
+      builder.addTo(this.graph);
+    }
+
+    statistics.finish(this.graph.size());
+    this.statistics = statistics;
+
+    if (this.metrics != null) {
+      this.metrics.operationCompleted("constructGraph", statistics.getElapsedNanos(),
+          statistics.getPackageCount(), statistics.getEdgeCount());
+    }
+  }
+
+  /**
+   * Returns timing and memory numbers for the last constructGraph() call
+   * 
+   * @return ConstructionStatistics for the last call, or null if constructGraph() was never called
+   */
+  public ConstructionStatistics getConstructionStatistics() {
+    return this.statistics;
+  }
+
+  /**
+   * Takes in a file path for a json file listing versions of packages and adds them to the
+   * registry that resolve() picks versions from. Versions from earlier calls are kept.
+   * 
+   * Every entry is one version of a package: { "name": "A", "version": "1.2.0", "dependencies":
+   * { "B": "^2.0.0" } }. See VersionRange for the ranges that are understood.
+   * 
+   * @param jsonFilepath the name of json data file with package version information
+   * 
+   * @throws FileNotFoundException if file path is incorrect
+   * @throws IOException if the give file cannot be read
+   * @throws ParseException if the given json cannot be parsed
+   * @throws IllegalArgumentException if a version or range in the file is not valid
+   */
+  public void constructRegistry(String jsonFilepath)
+      throws FileNotFoundException, IOException, ParseException {
+    long start = this.startTimer();
+    try (Reader reader = new BufferedReader(new FileReader(jsonFilepath), READ_BUFFER_SIZE)) {
+      new JSONParser().parse(reader, new RegistryJsonHandler(this.registry));
+    }
+    this.record("constructRegistry", start, this.registry.getVersionCount(), 0);
+  }
+
+  /**
+   * Returns the registry of package versions read by constructRegistry()
+   * 
+   * @return PackageRegistry the registry, empty if constructRegistry() was never called
+   */
+  public PackageRegistry getRegistry() {
+    return this.registry;
+  }
+
+  /**
+   * Picks one version of every package needed for the requested packages, so that every version
+   * range along the way is met. Uses DependencyResolver on the registry read by
+   * constructRegistry(). Resolution.getInstallationOrder() gives the order to install the picked
+   * versions in.
+   * 
+   * @param requirements package name -> range of accepted versions, for example "^1.2.0"
+   * @return Resolution one version for every package that is needed
+   * 
+   * @throws ResolutionException if no choice of versions meets every range, naming the
+   *         dependencies that conflict
+   */
+  public Resolution resolve(Map<String, String> requirements) throws ResolutionException {
+    long start = this.startTimer();
+    Resolution resolution = new DependencyResolver(this.registry).resolve(requirements);
 
-    // iterate over every package again and add dependencies to adjacency lists
-    // for the correct package
-    for (Object o : packagesArray) {
-      JSONObject pkg = (JSONObject) o;
+    this.record("resolve", start, resolution.getVersions().size(), 0);
+    return resolution;
+  }
 
-      // extract name from object and add vertex
-      String name = (String) pkg.get("name");
+  /**
+   * Writes the current dependency graph to a binary snapshot file that loadSnapshot() can read back
+   * much faster than constructGraph() can parse JSON.
+   * 
+   * @param snapshotFilepath the name of the snapshot file to write
+   * 
+   * @throws IOException if the file cannot be written
+   */
+  public void saveSnapshot(String snapshotFilepath) throws IOException {
+    long start = this.startTimer();
+    IndexedGraph compact = this.freeze();
+    GraphSnapshot.write(compact, snapshotFilepath);
+    this.record("saveSnapshot", start, compact.order(), compact.size());
+  }
 
-      // extract dependencies from object and add edges
-      JSONArray dependencies = (JSONArray) pkg.get("dependencies");
-      for (Object dependency : dependencies) {
-        this.graph.addEdge((String) dependency, name);
+  /**
+   * Replaces the dependency graph with one loaded from a snapshot file written by saveSnapshot().
+   * 
+   * The file is memory-mapped and queries are answered from it directly, nothing is parsed.
+   * 
+   * @param snapshotFilepath the name of the snapshot file to load
+   * 
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public void loadSnapshot(String snapshotFilepath) throws IOException {
+    long start = this.startTimer();
+    this.replaceGraph(new Graph(GraphSnapshot.load(snapshotFilepath)));
+    this.record("loadSnapshot", start, this.graph.order(), this.graph.size());
+  }
+
+  /**
+   * Replaces the dependency graph with one loaded from a snapshot file written by saveSnapshot(),
+   * keeping all of it off the heap.
+   * 
+   * Unlike loadSnapshot(), vertex names and edges are never copied onto the heap, queries walk the
+   * memory-mapped file through an OffHeapGraph. Use this for registries that are too big for the
+   * heap. The first change to the graph copies it onto the heap like loadSnapshot() would have.
+   * 
+   * @param snapshotFilepath the name of the snapshot file to load
+   * 
+   * @throws IOException if the file cannot be read or is not a valid snapshot
+   */
+  public void loadSnapshotOffHeap(String snapshotFilepath) throws IOException {
+    long start = this.startTimer();
+    this.replaceGraph(new Graph(GraphSnapshot.loadOffHeap(snapshotFilepath)));
+    this.record("loadSnapshotOffHeap", start, this.graph.order(), this.graph.size());
+  }
+
+  /**
+   * Takes in a file path for a change feed and applies every change in it to the current
+   * dependency graph, instead of reloading the whole graph with constructGraph().
+   *
+   * The file has one json change per line, blank lines are skipped. See ChangeJsonHandler for the
+   * changes that are understood. Only edges that actually differ are added or removed, and cached
+   * installation orders are dropped only for the packages a change reaches. Everything else that
+   * is built from the graph is rebuilt the next time it is needed. Changes on lines before a bad
+   * line stay applied.
+   *
+   * @param changeFilepath the name of the change file, one json change per line
+   * @return int the amount of changes applied
+   *
+   * @throws FileNotFoundException if file path is incorrect
+   * @throws IOException if the give file cannot be read
+   * @throws ParseException if a line cannot be parsed
+   * @throws IllegalArgumentException if a line is not a change object, a change has no name, an
+   *         unknown op or a field of the wrong type, naming the line
+   */
+  public int applyChanges(String changeFilepath)
+      throws FileNotFoundException, IOException, ParseException {
+    long start = this.startTimer();
+    ChangeJsonHandler handler = new ChangeJsonHandler(this.graph);
+
+    try (Reader reader = new FileReader(changeFilepath)) {
+      JsonLinesReader lines = new JsonLinesReader(reader, READ_BUFFER_SIZE);
+      try {
+        lines.parse(handler);
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException(
+            changeFilepath + " line " + lines.getLineNumber() + ": " + e.getMessage(), e);
       }
     }
+
+    this.record("applyChanges", start, handler.getChangeCount(), handler.getEdgesChanged());
+    return handler.getChangeCount();
+  }
+
+  /**
+   * Helper method to swap in a new dependency graph, moving the installation order cache over
+   *
+   * @param graph the new dependency graph
+   */
+  private void replaceGraph(Graph graph) {
+    // cached orders belong to the old graph
+    if (this.cache != null) {
+      this.graph.removeListener(this.cache);
+      this.cache.clear();
+      graph.addListener(this.cache);
+    }
+    this.graph = graph;
+
+    // a graph built from an IndexedGraph was not packed by freeze(), so it is not reported as one
+    this.frozen = graph.getFrozen();
   }
 
   /**
@@ -135,76 +424,109 @@ public class PackageManager {
    */
   public List<String> getInstallationOrder(String pkg)
       throws CycleException, PackageNotFoundException {
+    long start = this.startTimer();
 
-    // get all packages and
-    List<String> allPackages = new ArrayList<String>(this.graph.getAllVertices());
-    if (!allPackages.contains(pkg)) {
+    // make sure package is in the graph
+    if (!this.graph.getAllVertices().contains(pkg)) {
       throw new PackageNotFoundException();
     }
 
-    ArrayList<String> order = new ArrayList<String>();
-    this.getInstallationOrderHelper(pkg, order, new ArrayList<String>());
+    // check cache first
+    if (this.cache != null) {
+      List<String> cached = this.cache.get(pkg);
+      if (this.metrics != null) {
+        this.metrics.cacheLookup(cached != null);
+      }
+      if (cached != null) {
+        this.record("getInstallationOrder", start, cached.size(), 0);
+        return cached;
+      }
+    }
 
-    return order;
+    return this.computeInstallationOrder(pkg, start);
   }
 
   /**
-   * Helper method for getInstallationOrder(String pkg)
+   * Helper method to compute the installation order of a package that was not found in the cache,
+   * caching and recording it
    * 
-   * @param pkg to start at
-   * @param order ArrayList to keep track of order
-   * @param visited ArrayList to keep track nodes visited
+   * @param pkg to get installation order for, must be in the graph
+   * @param start value startTimer() returned when the operation began
+   * @return List<String> order in which the packages have to be installed
    * 
-   * @throws CycleException if you encounter a cycle in the graph while finding the installation
-   *         order for a particular package. Tip: Cycles in some other part of the graph that do not
-   *         affect the installation order for the specified package, should not throw this
-   *         exception.
+   * @throws CycleException if a cycle is reachable from pkg
    */
-  private void getInstallationOrderHelper(String pkg, ArrayList<String> order,
-      ArrayList<String> visited) throws CycleException {
-    visited.add(pkg);
-    for (String edge : this.getPredecessorsFor(pkg)) {
-      if (!order.contains(edge)) {
-        if (visited.contains(edge)) {
-          throw new CycleException();
-        }
-        this.getInstallationOrderHelper(edge, order, visited);
+  private List<String> computeInstallationOrder(String pkg, long start) throws CycleException {
+    // iterative DFS over the dependencies, see DependencyTraversal. If the graph changed since it
+    // was last frozen the DFS walks the Graph itself, so a small change is not paid for with a
+    // new CompactGraph of the whole registry.
+    IndexedGraph compact = this.graph.getFrozen();
+    List<String> order;
+    long edges = 0;
+    if (compact != null) {
+      int[] ids = DependencyTraversal.installationOrder(compact, compact.idOf(pkg));
+      order = new ArrayList<String>(ids.length);
+      for (int v : ids) {
+        order.add(compact.nameOf(v));
+      }
+      if (this.metrics != null) {
+        edges = this.edgesInto(compact, ids);
       }
+    } else {
+      order = DependencyTraversal.installationOrder(this.graph, pkg);
+      if (this.metrics != null) {
+        edges = this.edgesInto(order);
+      }
+    }
+
+    if (this.cache != null) {
+      this.cache.put(pkg, order);
     }
-    order.add(pkg);
+
+    this.record("getInstallationOrder", start, order.size(), edges);
+    return order;
   }
 
   /**
-   * Method to get all the predecessors for a given package
-   * 
-   * Used in the getInstallationOrderHelper() method
+   * Same as getInstallationOrder() but returns the packages lazily. Each package is found when the
+   * iterator gets to it, so installing can start after a single dependency chain has been walked
+   * instead of after the whole order is known. Only the traversal stack and one bit per visited
+   * package are held, never the order itself. Iterating is not affected by later changes to the
+   * graph.
    * 
-   * @param pkg to get predecessors for
+   * @param pkg to get installation order for
+   * @return Iterator<String> the same packages in the same order as getInstallationOrder(pkg)
    * 
-   * @return List<String> containing all of the given packages predecessors
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph.
+   * @throws UncheckedCycleException from the iterator once it reaches a cycle, wrapping a
+   *         CyclicDependencyException naming the packages in the cycle
    */
-  private List<String> getPredecessorsFor(String pkg) {
-    List<String> temp = new ArrayList<String>();
-
-    // get packages array
-    JSONArray packagesArray = (JSONArray) this.json.get("packages");
-
-    // iterate over packages
-    for (Object o : packagesArray) {
-      JSONObject p = (JSONObject) o;
-
-      // if package name equals the one we are looking for
-      String name = (String) p.get("name");
-      if (name.equals(pkg)) {
-        // get the predecessors and add them to the list
-        JSONArray dependencies = (JSONArray) p.get("dependencies");
-        for (Object dependency : dependencies) {
-          temp.add((String) dependency);
-        }
-      }
+  public Iterator<String> getLazyInstallationOrder(String pkg) throws PackageNotFoundException {
+    long start = this.startTimer();
+    IndexedGraph compact = this.freeze();
+    int id = compact.idOf(pkg);
+    if (id < 0) {
+      throw new PackageNotFoundException();
     }
+    Iterator<String> order = DependencyTraversal.iterator(compact, id);
 
-    return temp;
+    // the traversal runs later while iterating, only setting it up is timed
+    this.record("getLazyInstallationOrder", start, 0, 0);
+    return order;
+  }
+
+  /**
+   * Same as getLazyInstallationOrder() but as a sequential Stream, for example to take only the
+   * first few packages with limit()
+   * 
+   * @param pkg to get installation order for
+   * @return Stream<String> the same packages in the same order as getInstallationOrder(pkg)
+   * 
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph.
+   * @throws UncheckedCycleException from the stream once it reaches a cycle
+   */
+  public Stream<String> streamInstallationOrder(String pkg) throws PackageNotFoundException {
+    return this.toStream(this.getLazyInstallationOrder(pkg));
   }
 
   /**
@@ -226,14 +548,260 @@ public class PackageManager {
    */
   public List<String> toInstall(String newPkg, String installedPkg)
       throws CycleException, PackageNotFoundException {
-    List<String> installedPkgDeps = this.getInstallationOrder(installedPkg);
+    long start = this.startTimer();
+    Set<String> installedPkgDeps = this.getInstallationOrderAsSet(installedPkg);
     List<String> newPkgDeps = this.getInstallationOrder(newPkg);
 
-    for (String vertex : installedPkgDeps) {
-      newPkgDeps.remove(vertex);
+    // keep only the packages that are not already installed, preserving the order
+    List<String> results = new ArrayList<String>();
+    for (String vertex : newPkgDeps) {
+      if (!installedPkgDeps.contains(vertex)) {
+        results.add(vertex);
+      }
+    }
+
+    this.record("toInstall", start, results.size(), 0);
+    return results;
+  }
+
+  /**
+   * Batch version of toInstall(): given packages to be installed and packages that are already
+   * installed, return a List of the packages that need to be newly installed.
+   * 
+   * Everything the installed packages depend on counts as installed. The result is a valid
+   * installation order for all requested packages together and lists every package once. All
+   * packages are resolved in one shared traversal that never enters the installed part of the
+   * graph twice, instead of one traversal per package.
+   * 
+   * @param newPkgs packages to install, packages that are already installed are skipped
+   * @param installedPkgs packages that are already installed
+   * @return List<String>, packages that need to be newly installed, in installation order
+   * 
+   * @throws CycleException if you encounter a cycle in the dependencies that need to be newly
+   *         installed, a CyclicDependencyException naming the packages in the cycle
+   * 
+   * @throws PackageNotFoundException if any of the packages passed do not exist in the dependency
+   *         graph.
+   */
+  public List<String> toInstall(Collection<String> newPkgs, Collection<String> installedPkgs)
+      throws CycleException, PackageNotFoundException {
+    long start = this.startTimer();
+
+    // like getInstallationOrder(), walk the Graph itself if it changed since it was last frozen
+    IndexedGraph compact = this.graph.getFrozen();
+    List<String> results;
+    long edges = 0;
+    if (compact != null) {
+      int[] roots = this.idsOf(compact, newPkgs);
+      int[] installed = this.idsOf(compact, installedPkgs);
+
+      int[] ids = DependencyTraversal.installationOrder(compact, roots, installed);
+      results = new ArrayList<String>(ids.length);
+      for (int v : ids) {
+        results.add(compact.nameOf(v));
+      }
+      if (this.metrics != null) {
+        edges = this.edgesInto(compact, ids);
+      }
+    } else {
+      this.checkPackages(newPkgs);
+      this.checkPackages(installedPkgs);
+
+      results = DependencyTraversal.installationOrder(this.graph, newPkgs, installedPkgs);
+      if (this.metrics != null) {
+        edges = this.edgesInto(results);
+      }
+    }
+
+    this.record("toInstall batch", start, results.size(), edges);
+    return results;
+  }
+
+  /**
+   * Helper method to make sure packages are in the graph
+   * 
+   * @param pkgs packages to look up
+   * 
+   * @throws PackageNotFoundException if any of the packages is not in the graph
+   */
+  private void checkPackages(Collection<String> pkgs) throws PackageNotFoundException {
+    for (String pkg : pkgs) {
+      if (!this.graph.getAllVertices().contains(pkg)) {
+        throw new PackageNotFoundException();
+      }
+    }
+  }
+
+  /**
+   * Helper method to look up the ids of packages
+   * 
+   * @param compact graph to look the packages up in
+   * @param pkgs packages to look up
+   * @return int[] ids of the packages in the same order
+   * 
+   * @throws PackageNotFoundException if any of the packages is not in the graph
+   */
+  private int[] idsOf(IndexedGraph compact, Collection<String> pkgs)
+      throws PackageNotFoundException {
+    int[] ids = new int[pkgs.size()];
+    int i = 0;
+    for (String pkg : pkgs) {
+      ids[i] = compact.idOf(pkg);
+      if (ids[i++] < 0) {
+        throw new PackageNotFoundException();
+      }
+    }
+    return ids;
+  }
+
+  /**
+   * Returns whether a package transitively depends on another package.
+   * 
+   * Answered from a ReachabilityIndex that is built on the first call and rebuilt on the first
+   * call after the graph changes, so repeated queries do not traverse the graph. A package only
+   * depends on itself if it is part of a cycle.
+   * 
+   * @param pkg package that may depend on dependency
+   * @param dependency package that may be a dependency of pkg
+   * @return boolean true if installing pkg requires dependency
+   * 
+   * @throws PackageNotFoundException if either package does not exist in the dependency graph
+   */
+  public boolean dependsOn(String pkg, String dependency) throws PackageNotFoundException {
+    long start = this.startTimer();
+    IndexedGraph compact = this.freeze();
+    int a = compact.idOf(pkg);
+    int b = compact.idOf(dependency);
+    if (a < 0 || b < 0) {
+      throw new PackageNotFoundException();
+    }
+
+    // freeze() returns a new IndexedGraph after every change
+    if (this.reachability == null || this.reachability.getGraph() != compact) {
+      long buildStart = this.startTimer();
+      this.reachability = new ReachabilityIndex(compact, this.reachabilityBudget);
+      this.record("ReachabilityIndex.build", buildStart, compact.order(), compact.size());
+    }
+    boolean result = this.reachability.dependsOn(a, b);
+
+    this.record("dependsOn", start, 0, 0);
+    return result;
+  }
+
+  /**
+   * Sets how many bytes the reachability index behind dependsOn() may use. With enough memory it
+   * keeps the full transitive closure, otherwise it falls back to interval labels and short
+   * searches.
+   * 
+   * @param memoryBudget bytes the index may use
+   * 
+   * @throws IllegalArgumentException if memoryBudget is negative
+   */
+  public void setReachabilityMemoryBudget(long memoryBudget) {
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("memoryBudget must not be negative: " + memoryBudget);
+    }
+    this.reachabilityBudget = memoryBudget;
+    this.reachability = null;
+  }
+
+  /**
+   * Returns the packages that depend on a package, directly or through other packages, up to a
+   * maximum distance. These are the packages affected by a change to pkg.
+   * 
+   * The dependents are found level by level with a breadth first search over the outgoing edges of
+   * the graph, large levels are expanded in parallel on the common ForkJoinPool.
+   * 
+   * @param pkg package to find the dependents of
+   * @param maxDepth 1 for direct dependents only, 2 to include their dependents and so on,
+   *        Integer.MAX_VALUE for all of them
+   * @return List<String> dependents of pkg, nearer packages first, pkg itself is never included
+   * 
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph
+   * @throws IllegalArgumentException if maxDepth is negative
+   */
+  public List<String> getDependents(String pkg, int maxDepth) throws PackageNotFoundException {
+    long start = this.startTimer();
+    IndexedGraph compact = this.freeze();
+    int id = compact.idOf(pkg);
+    if (id < 0) {
+      throw new PackageNotFoundException();
+    }
+
+    List<String> dependents = new ArrayList<String>();
+    long edges = 0;
+    for (int[] level : DependentTraversal.levels(compact, id, maxDepth,
+        ForkJoinPool.commonPool())) {
+      for (int v : level) {
+        dependents.add(compact.nameOf(v));
+      }
+      if (this.metrics != null) {
+        edges += this.edgesOutOf(compact, level);
+      }
+    }
+    if (this.metrics != null) {
+      edges += compact.outEnd(id) - compact.outStart(id);
+    }
+
+    this.record("getDependents", start, dependents.size(), edges);
+    return dependents;
+  }
+
+  /**
+   * Returns every package that depends on a package, directly or through other packages, as a lazy
+   * iterator. Packages are found while iterating, nearer packages first, so the impact set of a hub
+   * package with a huge amount of dependents never has to be held as a list. Iterating is not
+   * affected by later changes to the graph.
+   * 
+   * @param pkg package to find the dependents of
+   * @return Iterator<String> dependents of pkg, pkg itself is never included
+   * 
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph
+   */
+  public Iterator<String> getImpactSet(String pkg) throws PackageNotFoundException {
+    long start = this.startTimer();
+    IndexedGraph compact = this.freeze();
+    int id = compact.idOf(pkg);
+    if (id < 0) {
+      throw new PackageNotFoundException();
     }
+    Iterator<String> dependents = DependentTraversal.iterator(compact, id, Integer.MAX_VALUE);
 
-    return newPkgDeps;
+    // the traversal runs later while iterating, only setting it up is timed
+    this.record("getImpactSet", start, 0, 0);
+    return dependents;
+  }
+
+  /**
+   * Same as getInstallationOrder() but returns the packages as a Set so membership checks are
+   * constant time. Iterating the set still gives a valid installation order.
+   * 
+   * @param pkg to get installation order for
+   * @return Set<String> installation order of pkg
+   * 
+   * @throws CycleException if you encounter a cycle while finding the installation order
+   * @throws PackageNotFoundException if the package passed does not exist in the dependency graph
+   */
+  private Set<String> getInstallationOrderAsSet(String pkg)
+      throws CycleException, PackageNotFoundException {
+    if (this.cache == null) {
+      return new LinkedHashSet<String>(this.getInstallationOrder(pkg));
+    }
+
+    long start = this.startTimer();
+    if (!this.graph.getAllVertices().contains(pkg)) {
+      throw new PackageNotFoundException();
+    }
+
+    // one lookup, so a miss is counted once and not again by getInstallationOrder()
+    Set<String> cached = this.cache.getAsSet(pkg);
+    if (this.metrics != null) {
+      this.metrics.cacheLookup(cached != null);
+    }
+    if (cached != null) {
+      return cached;
+    }
+    return new LinkedHashSet<String>(this.computeInstallationOrder(pkg, start));
   }
 
   /**
@@ -244,47 +812,155 @@ public class PackageManager {
    * returns a valid installation order that will not violate any dependencies
    * 
    * @return List<String>, order in which all the packages have to be installed
-   * @throws CycleException if you encounter a cycle in the graph
+   * @throws CycleException if you encounter a cycle in the graph, a CyclicDependencyException
+   *         naming the packages in the cycle
    */
   public List<String> getInstallationOrderForAllPackages() throws CycleException {
-    List<String> visited = new ArrayList<String>();
-    Stack<String> stack = new Stack<String>();
+    return this.getInstallationSchedule().getOrder();
+  }
 
-    for (String vertex : this.graph.getAllVertices()) {
-      if (!visited.contains(vertex)) {
-        getInstallationOrderForAllPackagesHelper(vertex, visited, stack);
-      }
-    }
+  /**
+   * Lazy version of getInstallationOrderForAllPackages(). Packages are found depth first while
+   * iterating, each one right after its last missing dependency, so the order is valid but not the
+   * wave order of getInstallationOrderForAllPackages(). Memory is the traversal stack and one bit
+   * per package. Iterating is not affected by later changes to the graph.
+   * 
+   * @return Iterator<String> every package, each one after all of its dependencies
+   * 
+   * @throws UncheckedCycleException from the iterator once it reaches a cycle, wrapping a
+   *         CyclicDependencyException naming the packages in the cycle
+   */
+  public Iterator<String> getLazyInstallationOrderForAllPackages() {
+    long start = this.startTimer();
+    Iterator<String> order = DependencyTraversal.iterator(this.freeze());
 
-    List<String> results = new ArrayList<String>();
-    while (!stack.isEmpty()) {
-      results.add(stack.pop());
-    }
+    // the traversal runs later while iterating, only setting it up is timed
+    this.record("getLazyInstallationOrderForAllPackages", start, 0, 0);
+    return order;
+  }
 
-    return results;
+  /**
+   * Same as getLazyInstallationOrderForAllPackages() but as a sequential Stream
+   * 
+   * @return Stream<String> every package, each one after all of its dependencies
+   * 
+   * @throws UncheckedCycleException from the stream once it reaches a cycle
+   */
+  public Stream<String> streamInstallationOrderForAllPackages() {
+    return this.toStream(this.getLazyInstallationOrderForAllPackages());
+  }
+
+  /**
+   * Returns an installation schedule for all the packages in the dependency graph, split into
+   * waves of packages that can be installed at the same time.
+   * 
+   * Uses Kahn's algorithm one wave at a time, large waves are processed in parallel on the common
+   * ForkJoinPool.
+   * 
+   * @return InstallationSchedule waves of packages, packages without dependencies first
+   * @throws CycleException if you encounter a cycle in the graph, a CyclicDependencyException
+   *         naming the packages in the cycle
+   */
+  public InstallationSchedule getInstallationSchedule() throws CycleException {
+    return this.getInstallationSchedule(ForkJoinPool.commonPool());
   }
 
   /**
-   * Recursive helper method for getInstallationOrderForAllPackages()
+   * Same as getInstallationSchedule() but processes large waves on the given pool
    * 
-   * Just uses a BFS
+   * @param pool ForkJoinPool to use
+   * @return InstallationSchedule waves of packages, packages without dependencies first
+   * @throws CycleException if you encounter a cycle in the graph, a CyclicDependencyException
+   *         naming the packages in the cycle
+   */
+  public InstallationSchedule getInstallationSchedule(ForkJoinPool pool) throws CycleException {
+    long start = this.startTimer();
+    IndexedGraph compact = this.freeze();
+    InstallationSchedule schedule = ParallelTopologicalSort.sort(compact, pool);
+
+    this.record("getInstallationSchedule", start, compact.order(), compact.size());
+    return schedule;
+  }
+
+  /**
+   * Returns the installation order of every package in the dependency graph at once. Each order
+   * holds the same packages as getInstallationOrder() returns for that package.
+   *
+   * Orders are computed dependencies first on the common ForkJoinPool, and every package reuses
+   * the longest order of its dependencies instead of copying it. See InstallationOrders.
+   *
+   * @return InstallationOrders the order of every package
+   * @throws CycleException if you encounter a cycle in the graph, a CyclicDependencyException
+   *         naming the packages in the cycle
+   */
+  public InstallationOrders getAllInstallationOrders() throws CycleException {
+    return this.getAllInstallationOrders(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Same as getAllInstallationOrders() but computes large waves of packages on the given pool
+   *
+   * @param pool ForkJoinPool to use
+   * @return InstallationOrders the order of every package
+   * @throws CycleException if you encounter a cycle in the graph, a CyclicDependencyException
+   *         naming the packages in the cycle
+   */
+  public InstallationOrders getAllInstallationOrders(ForkJoinPool pool) throws CycleException {
+    long start = this.startTimer();
+    IndexedGraph compact = this.freeze();
+    InstallationOrders orders = InstallationOrders.build(compact, pool);
+
+    this.record("getAllInstallationOrders", start, compact.order(), compact.size());
+    return orders;
+  }
+
+  /**
+   * Returns every cyclic dependency in the dependency graph at once, instead of only the first one
+   * getInstallationOrderForAllPackages() runs into.
+   * 
+   * Packages are grouped into strongly connected components in a single pass. One cycle is
+   * returned per group of packages that depend on each other, so every package that is part of any
+   * cycle shows up in at least one of them.
    * 
-   * @param pkg to start at
-   * @param visited List<String> of visited nodes/vertices/packages
-   * @param stack stack<String> stack to keep track of correct order
-   * @throws CycleException 
+   * @return List<List<String>> cycles, each package depending on the next and the last package
+   *         being the same as the first, empty if there are no cycles
    */
-  private void getInstallationOrderForAllPackagesHelper(String pkg, List<String> visited,
-      Stack<String> stack) {
-    visited.add(pkg);
+  public List<List<String>> getCycles() {
+    long start = this.startTimer();
+    StronglyConnectedComponents scc = new StronglyConnectedComponents(this.freeze());
+    List<List<String>> cycles = scc.cycles();
 
-    for (String vertex : this.graph.getAdjacentVerticesOf(pkg)) {
-      if (!visited.contains(vertex)) {
-        getInstallationOrderForAllPackagesHelper(vertex, visited, stack);
+    this.record("getCycles", start, scc.getGraph().order(), scc.getGraph().size());
+    return cycles;
+  }
+
+  /**
+   * Returns an installation order for all packages that works even if there are cycles.
+   * 
+   * Packages that depend on each other through a cycle are put in one group and have to be
+   * installed together, every other package is a group of its own. Groups are listed so that each
+   * one comes after every group it depends on, so a cycle only affects the packages in it and the
+   * packages that depend on them.
+   * 
+   * @return List<List<String>> groups of packages in installation order
+   */
+  public List<List<String>> getInstallationGroups() {
+    long start = this.startTimer();
+    StronglyConnectedComponents scc = new StronglyConnectedComponents(this.freeze());
+    IndexedGraph compact = scc.getGraph();
+
+    // highest component id first means dependencies first
+    List<List<String>> groups = new ArrayList<List<String>>(scc.count());
+    for (int c = scc.count() - 1; c >= 0; c--) {
+      List<String> group = new ArrayList<String>(scc.sizeOf(c));
+      for (int i = 0; i < scc.sizeOf(c); i++) {
+        group.add(compact.nameOf(scc.memberOf(c, i)));
       }
+      groups.add(group);
     }
 
-    stack.push(pkg);
+    this.record("getInstallationGroups", start, compact.order(), compact.size());
+    return groups;
   }
 
   /**
@@ -298,38 +974,191 @@ public class PackageManager {
    * dependencies - B,C and D.
    * 
    * @return String, name of the package with most dependencies.
-   * @throws CycleException if you encounter a cycle in the graph
+   * @throws CycleException if you encounter a cycle in the graph, a CyclicDependencyException
+   *         naming the packages in the cycle
    */
   public String getPackageWithMaxDependencies() throws CycleException {
-    String maxDependencies;
+    long start = this.startTimer();
+    String maxDependencies = "";
+    int max = -1;
 
-    // get all packages in graph
-    Set<String> allPackages = this.getAllPackages();
+    StronglyConnectedComponents scc = new StronglyConnectedComponents(this.freeze());
+    for (int c = 0; c < scc.count(); c++) {
+      if (scc.isCyclic(c)) {
+        throw new CyclicDependencyException(scc.cycleOf(c));
+      }
+    }
+    int[] counts = TransitiveDependencyCounter.count(scc);
 
-    // create two new array lists for later
-    List<String> longest = new ArrayList<String>();
-    List<String> tempList;
+    // loop through and look for the package with the most dependencies
+    IndexedGraph compact = scc.getGraph();
+    for (String pkg : this.getAllPackages()) {
+      int count = counts[compact.idOf(pkg)];
+      if (count > max) {
+        max = count;
+        maxDependencies = pkg;
+      }
+    }
 
-    // instantiate maxDependencies
-    maxDependencies = "";
+    this.record("getPackageWithMaxDependencies", start, compact.order(), compact.size());
+    return maxDependencies;
+  }
 
-    // loop through and look for the package with the most dependencies
-    for (String pkg : allPackages) {
+  /**
+   * Returns the number of transitive dependencies of every package in the dependency graph.
+   * 
+   * Same counting rules as getPackageWithMaxDependencies(): dependencies of dependencies are
+   * included and every package is counted once. Computed for all packages together in a single
+   * pass over the graph instead of one traversal per package.
+   * 
+   * Cycles do not cause an exception here, a package in a cycle depends on every other package in
+   * that cycle.
+   * 
+   * @return Map<String, Integer> package -> number of transitive dependencies
+   */
+  public Map<String, Integer> getTransitiveDependencyCounts() {
+    long start = this.startTimer();
+    StronglyConnectedComponents scc = new StronglyConnectedComponents(this.freeze());
+    Map<String, Integer> counts =
+        this.toPackageMap(scc.getGraph(), TransitiveDependencyCounter.count(scc));
 
-      try {
-        tempList = this.getInstallationOrder(pkg);
+    this.record("getTransitiveDependencyCounts", start, scc.getGraph().order(),
+        scc.getGraph().size());
+    return counts;
+  }
+
+  /**
+   * Approximate version of getTransitiveDependencyCounts() for very large graphs.
+   * 
+   * Uses a small fixed size HyperLogLog sketch per package instead of an exact set, so memory stays
+   * bounded no matter how many dependencies packages have. Counts are typically within a few
+   * percent of the exact value.
+   * 
+   * @return Map<String, Integer> package -> estimated number of transitive dependencies
+   */
+  public Map<String, Integer> estimateTransitiveDependencyCounts() {
+    long start = this.startTimer();
+    StronglyConnectedComponents scc = new StronglyConnectedComponents(this.freeze());
+    Map<String, Integer> counts = this.toPackageMap(scc.getGraph(),
+        TransitiveDependencyCounter.estimate(scc, TransitiveDependencyCounter.DEFAULT_PRECISION));
 
-        // check current largest amount of dependencies with the tempList
-        if (tempList.size() > longest.size()) {
-          longest = tempList;
-          maxDependencies = pkg;
-        }
+    this.record("estimateTransitiveDependencyCounts", start, scc.getGraph().order(),
+        scc.getGraph().size());
+    return counts;
+  }
+
+  /**
+   * Helper method to get the compact form of the graph, reporting it as a "Graph.freeze" operation
+   * when the graph changed since the last call and had to be packed again. A graph loaded with
+   * loadSnapshotOffHeap() is returned as is instead of being copied onto the heap.
+   * 
+   * @return IndexedGraph the current graph
+   */
+  private IndexedGraph freeze() {
+    long start = this.startTimer();
+    IndexedGraph compact = this.graph.getFrozen();
+    if (compact == null) {
+      compact = this.graph.freeze();
+    }
+    if (this.metrics != null && compact != this.frozen) {
+      this.frozen = compact;
+      this.record("Graph.freeze", start, compact.order(), compact.size());
+    }
+    return compact;
+  }
 
-      } catch (PackageNotFoundException e) {}
+  /**
+   * Helper method to start timing an operation
+   * 
+   * @return long current System.nanoTime(), or 0 if metrics are off
+   */
+  private long startTimer() {
+    return this.metrics == null ? 0 : System.nanoTime();
+  }
 
+  /**
+   * Helper method to report a finished operation to the metrics listener, if there is one
+   * 
+   * @param operation name of the operation
+   * @param start value startTimer() returned when the operation began
+   * @param vertices amount of packages traversed or returned
+   * @param edges amount of dependency edges followed
+   */
+  private void record(String operation, long start, long vertices, long edges) {
+    if (this.metrics != null) {
+      this.metrics.operationCompleted(operation, System.nanoTime() - start, vertices, edges);
     }
+  }
 
-    return maxDependencies;
+  /**
+   * Helper method to count the edges that end in a set of vertices
+   * 
+   * @param compact graph the ids belong to
+   * @param ids vertices to count the incoming edges of
+   * @return long sum of the in-degrees of the vertices
+   */
+  private long edgesInto(IndexedGraph compact, int[] ids) {
+    long edges = 0;
+    for (int v : ids) {
+      edges += compact.inEnd(v) - compact.inStart(v);
+    }
+    return edges;
+  }
+
+  /**
+   * Helper method to count the edges that start in a set of vertices
+   * 
+   * @param compact graph the ids belong to
+   * @param ids vertices to count the outgoing edges of
+   * @return long sum of the out-degrees of the vertices
+   */
+  private long edgesOutOf(IndexedGraph compact, int[] ids) {
+    long edges = 0;
+    for (int v : ids) {
+      edges += compact.outEnd(v) - compact.outStart(v);
+    }
+    return edges;
+  }
+
+  /**
+   * Helper method to count the edges that end in a set of vertices of the Graph
+   * 
+   * @param pkgs vertices to count the incoming edges of
+   * @return long sum of the in-degrees of the vertices
+   */
+  private long edgesInto(List<String> pkgs) {
+    long edges = 0;
+    for (String pkg : pkgs) {
+      edges += this.graph.getPredecessorsOf(pkg).size();
+    }
+    return edges;
+  }
+
+  /**
+   * Helper method to turn a lazy installation order into a sequential Stream
+   * 
+   * @param order iterator over distinct packages
+   * @return Stream<String> that pulls packages from order as they are needed
+   */
+  private Stream<String> toStream(Iterator<String> order) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(order,
+        Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+  }
+
+  /**
+   * Helper method to turn an array indexed by vertex id into a Map keyed by package
+   * 
+   * @param compact graph the ids belong to
+   * @param values vertex id -> value
+   * @return Map<String, Integer> package -> value
+   */
+  private Map<String, Integer> toPackageMap(IndexedGraph compact, int[] values) {
+    Map<String, Integer> results =
+        new HashMap<String, Integer>((int) (compact.order() / 0.75f) + 1);
+    for (int id = 0; id < compact.order(); id++) {
+      results.put(compact.nameOf(id), values[id]);
+    }
+    return results;
   }
 
   public static void main(String[] args) {
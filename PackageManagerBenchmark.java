@@ -0,0 +1,536 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Micro benchmarks for the Graph and PackageManager hot paths over synthetic registries from
+ * GraphGenerator.
+ *
+ * Usage: java PackageManagerBenchmark [sizes] [shapes]
+ *
+ * sizes is a comma separated list of package counts (default 1000,10000), shapes a comma separated
+ * list of random, chain, fanout and powerlaw (default all of them). For example
+ *
+ * java -Xss64m PackageManagerBenchmark 1000,100000,1000000 random,powerlaw
+ *
+ * Each benchmark is warmed up first and then run for a few rounds or until its time budget is
+ * used up. The mean time per operation is printed as one tab separated line per benchmark so runs
+ * can be diffed to catch regressions. A benchmark that throws (for example StackOverflowError on
+ * deep chains) is reported as failed instead of stopping the run.
+ */
+public class PackageManagerBenchmark {
+
+  private static final int WARMUP_ROUNDS = 2;
+  private static final int MEASURED_ROUNDS = 5;
+  private static final long ROUND_BUDGET_NANOS = 5_000_000_000L;
+
+  /**
+   * Results are folded into this so the JIT cannot skip the work being measured
+   */
+  static volatile long sink;
+
+  /**
+   * Body of a benchmark, run once per round on the state returned by the setup
+   */
+  interface Task<T> {
+    void run(T state) throws Exception;
+  }
+
+  /*
+   * Only static methods, no instances
+   */
+  private PackageManagerBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    String sizes = args.length > 0 ? args[0] : "1000,10000";
+    String shapes = args.length > 1 ? args[1] : "random,chain,fanout,powerlaw";
+
+    System.out.println("shape\tpackages\tedges\tbenchmark\tns/op");
+    for (String shape : shapes.split(",")) {
+      for (String size : sizes.split(",")) {
+        run(shape.trim(), Integer.parseInt(size.trim()));
+      }
+    }
+  }
+
+  /**
+   * Generates a registry of the given shape and size
+   *
+   * @param shape one of random, chain, fanout and powerlaw
+   * @param n amount of packages
+   * @return int[][] package -> dependencies
+   */
+  static int[][] generate(String shape, int n) {
+    switch (shape) {
+      case "random":
+        return GraphGenerator.randomDag(n, 4, 42);
+      case "chain":
+        return GraphGenerator.chain(n);
+      case "fanout":
+        return GraphGenerator.fanOut(n);
+      case "powerlaw":
+        return GraphGenerator.powerLaw(n, 4, 42);
+      default:
+        throw new IllegalArgumentException("unknown shape: " + shape);
+    }
+  }
+
+  /**
+   * Runs every benchmark on one registry
+   *
+   * @param shape of the registry
+   * @param n amount of packages
+   */
+  private static void run(String shape, int n) throws Exception {
+    final int[][] registry = generate(shape, n);
+    final long edges = GraphGenerator.edgeCount(registry);
+    final String label = shape + "\t" + n + "\t" + edges;
+
+    final File json = File.createTempFile("benchmark", ".json");
+    json.deleteOnExit();
+    GraphGenerator.writeJson(registry, json.getPath());
+
+    final Graph graph = GraphGenerator.toGraph(registry);
+    final CompactGraph compact = graph.freeze();
+    final String last = GraphGenerator.name(n - 1);
+    final String middle = GraphGenerator.name(n / 2);
+
+    // names are built once here so no benchmark times building strings
+    final String[] names = new String[n];
+    for (int i = 0; i < n; i++) {
+      names[i] = GraphGenerator.name(i);
+    }
+
+    final PackageManager pkgManager = new PackageManager();
+    pkgManager.constructGraph(json.getPath());
+    Callable<PackageManager> loaded = new Callable<PackageManager>() {
+      public PackageManager call() {
+        return pkgManager;
+      }
+    };
+
+    // every package is already in the graph, only adding the edges is timed
+    measure(label, "Graph.addEdge", Math.max(1, edges), new Callable<Graph>() {
+      public Graph call() {
+        Graph g = new Graph();
+        for (String name : names) {
+          g.addVertex(name);
+        }
+        return g;
+      }
+    }, new Task<Graph>() {
+      public void run(Graph g) {
+        for (int i = 0; i < registry.length; i++) {
+          for (int dependency : registry[i]) {
+            g.addEdge(names[dependency], names[i]);
+          }
+        }
+        sink += g.size();
+      }
+    });
+
+    measure(label, "GraphBuilder.build", Math.max(1, edges), new Callable<int[][]>() {
+      public int[][] call() {
+        return registry;
+      }
+    }, new Task<int[][]>() {
+      public void run(int[][] r) {
+        GraphBuilder builder = new GraphBuilder(r.length, (int) edges);
+        for (int i = 0; i < r.length; i++) {
+          builder.addVertex(names[i]);
+          for (int dependency : r[i]) {
+            builder.addEdge(names[dependency], names[i]);
+          }
+        }
+        sink += builder.build().size();
+      }
+    });
+
+    final int removals = Math.min(n, 1000);
+    final List<String> doomed = new ArrayList<String>(removals);
+    Random random = new Random(7);
+    for (int i = 0; i < removals; i++) {
+      doomed.add(names[random.nextInt(n)]);
+    }
+
+    measure(label, "Graph.removeVertex", removals, new Callable<Graph>() {
+      public Graph call() {
+        return GraphGenerator.toGraph(registry);
+      }
+    }, new Task<Graph>() {
+      public void run(Graph g) {
+        for (String vertex : doomed) {
+          g.removeVertex(vertex);
+        }
+        sink += g.order();
+      }
+    });
+
+    measure(label, "Graph.removeVertices", removals, new Callable<Graph>() {
+      public Graph call() {
+        return GraphGenerator.toGraph(registry);
+      }
+    }, new Task<Graph>() {
+      public void run(Graph g) {
+        g.removeVertices(doomed);
+        sink += g.order();
+      }
+    });
+
+    // extra edges from a lower to a higher package keep the registry acyclic
+    final int insertions = Math.min(n, 100);
+    final String[][] extraEdges = new String[insertions][];
+    random = new Random(11);
+    for (int i = 0; i < insertions; i++) {
+      int a = random.nextInt(n);
+      int b = random.nextInt(n);
+      extraEdges[i] = new String[] {names[Math.min(a, b)], names[Math.max(a, b)]};
+    }
+
+    measure(label, "IncrementalTopologicalOrder.addEdge", insertions,
+        new Callable<IncrementalTopologicalOrder>() {
+          public IncrementalTopologicalOrder call() {
+            return new IncrementalTopologicalOrder(GraphGenerator.toGraph(registry));
+          }
+        }, new Task<IncrementalTopologicalOrder>() {
+          public void run(IncrementalTopologicalOrder order) throws Exception {
+            for (String[] edge : extraEdges) {
+              order.addEdge(edge[0], edge[1]);
+            }
+            sink += order.getOrder().size();
+          }
+        });
+
+    measure(label, "ParallelTopologicalSort.sort after addEdge", insertions, new Callable<Graph>() {
+      public Graph call() {
+        return GraphGenerator.toGraph(registry);
+      }
+    }, new Task<Graph>() {
+      public void run(Graph g) throws Exception {
+        for (String[] edge : extraEdges) {
+          g.addEdge(edge[0], edge[1]);
+          sink += ParallelTopologicalSort.sort(g.freeze(), ForkJoinPool.commonPool()).size();
+        }
+      }
+    });
+
+    // staging a new version per extra edge while every older version stays readable
+    final PersistentGraph persistent = PersistentGraph.copyOf(graph);
+    measure(label, "PersistentGraph.withEdge", insertions, new Callable<PersistentGraph>() {
+      public PersistentGraph call() {
+        return persistent;
+      }
+    }, new Task<PersistentGraph>() {
+      public void run(PersistentGraph g) {
+        List<PersistentGraph> versions = new ArrayList<PersistentGraph>(insertions);
+        for (String[] edge : extraEdges) {
+          g = g.withEdge(edge[0], edge[1]);
+          versions.add(g);
+        }
+        sink += versions.size() + g.size();
+      }
+    });
+
+    final int copies = Math.min(insertions, 10);
+    measure(label, "Graph copy per version", copies, new Callable<Graph>() {
+      public Graph call() {
+        return graph;
+      }
+    }, new Task<Graph>() {
+      public void run(Graph g) {
+        List<Graph> versions = new ArrayList<Graph>(copies);
+        for (int i = 0; i < copies; i++) {
+          GraphBuilder builder = new GraphBuilder(g.order(), g.size());
+          builder.addGraph(g);
+          g = builder.build();
+          g.addEdge(extraEdges[i][0], extraEdges[i][1]);
+          versions.add(g);
+        }
+        sink += versions.size() + g.size();
+      }
+    });
+
+    measure(label, "Graph.size", 100, new Callable<Graph>() {
+      public Graph call() {
+        return graph;
+      }
+    }, new Task<Graph>() {
+      public void run(Graph g) {
+        for (int i = 0; i < 100; i++) {
+          sink += g.size();
+        }
+      }
+    });
+
+    measure(label, "Graph.getAdjacentVerticesOf", n, new Callable<GraphADT>() {
+      public GraphADT call() {
+        return graph;
+      }
+    }, new Task<GraphADT>() {
+      public void run(GraphADT g) {
+        for (String name : names) {
+          sink += g.getAdjacentVerticesOf(name).size();
+        }
+      }
+    });
+
+    measure(label, "CompactGraph.getAdjacentVerticesOf", n, new Callable<GraphADT>() {
+      public GraphADT call() {
+        return compact;
+      }
+    }, new Task<GraphADT>() {
+      public void run(GraphADT g) {
+        for (String name : names) {
+          sink += g.getAdjacentVerticesOf(name).size();
+        }
+      }
+    });
+
+    measure(label, "PackageManager.constructGraph", 1, new Callable<PackageManager>() {
+      public PackageManager call() {
+        return new PackageManager();
+      }
+    }, new Task<PackageManager>() {
+      public void run(PackageManager p) throws Exception {
+        p.constructGraph(json.getPath());
+        sink += p.getAllPackages().size();
+      }
+    });
+
+    measure(label, "PackageManager.getInstallationOrder", 1, loaded, new Task<PackageManager>() {
+      public void run(PackageManager p) throws Exception {
+        sink += p.getInstallationOrder(last).size();
+      }
+    });
+
+    // same query with metrics recorded, compare with the line above to see their overhead
+    measure(label, "PackageManager.getInstallationOrder with metrics", 1,
+        new Callable<PackageManager>() {
+          public PackageManager call() {
+            pkgManager.setMetricsListener(new PackageMetrics());
+            return pkgManager;
+          }
+        }, new Task<PackageManager>() {
+          public void run(PackageManager p) throws Exception {
+            sink += p.getInstallationOrder(last).size();
+          }
+        });
+    pkgManager.setMetricsListener(null);
+
+    // time to the first package, compare with the full order above
+    measure(label, "PackageManager.getLazyInstallationOrder first package", 1, loaded,
+        new Task<PackageManager>() {
+          public void run(PackageManager p) throws Exception {
+            sink += p.getLazyInstallationOrder(last).next().length();
+          }
+        });
+
+    measure(label, "PackageManager.getLazyInstallationOrder", 1, loaded,
+        new Task<PackageManager>() {
+          public void run(PackageManager p) throws Exception {
+            for (Iterator<String> it = p.getLazyInstallationOrder(last); it.hasNext();) {
+              sink += it.next().length();
+            }
+          }
+        });
+
+    measure(label, "PackageManager.toInstall", 1, loaded, new Task<PackageManager>() {
+      public void run(PackageManager p) throws Exception {
+        sink += p.toInstall(last, middle).size();
+      }
+    });
+
+    // 50 new packages into an environment with 3000 installed ones
+    final List<String> requested = new ArrayList<String>();
+    final List<String> installed = new ArrayList<String>();
+    Random picks = new Random(13);
+    for (int i = 0; i < Math.min(n, 50); i++) {
+      requested.add(GraphGenerator.name(picks.nextInt(n)));
+    }
+    for (int i = 0; i < Math.min(n, 3000); i++) {
+      installed.add(GraphGenerator.name(picks.nextInt(n)));
+    }
+
+    measure(label, "PackageManager.toInstall batch", 1, loaded, new Task<PackageManager>() {
+      public void run(PackageManager p) throws Exception {
+        sink += p.toInstall(requested, installed).size();
+      }
+    });
+
+    measure(label, "ReachabilityIndex.build", 1, new Callable<CompactGraph>() {
+      public CompactGraph call() {
+        return compact;
+      }
+    }, new Task<CompactGraph>() {
+      public void run(CompactGraph g) {
+        sink += new ReachabilityIndex(g).getMemoryUsed();
+      }
+    });
+
+    measure(label, "ReachabilityIndex.build labels", 1, new Callable<CompactGraph>() {
+      public CompactGraph call() {
+        return compact;
+      }
+    }, new Task<CompactGraph>() {
+      public void run(CompactGraph g) {
+        sink += new ReachabilityIndex(g, 0).getMemoryUsed();
+      }
+    });
+
+    final int queries = 100000;
+    for (final long budget : new long[] {ReachabilityIndex.DEFAULT_MEMORY_BUDGET, 0}) {
+      final ReachabilityIndex index = new ReachabilityIndex(compact, budget);
+      measure(label, "ReachabilityIndex.dependsOn" + (index.hasClosure() ? "" : " labels"),
+          queries, new Callable<ReachabilityIndex>() {
+            public ReachabilityIndex call() {
+              return index;
+            }
+          }, new Task<ReachabilityIndex>() {
+            public void run(ReachabilityIndex r) {
+              Random random = new Random(17);
+              for (int i = 0; i < queries; i++) {
+                if (r.dependsOn(random.nextInt(registry.length), random.nextInt(registry.length))) {
+                  sink++;
+                }
+              }
+            }
+          });
+    }
+
+    // packages only depend on lower numbers, so p0 has the largest impact set in most shapes
+    final String first = GraphGenerator.name(0);
+    measure(label, "PackageManager.getDependents", 1, loaded, new Task<PackageManager>() {
+      public void run(PackageManager p) throws Exception {
+        sink += p.getDependents(first, Integer.MAX_VALUE).size();
+      }
+    });
+
+    measure(label, "PackageManager.getImpactSet", 1, loaded, new Task<PackageManager>() {
+      public void run(PackageManager p) throws Exception {
+        for (Iterator<String> it = p.getImpactSet(first); it.hasNext();) {
+          sink += it.next().length();
+        }
+      }
+    });
+
+    // 100 versions per package, where the newest minor versions keep pulling in conflicts
+    final int versionedPackages = Math.min(n, 5000);
+    final PackageRegistry versioned =
+        GraphGenerator.versioned(generate(shape, versionedPackages), 5, 20, 17);
+    final Map<String, String> request = new HashMap<String, String>();
+    request.put(GraphGenerator.name(versionedPackages - 1), "*");
+    measure(label, "DependencyResolver.resolve", 1, new Callable<DependencyResolver>() {
+      public DependencyResolver call() {
+        return new DependencyResolver(versioned);
+      }
+    }, new Task<DependencyResolver>() {
+      public void run(DependencyResolver resolver) throws Exception {
+        sink += resolver.resolve(request).getVersions().size();
+      }
+    });
+
+    measure(label, "PackageManager.getInstallationOrderForAllPackages", 1, loaded,
+        new Task<PackageManager>() {
+          public void run(PackageManager p) throws Exception {
+            List<String> order = p.getInstallationOrderForAllPackages();
+            sink += order.size();
+          }
+        });
+
+    measure(label, "PackageManager.getPackageWithMaxDependencies", 1, loaded,
+        new Task<PackageManager>() {
+          public void run(PackageManager p) throws Exception {
+            sink += p.getPackageWithMaxDependencies().length();
+          }
+        });
+
+    // every order is kept, which grows with the sum of all closures, so not for huge registries
+    if (n <= 100000) {
+      measure(label, "PackageManager.getAllInstallationOrders", 1, loaded,
+          new Task<PackageManager>() {
+            public void run(PackageManager p) throws Exception {
+              sink += p.getAllInstallationOrders().getStoredLength();
+            }
+          });
+    }
+
+    // one list per package, quadratic on deep shapes so only for small registries
+    if (n <= 10000) {
+      measure(label, "PackageManager.getInstallationOrder per package", 1, loaded,
+          new Task<PackageManager>() {
+            public void run(PackageManager p) throws Exception {
+              for (String pkg : p.getAllPackages()) {
+                sink += p.getInstallationOrder(pkg).size();
+              }
+            }
+          });
+    }
+
+    // a fresh graph every round since the changes are applied to it, one change is applied in
+    // the setup so building the HashMaps of a graph read from json is not timed
+    final int changes = 100000;
+    final File feed = File.createTempFile("benchmark", ".changes");
+    feed.deleteOnExit();
+    GraphGenerator.writeChanges(registry, changes, 7, feed.getPath());
+    final File warm = File.createTempFile("benchmark", ".changes");
+    warm.deleteOnExit();
+    GraphGenerator.writeChanges(registry, 1, 7, warm.getPath());
+    measure(label, "PackageManager.applyChanges", changes, new Callable<PackageManager>() {
+      public PackageManager call() throws Exception {
+        PackageManager p = new PackageManager();
+        p.constructGraph(json.getPath());
+        p.applyChanges(warm.getPath());
+        return p;
+      }
+    }, new Task<PackageManager>() {
+      public void run(PackageManager p) throws Exception {
+        sink += p.applyChanges(feed.getPath());
+      }
+    });
+
+    feed.delete();
+    warm.delete();
+    json.delete();
+  }
+
+  /**
+   * Runs a benchmark and prints the mean time per operation.
+   *
+   * setUp is called before every round and is not timed, task is called once per round and is
+   * timed. The result is divided by ops, the amount of operations one call of task performs.
+   *
+   * @param label printed before the benchmark name
+   * @param name of the benchmark
+   * @param ops amount of operations per round
+   * @param setUp creates the state for a round
+   * @param task the timed work
+   */
+  static <T> void measure(String label, String name, long ops, Callable<T> setUp, Task<T> task) {
+    try {
+      for (int i = 0; i < WARMUP_ROUNDS; i++) {
+        task.run(setUp.call());
+      }
+
+      long total = 0;
+      int rounds = 0;
+      while (rounds < MEASURED_ROUNDS && (rounds == 0 || total < ROUND_BUDGET_NANOS)) {
+        T state = setUp.call();
+        long start = System.nanoTime();
+        task.run(state);
+        total += System.nanoTime() - start;
+        rounds++;
+      }
+
+      System.out.printf("%s\t%s\t%.1f%n", label, name, (double) total / rounds / ops);
+    } catch (Throwable e) {
+      System.out.printf("%s\t%s\tfailed: %s%n", label, name, e);
+    }
+  }
+
+}
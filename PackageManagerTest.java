@@ -1,5 +1,15 @@
 import static org.junit.Assert.fail;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -152,5 +162,600 @@ class PackageManagerTest {
       fail("Unkown exception ocurred: " + e);
     }
   }
+  
+  /**
+   * Test that toInstall() gives the same answer with the installation
+   * order cache enabled and that repeated calls hit the cache
+   */
+  @Test
+  void testGraph_008_to_install_with_cache() {
+    try {
+      pkgManager.constructGraph("shared_dependencies.json");
+      pkgManager.enableInstallationOrderCache(10);
+      
+      for (int i = 0; i < 2; i++) {
+        if (!pkgManager.toInstall("A", "B").equals(Arrays.asList("C", "A"))) {
+          fail("toInstall(\"A\", \"B\") should return [C, A] but returned "
+              + pkgManager.toInstall("A", "B"));
+        }
+      }
+      
+      if (pkgManager.getInstallationOrderCache().getHitCount() == 0) {
+        fail("Repeated toInstall() calls should hit the cache");
+      }
+      if (pkgManager.getInstallationOrderCache().getMissCount() != 2) {
+        fail("Only the first lookup of A and of B should miss but there were "
+            + pkgManager.getInstallationOrderCache().getMissCount() + " misses");
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that getTransitiveDependencyCounts() counts every dependency once
+   */
+  @Test
+  void testGraph_009_get_transitive_dependency_counts() {
+    try {
+      pkgManager.constructGraph("shared_dependencies.json");
+      Map<String, Integer> counts = pkgManager.getTransitiveDependencyCounts();
+      
+      if (counts.get("A") != 3 || counts.get("B") != 1 || counts.get("D") != 0) {
+        fail("Expected A=3, B=1 and D=0 but got " + counts);
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that the streaming parser skips unknown keys and nested values,
+   * and that construction statistics are recorded
+   */
+  @Test
+  void testGraph_010_construct_graph_streaming() {
+    try {
+      File file = File.createTempFile("packages", ".json");
+      file.deleteOnExit();
+      try (FileWriter writer = new FileWriter(file)) {
+        writer.write("{\"version\": 2, \"packages\": ["
+            + "{\"name\": \"A\", \"meta\": {\"name\": \"X\", \"dependencies\": [\"Y\"]},"
+            + " \"dependencies\": [\"B\", \"C\"]},"
+            + "{\"name\": \"B\", \"tags\": [\"Z\"], \"dependencies\": [\"C\"]},"
+            + "{\"name\": \"C\", \"dependencies\": []}]}");
+      }
+      
+      pkgManager.constructGraph(file.getPath());
+      
+      if (!pkgManager.getAllPackages().equals(new HashSet<String>(Arrays.asList("A", "B", "C")))) {
+        fail("Packages should be [A, B, C] but are " + pkgManager.getAllPackages());
+      }
+      if (!pkgManager.getInstallationOrder("A").equals(Arrays.asList("C", "B", "A"))) {
+        fail("Installation order of A should be [C, B, A] but is "
+            + pkgManager.getInstallationOrder("A"));
+      }
+      
+      ConstructionStatistics statistics = pkgManager.getConstructionStatistics();
+      if (statistics.getPackageCount() != 3 || statistics.getEdgeCount() != 3) {
+        fail("Expected 3 packages and 3 edges but got " + statistics);
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that a graph saved as a snapshot gives the same answers
+   * as the graph built from JSON after loading it back
+   */
+  @Test
+  void testGraph_011_snapshot_round_trip() {
+    try {
+      File file = File.createTempFile("packages", ".snapshot");
+      file.deleteOnExit();
+      
+      pkgManager.constructGraph("valid.json");
+      pkgManager.saveSnapshot(file.getPath());
+      
+      PackageManager loaded = createPackageManagerInstance();
+      loaded.loadSnapshot(file.getPath());
+      
+      if (!loaded.getAllPackages().equals(pkgManager.getAllPackages())) {
+        fail("Packages should be " + pkgManager.getAllPackages() + " but are "
+            + loaded.getAllPackages());
+      }
+      for (String pkg : pkgManager.getAllPackages()) {
+        if (!loaded.getInstallationOrder(pkg).equals(pkgManager.getInstallationOrder(pkg))) {
+          fail("Installation order of " + pkg + " differs after loading the snapshot");
+        }
+      }
+      if (!loaded.getPackageWithMaxDependencies().equals("A")) {
+        fail("getPackageWithMaxDependencies() should return 'A' but it did not");
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+  /**
+   * Test that every cycle is reported at once and that installation
+   * groups put each cycle in one group without blocking other packages
+   */
+  @Test
+  void testGraph_012_cycles_and_installation_groups() {
+    try {
+      File file = File.createTempFile("packages", ".json");
+      file.deleteOnExit();
+      try (FileWriter writer = new FileWriter(file)) {
+        writer.write("{\"packages\": ["
+            + "{\"name\": \"A\", \"dependencies\": [\"B\"]},"
+            + "{\"name\": \"B\", \"dependencies\": [\"A\"]},"
+            + "{\"name\": \"C\", \"dependencies\": [\"C\"]},"
+            + "{\"name\": \"D\", \"dependencies\": [\"E\"]},"
+            + "{\"name\": \"F\", \"dependencies\": [\"A\"]}]}");
+      }
+      
+      pkgManager.constructGraph(file.getPath());
+      
+      List<List<String>> cycles = pkgManager.getCycles();
+      if (cycles.size() != 2) {
+        fail("There should be 2 cycles but there are " + cycles);
+      }
+      for (List<String> cycle : cycles) {
+        if (!cycle.get(0).equals(cycle.get(cycle.size() - 1))) {
+          fail("Cycle should start and end with the same package: " + cycle);
+        }
+      }
+      
+      try {
+        pkgManager.getPackageWithMaxDependencies();
+        fail("getPackageWithMaxDependencies() should throw a CyclicDependencyException");
+      } catch (CyclicDependencyException e) {
+        // expected
+      }
+      
+      List<List<String>> groups = pkgManager.getInstallationGroups();
+      List<String> flat = new ArrayList<String>();
+      for (List<String> group : groups) {
+        flat.addAll(group);
+      }
+      if (groups.size() != 5 || flat.size() != 6) {
+        fail("Expected 5 groups of 6 packages but got " + groups);
+      }
+      if (!groups.contains(Arrays.asList("C"))) {
+        fail("C should be a group of its own but groups are " + groups);
+      }
+      if (flat.indexOf("E") > flat.indexOf("D") || flat.indexOf("A") > flat.indexOf("F")
+          || flat.indexOf("B") > flat.indexOf("F")) {
+        fail("Groups are not in installation order: " + groups);
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that the batch toInstall() agrees with the single package
+   * version and rejects missing packages
+   */
+  @Test
+  void testGraph_013_batch_to_install() {
+    try {
+      pkgManager.constructGraph("shared_dependencies.json");
+      
+      List<String> batch = pkgManager.toInstall(Arrays.asList("A"), Arrays.asList("B"));
+      if (!batch.equals(pkgManager.toInstall("A", "B"))) {
+        fail("Batch toInstall() should return " + pkgManager.toInstall("A", "B") + " but returned "
+            + batch);
+      }
+      
+      try {
+        pkgManager.toInstall(Arrays.asList("A", "missing"), Arrays.asList("B"));
+        fail("toInstall() with a missing package should throw a PackageNotFoundException");
+      } catch (PackageNotFoundException e) {
+        // expected
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that dependsOn() follows transitive dependencies with the full
+   * closure and with a tiny memory budget, and sees later changes
+   */
+  @Test
+  void testGraph_014_depends_on() {
+    try {
+      pkgManager.constructGraph("shared_dependencies.json");
+      
+      for (long budget : new long[] {ReachabilityIndex.DEFAULT_MEMORY_BUDGET, 0}) {
+        pkgManager.setReachabilityMemoryBudget(budget);
+        for (String pkg : pkgManager.getAllPackages()) {
+          for (String dependency : pkgManager.getAllPackages()) {
+            boolean expected = !pkg.equals(dependency)
+                && pkgManager.getInstallationOrder(pkg).contains(dependency);
+            if (pkgManager.dependsOn(pkg, dependency) != expected) {
+              fail("dependsOn(\"" + pkg + "\", \"" + dependency + "\") should be " + expected);
+            }
+          }
+        }
+      }
+      
+      try {
+        pkgManager.dependsOn("A", "missing");
+        fail("dependsOn() with a missing package should throw a PackageNotFoundException");
+      } catch (PackageNotFoundException e) {
+        // expected
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that getDependents() stops at the maximum depth and that
+   * getImpactSet() returns every dependent once, nearest first
+   */
+  @Test
+  void testGraph_015_dependents_and_impact_set() {
+    try {
+      File file = File.createTempFile("packages", ".json");
+      file.deleteOnExit();
+      try (FileWriter writer = new FileWriter(file)) {
+        writer.write("{\"packages\": ["
+            + "{\"name\": \"A\", \"dependencies\": [\"B\", \"C\"]},"
+            + "{\"name\": \"B\", \"dependencies\": [\"D\"]},"
+            + "{\"name\": \"C\", \"dependencies\": [\"D\"]},"
+            + "{\"name\": \"E\", \"dependencies\": [\"A\"]}]}");
+      }
+      
+      pkgManager.constructGraph(file.getPath());
+      
+      if (!new HashSet<String>(pkgManager.getDependents("D", 1))
+          .equals(new HashSet<String>(Arrays.asList("B", "C")))) {
+        fail("Direct dependents of D should be [B, C] but are " + pkgManager.getDependents("D", 1));
+      }
+      if (!pkgManager.getDependents("D", 0).isEmpty()) {
+        fail("getDependents() with depth 0 should be empty");
+      }
+      
+      List<String> impact = new ArrayList<String>();
+      for (Iterator<String> it = pkgManager.getImpactSet("D"); it.hasNext();) {
+        impact.add(it.next());
+      }
+      if (impact.size() != 4 || !impact.get(2).equals("A") || !impact.get(3).equals("E")) {
+        fail("Impact set of D should be B and C, then A, then E but is " + impact);
+      }
+      if (pkgManager.getImpactSet("E").hasNext()) {
+        fail("Nothing depends on E");
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that PackageMetrics counts operations, the edges they follow and
+   * cache hits once it is set as the metrics listener
+   */
+  @Test
+  void testGraph_016_metrics() {
+    try {
+      PackageMetrics metrics = new PackageMetrics();
+      pkgManager.setMetricsListener(metrics);
+      pkgManager.enableInstallationOrderCache(10);
+      pkgManager.constructGraph("shared_dependencies.json");
+      
+      pkgManager.getInstallationOrder("A");
+      pkgManager.getInstallationOrder("A");
+      pkgManager.getInstallationOrder("B");
+      
+      if (metrics.getCount("constructGraph") != 1) {
+        fail("constructGraph should be counted once but is counted "
+            + metrics.getCount("constructGraph") + " times");
+      }
+      if (metrics.getCount("getInstallationOrder") != 3) {
+        fail("getInstallationOrder should be counted 3 times but is counted "
+            + metrics.getCount("getInstallationOrder") + " times");
+      }
+      if (metrics.getCacheHits() != 1 || metrics.getCacheMisses() != 2) {
+        fail("Cache should have 1 hit and 2 misses but has " + metrics.getCacheHits()
+            + " hits and " + metrics.getCacheMisses() + " misses");
+      }
+      if (metrics.getMeanEdges("getInstallationOrder") <= 0) {
+        fail("getInstallationOrder should follow edges");
+      }
+      if (metrics.getPercentileNanos("getInstallationOrder", 100) < metrics
+          .getMaxNanos("getInstallationOrder")) {
+        fail("Highest percentile should not be below the maximum");
+      }
+      
+      pkgManager.getCycles();
+      pkgManager.getLazyInstallationOrder("A");
+      if (metrics.getCount("getCycles") != 1 || metrics.getCount("getLazyInstallationOrder") != 1) {
+        fail("getCycles and getLazyInstallationOrder should be counted once");
+      }
+      if (metrics.getCount("Graph.freeze") != 0) {
+        fail("A graph that was just built should not be counted as frozen again");
+      }
+      
+      pkgManager.setMetricsListener(null);
+      pkgManager.getInstallationOrder("C");
+      if (metrics.getCount("getInstallationOrder") != 3) {
+        fail("Nothing should be counted after metrics are turned off");
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+  
+  /**
+   * Test that the lazy installation orders return the same packages as
+   * the lists, and that a stream can stop after the first package
+   */
+  @Test
+  void testGraph_017_lazy_installation_order() {
+    try {
+      pkgManager.constructGraph("shared_dependencies.json");
+      
+      List<String> lazy = new ArrayList<String>();
+      for (Iterator<String> it = pkgManager.getLazyInstallationOrder("A"); it.hasNext();) {
+        lazy.add(it.next());
+      }
+      if (!lazy.equals(pkgManager.getInstallationOrder("A"))) {
+        fail("Lazy order should be " + pkgManager.getInstallationOrder("A") + " but is " + lazy);
+      }
+      
+      List<String> first = pkgManager.streamInstallationOrder("A").limit(1)
+          .collect(Collectors.toList());
+      if (!first.equals(lazy.subList(0, 1))) {
+        fail("First package should be " + lazy.get(0) + " but is " + first);
+      }
+      
+      Set<String> all = pkgManager.streamInstallationOrderForAllPackages()
+          .collect(Collectors.toSet());
+      if (!all.equals(pkgManager.getAllPackages())) {
+        fail("Every package should be in the lazy order but got " + all);
+      }
+      
+      try {
+        pkgManager.getLazyInstallationOrder("missing");
+        fail("A missing package should throw a PackageNotFoundException");
+      } catch (PackageNotFoundException e) {
+        // expected
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+  /**
+   * Test that applyChanges() adds, updates and removes packages in place and that
+   * earlier answers are not served from stale state afterwards
+   */
+  @Test
+  void testGraph_018_apply_changes() {
+    try {
+      File file = File.createTempFile("packages", ".json");
+      file.deleteOnExit();
+      try (FileWriter writer = new FileWriter(file)) {
+        writer.write("{\"packages\": ["
+            + "{\"name\": \"A\", \"dependencies\": [\"B\", \"C\"]},"
+            + "{\"name\": \"B\", \"dependencies\": [\"D\"]},"
+            + "{\"name\": \"C\", \"dependencies\": [\"D\"]}]}");
+      }
+      File changes = File.createTempFile("packages", ".changes");
+      changes.deleteOnExit();
+      try (FileWriter writer = new FileWriter(changes)) {
+        writer.write("{\"op\": \"update\", \"name\": \"C\", \"dependencies\": []}\n"
+            + "\n"
+            + "{\"op\": \"add\", \"name\": \"E\", \"dependencies\": [\"A\"]}\n"
+            + "{\"op\": \"remove\", \"name\": \"B\"}\n");
+      }
+      
+      pkgManager.enableInstallationOrderCache(16);
+      pkgManager.constructGraph(file.getPath());
+      pkgManager.getInstallationOrder("A");
+      if (!pkgManager.dependsOn("A", "D")) {
+        fail("A should depend on D before the changes");
+      }
+      
+      if (pkgManager.applyChanges(changes.getPath()) != 3) {
+        fail("Three changes should have been applied");
+      }
+      
+      if (!pkgManager.getInstallationOrder("A").equals(Arrays.asList("C", "A"))) {
+        fail("Installation order of A should be [C, A] but is "
+            + pkgManager.getInstallationOrder("A"));
+      }
+      if (!pkgManager.getInstallationOrder("E").equals(Arrays.asList("C", "A", "E"))) {
+        fail("Installation order of E should be [C, A, E] but is "
+            + pkgManager.getInstallationOrder("E"));
+      }
+      if (pkgManager.dependsOn("A", "D")) {
+        fail("A should not depend on D after the changes");
+      }
+      if (!pkgManager.getAllPackages()
+          .equals(new HashSet<String>(Arrays.asList("A", "C", "D", "E")))) {
+        fail("Packages should be [A, C, D, E] but are " + pkgManager.getAllPackages());
+      }
+      
+      try (FileWriter writer = new FileWriter(changes)) {
+        writer.write("{\"op\": \"add\", \"name\": \"F\"}\n"
+            + "\n"
+            + "{\"op\": \"rename\", \"name\": \"A\"}\n");
+      }
+      try {
+        pkgManager.applyChanges(changes.getPath());
+        fail("An unknown change should throw an IllegalArgumentException");
+      } catch (IllegalArgumentException e) {
+        if (!e.getMessage().contains(" line 3: ")) {
+          fail("The error should name line 3 but is " + e.getMessage());
+        }
+      }
+      if (!pkgManager.getAllPackages().contains("F")) {
+        fail("The change before the bad line should stay applied");
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+  /**
+   * Test that constructGraph() keeps packages from earlier calls both when the graph
+   * was not changed since it was built and when it was changed in between
+   */
+  @Test
+  void testGraph_019_construct_graph_twice() {
+    try {
+      File file = File.createTempFile("packages", ".json");
+      file.deleteOnExit();
+      try (FileWriter writer = new FileWriter(file)) {
+        writer.write("{\"packages\": [{\"name\": \"C\", \"dependencies\": [\"E\"]}]}");
+      }
+      File changes = File.createTempFile("packages", ".changes");
+      changes.deleteOnExit();
+      try (FileWriter writer = new FileWriter(changes)) {
+        writer.write("{\"op\": \"update\", \"name\": \"C\", \"dependencies\": []}\n");
+      }
+      List<String> withE = Arrays.asList("D", "B", "E", "C", "A");
+      List<String> withoutE = Arrays.asList("D", "B", "C", "A");
+      
+      pkgManager.enableInstallationOrderCache(16);
+      pkgManager.constructGraph("shared_dependencies.json");
+      if (!pkgManager.getInstallationOrder("A").equals(withoutE)) {
+        fail("Installation order of A should be " + withoutE + " but is "
+            + pkgManager.getInstallationOrder("A"));
+      }
+      
+      // graph was not changed since it was built
+      pkgManager.constructGraph(file.getPath());
+      if (!pkgManager.getInstallationOrder("A").equals(withE)) {
+        fail("Installation order of A should be " + withE + " but is "
+            + pkgManager.getInstallationOrder("A"));
+      }
+      
+      // graph was changed, the file is added to it
+      pkgManager.applyChanges(changes.getPath());
+      if (!pkgManager.getInstallationOrder("A").equals(withoutE)) {
+        fail("Installation order of A should be " + withoutE + " but is "
+            + pkgManager.getInstallationOrder("A"));
+      }
+      pkgManager.constructGraph(file.getPath());
+      if (!pkgManager.getInstallationOrder("A").equals(withE)) {
+        fail("Installation order of A should be " + withE + " but is "
+            + pkgManager.getInstallationOrder("A"));
+      }
+      if (pkgManager.getAllPackages().size() != 5) {
+        fail("There should be 5 packages but there are " + pkgManager.getAllPackages());
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+  /**
+   * Test that a snapshot loaded off the heap answers the same queries
+   * as the graph it was saved from and can still be changed
+   */
+  @Test
+  void testGraph_020_snapshot_off_heap() {
+    try {
+      File file = File.createTempFile("packages", ".snapshot");
+      file.deleteOnExit();
+      
+      pkgManager.constructGraph("shared_dependencies.json");
+      pkgManager.saveSnapshot(file.getPath());
+      
+      PackageManager loaded = createPackageManagerInstance();
+      loaded.loadSnapshotOffHeap(file.getPath());
+      
+      for (String pkg : pkgManager.getAllPackages()) {
+        if (!loaded.getInstallationOrder(pkg).equals(pkgManager.getInstallationOrder(pkg))) {
+          fail("Installation order of " + pkg + " differs after loading the snapshot");
+        }
+      }
+      if (!loaded.getInstallationOrderForAllPackages()
+          .equals(pkgManager.getInstallationOrderForAllPackages())) {
+        fail("Installation order of all packages differs after loading the snapshot");
+      }
+      if (!loaded.dependsOn("A", "D") || loaded.dependsOn("D", "A")) {
+        fail("A should depend on D and not the other way around");
+      }
+      if (!loaded.getCycles().isEmpty()) {
+        fail("There should be no cycles but got " + loaded.getCycles());
+      }
+      
+      File changes = File.createTempFile("packages", ".changes");
+      changes.deleteOnExit();
+      try (FileWriter writer = new FileWriter(changes)) {
+        writer.write("{\"op\": \"update\", \"name\": \"B\", \"dependencies\": []}\n");
+      }
+      loaded.applyChanges(changes.getPath());
+      if (!loaded.getInstallationOrder("A").equals(Arrays.asList("B", "D", "C", "A"))) {
+        fail("Installation order of A should be [B, D, C, A] but is "
+            + loaded.getInstallationOrder("A"));
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
+
+  /**
+   * Test that applyChanges() rejects lines that are not change objects or have fields
+   * of the wrong type, naming the line
+   */
+  @Test
+  void testGraph_021_apply_changes_rejects_bad_types() {
+    try {
+      File changes = File.createTempFile("packages", ".changes");
+      changes.deleteOnExit();
+      String[] bad = {"[\"add\", \"A\"]",
+          "\"add A\"",
+          "{\"op\": \"add\", \"name\": 1}",
+          "{\"op\": true, \"name\": \"A\"}",
+          "{\"op\": \"add\", \"name\": \"A\", \"dependencies\": [\"B\", 2]}",
+          "{\"op\": \"add\", \"name\": \"A\", \"dependencies\": [[\"B\"]]}",
+          "{\"op\": \"add\", \"name\": \"A\", \"dependencies\": \"B\"}",
+          "{\"op\": \"add\", \"name\": \"A\", \"dependencies\": {\"B\": 1}}"};
+      
+      pkgManager.constructGraph("shared_dependencies.json");
+      for (String line : bad) {
+        try (FileWriter writer = new FileWriter(changes)) {
+          writer.write("{\"op\": \"add\", \"name\": \"F\"}\n" + line + "\n");
+        }
+        try {
+          pkgManager.applyChanges(changes.getPath());
+          fail(line + " should throw an IllegalArgumentException");
+        } catch (IllegalArgumentException e) {
+          if (!e.getMessage().contains(" line 2: ")) {
+            fail("The error for " + line + " should name line 2 but is " + e.getMessage());
+          }
+        }
+      }
+      if (!pkgManager.getInstallationOrder("A").equals(Arrays.asList("D", "B", "C", "A"))) {
+        fail("A should not have changed but its installation order is "
+            + pkgManager.getInstallationOrder("A"));
+      }
+      
+    } catch (Exception e) {
+      fail("Unkown exception ocurred: " + e);
+    }
+  }
 
 }
@@ -0,0 +1,206 @@
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * MetricsListener that keeps a latency histogram and visit counts per operation, plus the
+ * installation order cache hit rate.
+ *
+ * Latencies go into 64 power of two buckets, so recording a call is a few atomic additions and
+ * never allocates once an operation has been seen. Everything can be read while operations are
+ * being recorded from other threads.
+ *
+ * Usage:
+ *
+ * PackageMetrics metrics = new PackageMetrics(); pkgManager.setMetricsListener(metrics); ...
+ * System.out.println(metrics);
+ */
+public class PackageMetrics implements MetricsListener, PackageMetricsMBean {
+
+  /**
+   * operation name -> numbers for that operation
+   */
+  private final Map<String, Operation> operations = new ConcurrentHashMap<String, Operation>();
+
+  private final LongAdder cacheHits = new LongAdder();
+  private final LongAdder cacheMisses = new LongAdder();
+
+  public void operationCompleted(String operation, long elapsedNanos, long vertices, long edges) {
+    Operation numbers = this.operations.get(operation);
+    if (numbers == null) {
+      this.operations.putIfAbsent(operation, new Operation());
+      numbers = this.operations.get(operation);
+    }
+    numbers.record(elapsedNanos, vertices, edges);
+  }
+
+  public void cacheLookup(boolean hit) {
+    if (hit) {
+      this.cacheHits.increment();
+    } else {
+      this.cacheMisses.increment();
+    }
+  }
+
+  /**
+   * Registers this object with the platform MBean server so JMX clients can read it
+   *
+   * @param name JMX object name, for example "PackageManager:type=Metrics"
+   *
+   * @throws JMException if the name is invalid or already registered
+   */
+  public void registerMBean(String name) throws JMException {
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+  }
+
+  public String[] getOperations() {
+    return new TreeMap<String, Operation>(this.operations).keySet().toArray(new String[0]);
+  }
+
+  public long getCount(String operation) {
+    Operation numbers = this.operations.get(operation);
+    return numbers == null ? 0 : numbers.count.sum();
+  }
+
+  public double getMeanMillis(String operation) {
+    Operation numbers = this.operations.get(operation);
+    return numbers == null ? 0 : numbers.mean(numbers.nanos) / 1e6;
+  }
+
+  public long getMaxNanos(String operation) {
+    Operation numbers = this.operations.get(operation);
+    return numbers == null ? 0 : numbers.max.get();
+  }
+
+  public long getPercentileNanos(String operation, double percentile) {
+    if (percentile < 0 || percentile > 100) {
+      throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+    }
+    Operation numbers = this.operations.get(operation);
+    return numbers == null ? 0 : numbers.percentile(percentile);
+  }
+
+  public double getMeanVertices(String operation) {
+    Operation numbers = this.operations.get(operation);
+    return numbers == null ? 0 : numbers.mean(numbers.vertices);
+  }
+
+  public double getMeanEdges(String operation) {
+    Operation numbers = this.operations.get(operation);
+    return numbers == null ? 0 : numbers.mean(numbers.edges);
+  }
+
+  public long getCacheHits() {
+    return this.cacheHits.sum();
+  }
+
+  public long getCacheMisses() {
+    return this.cacheMisses.sum();
+  }
+
+  public double getCacheHitRate() {
+    long hits = this.cacheHits.sum();
+    long total = hits + this.cacheMisses.sum();
+    return total == 0 ? 0 : (double) hits / total;
+  }
+
+  public void reset() {
+    this.operations.clear();
+    this.cacheHits.reset();
+    this.cacheMisses.reset();
+  }
+
+  /**
+   * One line per operation with count, mean, p50, p99, max and visit counts
+   */
+  @Override
+  public String toString() {
+    StringBuilder out = new StringBuilder();
+    for (String operation : this.getOperations()) {
+      out.append(String.format(
+          "%s: %d calls, mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms, %.0f vertices,"
+              + " %.0f edges%n",
+          operation, this.getCount(operation), this.getMeanMillis(operation),
+          this.getPercentileNanos(operation, 50) / 1e6,
+          this.getPercentileNanos(operation, 99) / 1e6, this.getMaxNanos(operation) / 1e6,
+          this.getMeanVertices(operation), this.getMeanEdges(operation)));
+    }
+    out.append(String.format("cache: %d hits, %d misses (%.1f%% hit rate)", this.getCacheHits(),
+        this.getCacheMisses(), 100 * this.getCacheHitRate()));
+    return out.toString();
+  }
+
+  /**
+   * Numbers recorded for one operation
+   */
+  private static class Operation {
+    final LongAdder count = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    final LongAdder vertices = new LongAdder();
+    final LongAdder edges = new LongAdder();
+    final AtomicLong max = new AtomicLong();
+
+    /**
+     * buckets[b] counts calls that took from 2^b up to 2^(b + 1) - 1 nanoseconds, bucket 0 also
+     * counts calls that took 0 nanoseconds
+     */
+    final AtomicLongArray buckets = new AtomicLongArray(64);
+
+    /**
+     * Records one call
+     *
+     * @param elapsedNanos time the call took
+     * @param vertices packages traversed or returned
+     * @param edges edges followed
+     */
+    void record(long elapsedNanos, long vertices, long edges) {
+      this.count.increment();
+      this.nanos.add(elapsedNanos);
+      this.vertices.add(vertices);
+      this.edges.add(edges);
+      this.buckets.incrementAndGet(Math.max(0, 63 - Long.numberOfLeadingZeros(elapsedNanos)));
+
+      long max = this.max.get();
+      while (elapsedNanos > max && !this.max.compareAndSet(max, elapsedNanos)) {
+        max = this.max.get();
+      }
+    }
+
+    /**
+     * @param total sum of a value over every call
+     * @return double mean of the value per call, 0 if there were no calls
+     */
+    double mean(LongAdder total) {
+      long count = this.count.sum();
+      return count == 0 ? 0 : (double) total.sum() / count;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return long upper end of the bucket the percentile falls in
+     */
+    long percentile(double percentile) {
+      long total = 0;
+      for (int b = 0; b < 64; b++) {
+        total += this.buckets.get(b);
+      }
+
+      long rank = (long) Math.ceil(percentile / 100 * total);
+      long seen = 0;
+      for (int b = 0; b < 64; b++) {
+        seen += this.buckets.get(b);
+        if (seen >= rank && seen > 0) {
+          return b == 63 ? Long.MAX_VALUE : (1L << (b + 1)) - 1;
+        }
+      }
+      return 0;
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+/**
+ * JMX management interface of PackageMetrics, so the numbers can be read with jconsole or any
+ * other JMX client once PackageMetrics.registerMBean() was called.
+ */
+public interface PackageMetricsMBean {
+
+  /**
+   * @return String[] names of every operation recorded so far
+   */
+  public String[] getOperations();
+
+  /**
+   * @param operation name of the operation
+   * @return long amount of completed calls
+   */
+  public long getCount(String operation);
+
+  /**
+   * @param operation name of the operation
+   * @return double mean time per call in milliseconds
+   */
+  public double getMeanMillis(String operation);
+
+  /**
+   * @param operation name of the operation
+   * @return long longest call in nanoseconds
+   */
+  public long getMaxNanos(String operation);
+
+  /**
+   * Returns a latency percentile. Latencies are kept in power of two buckets, so the result is the
+   * upper end of the bucket the percentile falls in and at most twice the real value.
+   *
+   * @param operation name of the operation
+   * @param percentile between 0 and 100
+   * @return long latency in nanoseconds
+   */
+  public long getPercentileNanos(String operation, double percentile);
+
+  /**
+   * @param operation name of the operation
+   * @return double mean amount of packages traversed or returned per call
+   */
+  public double getMeanVertices(String operation);
+
+  /**
+   * @param operation name of the operation
+   * @return double mean amount of dependency edges followed per call
+   */
+  public double getMeanEdges(String operation);
+
+  /**
+   * @return long amount of installation order cache hits
+   */
+  public long getCacheHits();
+
+  /**
+   * @return long amount of installation order cache misses
+   */
+  public long getCacheMisses();
+
+  /**
+   * @return double fraction of cache lookups that were hits, 0 if there were none
+   */
+  public double getCacheHitRate();
+
+  /**
+   * Forgets everything recorded so far
+   */
+  public void reset();
+
+}
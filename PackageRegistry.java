@@ -0,0 +1,143 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Registry of packages that can have many versions, each version with its own dependencies on
+ * version ranges of other packages.
+ *
+ * Unlike the dependency Graph, where a package is just a name, a dependency here is only met by
+ * the versions its range accepts. DependencyResolver picks one version of every package that is
+ * needed. toGraph() shows every candidate as a vertex named "name@version".
+ */
+public class PackageRegistry {
+
+  /**
+   * name -> version -> dependency name -> accepted versions
+   */
+  private final Map<String, TreeMap<Version, Map<String, VersionRange>>> packages =
+      new HashMap<String, TreeMap<Version, Map<String, VersionRange>>>();
+
+  private int versions;
+
+  /**
+   * Adds a version of a package, replacing its dependencies if the version is already known
+   *
+   * @param name of the package
+   * @param version of the package, for example "1.4.2"
+   * @param dependencies dependency name -> range of accepted versions, for example "^2.0.0"
+   *
+   * @throws IllegalArgumentException if the version or a range is not valid
+   */
+  public void addVersion(String name, String version, Map<String, String> dependencies) {
+    Map<String, VersionRange> ranges = new LinkedHashMap<String, VersionRange>();
+    for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+      ranges.put(dependency.getKey(), new VersionRange(dependency.getValue()));
+    }
+    this.addVersion(name, new Version(version), ranges);
+  }
+
+  /**
+   * Same as addVersion(String, String, Map) for versions and ranges that are already parsed
+   *
+   * @param name of the package
+   * @param version of the package
+   * @param dependencies dependency name -> range of accepted versions
+   */
+  public void addVersion(String name, Version version, Map<String, VersionRange> dependencies) {
+    TreeMap<Version, Map<String, VersionRange>> versions = this.packages.get(name);
+    if (versions == null) {
+      versions = new TreeMap<Version, Map<String, VersionRange>>();
+      this.packages.put(name, versions);
+    }
+    if (versions.put(version, Collections.unmodifiableMap(
+        new LinkedHashMap<String, VersionRange>(dependencies))) == null) {
+      this.versions++;
+    }
+  }
+
+  /**
+   * @return Set<String> names of all packages with at least one version
+   */
+  public Set<String> getPackages() {
+    return Collections.unmodifiableSet(this.packages.keySet());
+  }
+
+  /**
+   * @param name of the package
+   * @return List<Version> versions of the package from lowest to highest, empty if the package is
+   *         unknown
+   */
+  public List<Version> getVersions(String name) {
+    TreeMap<Version, Map<String, VersionRange>> versions = this.packages.get(name);
+    if (versions == null) {
+      return Collections.emptyList();
+    }
+    return new ArrayList<Version>(versions.keySet());
+  }
+
+  /**
+   * @param name of the package
+   * @param version of the package
+   * @return Map<String, VersionRange> read-only dependency name -> accepted versions, or null if
+   *         the version is unknown
+   */
+  public Map<String, VersionRange> getDependencies(String name, Version version) {
+    TreeMap<Version, Map<String, VersionRange>> versions = this.packages.get(name);
+    return versions == null ? null : versions.get(version);
+  }
+
+  /**
+   * @return int amount of versions of all packages together
+   */
+  public int getVersionCount() {
+    return this.versions;
+  }
+
+  /**
+   * Returns the name of the vertex of a version in toGraph() and Resolution.getGraph()
+   *
+   * @param name of the package
+   * @param version of the package
+   * @return String name + "@" + version
+   */
+  public static String vertexOf(String name, Version version) {
+    return name + "@" + version;
+  }
+
+  /**
+   * Builds a graph with a vertex for every version of every package and an edge from every
+   * version a dependency accepts to the version that depends on it.
+   *
+   * @return Graph of all candidate versions
+   */
+  public Graph toGraph() {
+    GraphBuilder builder = new GraphBuilder();
+    for (Map.Entry<String, TreeMap<Version, Map<String, VersionRange>>> pkg : this.packages
+        .entrySet()) {
+      for (Map.Entry<Version, Map<String, VersionRange>> version : pkg.getValue().entrySet()) {
+        String dependent = vertexOf(pkg.getKey(), version.getKey());
+        builder.addVertex(dependent);
+        for (Map.Entry<String, VersionRange> dependency : version.getValue().entrySet()) {
+          TreeMap<Version, Map<String, VersionRange>> candidates =
+              this.packages.get(dependency.getKey());
+          if (candidates == null) {
+            continue;
+          }
+          for (Version candidate : candidates.keySet()) {
+            if (dependency.getValue().contains(candidate)) {
+              builder.addEdge(vertexOf(dependency.getKey(), candidate), dependent);
+            }
+          }
+        }
+      }
+    }
+    return builder.build();
+  }
+
+}
@@ -0,0 +1,185 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Level synchronous version of Kahn's topological sort.
+ *
+ * The first wave holds every vertex without incoming edges. Each following wave holds the vertices
+ * whose last incoming edge came from the previous wave. Large waves are expanded in parallel on a
+ * ForkJoinPool, the in-degree counters are updated atomically so each vertex is placed in exactly
+ * one wave. Every wave is sorted by vertex id, so the result does not depend on thread timing.
+ *
+ * Runs in O(V + E) time. If some vertices never reach in-degree 0 the graph has a cycle, and one
+ * of those cycles is reported.
+ */
+public class ParallelTopologicalSort {
+
+  /**
+   * Frontiers with at most this many vertices are expanded on the calling thread
+   */
+  static final int SEQUENTIAL_THRESHOLD = 1024;
+
+  /*
+   * Only static methods, no instances
+   */
+  private ParallelTopologicalSort() {}
+
+  /**
+   * Sorts a graph into waves
+   *
+   * @param graph to sort, edges go from a vertex to the vertices that must come after it
+   * @param pool to expand large waves on
+   * @return InstallationSchedule the waves
+   *
+   * @throws CyclicDependencyException if the graph has a cycle
+   */
+  public static InstallationSchedule sort(IndexedGraph graph, ForkJoinPool pool)
+      throws CyclicDependencyException {
+    int n = graph.order();
+    AtomicIntegerArray inDegree = new AtomicIntegerArray(n);
+    int[] frontier = new int[n];
+    int frontierSize = 0;
+
+    // the first wave is every vertex without incoming edges
+    for (int v = 0; v < n; v++) {
+      int degree = graph.inEnd(v) - graph.inStart(v);
+      inDegree.set(v, degree);
+      if (degree == 0) {
+        frontier[frontierSize++] = v;
+      }
+    }
+
+    List<List<String>> waves = new ArrayList<List<String>>();
+    int[] next = new int[n];
+    int processed = 0;
+
+    while (frontierSize > 0) {
+      List<String> wave = new ArrayList<String>(frontierSize);
+      for (int i = 0; i < frontierSize; i++) {
+        wave.add(graph.nameOf(frontier[i]));
+      }
+      waves.add(Collections.unmodifiableList(wave));
+      processed += frontierSize;
+
+      // remove the wave's outgoing edges, collecting vertices that reach in-degree 0
+      AtomicInteger nextSize = new AtomicInteger();
+      ExpandTask task = new ExpandTask(graph, inDegree, frontier, 0, frontierSize, next, nextSize);
+      if (frontierSize <= SEQUENTIAL_THRESHOLD) {
+        task.compute();
+      } else {
+        pool.invoke(task);
+      }
+
+      frontierSize = nextSize.get();
+      Arrays.sort(next, 0, frontierSize);
+      int[] swap = frontier;
+      frontier = next;
+      next = swap;
+    }
+
+    if (processed < n) {
+      throw new CyclicDependencyException(findCycle(graph, inDegree));
+    }
+
+    return new InstallationSchedule(waves);
+  }
+
+  /**
+   * Finds a cycle among the vertices that were never placed in a wave.
+   *
+   * Every such vertex still has an incoming edge from another such vertex, so following those
+   * edges backwards must eventually revisit a vertex.
+   *
+   * @param graph that was sorted
+   * @param inDegree remaining in-degrees, 0 for every vertex that was placed
+   * @return List<String> the cycle, each vertex having an edge to the previous one
+   */
+  private static List<String> findCycle(IndexedGraph graph, AtomicIntegerArray inDegree) {
+    int start = 0;
+    while (inDegree.get(start) == 0) {
+      start++;
+    }
+
+    // position of every vertex on the walk, -1 if not on it
+    int[] position = new int[graph.order()];
+    Arrays.fill(position, -1);
+    List<Integer> walk = new ArrayList<Integer>();
+
+    int v = start;
+    while (position[v] == -1) {
+      position[v] = walk.size();
+      walk.add(v);
+      for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+        if (inDegree.get(graph.inSource(e)) > 0) {
+          v = graph.inSource(e);
+          break;
+        }
+      }
+    }
+
+    List<String> cycle = new ArrayList<String>();
+    for (int i = position[v]; i < walk.size(); i++) {
+      cycle.add(graph.nameOf(walk.get(i)));
+    }
+    cycle.add(graph.nameOf(v));
+    return cycle;
+  }
+
+  /**
+   * Removes the outgoing edges of a range of the frontier, splitting the range in half until it is
+   * small enough to do on one thread
+   */
+  private static class ExpandTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private final IndexedGraph graph;
+    private final AtomicIntegerArray inDegree;
+    private final int[] frontier;
+    private final int from;
+    private final int to;
+    private final int[] next;
+    private final AtomicInteger nextSize;
+
+    ExpandTask(IndexedGraph graph, AtomicIntegerArray inDegree, int[] frontier, int from, int to,
+        int[] next, AtomicInteger nextSize) {
+      this.graph = graph;
+      this.inDegree = inDegree;
+      this.frontier = frontier;
+      this.from = from;
+      this.to = to;
+      this.next = next;
+      this.nextSize = nextSize;
+    }
+
+    @Override
+    protected void compute() {
+      if (this.to - this.from > SEQUENTIAL_THRESHOLD) {
+        int middle = (this.from + this.to) >>> 1;
+        invokeAll(
+            new ExpandTask(this.graph, this.inDegree, this.frontier, this.from, middle, this.next,
+                this.nextSize),
+            new ExpandTask(this.graph, this.inDegree, this.frontier, middle, this.to, this.next,
+                this.nextSize));
+        return;
+      }
+
+      for (int i = this.from; i < this.to; i++) {
+        int v = this.frontier[i];
+        for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+          int w = this.graph.outTarget(e);
+          if (this.inDegree.decrementAndGet(w) == 0) {
+            this.next[this.nextSize.getAndIncrement()] = w;
+          }
+        }
+      }
+    }
+  }
+
+}
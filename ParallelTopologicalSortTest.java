@@ -0,0 +1,115 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for ParallelTopologicalSort testing
+ */
+class ParallelTopologicalSortTest {
+
+  ForkJoinPool pool;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    pool = new ForkJoinPool(4);
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    pool.shutdown();
+    pool = null;
+  }
+
+  /**
+   * Packages should be grouped by the length of their longest dependency chain
+   */
+  @Test
+  void testSort_001_waves() throws CycleException {
+    // edges go from dependency to dependent
+    Graph graph = new Graph();
+    graph.addEdge("D", "C");
+    graph.addEdge("C", "B");
+    graph.addEdge("C", "A");
+    graph.addEdge("B", "A");
+    graph.addVertex("E");
+
+    InstallationSchedule schedule = ParallelTopologicalSort.sort(graph.freeze(), pool);
+
+    if (schedule.getWaveCount() != 4) {
+      fail("Expected 4 waves but got " + schedule.getWaves());
+    }
+    if (!schedule.getWaves().get(1).equals(Arrays.asList("C"))
+        || !schedule.getWaves().get(3).equals(Arrays.asList("A"))) {
+      fail("Waves should be [[D, E], [C], [B], [A]] in some order but are "
+          + schedule.getWaves());
+    }
+    if (schedule.size() != 5 || schedule.getOrder().size() != 5) {
+      fail("Schedule should contain 5 packages but has " + schedule.size());
+    }
+  }
+
+  /**
+   * A big random graph sorted in parallel must respect every edge
+   */
+  @Test
+  void testSort_002_parallel_order_is_valid() throws CycleException {
+    int[][] registry = GraphGenerator.randomDag(50000, 4, 1);
+    CompactGraph graph = GraphGenerator.toGraph(registry).freeze();
+
+    List<String> order = ParallelTopologicalSort.sort(graph, pool).getOrder();
+
+    if (order.size() != registry.length) {
+      fail("Order should have " + registry.length + " packages but has " + order.size());
+    }
+    Map<String, Integer> position = new HashMap<String, Integer>();
+    for (int i = 0; i < order.size(); i++) {
+      position.put(order.get(i), i);
+    }
+    for (int i = 0; i < registry.length; i++) {
+      for (int dependency : registry[i]) {
+        if (position.get(GraphGenerator.name(dependency)) > position
+            .get(GraphGenerator.name(i))) {
+          fail(GraphGenerator.name(dependency) + " must come before " + GraphGenerator.name(i));
+        }
+      }
+    }
+  }
+
+  /**
+   * A cycle should be reported with the packages in it
+   */
+  @Test
+  void testSort_003_cycle_is_reported() {
+    // A depends on B, B on C and C on A, D depends on A
+    Graph graph = new Graph();
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("A", "D");
+    graph.addVertex("E");
+
+    try {
+      ParallelTopologicalSort.sort(graph.freeze(), pool);
+      fail("Sorting a cyclic graph should throw a CyclicDependencyException");
+    } catch (CyclicDependencyException e) {
+      List<String> cycle = e.getCycle();
+      if (cycle.size() != 4 || !cycle.get(0).equals(cycle.get(3))
+          || !cycle.containsAll(Arrays.asList("A", "B", "C"))) {
+        fail("Cycle should be A, B and C but is " + cycle);
+      }
+    }
+  }
+
+}
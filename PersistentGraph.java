@@ -0,0 +1,928 @@
+import java.util.AbstractList;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * PersistentGraph is an immutable graph where every change returns a new version and leaves the
+ * old one untouched, so the current registry can keep serving queries while the next one is
+ * staged.
+ *
+ * Vertices live in a hash array mapped trie (HAMT): a tree of nodes with up to 32 children each,
+ * picked by 5 bits of the hash of the vertex at a time. A change copies only the nodes on the path
+ * to the vertices it touches, about log32(order()) small arrays. Everything else is shared with the
+ * previous version, so taking a snapshot is just keeping a reference, and memory for many retained
+ * versions grows with the changes between them rather than with the size of the graph.
+ *
+ * The edges of a vertex are kept the same way. Up to SMALL of them are a plain array that a change
+ * copies. Past that they move to a persistent tree in the order they were added, plus a trie from
+ * vertex to position in that tree, so adding or removing one edge of a vertex with d edges copies
+ * O(log d) small nodes instead of all d edges. Popular packages that keep gaining dependents do
+ * not make every retained version pay for their whole list.
+ *
+ * Since nothing is ever changed in place, any number of threads can read any version without
+ * locking. The GraphADT methods that would change the graph in place throw an
+ * UnsupportedOperationException, use withVertex(), withoutVertex(), withEdge() and withoutEdge()
+ * instead.
+ */
+public class PersistentGraph implements GraphADT {
+
+  /**
+   * The graph without vertices
+   */
+  public static final PersistentGraph EMPTY = new PersistentGraph(Node.EMPTY, 0, 0);
+
+  /**
+   * Hash bits used per trie level
+   */
+  private static final int BITS = 5;
+
+  /**
+   * Shift of the deepest level that still uses hash bits, deeper nodes hold vertices with equal
+   * hashes
+   */
+  private static final int MAX_SHIFT = 30;
+
+  /**
+   * Most edges a vertex keeps in an array before moving them to a tree
+   */
+  static final int SMALL = 16;
+
+  private final Node root;
+  private final int order;
+  private final int edges;
+
+  /**
+   * Frozen copy returned by freeze(), built the first time it is asked for
+   */
+  private volatile CompactGraph frozen;
+
+  private PersistentGraph(Node root, int order, int edges) {
+    this.root = root;
+    this.order = order;
+    this.edges = edges;
+  }
+
+  /**
+   * Creates a persistent copy of another graph, adding every edge with withEdge() at O(log d) each
+   *
+   * @param graph to copy
+   * @return PersistentGraph with the same vertices and edges
+   */
+  public static PersistentGraph copyOf(GraphADT graph) {
+    PersistentGraph copy = EMPTY;
+    for (String v : graph.getAllVertices()) {
+      copy = copy.withVertex(v);
+      for (String w : graph.getAdjacentVerticesOf(v)) {
+        copy = copy.withEdge(v, w);
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Returns a version with vertex added.
+   *
+   * @param vertex to add
+   * @return PersistentGraph new version, or this if vertex is null or already in the graph
+   */
+  public PersistentGraph withVertex(String vertex) {
+    if (vertex == null || this.find(vertex) != null) {
+      return this;
+    }
+    Entry entry = new Entry(vertex, SmallEdges.EMPTY, SmallEdges.EMPTY);
+    return new PersistentGraph(put(this.root, entry, vertex.hashCode(), 0), this.order + 1,
+        this.edges);
+  }
+
+  /**
+   * Returns a version with vertex and all edges to and from it removed.
+   *
+   * @param vertex to remove
+   * @return PersistentGraph new version, or this if vertex is null or not in the graph
+   */
+  public PersistentGraph withoutVertex(String vertex) {
+    Entry entry = vertex == null ? null : this.find(vertex);
+    if (entry == null) {
+      return this;
+    }
+
+    Node root = remove(this.root, vertex, vertex.hashCode(), 0);
+    int removed = entry.successors.size() + entry.predecessors.size();
+    for (String successor : entry.successors) {
+      if (successor.equals(vertex)) {
+        // a self loop shows up in both edge lists but is one edge
+        removed--;
+        continue;
+      }
+      Entry other = (Entry) find(root, successor);
+      root = put(root, new Entry(successor, other.successors, other.predecessors.without(vertex)),
+          successor.hashCode(), 0);
+    }
+    for (String predecessor : entry.predecessors) {
+      if (predecessor.equals(vertex)) {
+        continue;
+      }
+      Entry other = (Entry) find(root, predecessor);
+      root = put(root, new Entry(predecessor, other.successors.without(vertex),
+          other.predecessors), predecessor.hashCode(), 0);
+    }
+    return new PersistentGraph(root, this.order - 1, this.edges - removed);
+  }
+
+  /**
+   * Returns a version with the edge from vertex1 to vertex2 added. Vertices that are not in the
+   * graph yet are added first.
+   *
+   * @param vertex1 vertex the edge goes from
+   * @param vertex2 vertex the edge goes to
+   * @return PersistentGraph new version, or this if either vertex is null or the edge exists
+   */
+  public PersistentGraph withEdge(String vertex1, String vertex2) {
+    if (vertex1 == null || vertex2 == null) {
+      return this;
+    }
+
+    PersistentGraph graph = this.withVertex(vertex1).withVertex(vertex2);
+    Entry from = graph.find(vertex1);
+    if (from.successors.contains(vertex2)) {
+      return graph;
+    }
+
+    Node root = put(graph.root, new Entry(vertex1, from.successors.with(vertex2),
+        from.predecessors), vertex1.hashCode(), 0);
+    // looked up again, vertex1 and vertex2 are the same entry for a self loop
+    Entry to = (Entry) find(root, vertex2);
+    root = put(root, new Entry(vertex2, to.successors, to.predecessors.with(vertex1)),
+        vertex2.hashCode(), 0);
+    return new PersistentGraph(root, graph.order, graph.edges + 1);
+  }
+
+  /**
+   * Returns a version without the edge from vertex1 to vertex2.
+   *
+   * @param vertex1 vertex the edge goes from
+   * @param vertex2 vertex the edge goes to
+   * @return PersistentGraph new version, or this if the edge is not in the graph
+   */
+  public PersistentGraph withoutEdge(String vertex1, String vertex2) {
+    if (!this.hasEdge(vertex1, vertex2)) {
+      return this;
+    }
+
+    Entry from = this.find(vertex1);
+    Node root = put(this.root, new Entry(vertex1, from.successors.without(vertex2),
+        from.predecessors), vertex1.hashCode(), 0);
+    Entry to = (Entry) find(root, vertex2);
+    root = put(root, new Entry(vertex2, to.successors, to.predecessors.without(vertex1)),
+        vertex2.hashCode(), 0);
+    return new PersistentGraph(root, this.order, this.edges - 1);
+  }
+
+  /**
+   * Not supported, PersistentGraph is immutable, use withVertex()
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addVertex(String vertex) {
+    throw new UnsupportedOperationException("PersistentGraph is immutable, use withVertex()");
+  }
+
+  /**
+   * Not supported, PersistentGraph is immutable, use withoutVertex()
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeVertex(String vertex) {
+    throw new UnsupportedOperationException("PersistentGraph is immutable, use withoutVertex()");
+  }
+
+  /**
+   * Not supported, PersistentGraph is immutable, use withEdge()
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void addEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("PersistentGraph is immutable, use withEdge()");
+  }
+
+  /**
+   * Not supported, PersistentGraph is immutable, use withoutEdge()
+   *
+   * @throws UnsupportedOperationException always
+   */
+  public void removeEdge(String vertex1, String vertex2) {
+    throw new UnsupportedOperationException("PersistentGraph is immutable, use withoutEdge()");
+  }
+
+  /**
+   * Returns a read-only Set that contains all the vertices
+   *
+   * The returned set is a view over the trie, nothing is copied
+   *
+   * @return Set<String> set of vertices
+   */
+  public Set<String> getAllVertices() {
+    return new AbstractSet<String>() {
+      @Override
+      public boolean contains(Object o) {
+        return o instanceof String && PersistentGraph.this.find((String) o) != null;
+      }
+
+      @Override
+      public Iterator<String> iterator() {
+        return new VertexIterator(PersistentGraph.this.root);
+      }
+
+      @Override
+      public int size() {
+        return PersistentGraph.this.order;
+      }
+    };
+  }
+
+  /**
+   * Returns whether the edge from vertex1 to vertex2 is in the graph (edge is directed)
+   *
+   * Looks in the outgoing edges of vertex1 or the incoming edges of vertex2, whichever is shorter
+   *
+   * @param String vertex1 vertex the edge goes from
+   * @param String vertex2 vertex the edge goes to
+   *
+   * @return boolean true if the edge is in the graph, false otherwise or if either vertex is null
+   */
+  public boolean hasEdge(String vertex1, String vertex2) {
+    if (vertex1 == null || vertex2 == null) {
+      return false;
+    }
+    Entry from = this.find(vertex1);
+    Entry to = this.find(vertex2);
+    if (from == null || to == null) {
+      return false;
+    }
+
+    if (from.successors.size() <= to.predecessors.size()) {
+      return from.successors.contains(vertex2);
+    }
+    return to.predecessors.contains(vertex1);
+  }
+
+  /**
+   * Get all the neighbor (adjacent) vertices of a vertex
+   *
+   * The returned list is a read-only view over the edges of this version, nothing is copied
+   *
+   * @param String vertex the vertex you want to get neighbors of
+   *
+   * @return List<String> list of adjacent vertices in the order the edges were added, or null if
+   *         vertex is not in the graph
+   */
+  public List<String> getAdjacentVerticesOf(String vertex) {
+    Entry entry = vertex == null ? null : this.find(vertex);
+    return entry == null ? null : new EdgeView(entry.successors);
+  }
+
+  /**
+   * Get all the predecessor vertices of a vertex (every vertex that has an edge to it)
+   *
+   * The returned list is a read-only view over the edges of this version, nothing is copied
+   *
+   * @param String vertex the vertex you want to get predecessors of
+   *
+   * @return List<String> list of predecessor vertices in the order the edges were added, or null
+   *         if vertex is not in the graph
+   */
+  public List<String> getPredecessorsOf(String vertex) {
+    Entry entry = vertex == null ? null : this.find(vertex);
+    return entry == null ? null : new EdgeView(entry.predecessors);
+  }
+
+  /**
+   * Returns the number of edges in this graph.
+   *
+   * @return int the number of edges
+   */
+  public int size() {
+    return this.edges;
+  }
+
+  /**
+   * Returns the number of vertices in this graph.
+   *
+   * @return int the number of vertices
+   */
+  public int order() {
+    return this.order;
+  }
+
+  /**
+   * Returns a CompactGraph copy of this version, so the algorithms that work on CompactGraph can
+   * run against it. The copy is built the first time it is asked for and kept with this version.
+   *
+   * @return CompactGraph frozen copy of this version
+   */
+  public CompactGraph freeze() {
+    CompactGraph frozen = this.frozen;
+    if (frozen == null) {
+      GraphBuilder builder = new GraphBuilder();
+      for (String v : this.getAllVertices()) {
+        builder.addVertex(v);
+        for (String w : this.find(v).successors) {
+          builder.addEdge(v, w);
+        }
+      }
+      frozen = builder.build().freeze();
+      this.frozen = frozen;
+    }
+    return frozen;
+  }
+
+  /**
+   * @param vertex to look up, not null
+   * @return Entry of vertex in this version, or null if it is not in the graph
+   */
+  private Entry find(String vertex) {
+    return (Entry) find(this.root, vertex);
+  }
+
+  /**
+   * Looks a vertex up in a trie
+   *
+   * @param node root of the trie
+   * @param vertex to look up, not null
+   * @return Keyed of vertex, or null if it is not in the trie
+   */
+  private static Keyed find(Node node, String vertex) {
+    int hash = vertex.hashCode();
+    for (int shift = 0; shift <= MAX_SHIFT; shift += BITS) {
+      int bit = 1 << ((hash >>> shift) & 31);
+      if ((node.bitmap & bit) == 0) {
+        return null;
+      }
+      Object slot = node.slots[Integer.bitCount(node.bitmap & (bit - 1))];
+      if (slot instanceof Keyed) {
+        Keyed keyed = (Keyed) slot;
+        return keyed.vertex.equals(vertex) ? keyed : null;
+      }
+      node = (Node) slot;
+    }
+
+    // every vertex below the deepest level has the same hash
+    for (Object slot : node.slots) {
+      if (((Keyed) slot).vertex.equals(vertex)) {
+        return (Keyed) slot;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns a copy of a trie with an entry added, or replacing the entry of the same vertex
+   *
+   * @param node root of the (sub)trie, not changed
+   * @param entry to add
+   * @param hash of entry.vertex
+   * @param shift hash bits already used by the levels above node
+   * @return Node new root of the (sub)trie
+   */
+  private static Node put(Node node, Keyed entry, int hash, int shift) {
+    if (shift > MAX_SHIFT) {
+      for (int i = 0; i < node.slots.length; i++) {
+        if (((Keyed) node.slots[i]).vertex.equals(entry.vertex)) {
+          return node.replace(i, entry);
+        }
+      }
+      return node.insert(node.slots.length, 0, entry);
+    }
+
+    int bit = 1 << ((hash >>> shift) & 31);
+    int index = Integer.bitCount(node.bitmap & (bit - 1));
+    if ((node.bitmap & bit) == 0) {
+      return node.insert(index, bit, entry);
+    }
+
+    Object slot = node.slots[index];
+    if (slot instanceof Node) {
+      return node.replace(index, put((Node) slot, entry, hash, shift + BITS));
+    }
+    Keyed existing = (Keyed) slot;
+    if (existing.vertex.equals(entry.vertex)) {
+      return node.replace(index, entry);
+    }
+
+    // two vertices share this slot, push both one level down
+    Node child = put(Node.EMPTY, existing, existing.vertex.hashCode(), shift + BITS);
+    return node.replace(index, put(child, entry, hash, shift + BITS));
+  }
+
+  /**
+   * Returns a copy of a trie without the entry of a vertex
+   *
+   * @param node root of the (sub)trie, not changed
+   * @param vertex to remove, must be in the trie
+   * @param hash of vertex
+   * @param shift hash bits already used by the levels above node
+   * @return Node new root of the (sub)trie
+   */
+  private static Node remove(Node node, String vertex, int hash, int shift) {
+    if (shift > MAX_SHIFT) {
+      for (int i = 0; i < node.slots.length; i++) {
+        if (((Keyed) node.slots[i]).vertex.equals(vertex)) {
+          return node.delete(i, 0);
+        }
+      }
+      return node;
+    }
+
+    int bit = 1 << ((hash >>> shift) & 31);
+    int index = Integer.bitCount(node.bitmap & (bit - 1));
+    Object slot = node.slots[index];
+    if (slot instanceof Keyed) {
+      return node.delete(index, bit);
+    }
+
+    Node child = remove((Node) slot, vertex, hash, shift + BITS);
+    if (child.slots.length == 0) {
+      return node.delete(index, bit);
+    }
+    // a child left with a single vertex is replaced by that vertex
+    if (child.slots.length == 1 && child.slots[0] instanceof Keyed) {
+      return node.replace(index, child.slots[0]);
+    }
+    return node.replace(index, child);
+  }
+
+  /**
+   * Anything kept in a trie, found by the hash of its vertex
+   */
+  private static class Keyed {
+    final String vertex;
+
+    Keyed(String vertex) {
+      this.vertex = vertex;
+    }
+  }
+
+  /**
+   * A vertex and its edges, never changed once created
+   */
+  private static class Entry extends Keyed {
+    final Edges successors;
+    final Edges predecessors;
+
+    Entry(String vertex, Edges successors, Edges predecessors) {
+      super(vertex);
+      this.successors = successors;
+      this.predecessors = predecessors;
+    }
+  }
+
+  /**
+   * Position of an edge in an EdgeTree, kept in the trie of the tree
+   */
+  private static class Position extends Keyed {
+    final long key;
+
+    Position(String vertex, long key) {
+      super(vertex);
+      this.key = key;
+    }
+  }
+
+  /**
+   * The edges of one side of a vertex in the order they were added, never changed once created
+   */
+  private abstract static class Edges implements Iterable<String> {
+
+    /**
+     * @return int amount of edges
+     */
+    abstract int size();
+
+    /**
+     * @return String the vertex at the other end of the edge at index
+     */
+    abstract String get(int index);
+
+    /**
+     * @return boolean true if there is an edge to or from vertex
+     */
+    abstract boolean contains(String vertex);
+
+    /**
+     * @param vertex not in the edges yet
+     * @return Edges copy with vertex added last
+     */
+    abstract Edges with(String vertex);
+
+    /**
+     * @param vertex in the edges
+     * @return Edges copy without vertex
+     */
+    abstract Edges without(String vertex);
+  }
+
+  /**
+   * Up to SMALL edges in an array, every change copies the array
+   */
+  private static class SmallEdges extends Edges {
+    static final SmallEdges EMPTY = new SmallEdges(new String[0]);
+
+    private final String[] array;
+
+    SmallEdges(String[] array) {
+      this.array = array;
+    }
+
+    int size() {
+      return this.array.length;
+    }
+
+    String get(int index) {
+      return this.array[index];
+    }
+
+    boolean contains(String vertex) {
+      return this.indexOf(vertex) >= 0;
+    }
+
+    Edges with(String vertex) {
+      if (this.array.length == SMALL) {
+        Edges tree = EdgeTree.EMPTY;
+        for (String v : this.array) {
+          tree = tree.with(v);
+        }
+        return tree.with(vertex);
+      }
+      String[] copy = Arrays.copyOf(this.array, this.array.length + 1);
+      copy[this.array.length] = vertex;
+      return new SmallEdges(copy);
+    }
+
+    Edges without(String vertex) {
+      if (this.array.length == 1) {
+        return EMPTY;
+      }
+      int index = this.indexOf(vertex);
+      String[] copy = new String[this.array.length - 1];
+      System.arraycopy(this.array, 0, copy, 0, index);
+      System.arraycopy(this.array, index + 1, copy, index, copy.length - index);
+      return new SmallEdges(copy);
+    }
+
+    public Iterator<String> iterator() {
+      return Arrays.asList(this.array).iterator();
+    }
+
+    /**
+     * @return int index of vertex in the array, -1 if it is not in it
+     */
+    private int indexOf(String vertex) {
+      for (int i = 0; i < this.array.length; i++) {
+        if (this.array[i].equals(vertex)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * More than SMALL edges in a treap ordered by a key that grows with every edge added, so an
+   * in-order walk gives the edges in the order they were added. Priorities are a hash of the key,
+   * which keeps the tree O(log size()) deep without storing them. A trie from vertex to key finds
+   * the edge of a vertex. Adding or removing an edge copies the nodes on one path of each.
+   */
+  private static class EdgeTree extends Edges {
+    static final EdgeTree EMPTY = new EdgeTree(null, Node.EMPTY, 0);
+
+    private final TreeNode tree;
+    private final Node positions;
+
+    /**
+     * Key of the next edge added
+     */
+    private final long next;
+
+    EdgeTree(TreeNode tree, Node positions, long next) {
+      this.tree = tree;
+      this.positions = positions;
+      this.next = next;
+    }
+
+    int size() {
+      return TreeNode.size(this.tree);
+    }
+
+    String get(int index) {
+      TreeNode node = this.tree;
+      while (true) {
+        int left = TreeNode.size(node.left);
+        if (index < left) {
+          node = node.left;
+        } else if (index == left) {
+          return node.vertex;
+        } else {
+          index -= left + 1;
+          node = node.right;
+        }
+      }
+    }
+
+    boolean contains(String vertex) {
+      return find(this.positions, vertex) != null;
+    }
+
+    Edges with(String vertex) {
+      return new EdgeTree(TreeNode.append(this.tree, this.next, vertex),
+          put(this.positions, new Position(vertex, this.next), vertex.hashCode(), 0),
+          this.next + 1);
+    }
+
+    Edges without(String vertex) {
+      long key = ((Position) find(this.positions, vertex)).key;
+      return new EdgeTree(TreeNode.remove(this.tree, key),
+          remove(this.positions, vertex, vertex.hashCode(), 0), this.next);
+    }
+
+    public Iterator<String> iterator() {
+      return new TreeIterator(this.tree);
+    }
+  }
+
+  /**
+   * Treap node of an EdgeTree, never changed once created
+   */
+  private static class TreeNode {
+    final long key;
+    final String vertex;
+    final TreeNode left;
+    final TreeNode right;
+    final int size;
+
+    TreeNode(long key, String vertex, TreeNode left, TreeNode right) {
+      this.key = key;
+      this.vertex = vertex;
+      this.left = left;
+      this.right = right;
+      this.size = size(left) + size(right) + 1;
+    }
+
+    /**
+     * @return TreeNode copy with new children
+     */
+    TreeNode with(TreeNode left, TreeNode right) {
+      return new TreeNode(this.key, this.vertex, left, right);
+    }
+
+    /**
+     * @return int amount of nodes in a tree, 0 for null
+     */
+    static int size(TreeNode node) {
+      return node == null ? 0 : node.size;
+    }
+
+    /**
+     * @return long priority of a key, a parent never has a lower one than its children
+     */
+    static long priority(long key) {
+      // SplitMix64 finalizer
+      key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+      key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+      return key ^ (key >>> 31);
+    }
+
+    /**
+     * @param node root of a tree, may be null
+     * @param key larger than every key in the tree
+     * @param vertex of the new edge
+     * @return TreeNode root of a copy with the edge added last
+     */
+    static TreeNode append(TreeNode node, long key, String vertex) {
+      if (node == null) {
+        return new TreeNode(key, vertex, null, null);
+      }
+      if (priority(key) > priority(node.key)) {
+        // every key in the tree is smaller, so all of it goes to the left
+        return new TreeNode(key, vertex, node, null);
+      }
+      return node.with(node.left, append(node.right, key, vertex));
+    }
+
+    /**
+     * @param node root of a tree holding key
+     * @param key of the edge to remove
+     * @return TreeNode root of a copy without the edge, null if it is empty
+     */
+    static TreeNode remove(TreeNode node, long key) {
+      if (key < node.key) {
+        return node.with(remove(node.left, key), node.right);
+      }
+      if (key > node.key) {
+        return node.with(node.left, remove(node.right, key));
+      }
+      return merge(node.left, node.right);
+    }
+
+    /**
+     * @param left tree whose keys are all smaller than those of right
+     * @param right tree
+     * @return TreeNode root of a tree with the nodes of both
+     */
+    static TreeNode merge(TreeNode left, TreeNode right) {
+      if (left == null) {
+        return right;
+      }
+      if (right == null) {
+        return left;
+      }
+      if (priority(left.key) > priority(right.key)) {
+        return left.with(left.left, merge(left.right, right));
+      }
+      return right.with(merge(left, right.left), right.right);
+    }
+  }
+
+  /**
+   * In-order walk over an EdgeTree
+   */
+  private static class TreeIterator implements Iterator<String> {
+
+    /**
+     * Nodes whose vertex and right subtree are still to come, the next one on top
+     */
+    private final Deque<TreeNode> path = new ArrayDeque<TreeNode>();
+
+    TreeIterator(TreeNode root) {
+      this.pushLeft(root);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !this.path.isEmpty();
+    }
+
+    @Override
+    public String next() {
+      if (this.path.isEmpty()) {
+        throw new NoSuchElementException();
+      }
+      TreeNode node = this.path.pop();
+      this.pushLeft(node.right);
+      return node.vertex;
+    }
+
+    /**
+     * Pushes node and its chain of left children
+     */
+    private void pushLeft(TreeNode node) {
+      for (; node != null; node = node.left) {
+        this.path.push(node);
+      }
+    }
+  }
+
+  /**
+   * Trie node, never changed once created. Bit b of bitmap is set if the child for hash bits b is
+   * present, children are stored in bit order without gaps. Each child is a Keyed or a Node.
+   *
+   * Nodes below MAX_SHIFT do not use the bitmap and hold only entries with equal hashes.
+   */
+  private static class Node {
+    static final Node EMPTY = new Node(0, new Object[0]);
+
+    final int bitmap;
+    final Object[] slots;
+
+    Node(int bitmap, Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    /**
+     * @return Node copy with the child at index replaced
+     */
+    Node replace(int index, Object child) {
+      Object[] slots = this.slots.clone();
+      slots[index] = child;
+      return new Node(this.bitmap, slots);
+    }
+
+    /**
+     * @return Node copy with a child inserted at index and bit set
+     */
+    Node insert(int index, int bit, Object child) {
+      Object[] slots = new Object[this.slots.length + 1];
+      System.arraycopy(this.slots, 0, slots, 0, index);
+      slots[index] = child;
+      System.arraycopy(this.slots, index, slots, index + 1, this.slots.length - index);
+      return new Node(this.bitmap | bit, slots);
+    }
+
+    /**
+     * @return Node copy with the child at index removed and bit cleared
+     */
+    Node delete(int index, int bit) {
+      Object[] slots = new Object[this.slots.length - 1];
+      System.arraycopy(this.slots, 0, slots, 0, index);
+      System.arraycopy(this.slots, index + 1, slots, index, slots.length - index);
+      return new Node(this.bitmap & ~bit, slots);
+    }
+  }
+
+  /**
+   * Depth first walk over the entries of a trie
+   */
+  private static class VertexIterator implements Iterator<String> {
+
+    /**
+     * Nodes on the path to the next entry and the next slot to look at in each
+     */
+    private final Node[] nodes = new Node[MAX_SHIFT / BITS + 2];
+    private final int[] positions = new int[MAX_SHIFT / BITS + 2];
+    private int depth;
+    private Keyed next;
+
+    VertexIterator(Node root) {
+      this.nodes[0] = root;
+      this.advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return this.next != null;
+    }
+
+    @Override
+    public String next() {
+      if (this.next == null) {
+        throw new NoSuchElementException();
+      }
+      String vertex = this.next.vertex;
+      this.advance();
+      return vertex;
+    }
+
+    /**
+     * Moves to the next entry, or sets next to null if there is none
+     */
+    private void advance() {
+      while (this.depth >= 0) {
+        Node node = this.nodes[this.depth];
+        if (this.positions[this.depth] == node.slots.length) {
+          this.depth--;
+          continue;
+        }
+        Object slot = node.slots[this.positions[this.depth]++];
+        if (slot instanceof Keyed) {
+          this.next = (Keyed) slot;
+          return;
+        }
+        this.depth++;
+        this.nodes[this.depth] = (Node) slot;
+        this.positions[this.depth] = 0;
+      }
+      this.next = null;
+    }
+  }
+
+  /**
+   * Read-only list over the edges of a vertex
+   */
+  private static class EdgeView extends AbstractList<String> {
+    private final Edges edges;
+
+    EdgeView(Edges edges) {
+      this.edges = edges;
+    }
+
+    @Override
+    public String get(int index) {
+      if (index < 0 || index >= this.edges.size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.edges.size());
+      }
+      return this.edges.get(index);
+    }
+
+    @Override
+    public int size() {
+      return this.edges.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return o instanceof String && this.edges.contains((String) o);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return this.edges.iterator();
+    }
+  }
+
+}
@@ -0,0 +1,160 @@
+import static org.junit.Assert.fail;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for PersistentGraph testing
+ */
+class PersistentGraphTest {
+
+  PersistentGraph graph;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    graph = PersistentGraph.EMPTY.withEdge("A", "B").withEdge("A", "C").withEdge("B", "C");
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    graph = null;
+  }
+
+  /**
+   * Changes return new versions and leave the old ones as they were
+   */
+  @Test
+  void testPersistentGraph_001_old_versions_do_not_change() {
+    PersistentGraph next = graph.withoutVertex("C").withEdge("B", "D");
+
+    if (graph.order() != 3 || graph.size() != 3 || !graph.hasEdge("B", "C")) {
+      fail("Old version should still have 3 vertices and 3 edges");
+    }
+    if (next.order() != 3 || next.size() != 2) {
+      fail("New version should have 3 vertices and 2 edges but has " + next.order() + " and "
+          + next.size());
+    }
+    if (!next.getAdjacentVerticesOf("A").equals(Arrays.asList("B"))) {
+      fail("Adjacent vertices of A should be [B] but are " + next.getAdjacentVerticesOf("A"));
+    }
+    if (next.getAdjacentVerticesOf("C") != null) {
+      fail("C should not be in the new version");
+    }
+    if (graph.withEdge("A", "B") != graph || graph.withoutVertex("X") != graph) {
+      fail("Changes that change nothing should return the same version");
+    }
+  }
+
+  /**
+   * The in place GraphADT changes are not supported
+   */
+  @Test
+  void testPersistentGraph_002_in_place_changes_throw() {
+    try {
+      graph.addEdge("C", "A");
+      fail("addEdge() should throw an UnsupportedOperationException");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+    if (graph.hasEdge("C", "A")) {
+      fail("Graph should not have changed");
+    }
+  }
+
+  /**
+   * Applies the same random changes, including vertices with equal hashes, to a Graph and a
+   * PersistentGraph and compares them
+   */
+  @Test
+  void testPersistentGraph_003_matches_graph() {
+    Graph expected = new Graph();
+    PersistentGraph actual = PersistentGraph.EMPTY;
+    String[] colliding = {"Aa", "BB", "AaAa", "BBBB", "AaBB", "BBAa"};
+    Random random = new Random(5);
+    for (int i = 0; i < 20000; i++) {
+      String from = random.nextInt(10) == 0 ? colliding[random.nextInt(colliding.length)]
+          : GraphGenerator.name(random.nextInt(200));
+      String to = GraphGenerator.name(random.nextInt(200));
+      int operation = random.nextInt(10);
+      if (operation < 6) {
+        expected.addEdge(from, to);
+        actual = actual.withEdge(from, to);
+      } else if (operation < 9) {
+        expected.removeEdge(from, to);
+        actual = actual.withoutEdge(from, to);
+      } else {
+        expected.removeVertex(from);
+        actual = actual.withoutVertex(from);
+      }
+    }
+
+    if (actual.order() != expected.order() || actual.size() != expected.size()) {
+      fail("Graph has " + actual.order() + " vertices and " + actual.size()
+          + " edges but should have " + expected.order() + " and " + expected.size());
+    }
+    Set<String> vertices = new HashSet<String>();
+    for (String v : actual.getAllVertices()) {
+      vertices.add(v);
+    }
+    if (!vertices.equals(expected.getAllVertices())) {
+      fail("Vertices do not match");
+    }
+    for (String v : expected.getAllVertices()) {
+      if (!actual.getAdjacentVerticesOf(v).equals(expected.getAdjacentVerticesOf(v))) {
+        fail("Adjacent vertices of " + v + " do not match");
+      }
+      if (!actual.getPredecessorsOf(v).equals(expected.getPredecessorsOf(v))) {
+        fail("Predecessors of " + v + " do not match");
+      }
+    }
+    if (actual.freeze().size() != expected.size()) {
+      fail("Frozen copy should have " + expected.size() + " edges");
+    }
+  }
+
+  /**
+   * A hub with many more than SMALL dependents keeps them in order, and every retained version
+   * keeps its own
+   */
+  @Test
+  void testPersistentGraph_004_hub_versions() {
+    Graph expected = new Graph();
+    PersistentGraph actual = PersistentGraph.EMPTY;
+    PersistentGraph[] versions = new PersistentGraph[1000];
+    for (int i = 0; i < versions.length; i++) {
+      expected.addEdge("hub", "d" + i);
+      actual = actual.withEdge("hub", "d" + i);
+      versions[i] = actual;
+    }
+    for (int i = 0; i < versions.length; i += 3) {
+      expected.removeEdge("hub", "d" + i);
+      actual = actual.withoutEdge("hub", "d" + i);
+    }
+    expected.removeVertex("d500");
+    actual = actual.withoutVertex("d500");
+
+    if (!actual.getAdjacentVerticesOf("hub").equals(expected.getAdjacentVerticesOf("hub"))) {
+      fail("Adjacent vertices of hub do not match");
+    }
+    if (!actual.getAdjacentVerticesOf("hub").get(1).equals("d2") || actual.hasEdge("hub", "d3")) {
+      fail("Second dependent of hub should be d2 and d3 should be gone");
+    }
+    for (int i = 0; i < versions.length; i += 100) {
+      if (versions[i].getAdjacentVerticesOf("hub").size() != i + 1
+          || !versions[i].hasEdge("hub", "d" + i)) {
+        fail("Version " + i + " should have " + (i + 1) + " dependents of hub");
+      }
+    }
+  }
+
+}
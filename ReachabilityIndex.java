@@ -0,0 +1,370 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Precomputed index answering "does package A transitively depend on package B" without walking
+ * the whole installation order of A.
+ *
+ * The graph is collapsed into its strongly connected components first. Packages in the same
+ * component depend on each other, and since components are numbered in reverse topological order
+ * a package can only depend on packages in a component with a higher id, which rules out half of
+ * all queries right away. The rest is answered from the condensation in one of two ways, picked by
+ * the memory budget:
+ *
+ * If a BitSet per component with every component it depends on fits, the full transitive closure
+ * is computed in one dependencies-first pass and every query is a single bit lookup.
+ *
+ * Otherwise every component gets up to MAX_LABELS interval labels from randomized depth first
+ * traversals of the condensation (GRAIL labeling). If component X can reach component Y, the
+ * interval of Y lies inside the interval of X in every labeling, so a query whose intervals do not
+ * nest is answered "no" immediately. Remaining queries do a depth first search that skips every
+ * component whose intervals rule it out, which typically touches only a handful of components.
+ *
+ * Instances are immutable after construction and queries can run on several threads at once.
+ * The index does not follow later changes to the graph.
+ */
+public class ReachabilityIndex {
+
+  /**
+   * Default memory budget for the closure or the labels, 64 MB
+   */
+  public static final long DEFAULT_MEMORY_BUDGET = 64L << 20;
+
+  /**
+   * Most interval labelings kept per component, more stop paying off quickly
+   */
+  public static final int MAX_LABELS = 5;
+
+  /**
+   * Per-thread scratch space for label guided searches
+   */
+  private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+    @Override
+    protected Scratch initialValue() {
+      return new Scratch();
+    }
+  };
+
+  private final StronglyConnectedComponents scc;
+
+  /**
+   * component id -> components it depends on, null if labels are used instead
+   */
+  private final BitSet[] closure;
+
+  /**
+   * labels[k][2 * c] up to labels[k][2 * c + 1] is the interval of component c in labeling k
+   */
+  private final int[][] labels;
+
+  private final long memoryUsed;
+
+  /**
+   * Builds an index with the default memory budget
+   *
+   * @param graph to index, edges go from a dependency to the package that depends on it
+   */
+  public ReachabilityIndex(IndexedGraph graph) {
+    this(graph, DEFAULT_MEMORY_BUDGET);
+  }
+
+  /**
+   * Builds an index that uses about memoryBudget bytes on top of the component of every vertex
+   *
+   * @param graph to index, edges go from a dependency to the package that depends on it
+   * @param memoryBudget bytes the closure or the labels may use, at least one labeling is always
+   *        kept
+   *
+   * @throws IllegalArgumentException if memoryBudget is negative
+   */
+  public ReachabilityIndex(IndexedGraph graph, long memoryBudget) {
+    if (memoryBudget < 0) {
+      throw new IllegalArgumentException("memoryBudget must not be negative: " + memoryBudget);
+    }
+
+    this.scc = new StronglyConnectedComponents(graph);
+    int count = this.scc.count();
+
+    // worst case of a full closure is one bit per pair of components
+    long closureBytes = (long) count * ((count + 63) / 64) * 8;
+    if (closureBytes <= memoryBudget) {
+      this.closure = this.buildClosure();
+      this.labels = null;
+      this.memoryUsed = closureBytes;
+    } else {
+      long labelBytes = (long) count * 8;
+      int k = (int) Math.max(1, Math.min(MAX_LABELS, memoryBudget / Math.max(labelBytes, 1)));
+      this.closure = null;
+      this.labels = new int[k][];
+      Random random = new Random(count);
+      for (int i = 0; i < k; i++) {
+        this.labels[i] = this.buildLabels(random);
+      }
+      this.memoryUsed = k * labelBytes;
+    }
+  }
+
+  /**
+   * @return IndexedGraph the graph the index was built for
+   */
+  public IndexedGraph getGraph() {
+    return this.scc.getGraph();
+  }
+
+  /**
+   * @return boolean true if queries are answered from a full transitive closure
+   */
+  public boolean hasClosure() {
+    return this.closure != null;
+  }
+
+  /**
+   * @return long approximate bytes used by the closure or the labels
+   */
+  public long getMemoryUsed() {
+    return this.memoryUsed;
+  }
+
+  /**
+   * Returns whether a package transitively depends on another one. A package only depends on
+   * itself if it is part of a cycle.
+   *
+   * @param pkg name of the package
+   * @param dependency name of the possible dependency
+   * @return boolean true if pkg depends on dependency, false otherwise or if either is not in the
+   *         graph
+   */
+  public boolean dependsOn(String pkg, String dependency) {
+    IndexedGraph graph = this.scc.getGraph();
+    int a = graph.idOf(pkg);
+    int b = graph.idOf(dependency);
+    return a >= 0 && b >= 0 && this.dependsOn(a, b);
+  }
+
+  /**
+   * Same as dependsOn(String, String) for vertex ids
+   *
+   * @param pkg id of the package
+   * @param dependency id of the possible dependency
+   * @return boolean true if pkg depends on dependency
+   */
+  public boolean dependsOn(int pkg, int dependency) {
+    int a = this.scc.componentOf(pkg);
+    int b = this.scc.componentOf(dependency);
+    if (a == b) {
+      return pkg != dependency || this.scc.isCyclic(a);
+    }
+
+    // dependencies always have a higher component id
+    if (b < a) {
+      return false;
+    }
+    if (this.closure != null) {
+      return this.closure[a].get(b);
+    }
+    return this.reaches(b, a);
+  }
+
+  /**
+   * Computes the components every component depends on, dependencies first. Condensation edges go
+   * from a dependency to its dependents, so by the time a component is visited its own set is
+   * complete and can be pushed to every dependent.
+   *
+   * @return BitSet[] component id -> components it depends on
+   */
+  private BitSet[] buildClosure() {
+    int count = this.scc.count();
+    BitSet[] sets = new BitSet[count];
+    for (int c = 0; c < count; c++) {
+      sets[c] = new BitSet();
+    }
+
+    for (int c = count - 1; c >= 0; c--) {
+      for (int e = this.scc.condensationStart(c); e < this.scc.condensationEnd(c); e++) {
+        BitSet dependent = sets[this.scc.condensationTarget(e)];
+        dependent.or(sets[c]);
+        dependent.set(c);
+      }
+    }
+    return sets;
+  }
+
+  /**
+   * Computes one interval labeling with an iterative depth first traversal of the condensation.
+   * Roots and the edges of each component are visited in a random order so that different
+   * labelings rule out different queries.
+   *
+   * The interval of component c is [lowest post-order rank reachable from c, rank of c].
+   *
+   * @param random to shuffle the traversal order with
+   * @return int[] 2 * component -> low, 2 * component + 1 -> rank
+   */
+  private int[] buildLabels(Random random) {
+    int count = this.scc.count();
+    int[] label = new int[2 * count];
+    boolean[] visited = new boolean[count];
+
+    // explicit call stack of (component, edges visited, first edge offset) frames
+    int[] stackComponent = new int[count];
+    int[] stackVisited = new int[count];
+    int[] stackOffset = new int[count];
+
+    int[] roots = new int[count];
+    for (int c = 0; c < count; c++) {
+      roots[c] = c;
+    }
+    for (int i = count - 1; i > 0; i--) {
+      int j = random.nextInt(i + 1);
+      int swap = roots[i];
+      roots[i] = roots[j];
+      roots[j] = swap;
+    }
+
+    int rank = 0;
+    for (int root : roots) {
+      if (visited[root]) {
+        continue;
+      }
+
+      int top = 0;
+      visited[root] = true;
+      stackComponent[0] = root;
+      stackVisited[0] = 0;
+      stackOffset[0] = this.randomOffset(random, root);
+      label[2 * root] = Integer.MAX_VALUE;
+
+      while (top >= 0) {
+        int c = stackComponent[top];
+        int start = this.scc.condensationStart(c);
+        int degree = this.scc.condensationEnd(c) - start;
+
+        if (stackVisited[top] < degree) {
+          int d = this.scc.condensationTarget(start + (stackOffset[top] + stackVisited[top]++)
+              % degree);
+          if (!visited[d]) {
+            visited[d] = true;
+            top++;
+            stackComponent[top] = d;
+            stackVisited[top] = 0;
+            stackOffset[top] = this.randomOffset(random, d);
+            label[2 * d] = Integer.MAX_VALUE;
+          } else if (label[2 * d] < label[2 * c]) {
+            label[2 * c] = label[2 * d];
+          }
+          continue;
+        }
+
+        // every component reachable from c has a rank, c is next
+        label[2 * c + 1] = rank;
+        label[2 * c] = Math.min(label[2 * c], rank);
+        rank++;
+        top--;
+        if (top >= 0 && label[2 * c] < label[2 * stackComponent[top]]) {
+          label[2 * stackComponent[top]] = label[2 * c];
+        }
+      }
+    }
+    return label;
+  }
+
+  /**
+   * @param random to pick with
+   * @param component whose edges are about to be visited
+   * @return int random offset into the edges of component, 0 if it has none
+   */
+  private int randomOffset(Random random, int component) {
+    int degree = this.scc.condensationEnd(component) - this.scc.condensationStart(component);
+    return degree == 0 ? 0 : random.nextInt(degree);
+  }
+
+  /**
+   * Returns whether component to is reachable from component from in every labeling
+   *
+   * @param from id of a component
+   * @param to id of a component
+   * @return boolean false if to is certainly not reachable from from
+   */
+  private boolean mayReach(int from, int to) {
+    for (int[] label : this.labels) {
+      if (label[2 * to] < label[2 * from] || label[2 * to + 1] > label[2 * from + 1]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Depth first search from one component to another in the condensation, skipping components
+   * that the labels or the component numbering rule out
+   *
+   * @param from id of the component to start at
+   * @param to id of the component to look for, lower than from
+   * @return boolean true if to is reachable from from
+   */
+  private boolean reaches(int from, int to) {
+    if (!this.mayReach(from, to)) {
+      return false;
+    }
+
+    // marks[c] == stamp means visited during this search
+    Scratch scratch = SCRATCH.get().begin(this.scc.count());
+    int[] marks = scratch.marks;
+    int stamp = scratch.stamp;
+    int[] stack = scratch.stack;
+
+    int top = 0;
+    stack[0] = from;
+    marks[from] = stamp;
+    while (top >= 0) {
+      int c = stack[top--];
+      for (int e = this.scc.condensationStart(c); e < this.scc.condensationEnd(c); e++) {
+        int d = this.scc.condensationTarget(e);
+        if (d == to) {
+          return true;
+        }
+        if (d > to && marks[d] != stamp && this.mayReach(d, to)) {
+          marks[d] = stamp;
+          stack[++top] = d;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Marker and stack arrays for one thread
+   */
+  private static class Scratch {
+    int[] marks = new int[0];
+    int[] stack = new int[0];
+
+    /**
+     * Stamp of the current search
+     */
+    int stamp;
+
+    /**
+     * Prepares the arrays for a new search over n components
+     *
+     * @param n amount of components
+     * @return Scratch this
+     */
+    Scratch begin(int n) {
+      if (this.marks.length < n) {
+        this.marks = new int[n];
+        this.stack = new int[n];
+        this.stamp = 0;
+      }
+
+      // start over once the stamps run out
+      if (this.stamp == Integer.MAX_VALUE) {
+        Arrays.fill(this.marks, 0);
+        this.stamp = 0;
+      }
+      this.stamp++;
+      return this;
+    }
+  }
+
+}
@@ -0,0 +1,136 @@
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.json.simple.parser.ContentHandler;
+
+/**
+ * Streaming json-simple ContentHandler that adds package versions to a PackageRegistry while the
+ * file is being parsed.
+ *
+ * Expects one entry per version of a package:
+ *
+ * { "packages": [ { "name": "A", "version": "1.2.0", "dependencies": { "B": "^2.0.0" } }, ... ] }
+ *
+ * Dependencies can also be a plain list of names, ["B", "C"], which accepts any version of them.
+ * Entries without a version are version "0". Unknown keys and nested values are skipped.
+ */
+class RegistryJsonHandler implements ContentHandler {
+
+  /**
+   * Nesting depth of the packages array, a package object and its dependencies
+   */
+  private static final int PACKAGES_DEPTH = 2;
+  private static final int PACKAGE_DEPTH = 3;
+  private static final int DEPENDENCIES_DEPTH = 4;
+
+  private final PackageRegistry registry;
+
+  /**
+   * Keys of the object entries we are currently inside of, innermost first
+   */
+  private final Deque<String> keys = new ArrayDeque<String>();
+  private int depth;
+
+  private boolean inPackages;
+  private boolean inDependencies;
+
+  /**
+   * Whether the dependencies are a list of names rather than an object of ranges
+   */
+  private boolean dependencyList;
+
+  /**
+   * The version currently being parsed
+   */
+  private String name;
+  private String version;
+  private final Map<String, String> dependencies = new LinkedHashMap<String, String>();
+
+  /**
+   * @param registry to add package versions to
+   */
+  RegistryJsonHandler(PackageRegistry registry) {
+    this.registry = registry;
+  }
+
+  public void startJSON() {}
+
+  public void endJSON() {}
+
+  public boolean startObject() {
+    this.depth++;
+    if (this.inPackages && this.depth == PACKAGE_DEPTH) {
+      this.name = null;
+      this.version = null;
+      this.dependencies.clear();
+    } else if (this.inPackages && this.depth == DEPENDENCIES_DEPTH
+        && "dependencies".equals(this.keys.peek())) {
+      this.inDependencies = true;
+      this.dependencyList = false;
+    }
+    return true;
+  }
+
+  public boolean endObject() {
+    if (this.inPackages && this.depth == PACKAGE_DEPTH && this.name != null) {
+      this.registry.addVersion(this.name, this.version == null ? "0" : this.version,
+          this.dependencies);
+    } else if (this.depth == DEPENDENCIES_DEPTH) {
+      this.inDependencies = false;
+    }
+    this.depth--;
+    return true;
+  }
+
+  public boolean startObjectEntry(String key) {
+    this.keys.push(key);
+    return true;
+  }
+
+  public boolean endObjectEntry() {
+    this.keys.pop();
+    return true;
+  }
+
+  public boolean startArray() {
+    this.depth++;
+    if (this.depth == PACKAGES_DEPTH && "packages".equals(this.keys.peek())) {
+      this.inPackages = true;
+    } else if (this.inPackages && this.depth == DEPENDENCIES_DEPTH
+        && "dependencies".equals(this.keys.peek())) {
+      this.inDependencies = true;
+      this.dependencyList = true;
+    }
+    return true;
+  }
+
+  public boolean endArray() {
+    if (this.depth == DEPENDENCIES_DEPTH) {
+      this.inDependencies = false;
+    } else if (this.depth == PACKAGES_DEPTH) {
+      this.inPackages = false;
+    }
+    this.depth--;
+    return true;
+  }
+
+  public boolean primitive(Object value) {
+    if (this.inDependencies && this.depth == DEPENDENCIES_DEPTH) {
+      // a name in a list, or the range of the dependency named by the current key
+      if (this.dependencyList) {
+        this.dependencies.put((String) value, "*");
+      } else {
+        this.dependencies.put(this.keys.peek(), (String) value);
+      }
+    } else if (this.inPackages && this.depth == PACKAGE_DEPTH) {
+      if ("name".equals(this.keys.peek())) {
+        this.name = (String) value;
+      } else if ("version".equals(this.keys.peek())) {
+        this.version = (String) value;
+      }
+    }
+    return true;
+  }
+
+}
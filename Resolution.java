@@ -0,0 +1,98 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Versions picked by DependencyResolver, one per package that is needed, together with how much
+ * searching it took to find them.
+ */
+public class Resolution {
+
+  private final PackageRegistry registry;
+  private final Map<String, Version> versions;
+  private final int decisions;
+  private final int conflicts;
+
+  /**
+   * @param registry the versions were picked from
+   * @param versions package name -> picked version
+   * @param decisions amount of versions the resolver tried
+   * @param conflicts amount of conflicts the resolver learned from
+   */
+  Resolution(PackageRegistry registry, Map<String, Version> versions, int decisions,
+      int conflicts) {
+    this.registry = registry;
+    this.versions = Collections.unmodifiableMap(versions);
+    this.decisions = decisions;
+    this.conflicts = conflicts;
+  }
+
+  /**
+   * @return Map<String, Version> read-only package name -> picked version
+   */
+  public Map<String, Version> getVersions() {
+    return this.versions;
+  }
+
+  /**
+   * @param name of the package
+   * @return Version picked for the package, or null if the package is not needed
+   */
+  public Version getVersion(String name) {
+    return this.versions.get(name);
+  }
+
+  /**
+   * @return int amount of versions the resolver tried, including ones it had to take back
+   */
+  public int getDecisions() {
+    return this.decisions;
+  }
+
+  /**
+   * @return int amount of conflicts the resolver ran into and learned from
+   */
+  public int getConflicts() {
+    return this.conflicts;
+  }
+
+  /**
+   * Builds the dependency graph of the picked versions. Vertices are named "name@version", edges
+   * go from a dependency to the package that depends on it, like in every other Graph.
+   *
+   * @return Graph of the picked versions
+   */
+  public Graph getGraph() {
+    GraphBuilder builder = new GraphBuilder();
+    for (Map.Entry<String, Version> picked : this.versions.entrySet()) {
+      String dependent = PackageRegistry.vertexOf(picked.getKey(), picked.getValue());
+      builder.addVertex(dependent);
+      for (String dependency : this.registry.getDependencies(picked.getKey(), picked.getValue())
+          .keySet()) {
+        builder.addEdge(PackageRegistry.vertexOf(dependency, this.versions.get(dependency)),
+            dependent);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns an order to install the picked versions in, every version after its dependencies
+   *
+   * @return List<String> "name@version" of every picked version
+   *
+   * @throws CycleException if the picked versions depend on each other in a cycle, a
+   *         CyclicDependencyException naming the versions in the cycle
+   */
+  public List<String> getInstallationOrder() throws CycleException {
+    return ParallelTopologicalSort.sort(this.getGraph().freeze(), ForkJoinPool.commonPool())
+        .getOrder();
+  }
+
+  @Override
+  public String toString() {
+    return this.versions.toString();
+  }
+
+}
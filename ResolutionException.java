@@ -0,0 +1,35 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown when no choice of versions satisfies every dependency.
+ *
+ * The reasons are the dependencies that together rule out every choice, for example
+ * ["A 1.0.0 depends on B ^2.0.0", "requested B ^1.0.0"].
+ */
+public class ResolutionException extends Exception {
+
+  private static final long serialVersionUID = 1L;
+
+  private final List<String> reasons;
+
+  /**
+   * @param reasons dependencies that cannot all be met at once
+   */
+  public ResolutionException(List<String> reasons) {
+    this.reasons = Collections.unmodifiableList(reasons);
+  }
+
+  /**
+   * @return List<String> dependencies that cannot all be met at once
+   */
+  public List<String> getReasons() {
+    return this.reasons;
+  }
+
+  @Override
+  public String getMessage() {
+    return "no versions satisfy all dependencies: " + String.join("; ", this.reasons);
+  }
+
+}
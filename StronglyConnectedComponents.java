@@ -0,0 +1,356 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Splits an IndexedGraph into strongly connected components using an iterative version of Tarjan's
+ * algorithm, so it runs in O(V + E) time and never recurses no matter how deep the graph is.
+ *
+ * Components are numbered in the order Tarjan's algorithm completes them, which is reverse
+ * topological order: every edge between two different components goes from a higher component id
+ * to a lower one. For the package graph (edges go from a dependency to the package that depends
+ * on it) that means iterating component ids from high to low visits dependencies first.
+ *
+ * A component is cyclic if it has more than one vertex or its only vertex has an edge to itself.
+ * cycleOf() and cycles() turn cyclic components into concrete cycles, so every cycle in the graph
+ * can be reported at once instead of only the first one a traversal runs into.
+ *
+ * The condensation is the DAG with one vertex per component and an edge between two components if
+ * any of their members have an edge between them. It is built the first time it is asked for.
+ */
+public class StronglyConnectedComponents {
+
+  private final IndexedGraph graph;
+
+  /**
+   * vertex id -> component id
+   */
+  private final int[] component;
+
+  /**
+   * Members of each component in CSR form
+   */
+  private final int[] memberOffsets;
+  private final int[] members;
+
+  private final boolean[] cyclic;
+  private final int count;
+
+  /**
+   * Edges of the condensation in CSR form, null until condensationStart() is first called
+   */
+  private int[] condensationOffsets;
+  private int[] condensationTargets;
+
+  /**
+   * Computes the strongly connected components of a graph
+   *
+   * @param graph to split into components
+   */
+  public StronglyConnectedComponents(IndexedGraph graph) {
+    this.graph = graph;
+    int n = graph.order();
+
+    this.component = new int[n];
+    int[] index = new int[n];
+    int[] low = new int[n];
+    boolean[] onStack = new boolean[n];
+    Arrays.fill(index, -1);
+
+    // Tarjan's stack of vertices and an explicit call stack of (vertex, next edge) frames
+    int[] stack = new int[n];
+    int sp = 0;
+    int[] callVertex = new int[n];
+    int[] callEdge = new int[n];
+    int top;
+
+    int nextIndex = 0;
+    int components = 0;
+
+    for (int s = 0; s < n; s++) {
+      if (index[s] != -1) {
+        continue;
+      }
+
+      // "call" s
+      index[s] = low[s] = nextIndex++;
+      stack[sp++] = s;
+      onStack[s] = true;
+      top = 0;
+      callVertex[0] = s;
+      callEdge[0] = graph.outStart(s);
+
+      while (top >= 0) {
+        int v = callVertex[top];
+
+        if (callEdge[top] < graph.outEnd(v)) {
+          int w = graph.outTarget(callEdge[top]++);
+          if (index[w] == -1) {
+            // "call" w
+            index[w] = low[w] = nextIndex++;
+            stack[sp++] = w;
+            onStack[w] = true;
+            top++;
+            callVertex[top] = w;
+            callEdge[top] = graph.outStart(w);
+          } else if (onStack[w] && index[w] < low[v]) {
+            low[v] = index[w];
+          }
+          continue;
+        }
+
+        // every edge of v is done, v is the root of a component if low[v] == index[v]
+        if (low[v] == index[v]) {
+          int w;
+          do {
+            w = stack[--sp];
+            onStack[w] = false;
+            this.component[w] = components;
+          } while (w != v);
+          components++;
+        }
+
+        // "return" to the caller
+        top--;
+        if (top >= 0 && low[v] < low[callVertex[top]]) {
+          low[callVertex[top]] = low[v];
+        }
+      }
+    }
+    this.count = components;
+
+    // group vertices by component
+    this.memberOffsets = new int[components + 1];
+    for (int v = 0; v < n; v++) {
+      this.memberOffsets[this.component[v] + 1]++;
+    }
+    for (int c = 0; c < components; c++) {
+      this.memberOffsets[c + 1] += this.memberOffsets[c];
+    }
+    this.members = new int[n];
+    int[] next = new int[components];
+    System.arraycopy(this.memberOffsets, 0, next, 0, components);
+    for (int v = 0; v < n; v++) {
+      this.members[next[this.component[v]]++] = v;
+    }
+
+    // a single vertex component is only cyclic if it has an edge to itself
+    this.cyclic = new boolean[components];
+    for (int c = 0; c < components; c++) {
+      if (this.sizeOf(c) > 1) {
+        this.cyclic[c] = true;
+        continue;
+      }
+      int v = this.members[this.memberOffsets[c]];
+      for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+        if (graph.outTarget(e) == v) {
+          this.cyclic[c] = true;
+        }
+      }
+    }
+  }
+
+  /**
+   * @return IndexedGraph the graph the components were computed for
+   */
+  public IndexedGraph getGraph() {
+    return this.graph;
+  }
+
+  /**
+   * @return int amount of components
+   */
+  public int count() {
+    return this.count;
+  }
+
+  /**
+   * Returns the component a vertex belongs to
+   *
+   * @param id id of the vertex
+   * @return int id of the component
+   */
+  public int componentOf(int id) {
+    return this.component[id];
+  }
+
+  /**
+   * Returns the amount of vertices in a component
+   *
+   * @param component id of the component
+   * @return int amount of vertices in the component
+   */
+  public int sizeOf(int component) {
+    return this.memberOffsets[component + 1] - this.memberOffsets[component];
+  }
+
+  /**
+   * Returns the id of one of the vertices in a component
+   *
+   * @param component id of the component
+   * @param i index between 0 and sizeOf(component) - 1
+   * @return int id of the vertex
+   */
+  public int memberOf(int component, int i) {
+    return this.members[this.memberOffsets[component] + i];
+  }
+
+  /**
+   * Returns whether a component contains a cycle
+   *
+   * @param component id of the component
+   * @return boolean true if the component has more than one vertex or a self loop
+   */
+  public boolean isCyclic(int component) {
+    return this.cyclic[component];
+  }
+
+  /**
+   * @return boolean true if any component contains a cycle
+   */
+  public boolean hasCycle() {
+    for (boolean c : this.cyclic) {
+      if (c) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns a cycle through the members of a cyclic component
+   *
+   * @param component id of a cyclic component
+   * @return List<String> the cycle, each vertex having an edge to the previous one and the last
+   *         one being the same as the first, like CyclicDependencyException expects
+   *
+   * @throws IllegalArgumentException if the component is not cyclic
+   */
+  public List<String> cycleOf(int component) {
+    int[] position = new int[this.graph.order()];
+    Arrays.fill(position, -1);
+    return this.cycleOf(component, position);
+  }
+
+  /**
+   * Returns one cycle for every cyclic component, which together cover every vertex that is part
+   * of any cycle
+   *
+   * @return List<List<String>> one cycle per cyclic component, see cycleOf()
+   */
+  public List<List<String>> cycles() {
+    List<List<String>> cycles = new ArrayList<List<String>>();
+    int[] position = new int[this.graph.order()];
+    Arrays.fill(position, -1);
+    for (int c = 0; c < this.count; c++) {
+      if (this.cyclic[c]) {
+        cycles.add(this.cycleOf(c, position));
+      }
+    }
+    return cycles;
+  }
+
+  /**
+   * Walks incoming edges inside a component until a vertex repeats. Every member of a cyclic
+   * component with more than one vertex has an incoming edge from another member, so the walk
+   * always ends on a cycle within sizeOf(component) steps.
+   *
+   * @param component id of a cyclic component
+   * @param position all -1, vertex -> position on the walk, reset to -1 before returning
+   * @return List<String> the cycle
+   */
+  private List<String> cycleOf(int component, int[] position) {
+    if (!this.cyclic[component]) {
+      throw new IllegalArgumentException("component " + component + " is not cyclic");
+    }
+
+    List<Integer> walk = new ArrayList<Integer>();
+    int v = this.memberOf(component, 0);
+    while (position[v] == -1) {
+      position[v] = walk.size();
+      walk.add(v);
+      for (int e = this.graph.inStart(v); e < this.graph.inEnd(v); e++) {
+        int w = this.graph.inSource(e);
+        // prefer leaving v, a self loop is only taken by a single vertex component
+        if (this.component[w] == component && (w != v || this.sizeOf(component) == 1)) {
+          v = w;
+          break;
+        }
+      }
+    }
+
+    List<String> cycle = new ArrayList<String>();
+    for (int i = position[v]; i < walk.size(); i++) {
+      cycle.add(this.graph.nameOf(walk.get(i)));
+    }
+    cycle.add(this.graph.nameOf(v));
+
+    for (int w : walk) {
+      position[w] = -1;
+    }
+    return cycle;
+  }
+
+  /**
+   * Returns where the condensation edges leaving a component start. The edges of component c are
+   * condensationTarget(e) for e from condensationStart(c) up to condensationEnd(c). Edges go from
+   * a higher component id to a lower one and there is at most one edge between two components.
+   *
+   * @param component id of the component
+   * @return int index of the first edge leaving the component
+   */
+  public int condensationStart(int component) {
+    if (this.condensationOffsets == null) {
+      this.buildCondensation();
+    }
+    return this.condensationOffsets[component];
+  }
+
+  /**
+   * @param component id of the component
+   * @return int index one past the last edge leaving the component
+   */
+  public int condensationEnd(int component) {
+    if (this.condensationOffsets == null) {
+      this.buildCondensation();
+    }
+    return this.condensationOffsets[component + 1];
+  }
+
+  /**
+   * @param edge index of a condensation edge
+   * @return int id of the component the edge goes to
+   */
+  public int condensationTarget(int edge) {
+    return this.condensationTargets[edge];
+  }
+
+  /**
+   * Collects the edges between components, dropping edges inside a component and duplicates
+   */
+  private void buildCondensation() {
+    int[] offsets = new int[this.count + 1];
+    int[] targets = new int[this.graph.size()];
+    int[] seenFrom = new int[this.count];
+    Arrays.fill(seenFrom, -1);
+    int size = 0;
+
+    for (int c = 0; c < this.count; c++) {
+      for (int i = 0; i < this.sizeOf(c); i++) {
+        int v = this.memberOf(c, i);
+        for (int e = this.graph.outStart(v); e < this.graph.outEnd(v); e++) {
+          int d = this.component[this.graph.outTarget(e)];
+          if (d != c && seenFrom[d] != c) {
+            seenFrom[d] = c;
+            targets[size++] = d;
+          }
+        }
+      }
+      offsets[c + 1] = size;
+    }
+
+    this.condensationTargets = Arrays.copyOf(targets, size);
+    this.condensationOffsets = offsets;
+  }
+
+}
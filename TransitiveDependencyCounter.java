@@ -0,0 +1,207 @@
+import java.util.BitSet;
+
+/**
+ * Counts the transitive dependencies of every package in a single pass.
+ *
+ * The graph is first collapsed into its strongly connected components, which form a DAG (the
+ * condensation). Components are then visited dependencies first, and the dependency set of each
+ * component is the union of the sets of the components it depends on plus its own members. A set
+ * is dropped as soon as every component that needs it has been visited, so only the "frontier" of
+ * the DAG is kept in memory at once.
+ *
+ * count() keeps exact sets as BitSets over vertex ids. estimate() keeps a HyperLogLog sketch per
+ * component instead, which uses a fixed amount of memory per component no matter how big the
+ * graph is, at the cost of a few percent error.
+ *
+ * The edges of the graph are expected to go from a dependency to the package that depends on it,
+ * like the graph PackageManager builds. A package in a cycle depends on every other package in
+ * that cycle.
+ */
+public class TransitiveDependencyCounter {
+
+  /**
+   * Default HyperLogLog precision, 2^10 one byte registers per component (about 3% error)
+   */
+  public static final int DEFAULT_PRECISION = 10;
+
+  /*
+   * Only static methods, no instances
+   */
+  private TransitiveDependencyCounter() {}
+
+  /**
+   * Counts the exact amount of transitive dependencies of every vertex
+   *
+   * @param scc strongly connected components of the graph
+   * @return int[] vertex id -> amount of transitive dependencies
+   */
+  public static int[] count(StronglyConnectedComponents scc) {
+    IndexedGraph graph = scc.getGraph();
+    int[] remaining = countRemainingUses(scc);
+    BitSet[] sets = new BitSet[scc.count()];
+    int[] counts = new int[graph.order()];
+
+    // highest component id first means dependencies first
+    for (int c = scc.count() - 1; c >= 0; c--) {
+      BitSet set = new BitSet();
+
+      for (int i = 0; i < scc.sizeOf(c); i++) {
+        int v = scc.memberOf(c, i);
+        set.set(v);
+
+        // union in the set of every dependency component
+        for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+          int p = scc.componentOf(graph.inSource(e));
+          if (p != c) {
+            set.or(sets[p]);
+            if (--remaining[p] == 0) {
+              sets[p] = null;
+            }
+          }
+        }
+      }
+
+      // every member has the same dependencies, minus itself
+      int count = set.cardinality() - 1;
+      for (int i = 0; i < scc.sizeOf(c); i++) {
+        counts[scc.memberOf(c, i)] = count;
+      }
+
+      if (remaining[c] > 0) {
+        sets[c] = set;
+      }
+    }
+
+    return counts;
+  }
+
+  /**
+   * Estimates the amount of transitive dependencies of every vertex with HyperLogLog sketches
+   *
+   * @param scc strongly connected components of the graph
+   * @param precision log2 of the amount of registers per sketch, between 4 and 16
+   * @return int[] vertex id -> estimated amount of transitive dependencies
+   *
+   * @throws IllegalArgumentException if precision is out of range
+   */
+  public static int[] estimate(StronglyConnectedComponents scc, int precision) {
+    if (precision < 4 || precision > 16) {
+      throw new IllegalArgumentException("precision must be between 4 and 16: " + precision);
+    }
+
+    IndexedGraph graph = scc.getGraph();
+    int registers = 1 << precision;
+    int[] remaining = countRemainingUses(scc);
+    byte[][] sketches = new byte[scc.count()][];
+    int[] counts = new int[graph.order()];
+
+    for (int c = scc.count() - 1; c >= 0; c--) {
+      byte[] sketch = new byte[registers];
+
+      for (int i = 0; i < scc.sizeOf(c); i++) {
+        int v = scc.memberOf(c, i);
+        add(sketch, precision, v);
+
+        // merging two sketches is a register-wise max
+        for (int e = graph.inStart(v); e < graph.inEnd(v); e++) {
+          int p = scc.componentOf(graph.inSource(e));
+          if (p != c) {
+            byte[] other = sketches[p];
+            for (int r = 0; r < registers; r++) {
+              if (other[r] > sketch[r]) {
+                sketch[r] = other[r];
+              }
+            }
+            if (--remaining[p] == 0) {
+              sketches[p] = null;
+            }
+          }
+        }
+      }
+
+      // the estimate can never be below the amount of other members in the component
+      int count = Math.max((int) Math.round(cardinality(sketch)) - 1, scc.sizeOf(c) - 1);
+      for (int i = 0; i < scc.sizeOf(c); i++) {
+        counts[scc.memberOf(c, i)] = count;
+      }
+
+      if (remaining[c] > 0) {
+        sketches[c] = sketch;
+      }
+    }
+
+    return counts;
+  }
+
+  /**
+   * Counts, for every component, how many edges lead from it to another component. Each of those
+   * edges is one future read of the component's set.
+   *
+   * @param scc strongly connected components of the graph
+   * @return int[] component id -> amount of edges to other components
+   */
+  private static int[] countRemainingUses(StronglyConnectedComponents scc) {
+    IndexedGraph graph = scc.getGraph();
+    int[] remaining = new int[scc.count()];
+    for (int v = 0; v < graph.order(); v++) {
+      int c = scc.componentOf(v);
+      for (int e = graph.outStart(v); e < graph.outEnd(v); e++) {
+        if (scc.componentOf(graph.outTarget(e)) != c) {
+          remaining[c]++;
+        }
+      }
+    }
+    return remaining;
+  }
+
+  /**
+   * Adds a vertex id to a HyperLogLog sketch
+   *
+   * @param sketch registers to update
+   * @param precision log2 of the amount of registers
+   * @param id vertex id to add
+   */
+  private static void add(byte[] sketch, int precision, int id) {
+    // 64-bit finalizer from MurmurHash3 to spread consecutive ids
+    long h = id;
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+
+    int register = (int) (h >>> (64 - precision));
+    int rank = Long.numberOfLeadingZeros((h << precision) | (1L << (precision - 1))) + 1;
+    if (rank > sketch[register]) {
+      sketch[register] = (byte) rank;
+    }
+  }
+
+  /**
+   * Estimates the amount of distinct ids added to a HyperLogLog sketch
+   *
+   * @param sketch registers
+   * @return double estimated cardinality
+   */
+  private static double cardinality(byte[] sketch) {
+    int m = sketch.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : sketch) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+
+    double alpha = 0.7213 / (1 + 1.079 / m);
+    double estimate = alpha * m * m / sum;
+
+    // linear counting is more accurate for small cardinalities
+    if (estimate <= 2.5 * m && zeros > 0) {
+      estimate = m * Math.log((double) m / zeros);
+    }
+    return estimate;
+  }
+
+}
@@ -0,0 +1,106 @@
+import static org.junit.Assert.fail;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * JUnit class for TransitiveDependencyCounter testing
+ */
+class TransitiveDependencyCounterTest {
+
+  Graph graph;
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @BeforeEach
+  void setUp() throws Exception {
+    graph = new Graph();
+  }
+
+  /**
+   * @throws java.lang.Exception
+   */
+  @AfterEach
+  void tearDown() throws Exception {
+    graph = null;
+  }
+
+  /**
+   * Helper to look up the count of a package
+   */
+  private int countOf(CompactGraph compact, int[] counts, String pkg) {
+    return counts[compact.idOf(pkg)];
+  }
+
+  /**
+   * A depends on B and C, B depends on C, C depends on D. A has 3 dependencies
+   */
+  @Test
+  void testCounter_001_exact_counts() {
+    // edges go from dependency to dependent
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "A");
+    graph.addEdge("C", "B");
+    graph.addEdge("D", "C");
+
+    CompactGraph compact = graph.freeze();
+    int[] counts = TransitiveDependencyCounter.count(new StronglyConnectedComponents(compact));
+
+    int[] expected = {3, 2, 1, 0};
+    String[] pkgs = {"A", "B", "C", "D"};
+    for (int i = 0; i < pkgs.length; i++) {
+      if (countOf(compact, counts, pkgs[i]) != expected[i]) {
+        fail(pkgs[i] + " should have " + expected[i] + " dependencies but has "
+            + countOf(compact, counts, pkgs[i]));
+      }
+    }
+  }
+
+  /**
+   * Packages in a cycle depend on each other and on whatever the cycle depends on
+   */
+  @Test
+  void testCounter_002_cycle_counts() {
+    // A -> B -> C -> A is a cycle that depends on D, E depends on A
+    graph.addEdge("B", "A");
+    graph.addEdge("C", "B");
+    graph.addEdge("A", "C");
+    graph.addEdge("D", "C");
+    graph.addEdge("A", "E");
+
+    CompactGraph compact = graph.freeze();
+    int[] counts = TransitiveDependencyCounter.count(new StronglyConnectedComponents(compact));
+
+    if (countOf(compact, counts, "A") != 3) {
+      fail("A should have 3 dependencies but has " + countOf(compact, counts, "A"));
+    }
+    if (countOf(compact, counts, "E") != 4) {
+      fail("E should have 4 dependencies but has " + countOf(compact, counts, "E"));
+    }
+  }
+
+  /**
+   * The estimate on a long chain should be within 10% of the exact count
+   */
+  @Test
+  void testCounter_003_estimate_close_to_exact() {
+    for (int i = 1; i < 5000; i++) {
+      graph.addEdge("p" + (i - 1), "p" + i);
+    }
+
+    CompactGraph compact = graph.freeze();
+    StronglyConnectedComponents scc = new StronglyConnectedComponents(compact);
+    int[] exact = TransitiveDependencyCounter.count(scc);
+    int[] estimate =
+        TransitiveDependencyCounter.estimate(scc, TransitiveDependencyCounter.DEFAULT_PRECISION);
+
+    for (int id = 0; id < compact.order(); id++) {
+      if (Math.abs(exact[id] - estimate[id]) > Math.max(10, exact[id] / 10)) {
+        fail(compact.nameOf(id) + " has " + exact[id] + " dependencies but the estimate is "
+            + estimate[id]);
+      }
+    }
+  }
+
+}
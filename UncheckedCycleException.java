@@ -0,0 +1,25 @@
+/**
+ * Wraps a CyclicDependencyException where a checked exception cannot be thrown, for example from
+ * the next() method of a lazy installation order Iterator or inside a Stream. The cycle is only
+ * found once the iteration reaches it.
+ */
+public class UncheckedCycleException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * @param cause the cycle that was found
+   */
+  public UncheckedCycleException(CyclicDependencyException cause) {
+    super(cause.getMessage(), cause);
+  }
+
+  /**
+   * @return CyclicDependencyException the cycle that was found
+   */
+  @Override
+  public CyclicDependencyException getCause() {
+    return (CyclicDependencyException) super.getCause();
+  }
+
+}
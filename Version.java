@@ -0,0 +1,116 @@
+import java.util.Arrays;
+
+/**
+ * Version of a package, for example "1.4.2" or "2.0.0-beta".
+ *
+ * A version is a list of numbers separated by dots, optionally followed by a dash and a
+ * pre-release label. Versions compare number by number, missing numbers count as 0, so "1.2" and
+ * "1.2.0" are equal. A pre-release comes before the release it belongs to, "2.0.0-beta" is lower
+ * than "2.0.0", and pre-release labels compare alphabetically.
+ */
+public class Version implements Comparable<Version> {
+
+  private final int[] numbers;
+
+  /**
+   * Pre-release label, null for a release
+   */
+  private final String preRelease;
+
+  private final String text;
+
+  /**
+   * @param text version to parse, for example "1.4.2"
+   *
+   * @throws IllegalArgumentException if text is not a valid version
+   */
+  public Version(String text) {
+    if (text == null) {
+      throw new IllegalArgumentException("version must not be null");
+    }
+
+    String release = text.trim();
+    int dash = release.indexOf('-');
+    this.preRelease = dash < 0 ? null : release.substring(dash + 1);
+    if (dash >= 0) {
+      release = release.substring(0, dash);
+    }
+
+    String[] parts = release.split("\\.", -1);
+    this.numbers = new int[parts.length];
+    try {
+      for (int i = 0; i < parts.length; i++) {
+        this.numbers[i] = Integer.parseInt(parts[i]);
+        if (this.numbers[i] < 0 || parts[i].startsWith("+")) {
+          throw new NumberFormatException();
+        }
+      }
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid version: " + text);
+    }
+    if (this.preRelease != null && this.preRelease.isEmpty()) {
+      throw new IllegalArgumentException("invalid version: " + text);
+    }
+    this.text = text.trim();
+  }
+
+  /**
+   * @param index of the number, 0 for the major version
+   * @return int the number, 0 if the version has fewer numbers
+   */
+  public int getNumber(int index) {
+    return index < this.numbers.length ? this.numbers[index] : 0;
+  }
+
+  /**
+   * @return int amount of numbers the version was written with
+   */
+  public int getLength() {
+    return this.numbers.length;
+  }
+
+  /**
+   * @return boolean true if the version has a pre-release label
+   */
+  public boolean isPreRelease() {
+    return this.preRelease != null;
+  }
+
+  @Override
+  public int compareTo(Version other) {
+    int length = Math.max(this.numbers.length, other.numbers.length);
+    for (int i = 0; i < length; i++) {
+      int compared = Integer.compare(this.getNumber(i), other.getNumber(i));
+      if (compared != 0) {
+        return compared;
+      }
+    }
+
+    if (this.preRelease == null || other.preRelease == null) {
+      return this.preRelease == null ? (other.preRelease == null ? 0 : 1) : -1;
+    }
+    return this.preRelease.compareTo(other.preRelease);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof Version && this.compareTo((Version) o) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    // trailing zeros do not change the version
+    int length = this.numbers.length;
+    while (length > 0 && this.numbers[length - 1] == 0) {
+      length--;
+    }
+    return 31 * Arrays.hashCode(Arrays.copyOf(this.numbers, length))
+        + (this.preRelease == null ? 0 : this.preRelease.hashCode());
+  }
+
+  @Override
+  public String toString() {
+    return this.text;
+  }
+
+}
@@ -0,0 +1,181 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set of versions a dependency accepts, written the way package files usually write them:
+ *
+ * "1.2.3" or "=1.2.3" only that version, "*" or "" any version, ">=1.2", ">1.2", "<=2", "<2" one
+ * sided bounds, "^1.2.3" the same major version (>=1.2.3 <2.0.0, or the same minor version while
+ * the major version is 0), "~1.2.3" the same minor version (>=1.2.3 <1.3.0).
+ *
+ * Comparators separated by spaces must all hold, ranges separated by "||" are alternatives, for
+ * example ">=1.0 <1.5 || ^2.1". Every alternative is kept as a single interval, so checking a
+ * version is a couple of comparisons per alternative.
+ */
+public class VersionRange {
+
+  /**
+   * Range that accepts every version
+   */
+  public static final VersionRange ANY = new VersionRange("*");
+
+  /**
+   * Alternatives, a version is in the range if it is in any of them
+   */
+  private final List<Interval> intervals = new ArrayList<Interval>();
+
+  private final String text;
+
+  /**
+   * @param text range to parse, for example "^1.2.0"
+   *
+   * @throws IllegalArgumentException if text is not a valid range
+   */
+  public VersionRange(String text) {
+    if (text == null) {
+      throw new IllegalArgumentException("range must not be null");
+    }
+    this.text = text.trim();
+
+    for (String alternative : this.text.split("\\|\\|", -1)) {
+      Interval interval = new Interval();
+      for (String comparator : alternative.trim().split("\\s+")) {
+        if (!comparator.isEmpty()) {
+          this.parseComparator(comparator, interval);
+        }
+      }
+      this.intervals.add(interval);
+    }
+  }
+
+  /**
+   * Narrows an interval down to one comparator
+   *
+   * @param comparator for example ">=1.2" or "^1.2.3"
+   * @param interval to narrow down
+   *
+   * @throws IllegalArgumentException if comparator is not valid
+   */
+  private void parseComparator(String comparator, Interval interval) {
+    if (comparator.equals("*") || comparator.equalsIgnoreCase("x")) {
+      return;
+    }
+
+    if (comparator.startsWith(">=")) {
+      interval.atLeast(new Version(comparator.substring(2)), true);
+    } else if (comparator.startsWith("<=")) {
+      interval.atMost(new Version(comparator.substring(2)), true);
+    } else if (comparator.startsWith(">")) {
+      interval.atLeast(new Version(comparator.substring(1)), false);
+    } else if (comparator.startsWith("<")) {
+      interval.atMost(new Version(comparator.substring(1)), false);
+    } else if (comparator.startsWith("^")) {
+      Version version = new Version(comparator.substring(1));
+      interval.atLeast(version, true);
+      interval.atMost(caretLimit(version), false);
+    } else if (comparator.startsWith("~")) {
+      Version version = new Version(comparator.substring(1));
+      interval.atLeast(version, true);
+      interval.atMost(version.getLength() == 1 ? next(version, 0) : next(version, 1), false);
+    } else {
+      Version version = new Version(comparator.startsWith("=") ? comparator.substring(1)
+          : comparator);
+      interval.atLeast(version, true);
+      interval.atMost(version, true);
+    }
+  }
+
+  /**
+   * @param version written after a caret
+   * @return Version first version a caret range no longer accepts: the next major version, or
+   *         the next minor or patch version while the numbers before it are 0
+   */
+  private static Version caretLimit(Version version) {
+    for (int i = 0; i < Math.min(version.getLength(), 3) - 1; i++) {
+      if (version.getNumber(i) != 0) {
+        return next(version, i);
+      }
+    }
+    return next(version, Math.min(version.getLength(), 3) - 1);
+  }
+
+  /**
+   * @param version to count up from
+   * @param index of the number to count up
+   * @return Version with the number at index one higher and every number after it dropped
+   */
+  private static Version next(Version version, int index) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < index; i++) {
+      text.append(version.getNumber(i)).append('.');
+    }
+    return new Version(text.append(version.getNumber(index) + 1).toString());
+  }
+
+  /**
+   * @param version to check
+   * @return boolean true if the range accepts version
+   */
+  public boolean contains(Version version) {
+    for (Interval interval : this.intervals) {
+      if (interval.contains(version)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    return this.text.isEmpty() ? "*" : this.text;
+  }
+
+  /**
+   * Versions between a lower and an upper bound, null bounds are unbounded
+   */
+  private static class Interval {
+    Version lower;
+    boolean lowerInclusive;
+    Version upper;
+    boolean upperInclusive;
+
+    /**
+     * Raises the lower bound if version is higher than it
+     */
+    void atLeast(Version version, boolean inclusive) {
+      int compared = this.lower == null ? 1 : version.compareTo(this.lower);
+      if (compared > 0 || (compared == 0 && !inclusive)) {
+        this.lower = version;
+        this.lowerInclusive = inclusive;
+      }
+    }
+
+    /**
+     * Lowers the upper bound if version is lower than it
+     */
+    void atMost(Version version, boolean inclusive) {
+      int compared = this.upper == null ? -1 : version.compareTo(this.upper);
+      if (compared < 0 || (compared == 0 && !inclusive)) {
+        this.upper = version;
+        this.upperInclusive = inclusive;
+      }
+    }
+
+    boolean contains(Version version) {
+      if (this.lower != null) {
+        int compared = version.compareTo(this.lower);
+        if (compared < 0 || (compared == 0 && !this.lowerInclusive)) {
+          return false;
+        }
+      }
+      if (this.upper != null) {
+        int compared = version.compareTo(this.upper);
+        if (compared > 0 || (compared == 0 && !this.upperInclusive)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
+}
@@ -0,0 +1,27 @@
+/**
+ * Two way mapping between vertex names and the int ids 0 to size() - 1 used by CompactGraph.
+ */
+interface VertexTable {
+
+  /**
+   * Returns the id of a vertex
+   *
+   * @param vertex name of the vertex, not null
+   * @return int id of the vertex, or -1 if it is not in the table
+   */
+  int idOf(String vertex);
+
+  /**
+   * Returns the name of a vertex
+   *
+   * @param id id of the vertex
+   * @return String name of the vertex
+   */
+  String nameOf(int id);
+
+  /**
+   * @return int amount of vertices in the table
+   */
+  int size();
+
+}
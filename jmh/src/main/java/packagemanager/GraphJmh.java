@@ -0,0 +1,209 @@
+package packagemanager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH benchmarks for the Graph hot paths on a registry from GraphGenerator that is already loaded.
+ *
+ * Every changing benchmark works on batches of BATCH operations and undoes them after each
+ * invocation, outside of the timed region, so every invocation sees the same graph. Vertex names
+ * are built in the setup, only the Graph calls are timed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphJmh {
+
+  /**
+   * Operations per invocation of every benchmark, the smallest registry has this many packages
+   */
+  static final int BATCH = 1000;
+
+  /**
+   * A loaded registry shared by every benchmark
+   */
+  @State(Scope.Benchmark)
+  public static class Registry {
+
+    @Param({"random", "chain", "fanout", "powerlaw"})
+    public String shape;
+
+    @Param({"1000", "100000", "1000000"})
+    public int packages;
+
+    Graph graph;
+
+    /**
+     * id -> package name
+     */
+    String[] names;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+      int[][] registry = PackageManagerBenchmark.generate(this.shape, this.packages);
+      this.graph = GraphGenerator.toGraph(registry);
+      this.names = new String[this.packages];
+      for (int i = 0; i < this.packages; i++) {
+        this.names[i] = GraphGenerator.name(i);
+      }
+    }
+  }
+
+  /**
+   * BATCH edges that are not in the graph, removed again after every invocation
+   */
+  @State(Scope.Thread)
+  public static class NewEdges {
+
+    String[][] edges;
+    Graph graph;
+
+    @Setup(Level.Trial)
+    public void setUp(Registry registry) {
+      this.graph = registry.graph;
+      this.edges = new String[BATCH][];
+      Random random = new Random(11);
+      for (int i = 0; i < BATCH;) {
+        // from a lower to a higher package, like every generated edge
+        int a = random.nextInt(registry.packages);
+        int b = random.nextInt(registry.packages);
+        String from = registry.names[Math.min(a, b)];
+        String to = registry.names[Math.max(a, b)];
+        if (a != b && !this.graph.hasEdge(from, to) && !this.contains(i, from, to)) {
+          this.edges[i++] = new String[] {from, to};
+        }
+      }
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeEdges() {
+      for (String[] edge : this.edges) {
+        this.graph.removeEdge(edge[0], edge[1]);
+      }
+    }
+
+    /**
+     * @return boolean true if one of the first count edges is from -> to
+     */
+    private boolean contains(int count, String from, String to) {
+      for (int i = 0; i < count; i++) {
+        if (this.edges[i][0].equals(from) && this.edges[i][1].equals(to)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * BATCH distinct packages with their edges, added back after every invocation
+   */
+  @State(Scope.Thread)
+  public static class Removals {
+
+    String[] vertices;
+    List<List<String>> successors;
+    List<List<String>> predecessors;
+    Graph graph;
+
+    @Setup(Level.Trial)
+    public void setUp(Registry registry) {
+      this.graph = registry.graph;
+      List<String> shuffled = new ArrayList<String>();
+      Collections.addAll(shuffled, registry.names);
+      Collections.shuffle(shuffled, new Random(7));
+
+      this.vertices = shuffled.subList(0, BATCH).toArray(new String[0]);
+      this.successors = new ArrayList<List<String>>(BATCH);
+      this.predecessors = new ArrayList<List<String>>(BATCH);
+      for (String vertex : this.vertices) {
+        this.successors.add(new ArrayList<String>(this.graph.getAdjacentVerticesOf(vertex)));
+        this.predecessors.add(new ArrayList<String>(this.graph.getPredecessorsOf(vertex)));
+      }
+    }
+
+    @TearDown(Level.Invocation)
+    public void addBack() {
+      for (String vertex : this.vertices) {
+        this.graph.addVertex(vertex);
+      }
+      for (int i = 0; i < BATCH; i++) {
+        for (String successor : this.successors.get(i)) {
+          this.graph.addEdge(this.vertices[i], successor);
+        }
+        for (String predecessor : this.predecessors.get(i)) {
+          this.graph.addEdge(predecessor, this.vertices[i]);
+        }
+      }
+    }
+  }
+
+  /**
+   * BATCH random package names to look up
+   */
+  @State(Scope.Thread)
+  public static class Lookups {
+
+    String[] vertices;
+
+    @Setup(Level.Trial)
+    public void setUp(Registry registry) {
+      Random random = new Random(13);
+      this.vertices = new String[BATCH];
+      for (int i = 0; i < BATCH; i++) {
+        this.vertices[i] = registry.names[random.nextInt(registry.packages)];
+      }
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void addEdge(NewEdges edges) {
+    for (String[] edge : edges.edges) {
+      edges.graph.addEdge(edge[0], edge[1]);
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void removeVertex(Removals removals) {
+    for (String vertex : removals.vertices) {
+      removals.graph.removeVertex(vertex);
+    }
+  }
+
+  @Benchmark
+  public int size(Registry registry) {
+    return registry.graph.size();
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(BATCH)
+  public void getAdjacentVerticesOf(Registry registry, Lookups lookups, Blackhole blackhole) {
+    for (String vertex : lookups.vertices) {
+      blackhole.consume(registry.graph.getAdjacentVerticesOf(vertex));
+    }
+  }
+
+}
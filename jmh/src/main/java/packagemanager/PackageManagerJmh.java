@@ -0,0 +1,108 @@
+package packagemanager;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * JMH benchmarks for the PackageManager hot paths on a registry from GraphGenerator, written to a
+ * package file once per trial. The queries run on a PackageManager that already read the file,
+ * with the installation order cache off so every call does the full work, and without metrics
+ * unless the name says otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xss64m")
+public class PackageManagerJmh {
+
+  @Param({"random", "chain", "fanout", "powerlaw"})
+  public String shape;
+
+  @Param({"1000", "100000", "1000000"})
+  public int packages;
+
+  File json;
+  PackageManager pkgManager;
+
+  /**
+   * Same graph with PackageMetrics recording every operation
+   */
+  PackageManager metered;
+
+  /**
+   * Package that depends on the most others, and one half way through the registry
+   */
+  String deepest;
+  String middle;
+
+  @Setup(Level.Trial)
+  public void setUp() throws Exception {
+    this.json = File.createTempFile("benchmark", ".json");
+    GraphGenerator.writeJson(PackageManagerBenchmark.generate(this.shape, this.packages),
+        this.json.getPath());
+    this.pkgManager = new PackageManager();
+    this.pkgManager.constructGraph(this.json.getPath());
+    this.metered = new PackageManager();
+    this.metered.constructGraph(this.json.getPath());
+    this.metered.setMetricsListener(new PackageMetrics());
+    this.deepest = this.pkgManager.getPackageWithMaxDependencies();
+    this.middle = GraphGenerator.name(this.packages / 2);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    this.json.delete();
+  }
+
+  @Benchmark
+  public PackageManager constructGraph() throws Exception {
+    PackageManager p = new PackageManager();
+    p.constructGraph(this.json.getPath());
+    return p;
+  }
+
+  @Benchmark
+  public List<String> getInstallationOrder() throws Exception {
+    return this.pkgManager.getInstallationOrder(this.deepest);
+  }
+
+  /**
+   * Compare with getInstallationOrder() to see the cost of recording metrics
+   */
+  @Benchmark
+  public List<String> getInstallationOrderWithMetrics() throws Exception {
+    return this.metered.getInstallationOrder(this.deepest);
+  }
+
+  @Benchmark
+  public List<String> toInstall() throws Exception {
+    return this.pkgManager.toInstall(this.deepest, this.middle);
+  }
+
+  @Benchmark
+  public List<String> getInstallationOrderForAllPackages() throws Exception {
+    return this.pkgManager.getInstallationOrderForAllPackages();
+  }
+
+  @Benchmark
+  public String getPackageWithMaxDependencies() throws Exception {
+    return this.pkgManager.getPackageWithMaxDependencies();
+  }
+
+}